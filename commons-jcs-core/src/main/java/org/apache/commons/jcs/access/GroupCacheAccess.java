@@ -170,9 +170,8 @@ public class GroupCacheAccess<K, V>
     {
         GroupId groupId = new GroupId( this.getCacheControl().getCacheName(), group );
 
-        return this.getCacheControl().getKeySet()
+        return this.getCacheControl().getGroupKeySet( groupId )
                 .stream()
-                .filter(gan -> gan.groupId.equals(groupId))
                 .map(gan -> gan.attrName)
                 .collect(Collectors.toSet());
     }
@@ -184,9 +183,9 @@ public class GroupCacheAccess<K, V>
      */
     public Set<String> getGroupNames()
     {
-        return this.getCacheControl().getKeySet()
+        return this.getCacheControl().getGroupIds()
                 .stream()
-                .map(gan -> gan.groupId.groupName)
+                .map(groupId -> groupId.groupName)
                 .collect(Collectors.toSet());
     }
 
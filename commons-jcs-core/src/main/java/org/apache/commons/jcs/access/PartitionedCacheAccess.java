@@ -19,11 +19,16 @@ package org.apache.commons.jcs.access;
  * under the License.
  */
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.commons.jcs.JCS;
 import org.apache.commons.jcs.access.behavior.ICacheAccess;
@@ -34,6 +39,7 @@ import org.apache.commons.jcs.engine.behavior.ICompositeCacheAttributes;
 import org.apache.commons.jcs.engine.behavior.IElementAttributes;
 import org.apache.commons.jcs.engine.stats.behavior.ICacheStats;
 import org.apache.commons.jcs.utils.props.AbstractPropertyContainer;
+import org.apache.commons.jcs.utils.threadpool.ThreadPoolManager;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -53,6 +59,9 @@ import org.apache.commons.logging.LogFactory;
  * We use a JCS region name for each partition that looks like this: partitionRegionNamePrefix + "_"
  * + partitionNumber. The number is 0 indexed based.
  * <p>
+ * Keys are assigned to the partitions with a jump consistent hash, changing the number of partitions from N to N + 1
+ * only moves about 1/(N + 1) of the keys.
+ * <p>
  * @author Aaron Smuts
  */
 public class PartitionedCacheAccess<K, V>
@@ -62,6 +71,9 @@ public class PartitionedCacheAccess<K, V>
     /** the logger. */
     private static final Log log = LogFactory.getLog( PartitionedCacheAccess.class );
 
+    /** The name of the pool used to query the partitions in parallel. */
+    private static final String THREAD_POOL_NAME = "PartitionedCacheAccess";
+
     /** The number of partitions. */
     private int numberOfPartitions = 1;
 
@@ -71,11 +83,11 @@ public class PartitionedCacheAccess<K, V>
      */
     private String partitionRegionNamePrefix;
 
-    /** An array of partitions built during initialization. */
+    /** An array of partitions built during initialization, published by the volatile write of initialized. */
     private ICacheAccess<K, V>[] partitions;
 
     /** Is the class initialized. */
-    private boolean initialized = false;
+    private volatile boolean initialized = false;
 
     /** Sets default properties heading and group. */
     public PartitionedCacheAccess()
@@ -262,12 +274,56 @@ public class PartitionedCacheAccess<K, V>
             dividedNames[partition].add( key );
         }
 
-        Map<K, ICacheElement<K, V>> result = new HashMap<K, ICacheElement<K, V>>();
+        // the partitions are queried in parallel, the last one by the calling thread
+        List<Future<Map<K, ICacheElement<K, V>>>> futures = new ArrayList<Future<Map<K, ICacheElement<K, V>>>>();
+        int last = -1;
         for ( int i = 0; i < partitions.length; i++ )
         {
-            if ( dividedNames[i] != null && !dividedNames[i].isEmpty() )
+            if ( dividedNames[i] == null || dividedNames[i].isEmpty() )
+            {
+                continue;
+            }
+            if ( last >= 0 )
             {
-                result.putAll( partitions[i].getCacheElements( dividedNames[i] ) );
+                final ICacheAccess<K, V> partition = partitions[last];
+                final Set<K> partitionNames = dividedNames[last];
+                futures.add( ThreadPoolManager.getInstance().getExecutorService( THREAD_POOL_NAME ).submit(
+                    new Callable<Map<K, ICacheElement<K, V>>>()
+                    {
+                        @Override
+                        public Map<K, ICacheElement<K, V>> call()
+                        {
+                            return partition.getCacheElements( partitionNames );
+                        }
+                    } ) );
+            }
+            last = i;
+        }
+
+        Map<K, ICacheElement<K, V>> result = new HashMap<K, ICacheElement<K, V>>();
+        if ( last < 0 )
+        {
+            return result;
+        }
+        result.putAll( partitions[last].getCacheElements( dividedNames[last] ) );
+        for (Future<Map<K, ICacheElement<K, V>>> future : futures)
+        {
+            try
+            {
+                result.putAll( future.get() );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new CacheException( "Interrupted while getting elements from the partitions", e );
+            }
+            catch ( ExecutionException e )
+            {
+                if ( e.getCause() instanceof RuntimeException )
+                {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new CacheException( e.getCause() );
             }
         }
         return result;
@@ -616,10 +672,8 @@ public class PartitionedCacheAccess<K, V>
     }
 
     /**
-     * This expects a numeric key. If the key cannot be converted into a number, we will return 0.
-     * TODO we could md5 it or get the hashcode.
-     * <p>
-     * We determine the partition by taking the mod of the number of partitions.
+     * The partition is chosen by a jump consistent hash (Lamping and Veach) of the numeric value of the key: when the
+     * number of partitions changes only the keys which have to move to or from the added or removed partitions move.
      * <p>
      * @param key key
      * @return the partition number.
@@ -631,9 +685,7 @@ public class PartitionedCacheAccess<K, V>
             return 0;
         }
 
-        long keyNum = getNumericValueForKey( key );
-
-        int partition = (int) ( keyNum % getNumberOfPartitions() );
+        int partition = jumpConsistentHash( getNumericValueForKey( key ), getNumberOfPartitions() );
 
         if ( log.isDebugEnabled() )
         {
@@ -644,45 +696,72 @@ public class PartitionedCacheAccess<K, V>
     }
 
     /**
-     * This can be overridden for special purposes.
+     * Returns the long value of numeric keys and the hashcode of the other keys. This can be overridden for special
+     * purposes, for instance to hash only a part of the key to keep related keys together.
+     * <p>
+     * It is called for each operation so it should neither allocate nor throw.
      * <p>
      * @param key key
      * @return long
      */
     public long getNumericValueForKey( K key )
     {
-        String keyString = key.toString();
-        long keyNum = -1;
-        try
+        if ( key instanceof Number )
         {
-            keyNum = Long.parseLong( keyString );
+            return ( (Number) key ).longValue();
         }
-        catch ( NumberFormatException e )
+        return key.hashCode();
+    }
+
+    /**
+     * @param value the numeric value of the key
+     * @param buckets the number of partitions
+     * @return a partition number in [0, buckets)
+     */
+    static int jumpConsistentHash( long value, int buckets )
+    {
+        // spreads the values first, sequential keys would else be clustered
+        long key = value;
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+
+        long b = -1;
+        long j = 0;
+        while ( j < buckets )
         {
-            // THIS IS UGLY, but I can't think of a better failsafe right now.
-            keyNum = key.hashCode();
-            log.warn( "Couldn't convert [" + key + "] into a number.  Will use hashcode [" + keyNum + "]" );
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ( ( b + 1 ) * ( (double) ( 1L << 31 ) / (double) ( ( key >>> 33 ) + 1 ) ) );
         }
-        return keyNum;
+        return (int) b;
     }
 
     /**
-     * Initialize if we haven't already.
+     * Initialize if we haven't already. Once initialized this is a single volatile read.
      * <p>
-     * @throws ConfigurationException on configuration problem
+     * @return false if the configuration is invalid
      */
-    protected synchronized boolean ensureInit()
+    protected boolean ensureInit()
     {
         if ( !initialized )
         {
-            try
+            synchronized ( this )
             {
-                initialize();
-            }
-            catch ( ConfigurationException e )
-            {
-                log.error( "Couldn't configure partioned access.", e );
-                return false;
+                if ( !initialized )
+                {
+                    try
+                    {
+                        initialize();
+                    }
+                    catch ( ConfigurationException e )
+                    {
+                        log.error( "Couldn't configure partioned access.", e );
+                        return false;
+                    }
+                }
             }
         }
 
@@ -4,7 +4,6 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /*
  * Licensed to the Apache Software Foundation (ASF) under one
@@ -27,6 +26,7 @@ import java.util.stream.Collectors;
 
 import org.apache.commons.jcs.engine.behavior.ICacheElement;
 import org.apache.commons.jcs.engine.behavior.IElementSerializer;
+import org.apache.commons.jcs.engine.logging.AsyncCacheEventLogger;
 import org.apache.commons.jcs.engine.logging.CacheEvent;
 import org.apache.commons.jcs.engine.logging.behavior.ICacheEvent;
 import org.apache.commons.jcs.engine.logging.behavior.ICacheEventLogger;
@@ -58,23 +58,23 @@ public abstract class AbstractAuxiliaryCache<K, V>
     {
         if ( keys != null && !keys.isEmpty() )
         {
-            Map<K, ICacheElement<K, V>> elements = keys.stream()
-                .collect(Collectors.toMap(
-                        key -> key,
-                        key -> {
-                            try
-                            {
-                                return get(key);
-                            }
-                            catch (IOException e)
-                            {
-                                return null;
-                            }
-                        })).entrySet().stream()
-                    .filter(entry -> entry.getValue() != null)
-                    .collect(Collectors.toMap(
-                            entry -> entry.getKey(),
-                            entry -> entry.getValue()));
+            // the misses are left out, a collector to map would fail on them
+            Map<K, ICacheElement<K, V>> elements = new HashMap<K, ICacheElement<K, V>>();
+            for ( K key : keys )
+            {
+                try
+                {
+                    ICacheElement<K, V> element = get( key );
+                    if ( element != null )
+                    {
+                        elements.put( key, element );
+                    }
+                }
+                catch ( IOException e )
+                {
+                    // a failed get is a miss
+                }
+            }
 
             return elements;
         }
@@ -180,6 +180,19 @@ public abstract class AbstractAuxiliaryCache<K, V>
         }
     }
 
+    /**
+     * Hands the pending events to the sink and stops the consumer of an asynchronous event logger,
+     * called once the cache is disposed. A logger shared with other caches starts again with their
+     * next event.
+     */
+    protected void disposeCacheEventLogger()
+    {
+        if ( cacheEventLogger instanceof AsyncCacheEventLogger )
+        {
+            ( (AsyncCacheEventLogger) cacheEventLogger ).dispose();
+        }
+    }
+
     /**
      * Gets the extra info for the event log.
      * <p>
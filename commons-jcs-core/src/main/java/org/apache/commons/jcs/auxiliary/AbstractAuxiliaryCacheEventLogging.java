@@ -329,6 +329,7 @@ public abstract class AbstractAuxiliaryCacheEventLogging<K, V>
         finally
         {
             logICacheEvent( cacheEvent );
+            disposeCacheEventLogger();
         }
     }
 
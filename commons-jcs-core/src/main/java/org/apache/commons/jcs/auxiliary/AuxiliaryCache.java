@@ -21,6 +21,8 @@ package org.apache.commons.jcs.auxiliary;
 
 import org.apache.commons.jcs.engine.behavior.ICache;
 import org.apache.commons.jcs.engine.behavior.IElementSerializer;
+import org.apache.commons.jcs.engine.control.group.GroupId;
+import org.apache.commons.jcs.engine.control.group.GroupIndex;
 import org.apache.commons.jcs.engine.logging.behavior.ICacheEventLogger;
 import org.apache.commons.jcs.engine.stats.behavior.IStats;
 
@@ -47,6 +49,28 @@ public interface AuxiliaryCache<K, V>
      */
     Set<K> getKeySet() throws IOException;
 
+    /**
+     * Get the keys of a group. This default implementation filters {@link #getKeySet()}, the stores
+     * maintaining a {@link GroupIndex} override it to only touch the keys of the group.
+     * <p>
+     * @param groupId the group
+     * @return a set of the keys of the group
+     * @throws IOException if access to the auxiliary cache fails
+     */
+    default Set<K> getGroupKeys( GroupId groupId ) throws IOException
+    {
+        return GroupIndex.filterGroupKeys( getKeySet(), groupId );
+    }
+
+    /**
+     * @return the groups having elements in the auxiliary cache
+     * @throws IOException if access to the auxiliary cache fails
+     */
+    default Set<GroupId> getGroupIds() throws IOException
+    {
+        return GroupIndex.filterGroupIds( getKeySet() );
+    }
+
     /**
      * @return the historical and statistical data for a region's auxiliary cache.
      */
@@ -0,0 +1,444 @@
+package org.apache.commons.jcs.auxiliary;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.jcs.utils.threadpool.DaemonThreadFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Queries several peers holding the same data and returns the first non null answer. The
+ * lateral and remote facades use it so that a miss doesn't cost the sum of the latencies of
+ * all the peers and a slow peer doesn't stall every lookup.
+ * <p>
+ * The peers are asked by ascending mean latency. In PARALLEL mode they are all asked at once. In
+ * HEDGED mode the next peer is only asked if the previous ones missed, failed or didn't answer
+ * within the hedge delay, which is the 95th percentile of the latency of the last peer asked
+ * unless a fixed delay is configured. The calls still running when a hit comes back are
+ * cancelled.
+ * <p>
+ * The calls run on a pool of at most MAX_THREADS threads, created on the first concurrent lookup
+ * and released by dispose. The calls must start right away for the hedging to make sense, so
+ * the pool never queues them: when all its threads are busy, or once it is disposed, the caller
+ * runs the call itself.
+ * <p>
+ * @param <P> the type of the peers
+ */
+public class HedgedLookup<P>
+{
+    /** The logger. */
+    private static final Log log = LogFactory.getLog( HedgedLookup.class );
+
+    /** The maximum number of threads querying the peers of one lookup instance. */
+    public static final int MAX_THREADS = 16;
+
+    /** How long an idle thread of the pool is kept. */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /** The hedge delay used for a peer without enough latency samples. */
+    public static final long DEFAULT_HEDGE_DELAY_MILLIS = 50;
+
+    /** How the peers are queried. */
+    public enum LookupMode
+    {
+        /** One after the other in the configured order, the historical behavior. */
+        SEQUENTIAL,
+
+        /** All at once. */
+        PARALLEL,
+
+        /** The next one when the previous ones are slower than the hedge delay. */
+        HEDGED
+    }
+
+    /**
+     * A lookup on one peer.
+     * <p>
+     * @param <P> the type of the peers
+     * @param <R> the type of the result
+     */
+    @FunctionalInterface
+    public interface PeerCall<P, R>
+    {
+        /**
+         * @param peer
+         * @return the result or null on a miss
+         * @throws IOException
+         */
+        R call( P peer )
+            throws IOException;
+    }
+
+    /** The query mode. */
+    private final LookupMode mode;
+
+    /** The fixed hedge delay, 0 to use the 95th percentile of the peer latency. */
+    private final long hedgeDelayMillis;
+
+    /** The latency of the peers, they are forgotten with the peers. */
+    private final Map<P, LatencyTracker> latencies = Collections.synchronizedMap( new WeakHashMap<P, LatencyTracker>() );
+
+    /** The pool querying the peers, null until the first concurrent lookup. */
+    private ThreadPoolExecutor pool;
+
+    /** Set by dispose, the lookups then run in the calling thread. */
+    private boolean disposed = false;
+
+    /**
+     * @param mode how the peers are queried
+     * @param hedgeDelayMillis the delay before asking the next peer in HEDGED mode, 0 for the 95th
+     *            percentile of the peer latency
+     */
+    public HedgedLookup( LookupMode mode, long hedgeDelayMillis )
+    {
+        this.mode = mode;
+        this.hedgeDelayMillis = hedgeDelayMillis;
+    }
+
+    /**
+     * @return the query mode
+     */
+    public LookupMode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Queries the peers according to the mode.
+     * <p>
+     * @param peers the peers holding the data
+     * @param call the lookup on one peer
+     * @return the first non null result, null if every peer missed or failed
+     */
+    public <R> R get( List<P> peers, PeerCall<P, R> call )
+    {
+        List<P> ordered = orderByLatency( peers );
+        if ( ordered.isEmpty() )
+        {
+            return null;
+        }
+        if ( mode == LookupMode.SEQUENTIAL || ordered.size() == 1 )
+        {
+            for ( P peer : ordered )
+            {
+                R result = timedCall( peer, call );
+                if ( result != null )
+                {
+                    return result;
+                }
+            }
+            return null;
+        }
+
+        CompletionService<R> completion = new ExecutorCompletionService<R>( getPool() );
+        List<Future<R>> running = new ArrayList<Future<R>>();
+        int next = 0;
+        try
+        {
+            if ( mode == LookupMode.PARALLEL )
+            {
+                while ( next < ordered.size() )
+                {
+                    submit( completion, ordered.get( next++ ), call, running );
+                }
+            }
+            else
+            {
+                submit( completion, ordered.get( next++ ), call, running );
+            }
+
+            while ( !running.isEmpty() )
+            {
+                Future<R> done;
+                if ( next < ordered.size() )
+                {
+                    done = completion.poll( getHedgeDelayMillis( ordered.get( next - 1 ) ), TimeUnit.MILLISECONDS );
+                    if ( done == null )
+                    {
+                        // the last peer asked is late, ask the next one too
+                        submit( completion, ordered.get( next++ ), call, running );
+                        continue;
+                    }
+                }
+                else
+                {
+                    done = completion.take();
+                }
+
+                running.remove( done );
+                R result = getResult( done );
+                if ( result != null )
+                {
+                    return result;
+                }
+                if ( running.isEmpty() && next < ordered.size() )
+                {
+                    // a miss, don't wait for the hedge delay
+                    submit( completion, ordered.get( next++ ), call, running );
+                }
+            }
+            return null;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        finally
+        {
+            // the interrupted calls still record their latency when they return
+            for ( Future<R> future : running )
+            {
+                future.cancel( true );
+            }
+        }
+    }
+
+    /**
+     * Stops the threads of the pool, interrupting the running calls. The later lookups still work,
+     * their calls run in the calling thread.
+     */
+    public synchronized void dispose()
+    {
+        disposed = true;
+        if ( pool != null )
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the pool querying the peers, created if needed
+     */
+    private synchronized ThreadPoolExecutor getPool()
+    {
+        if ( pool == null )
+        {
+            // a rejected call, the pool being full or shut down, runs in the caller so that its
+            // future always completes
+            pool = new ThreadPoolExecutor( 0, MAX_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                           new SynchronousQueue<Runnable>(),
+                                           new DaemonThreadFactory( "JCS-HedgedLookup-" ),
+                                           ( call, executor ) -> call.run() );
+            if ( disposed )
+            {
+                pool.shutdown();
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * @param peer
+     * @return the mean latency of the peer in nanoseconds, 0 if unknown
+     */
+    public long getMeanLatencyNanos( P peer )
+    {
+        return getTracker( peer ).getMean();
+    }
+
+    /**
+     * @param peer
+     * @return the delay before asking the peer after this one
+     */
+    protected long getHedgeDelayMillis( P peer )
+    {
+        if ( hedgeDelayMillis > 0 )
+        {
+            return hedgeDelayMillis;
+        }
+        long p95 = getTracker( peer ).getPercentile95();
+        return p95 < 0 ? DEFAULT_HEDGE_DELAY_MILLIS : Math.max( 1, TimeUnit.NANOSECONDS.toMillis( p95 ) );
+    }
+
+    /**
+     * @param peers
+     * @return a copy of the non null peers, fastest first
+     */
+    private List<P> orderByLatency( List<P> peers )
+    {
+        List<P> ordered = new ArrayList<P>( peers.size() );
+        for ( P peer : peers )
+        {
+            if ( peer != null )
+            {
+                ordered.add( peer );
+            }
+        }
+        if ( ordered.size() > 1 )
+        {
+            // the sort is stable, the configured order breaks the ties
+            final Map<P, Long> means = new IdentityHashMap<P, Long>();
+            for ( P peer : ordered )
+            {
+                means.put( peer, Long.valueOf( getTracker( peer ).getMean() ) );
+            }
+            Collections.sort( ordered, Comparator.comparing( means::get ) );
+        }
+        return ordered;
+    }
+
+    /**
+     * Submits the call on the peer.
+     */
+    private <R> void submit( CompletionService<R> completion, final P peer, final PeerCall<P, R> call,
+                             List<Future<R>> running )
+    {
+        running.add( completion.submit( () -> timedCall( peer, call ) ) );
+    }
+
+    /**
+     * Calls the peer and records its latency. A failure is a miss.
+     */
+    private <R> R timedCall( P peer, PeerCall<P, R> call )
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return call.call( peer );
+        }
+        catch ( IOException e )
+        {
+            if ( log.isDebugEnabled() )
+            {
+                log.debug( "Failed to get from " + peer, e );
+            }
+            return null;
+        }
+        finally
+        {
+            getTracker( peer ).record( System.nanoTime() - start );
+        }
+    }
+
+    /**
+     * @param done a completed call
+     * @return its result, null if it failed
+     */
+    private <R> R getResult( Future<R> done )
+        throws InterruptedException
+    {
+        try
+        {
+            return done.get();
+        }
+        catch ( ExecutionException e )
+        {
+            log.warn( "Failed to get from a peer", e.getCause() );
+            return null;
+        }
+    }
+
+    /**
+     * @param peer
+     * @return the latency tracker of the peer, created if needed
+     */
+    private LatencyTracker getTracker( P peer )
+    {
+        synchronized ( latencies )
+        {
+            LatencyTracker tracker = latencies.get( peer );
+            if ( tracker == null )
+            {
+                tracker = new LatencyTracker();
+                latencies.put( peer, tracker );
+            }
+            return tracker;
+        }
+    }
+
+    /**
+     * Keeps the last latencies of a peer, their exponentially weighted mean and their 95th
+     * percentile.
+     */
+    private static class LatencyTracker
+    {
+        /** Number of samples kept. */
+        private static final int SAMPLES = 128;
+
+        /** Number of samples needed before trusting the percentile. */
+        private static final int MIN_SAMPLES = 8;
+
+        /** Number of samples after which the percentile is recomputed. */
+        private static final int REFRESH_SAMPLES = 16;
+
+        /** The last latencies. */
+        private final long[] samples = new long[SAMPLES];
+
+        /** Number of samples recorded. */
+        private long count = 0;
+
+        /** The weighted mean. */
+        private long mean = 0;
+
+        /** The cached percentile, -1 when unknown. */
+        private long percentile95 = -1;
+
+        /**
+         * @param nanos a latency
+         */
+        synchronized void record( long nanos )
+        {
+            samples[(int) ( count % SAMPLES )] = nanos;
+            count++;
+            mean = count == 1 ? nanos : mean + ( nanos - mean ) / 8;
+            if ( count >= MIN_SAMPLES && ( percentile95 < 0 || count % REFRESH_SAMPLES == 0 ) )
+            {
+                int size = (int) Math.min( count, SAMPLES );
+                long[] sorted = Arrays.copyOf( samples, size );
+                Arrays.sort( sorted );
+                percentile95 = sorted[Math.min( size - 1, size * 95 / 100 )];
+            }
+        }
+
+        /**
+         * @return the weighted mean, 0 if unknown
+         */
+        synchronized long getMean()
+        {
+            return mean;
+        }
+
+        /**
+         * @return the 95th percentile, -1 if unknown
+         */
+        synchronized long getPercentile95()
+        {
+            return percentile95;
+        }
+    }
+}
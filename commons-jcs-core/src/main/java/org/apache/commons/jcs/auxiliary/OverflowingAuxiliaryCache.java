@@ -0,0 +1,41 @@
+package org.apache.commons.jcs.auxiliary;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.function.Consumer;
+
+import org.apache.commons.jcs.engine.behavior.ICacheElement;
+
+/**
+ * A disk type auxiliary holding a limited amount of elements in front of the next disk
+ * auxiliaries of the region. When the memory cache spools an element, the region only updates
+ * the first overflowing auxiliary; the elements this one evicts are then given to the overflow
+ * consumer, which spools them to the auxiliaries after it.
+ */
+public interface OverflowingAuxiliaryCache<K, V>
+    extends AuxiliaryCache<K, V>
+{
+    /**
+     * Sets where the evicted elements go.
+     * <p>
+     * @param overflow called with each element evicted to make room, never under a lock
+     */
+    void setOverflow( Consumer<ICacheElement<K, V>> overflow );
+}
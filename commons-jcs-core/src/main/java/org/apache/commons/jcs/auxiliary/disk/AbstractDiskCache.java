@@ -41,7 +41,6 @@ import org.apache.commons.jcs.engine.stats.StatElement;
 import org.apache.commons.jcs.engine.stats.Stats;
 import org.apache.commons.jcs.engine.stats.behavior.IStatElement;
 import org.apache.commons.jcs.engine.stats.behavior.IStats;
-import org.apache.commons.jcs.utils.struct.LRUMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -72,9 +71,9 @@ public abstract class AbstractDiskCache<K, V>
      * serializing the elements to persistent storage queued for later.
      *
      * If the elements are pulled into the memory cache while the are still in purgatory, writing to
-     * disk can be canceled.
+     * disk can be canceled. It is replaced on removeAll.
      */
-    private Map<K, PurgatoryElement<K, V>> purgatory;
+    private volatile Purgatory<K, V> purgatory;
 
     /**
      * The CacheEventQueue where changes will be queued for asynchronous updating of the persistent
@@ -140,8 +139,7 @@ public abstract class AbstractDiskCache<K, V>
     }
 
     /**
-     * Purgatory size of -1 means to use a HashMap with no size limit. Anything greater will use an
-     * LRU map of some sort.
+     * Purgatory size of -1 means no size limit. Anything greater drops the oldest elements.
      *
      * TODO Currently setting this to 0 will cause nothing to be put to disk, since it will assume
      *       that if an item is not in purgatory, then it must have been plucked. We should make 0
@@ -155,17 +153,7 @@ public abstract class AbstractDiskCache<K, V>
 
         try
         {
-            synchronized (this)
-            {
-                if ( diskCacheAttributes.getMaxPurgatorySize() >= 0 )
-                {
-                    purgatory = new LRUMap<K, PurgatoryElement<K, V>>( diskCacheAttributes.getMaxPurgatorySize() );
-                }
-                else
-                {
-                    purgatory = new HashMap<K, PurgatoryElement<K, V>>();
-                }
-            }
+            purgatory = new Purgatory<K, V>( diskCacheAttributes.getMaxPurgatorySize() );
         }
         finally
         {
@@ -206,10 +194,7 @@ public abstract class AbstractDiskCache<K, V>
             pe.setSpoolable( true );
 
             // Add the element to purgatory
-            synchronized ( purgatory )
-            {
-                purgatory.put( pe.getKey(), pe );
-            }
+            purgatory.put( pe );
 
             // Queue element for serialization
             cacheEventQueue.addPutEvent( pe );
@@ -244,12 +229,38 @@ public abstract class AbstractDiskCache<K, V>
             return null;
         }
 
-        PurgatoryElement<K, V> pe = null;
-        synchronized ( purgatory )
+        ICacheElement<K, V> element = getFromPurgatory( key );
+        if ( element != null )
+        {
+            return element;
+        }
+
+        // If we reach this point, element was not found in purgatory, so get
+        // it from the cache.
+        try
+        {
+            return doGet( key );
+        }
+        catch ( Exception e )
         {
-            pe = purgatory.get( key );
+            log.error( e );
+
+            cacheEventQueue.destroy();
         }
 
+        return null;
+    }
+
+    /**
+     * Gets the element from purgatory.
+     *
+     * @param key
+     * @return the element waiting to be spooled or null
+     */
+    private ICacheElement<K, V> getFromPurgatory( K key )
+    {
+        PurgatoryElement<K, V> pe = purgatory.get( key );
+
         // If the element was found in purgatory
         if ( pe != null )
         {
@@ -284,20 +295,81 @@ public abstract class AbstractDiskCache<K, V>
             return pe.getCacheElement();
         }
 
-        // If we reach this point, element was not found in purgatory, so get
-        // it from the cache.
-        try
+        return null;
+    }
+
+    /**
+     * Gets the elements from purgatory, the others are read from disk at once by
+     * processGetMultipleFromDisk.
+     *
+     * @param keys
+     * @return a map of K key to ICacheElement&lt;K, V&gt; element, or an empty map if there is no
+     *         data in cache for any of these keys
+     * @throws IOException
+     */
+    @Override
+    protected Map<K, ICacheElement<K, V>> processGetMultiple( Set<K> keys )
+        throws IOException
+    {
+        Map<K, ICacheElement<K, V>> elements = new HashMap<K, ICacheElement<K, V>>();
+
+        if ( keys == null || keys.isEmpty() || !alive )
         {
-            return doGet( key );
+            return elements;
         }
-        catch ( Exception e )
+
+        Set<K> diskKeys = new HashSet<K>();
+        for ( K key : keys )
         {
-            log.error( e );
+            ICacheElement<K, V> element = getFromPurgatory( key );
+            if ( element != null )
+            {
+                elements.put( key, element );
+            }
+            else
+            {
+                diskKeys.add( key );
+            }
+        }
 
-            cacheEventQueue.destroy();
+        if ( !diskKeys.isEmpty() )
+        {
+            try
+            {
+                elements.putAll( processGetMultipleFromDisk( diskKeys ) );
+            }
+            catch ( Exception e )
+            {
+                log.error( e );
+
+                cacheEventQueue.destroy();
+            }
         }
 
-        return null;
+        return elements;
+    }
+
+    /**
+     * Gets several values from the persistent store. By default they are read one by one,
+     * implementations able to read them in one go should override it.
+     *
+     * @param keys the keys not found in purgatory
+     * @return a map of K key to ICacheElement&lt;K, V&gt; element for the keys found
+     * @throws IOException
+     */
+    protected Map<K, ICacheElement<K, V>> processGetMultipleFromDisk( Set<K> keys )
+        throws IOException
+    {
+        Map<K, ICacheElement<K, V>> elements = new HashMap<K, ICacheElement<K, V>>();
+        for ( K key : keys )
+        {
+            ICacheElement<K, V> element = doGet( key );
+            if ( element != null )
+            {
+                elements.put( key, element );
+            }
+        }
+        return elements;
     }
 
     /**
@@ -318,16 +390,9 @@ public abstract class AbstractDiskCache<K, V>
     public Map<K, ICacheElement<K, V>> getMatching( String pattern )
         throws IOException
     {
-        // Get the keys from purgatory
-        Set<K> keyArray = null;
-
-        // this avoids locking purgatory, but it uses more memory
-        synchronized ( purgatory )
-        {
-            keyArray = new HashSet<K>(purgatory.keySet());
-        }
-
-        Set<K> matchingKeys = getKeyMatcher().getMatchingKeysFromArray( pattern, keyArray );
+        // Get the keys from purgatory, the view is weakly consistent so it needs neither a lock
+        // nor a copy
+        Set<K> matchingKeys = getKeyMatcher().getMatchingKeysFromArray( pattern, purgatory.keySet() );
 
         // call getMultiple with the set
         Map<K, ICacheElement<K, V>> result = processGetMultiple( matchingKeys );
@@ -360,36 +425,31 @@ public abstract class AbstractDiskCache<K, V>
     public final boolean remove( K key )
         throws IOException
     {
-        PurgatoryElement<K, V> pe = null;
+        // Remove element from purgatory if it is there
+        PurgatoryElement<K, V> pe = purgatory.remove( key );
 
-        synchronized ( purgatory )
+        if ( pe != null )
         {
-            // I'm getting the object, so I can lock on the element
-            // Remove element from purgatory if it is there
-            pe = purgatory.get( key );
+            // no way to remove from queue, just make sure it doesn't get on
+            // disk. If the writer is already spooling it, or an element it
+            // replaced, it will remove it again once written.
+            pe.cancelSpooling();
         }
 
+        // Remove from persistent store immediately
+        doRemove( key );
+
         if ( pe != null )
         {
-            synchronized ( pe.getCacheElement() )
+            // the element must not be found on disk once the remove returned
+            try
             {
-                synchronized ( purgatory )
-                {
-                    purgatory.remove( key );
-                }
-
-                // no way to remove from queue, just make sure it doesn't get on
-                // disk and then removed right afterwards
-                pe.setSpoolable( false );
-
-                // Remove from persistent store immediately
-                doRemove( key );
+                pe.awaitCancelled();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
             }
-        }
-        else
-        {
-            // Remove from persistent store immediately
-            doRemove( key );
         }
 
         return false;
@@ -483,6 +543,7 @@ public abstract class AbstractDiskCache<K, V>
         doDispose();
 
         alive = false;
+        disposeCacheEventLogger();
     }
 
     /**
@@ -541,6 +602,27 @@ public abstract class AbstractDiskCache<K, V>
         return ( alive ? CacheStatus.ALIVE : CacheStatus.DISPOSED );
     }
 
+    /**
+     * Number of events waiting to be processed. Implementations can use it to group the writes
+     * while the queue is not empty.
+     *
+     * @return the size of the event queue
+     */
+    protected int getEventQueueSize()
+    {
+        return cacheEventQueue.size();
+    }
+
+    /**
+     * Called by the event queue after an event, of any type, when no other event is waiting.
+     * Implementations grouping the writes while the queue is not empty write them here. Does
+     * nothing by default.
+     */
+    protected void processEventQueueDrained()
+    {
+        // nothing buffered
+    }
+
     /**
      * Size cannot be determined without knowledge of the cache implementation, so subclasses will
      * need to implement this method.
@@ -606,6 +688,23 @@ public abstract class AbstractDiskCache<K, V>
         @Override
         public void handlePut( ICacheElement<K, V> element )
             throws IOException
+        {
+            try
+            {
+                put( element );
+            }
+            finally
+            {
+                eventProcessed();
+            }
+        }
+
+        /**
+         * @param element
+         * @throws IOException
+         */
+        private void put( ICacheElement<K, V> element )
+            throws IOException
         {
             if ( alive )
             {
@@ -614,50 +713,55 @@ public abstract class AbstractDiskCache<K, V>
                 if ( element instanceof PurgatoryElement )
                 {
                     PurgatoryElement<K, V> pe = (PurgatoryElement<K, V>) element;
+                    Purgatory<K, V> current = purgatory;
+
+                    // TODO consider a timeout.
+                    // we need this so that we can have multiple update
+                    // threads and still have removeAll requests come in that
+                    // always win
+                    removeAllLock.readLock().lock();
 
-                    synchronized ( pe.getCacheElement() )
+                    try
                     {
-                        // TODO consider a timeout.
-                        // we need this so that we can have multiple update
-                        // threads and still have removeAll requests come in that
-                        // always win
-                        removeAllLock.readLock().lock();
+                        // If the element has already been removed from
+                        // purgatory, or replaced by a later put, do nothing
+                        if ( !current.contains( pe ) )
+                        {
+                            return;
+                        }
 
-                        try
+                        // If the element is still eligible, spool it. A remove
+                        // during the write hands the removal over to us.
+                        if ( pe.startSpooling() )
                         {
-                            // TODO consider changing purgatory sync
-                            // String keyAsString = element.getKey().toString();
-                            synchronized ( purgatory )
+                            try
                             {
-                                // If the element has already been removed from
-                                // purgatory do nothing
-                                if ( !purgatory.containsKey( pe.getKey() ) )
-                                {
-                                    return;
-                                }
-
-                                element = pe.getCacheElement();
+                                doUpdate( pe.getCacheElement() );
                             }
-
-                            // I took this out of the purgatory sync block.
-                            // If the element is still eligible, spool it.
-                            if ( pe.isSpoolable() )
+                            finally
                             {
-                                doUpdate( element );
+                                if ( !pe.finishSpooling() )
+                                {
+                                    try
+                                    {
+                                        doRemove( pe.getKey() );
+                                    }
+                                    finally
+                                    {
+                                        pe.spoolingRemoved();
+                                    }
+                                }
                             }
                         }
-                        finally
-                        {
-                            removeAllLock.readLock().unlock();
-                        }
-
-                        synchronized ( purgatory )
-                        {
-                            // After the update has completed, it is safe to
-                            // remove the element from purgatory.
-                            purgatory.remove( element.getKey() );
-                        }
                     }
+                    finally
+                    {
+                        removeAllLock.readLock().unlock();
+                    }
+
+                    // After the update has completed, it is safe to
+                    // remove the element from purgatory.
+                    current.remove( pe );
                 }
                 else
                 {
@@ -673,10 +777,7 @@ public abstract class AbstractDiskCache<K, V>
                  * done before it went in the queue. This block handles the case where the disk
                  * cache fails during normal operations.
                  */
-                synchronized ( purgatory )
-                {
-                    purgatory.remove( element.getKey() );
-                }
+                purgatory.remove( element.getKey() );
             }
         }
 
@@ -690,13 +791,17 @@ public abstract class AbstractDiskCache<K, V>
         public void handleRemove( String cacheName, K key )
             throws IOException
         {
-            if ( alive )
+            try
             {
-                if ( doRemove( key ) )
+                if ( alive && doRemove( key ) )
                 {
                     log.debug( "Element removed, key: " + key );
                 }
             }
+            finally
+            {
+                eventProcessed();
+            }
         }
 
         /**
@@ -708,9 +813,16 @@ public abstract class AbstractDiskCache<K, V>
         public void handleRemoveAll( String cacheName )
             throws IOException
         {
-            if ( alive )
+            try
+            {
+                if ( alive )
+                {
+                    doRemoveAll();
+                }
+            }
+            finally
             {
-                doRemoveAll();
+                eventProcessed();
             }
         }
 
@@ -728,6 +840,17 @@ public abstract class AbstractDiskCache<K, V>
                 doDispose();
             }
         }
+
+        /**
+         * Lets the implementation write what it buffered once the queue is empty.
+         */
+        private void eventProcessed()
+        {
+            if ( alive && getEventQueueSize() == 0 )
+            {
+                processEventQueueDrained();
+            }
+        }
     }
 
     /**
@@ -43,6 +43,12 @@ public abstract class AbstractDiskCacheAttributes extends AbstractAuxiliaryCache
     /** if this is false, we will not execute remove all */
     private boolean allowRemoveAll = true;
 
+    /** Whether the cache keeps a sorted index of its String keys. */
+    private boolean useKeyIndex = false;
+
+    /** Whether the cache keeps a counting Bloom filter of its keys. */
+    private boolean useKeyFilter = false;
+
     /** default to 5000 */
     private int maxPurgatorySize = MAX_PURGATORY_SIZE_DEFAULT;
 
@@ -180,6 +186,44 @@ public abstract class AbstractDiskCacheAttributes extends AbstractAuxiliaryCache
         return allowRemoveAll;
     }
 
+    /**
+     * @param useKeyIndex
+     *            true to keep a sorted index of the String keys.
+     */
+    @Override
+    public void setUseKeyIndex(boolean useKeyIndex)
+    {
+        this.useKeyIndex = useKeyIndex;
+    }
+
+    /**
+     * @return Returns the useKeyIndex.
+     */
+    @Override
+    public boolean isUseKeyIndex()
+    {
+        return useKeyIndex;
+    }
+
+    /**
+     * @param useKeyFilter
+     *            true to keep a counting Bloom filter of the keys.
+     */
+    @Override
+    public void setUseKeyFilter(boolean useKeyFilter)
+    {
+        this.useKeyFilter = useKeyFilter;
+    }
+
+    /**
+     * @return Returns the useKeyFilter.
+     */
+    @Override
+    public boolean isUseKeyFilter()
+    {
+        return useKeyFilter;
+    }
+
     /**
      * Includes the common attributes for a debug message.
      * <p>
@@ -195,6 +239,8 @@ public abstract class AbstractDiskCacheAttributes extends AbstractAuxiliaryCache
         str.append("\n maxPurgatorySize   = " + getMaxPurgatorySize());
         str.append("\n allowRemoveAll   = " + isAllowRemoveAll());
         str.append("\n ShutdownSpoolTimeLimit   = " + getShutdownSpoolTimeLimit());
+        str.append("\n useKeyIndex   = " + isUseKeyIndex());
+        str.append("\n useKeyFilter   = " + isUseKeyFilter());
         return str.toString();
     }
 
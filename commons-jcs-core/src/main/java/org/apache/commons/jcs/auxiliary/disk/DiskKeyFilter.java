@@ -0,0 +1,356 @@
+package org.apache.commons.jcs.auxiliary.disk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+
+import org.apache.commons.jcs.utils.serialization.StableHash;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Counting Bloom filter of the keys of a disk store. A get of a key the filter has never seen
+ * returns without taking the storage lock nor probing the key map. The filter may answer yes for a
+ * missing key, about once in a hundred when it is not overloaded, but never no for a present one.
+ * <p>
+ * Each key increments 4 bits counters at HASHES positions, so removes are possible. The store adds
+ * a key when it enters its key map and removes it when it leaves, at the same places as the
+ * {@link org.apache.commons.jcs.engine.match.KeyPrefixIndex}: adding a key twice or removing a key
+ * which was not added would break the filter. A saturated counter is never decremented.
+ * <p>
+ * The filter is optional (UseKeyFilter attribute), a disabled filter contains every key. It grows
+ * by being rebuilt from the keys of the store once it holds more keys than it was sized for. The
+ * changes are serialized by the store lock or by this object, the lookups take no lock.
+ * <p>
+ * The filter is saved with the keys of the store, so the positions of a key must be the same
+ * after a restart and for all the equal keys. The canonical keys, strings, numbers and group keys,
+ * are placed by their {@link StableHash}. The other keys are placed by their hashCode, which may
+ * change between JVMs, so a filter which saw one is not saved and is rebuilt from the keys on load.
+ */
+public class DiskKeyFilter<K>
+{
+    /** The logger */
+    private static final Log log = LogFactory.getLog( DiskKeyFilter.class );
+
+    /** Number of counters set by a key */
+    private static final int HASHES = 7;
+
+    /** Number of counters per expected key, about 1% of false positives */
+    private static final int COUNTERS_PER_KEY = 10;
+
+    /** Value of a saturated counter */
+    private static final int SATURATED = 0xF;
+
+    /** Minimum number of expected keys */
+    public static final int DEFAULT_EXPECTED_KEYS = 1024;
+
+    /** Marks the start of a saved filter, the previous formats used 0x4A43534B and 0x4A43534C */
+    private static final int MAGIC = 0x4A43534D;
+
+    /** The counters, two per byte, replaced when the filter is rebuilt */
+    private volatile byte[] counters;
+
+    /** Number of keys the counters were sized for */
+    private int expectedKeys;
+
+    /** Number of keys in the filter */
+    private int size = 0;
+
+    /** Whether the filter is used */
+    private final boolean enabled;
+
+    /** False once a key which is not canonical was added, the filter is then not saved */
+    private boolean persistable = true;
+
+    /**
+     * @param enabled false to get a filter containing every key
+     */
+    public DiskKeyFilter( boolean enabled )
+    {
+        this.enabled = enabled;
+        if ( enabled )
+        {
+            allocate( DEFAULT_EXPECTED_KEYS );
+        }
+    }
+
+    /**
+     * @return true if the filter is used
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * @param key
+     * @return false if the key was never added, true if it may have been
+     */
+    public boolean mightContain( K key )
+    {
+        byte[] c = counters;
+        if ( c == null )
+        {
+            return true;
+        }
+        long hash = hash( key );
+        int h1 = (int) hash;
+        int h2 = (int) ( hash >>> 32 ) | 1;
+        int length = c.length * 2;
+        for ( int i = 0; i < HASHES; i++ )
+        {
+            if ( get( c, Math.floorMod( h1 + i * h2, length ) ) == 0 )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a key which just entered the store.
+     * <p>
+     * @param key
+     */
+    public synchronized void add( K key )
+    {
+        if ( enabled )
+        {
+            update( counters, key, 1 );
+            size++;
+            persistable = persistable && StableHash.isCanonical( key );
+        }
+    }
+
+    /**
+     * Removes a key which just left the store.
+     * <p>
+     * @param key
+     */
+    public synchronized void remove( K key )
+    {
+        if ( enabled && size > 0 )
+        {
+            update( counters, key, -1 );
+            size--;
+        }
+    }
+
+    /**
+     * Forgets all the keys.
+     */
+    public synchronized void clear()
+    {
+        if ( enabled )
+        {
+            allocate( DEFAULT_EXPECTED_KEYS );
+        }
+    }
+
+    /**
+     * @return true if the filter holds more keys than it was sized for, it should be rebuilt
+     */
+    public synchronized boolean isOverloaded()
+    {
+        return enabled && size > expectedKeys;
+    }
+
+    /**
+     * Replaces the content of the filter by the keys, sized for twice as many keys.
+     * <p>
+     * @param keys all the keys of the store
+     */
+    public synchronized void rebuild( Collection<K> keys )
+    {
+        if ( !enabled )
+        {
+            return;
+        }
+        int expected = (int) Math.min( Integer.MAX_VALUE / COUNTERS_PER_KEY, Math.max( DEFAULT_EXPECTED_KEYS, 2L * keys.size() ) );
+        byte[] c = new byte[expected * COUNTERS_PER_KEY / 2];
+        boolean canonical = true;
+        for ( K key : keys )
+        {
+            update( c, key, 1 );
+            canonical = canonical && StableHash.isCanonical( key );
+        }
+        this.persistable = canonical;
+        this.expectedKeys = expected;
+        this.size = keys.size();
+        this.counters = c;
+    }
+
+    /**
+     * @return the number of keys in the filter
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * Writes the filter to the file, replacing it. A filter which holds keys that are not canonical
+     * is not written, it will be rebuilt on load.
+     * <p>
+     * @param file
+     * @throws IOException
+     */
+    public synchronized void save( File file )
+        throws IOException
+    {
+        if ( !enabled )
+        {
+            return;
+        }
+        if ( !persistable )
+        {
+            if ( log.isDebugEnabled() )
+            {
+                log.debug( "The key filter holds keys without a stable hash, it is not saved to " + file );
+            }
+            return;
+        }
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+        try
+        {
+            out.writeInt( MAGIC );
+            out.writeInt( size );
+            out.writeInt( expectedKeys );
+            out.writeInt( counters.length );
+            out.write( counters );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a filter saved with the keys of the store. It is only used if it holds as many keys as
+     * the store, otherwise the caller should rebuild the filter.
+     * <p>
+     * @param file
+     * @param keyCount the number of keys loaded by the store
+     * @return true if the filter was loaded
+     */
+    public synchronized boolean load( File file, int keyCount )
+    {
+        if ( !enabled || !file.exists() )
+        {
+            return false;
+        }
+        try
+        {
+            DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+            try
+            {
+                if ( in.readInt() != MAGIC || in.readInt() != keyCount )
+                {
+                    return false;
+                }
+                int expected = in.readInt();
+                byte[] c = new byte[in.readInt()];
+                in.readFully( c );
+                this.expectedKeys = expected;
+                this.size = keyCount;
+                this.persistable = true;
+                this.counters = c;
+                return true;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Could not read the key filter " + file + ", it will be rebuilt", e );
+            return false;
+        }
+    }
+
+    /**
+     * @param expected the number of keys to size the counters for
+     */
+    private void allocate( int expected )
+    {
+        this.expectedKeys = expected;
+        this.size = 0;
+        this.persistable = true;
+        this.counters = new byte[expected * COUNTERS_PER_KEY / 2];
+    }
+
+    /**
+     * Increments or decrements the counters of the key, the saturated ones are left alone.
+     */
+    private static <K> void update( byte[] c, K key, int delta )
+    {
+        long hash = hash( key );
+        int h1 = (int) hash;
+        int h2 = (int) ( hash >>> 32 ) | 1;
+        int length = c.length * 2;
+        for ( int i = 0; i < HASHES; i++ )
+        {
+            int index = Math.floorMod( h1 + i * h2, length );
+            int value = get( c, index );
+            if ( value != SATURATED && value + delta >= 0 )
+            {
+                set( c, index, value + delta );
+            }
+        }
+    }
+
+    /**
+     * @return the counter at the index
+     */
+    private static int get( byte[] c, int index )
+    {
+        return ( c[index >>> 1] >>> ( ( index & 1 ) << 2 ) ) & SATURATED;
+    }
+
+    /**
+     * Sets the counter at the index.
+     */
+    private static void set( byte[] c, int index, int value )
+    {
+        int shift = ( index & 1 ) << 2;
+        c[index >>> 1] = (byte) ( ( c[index >>> 1] & ~( SATURATED << shift ) ) | ( value << shift ) );
+    }
+
+    /**
+     * Spreads the stable hash of a canonical key, else its hash code, on 64 bits, the two halves
+     * give the positions.
+     */
+    private static long hash( Object key )
+    {
+        long h = ( StableHash.isCanonical( key ) ? StableHash.hash( key ) : key.hashCode() ) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ ( h >>> 32 );
+    }
+}
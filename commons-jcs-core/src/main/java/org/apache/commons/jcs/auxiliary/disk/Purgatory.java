@@ -0,0 +1,150 @@
+package org.apache.commons.jcs.auxiliary.disk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The elements waiting to be spooled to disk. The gets, removes and key walks are lock free and a
+ * put only locks the bin of its key, so the threads spooling from memory, the disk writer and the
+ * readers don't contend on a monitor.
+ * <p>
+ * With a max size, the oldest elements are dropped when there are too many, they will not be
+ * spooled. The insertion order is kept in a queue, its head is trimmed of the elements already
+ * spooled, removed or replaced on each put.
+ */
+class Purgatory<K, V>
+{
+    /** The elements by key */
+    private final ConcurrentHashMap<K, PurgatoryElement<K, V>> elements =
+        new ConcurrentHashMap<K, PurgatoryElement<K, V>>();
+
+    /** The elements by insertion order, null without a max size */
+    private final ConcurrentLinkedQueue<PurgatoryElement<K, V>> order;
+
+    /** The max number of elements, negative for no limit */
+    private final int maxSize;
+
+    /**
+     * @param maxSize the max number of elements, negative for no limit
+     */
+    Purgatory( int maxSize )
+    {
+        this.maxSize = maxSize;
+        this.order = maxSize >= 0 ? new ConcurrentLinkedQueue<PurgatoryElement<K, V>>() : null;
+    }
+
+    /**
+     * Adds the element, replacing the one of the same key, and drops the oldest if the purgatory
+     * is full. The replacement is atomic so that a remove of the key sees the element it replaced.
+     * <p>
+     * @param pe
+     */
+    void put( final PurgatoryElement<K, V> pe )
+    {
+        elements.compute( pe.getKey(), ( key, old ) -> {
+            pe.replace( old );
+            return pe;
+        } );
+        if ( order == null )
+        {
+            return;
+        }
+
+        order.add( pe );
+        trim();
+        while ( elements.size() > maxSize )
+        {
+            PurgatoryElement<K, V> oldest = order.poll();
+            if ( oldest == null )
+            {
+                break;
+            }
+            elements.remove( oldest.getKey(), oldest );
+        }
+    }
+
+    /**
+     * @param key
+     * @return the element waiting for the key or null
+     */
+    PurgatoryElement<K, V> get( K key )
+    {
+        return elements.get( key );
+    }
+
+    /**
+     * @param key
+     * @return the element removed or null
+     */
+    PurgatoryElement<K, V> remove( K key )
+    {
+        return elements.remove( key );
+    }
+
+    /**
+     * Removes the element if it is still the one waiting for its key.
+     * <p>
+     * @param pe
+     */
+    void remove( PurgatoryElement<K, V> pe )
+    {
+        elements.remove( pe.getKey(), pe );
+    }
+
+    /**
+     * @param pe
+     * @return true if the element is still the one waiting for its key
+     */
+    boolean contains( PurgatoryElement<K, V> pe )
+    {
+        return elements.get( pe.getKey() ) == pe;
+    }
+
+    /**
+     * @return a weakly consistent view of the keys
+     */
+    Set<K> keySet()
+    {
+        return elements.keySet();
+    }
+
+    /**
+     * @return the number of elements
+     */
+    int size()
+    {
+        return elements.size();
+    }
+
+    /**
+     * Drops the heads of the insertion order which are no longer waiting.
+     */
+    private void trim()
+    {
+        for ( PurgatoryElement<K, V> head = order.peek(); head != null && !contains( head ); head = order.peek() )
+        {
+            // identity, another thread may have dropped it already
+            order.remove( head );
+        }
+    }
+}
@@ -19,6 +19,8 @@ package org.apache.commons.jcs.auxiliary.disk;
  * under the License.
  */
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.commons.jcs.engine.CacheElement;
 import org.apache.commons.jcs.engine.behavior.ICacheElement;
 import org.apache.commons.jcs.engine.behavior.IElementAttributes;
@@ -28,6 +30,13 @@ import org.apache.commons.jcs.engine.behavior.IElementAttributes;
  * 
  * Elements are stored in purgatory when they are spooled to the auxiliary cache, but have not yet
  * been written to disk.
+ * 
+ * The disk writer and the threads removing the element hand it over by compare and set on its
+ * state instead of locking: the writer can only start spooling a spoolable element, and a remove
+ * while it is spooling makes the writer remove it again afterwards, the remove waiting for it.
+ * An element replaced in
+ * purgatory while it is being spooled stays linked to the new one, so that removing the key also
+ * cancels it.
  */
 public class PurgatoryElement<K, V>
     extends CacheElement<K, V>
@@ -35,8 +44,26 @@ public class PurgatoryElement<K, V>
     /** Don't change */
     private static final long serialVersionUID = -8152034342684135628L;
 
-    /** Is the element ready to be spooled? */
-    private boolean spoolable = false;
+    /** Not to be spooled */
+    private static final int NOT_SPOOLABLE = 0;
+
+    /** Ready to be spooled */
+    private static final int SPOOLABLE = 1;
+
+    /** Being written by the disk writer */
+    private static final int SPOOLING = 2;
+
+    /** Written to disk */
+    private static final int SPOOLED = 3;
+
+    /** Removed while being written, the disk writer has to remove it again */
+    private static final int CANCELLED = 4;
+
+    /** One of the states above */
+    private final AtomicInteger state = new AtomicInteger( NOT_SPOOLABLE );
+
+    /** An element of the same key replaced by this one while it was being spooled */
+    private transient volatile PurgatoryElement<K, V> replaced;
 
     /** Wrapped cache Element */
     private ICacheElement<K, V> cacheElement;
@@ -61,7 +88,7 @@ public class PurgatoryElement<K, V>
      */
     public boolean isSpoolable()
     {
-        return spoolable;
+        return state.get() == SPOOLABLE;
     }
 
     /**
@@ -71,7 +98,95 @@ public class PurgatoryElement<K, V>
      */
     public void setSpoolable( boolean spoolable )
     {
-        this.spoolable = spoolable;
+        state.set( spoolable ? SPOOLABLE : NOT_SPOOLABLE );
+    }
+
+    /**
+     * Called by the disk writer before writing the element.
+     * 
+     * @return true if the element was spoolable and is now being spooled
+     */
+    public boolean startSpooling()
+    {
+        return state.compareAndSet( SPOOLABLE, SPOOLING );
+    }
+
+    /**
+     * Called by the disk writer after writing the element.
+     * 
+     * @return false if the element was made not spoolable while it was written, the writer must
+     *         then remove it from disk and call spoolingRemoved
+     */
+    public boolean finishSpooling()
+    {
+        return state.compareAndSet( SPOOLING, SPOOLED );
+    }
+
+    /**
+     * Called when the element is removed from purgatory. It and the elements it replaced which
+     * are still being spooled will not end up on disk.
+     */
+    public void cancelSpooling()
+    {
+        for ( PurgatoryElement<K, V> pe = this; pe != null; pe = pe.replaced )
+        {
+            pe.state.compareAndSet( SPOOLABLE, NOT_SPOOLABLE );
+            pe.state.compareAndSet( SPOOLING, CANCELLED );
+        }
+    }
+
+    /**
+     * Called by the disk writer once it removed again an element cancelled while it was written.
+     */
+    public void spoolingRemoved()
+    {
+        synchronized ( this )
+        {
+            state.compareAndSet( CANCELLED, NOT_SPOOLABLE );
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits for the disk writer to remove again this element and the ones it replaced, if they
+     * were cancelled while it was writing them.
+     * 
+     * @throws InterruptedException
+     */
+    public void awaitCancelled()
+        throws InterruptedException
+    {
+        for ( PurgatoryElement<K, V> pe = this; pe != null; pe = pe.replaced )
+        {
+            synchronized ( pe )
+            {
+                while ( pe.state.get() == CANCELLED )
+                {
+                    pe.wait();
+                }
+            }
+        }
+    }
+
+    /**
+     * Called when this element takes the place of another one of the same key in purgatory. The
+     * old ones not spooled yet are superseded, the one being spooled is kept for cancelSpooling.
+     * 
+     * @param old the element replaced, may be null
+     */
+    void replace( PurgatoryElement<K, V> old )
+    {
+        PurgatoryElement<K, V> spooling = null;
+        for ( PurgatoryElement<K, V> pe = old; pe != null && spooling == null; pe = pe.replaced )
+        {
+            pe.state.compareAndSet( SPOOLABLE, NOT_SPOOLABLE );
+            int current = pe.state.get();
+            if ( current == SPOOLING || current == CANCELLED )
+            {
+                spooling = pe;
+            }
+        }
+        this.replaced = spooling;
     }
 
     /**
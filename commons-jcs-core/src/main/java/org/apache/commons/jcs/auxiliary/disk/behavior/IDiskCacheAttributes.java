@@ -109,6 +109,32 @@ public interface IDiskCacheAttributes
      */
     void setAllowRemoveAll( boolean allowRemoveAll );
 
+    /**
+     * Whether the disk cache keeps a sorted index of its String keys, used by getMatching and the hierarchical
+     * removals. The index is rebuilt with the key map when the cache starts.
+     * <p>
+     * @param useKeyIndex
+     */
+    void setUseKeyIndex( boolean useKeyIndex );
+
+    /**
+     * @return true if the disk cache keeps a sorted index of its String keys
+     */
+    boolean isUseKeyIndex();
+
+    /**
+     * Whether the disk cache keeps a counting Bloom filter of its keys, so that the gets of missing keys return
+     * without taking the storage lock. The filter is saved next to the key file.
+     * <p>
+     * @param useKeyFilter
+     */
+    void setUseKeyFilter( boolean useKeyFilter );
+
+    /**
+     * @return true if the disk cache keeps a counting Bloom filter of its keys
+     */
+    boolean isUseKeyFilter();
+
     /**
      * set the type of the limit of the cache size
      * @param diskLimitType COUNT - limit by count of the elements, SIZE, limit by sum of element's size
@@ -19,14 +19,14 @@ package org.apache.commons.jcs.auxiliary.disk.block;
  * under the License.
  */
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -39,6 +39,9 @@ import org.apache.commons.logging.LogFactory;
  * This class manages reading an writing data to disk. When asked to write a value, it returns a
  * block array. It can read an object from the block numbers in a byte array.
  * <p>
+ * The free blocks are tracked in a bitmap. The blocks of a value are allocated as one contiguous
+ * run when possible, so it is written and read with one positional access per run.
+ * <p>
  * @author Aaron Smuts
  */
 public class BlockDisk
@@ -62,8 +65,11 @@ public class BlockDisk
      */
     private final AtomicInteger numberOfBlocks = new AtomicInteger(0);
 
-    /** Empty blocks that can be reused. */
-    private final ConcurrentLinkedQueue<Integer> emptyBlocks = new ConcurrentLinkedQueue<Integer>();
+    /** Empty blocks that can be reused, a set bit is a free block. Guards the allocation. */
+    private final BitSet emptyBlocks = new BitSet();
+
+    /** The number of bits set in emptyBlocks. */
+    private int emptyBlockCount = 0;
 
     /** The serializer. */
     private final IElementSerializer elementSerializer;
@@ -132,7 +138,10 @@ public class BlockDisk
     }
 
     /**
-     * Allocate a given number of blocks from the available set
+     * Allocate a given number of blocks from the available set. The first free run long enough is
+     * used, else a free run at the end of the file is extended. When neither exists the free blocks
+     * are used in file order, then new blocks are appended, so the file does not grow while there
+     * are free blocks.
      *
      * @param numBlocksNeeded
      * @return an array of allocated blocks
@@ -142,20 +151,92 @@ public class BlockDisk
         assert numBlocksNeeded >= 1;
 
         int[] blocks = new int[numBlocksNeeded];
-        // get them from the empty list or take the next one
-        for (int i = 0; i < numBlocksNeeded; i++)
+        synchronized (emptyBlocks)
         {
-            Integer emptyBlock = emptyBlocks.poll();
-            if (emptyBlock == null)
+            int start = findEmptyRun(numBlocksNeeded);
+            if (start < 0)
+            {
+                // extend the free run touching the end of the file, if any
+                int total = numberOfBlocks.get();
+                int tail = emptyBlocks.previousClearBit(total - 1) + 1;
+                if (tail < total)
+                {
+                    start = tail;
+                }
+            }
+
+            int count = 0;
+            if (start >= 0)
+            {
+                int end = Math.min(start + numBlocksNeeded, numberOfBlocks.get());
+                for (int block = start; block < end; block++)
+                {
+                    blocks[count++] = block;
+                }
+            }
+            else
             {
-                emptyBlock = Integer.valueOf(numberOfBlocks.getAndIncrement());
+                for (int block = emptyBlocks.nextSetBit(0); block >= 0 && count < numBlocksNeeded;
+                     block = emptyBlocks.nextSetBit(block + 1))
+                {
+                    blocks[count++] = block;
+                }
+            }
+
+            for (int i = 0; i < count; i++)
+            {
+                emptyBlocks.clear(blocks[i]);
+            }
+            emptyBlockCount -= count;
+
+            // take the rest at the end of the file
+            while (count < numBlocksNeeded)
+            {
+                blocks[count++] = numberOfBlocks.getAndIncrement();
             }
-            blocks[i] = emptyBlock.intValue();
         }
 
         return blocks;
     }
 
+    /**
+     * Finds the first run of free blocks long enough. The caller holds the emptyBlocks lock.
+     *
+     * @param numBlocksNeeded
+     * @return the first block of the run or -1
+     */
+    private int findEmptyRun(int numBlocksNeeded)
+    {
+        int start = emptyBlocks.nextSetBit(0);
+        while (start >= 0)
+        {
+            int end = emptyBlocks.nextClearBit(start);
+            if (end - start >= numBlocksNeeded)
+            {
+                return start;
+            }
+            start = emptyBlocks.nextSetBit(end);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of consecutive block numbers starting at the given index.
+     *
+     * @param blocks
+     * @param from index in blocks
+     * @return the length of the run, at least 1
+     */
+    private static int runLength(int[] blocks, int from)
+    {
+        int to = from + 1;
+        while (to < blocks.length && blocks[to] == blocks[to - 1] + 1)
+        {
+            to++;
+        }
+        return to - from;
+    }
+
     /**
      * This writes an object to disk and returns the blocks it was stored in.
      * <p>
@@ -198,29 +279,35 @@ public class BlockDisk
         // allocate blocks
         int[] blocks = allocateBlocks(numBlocksNeeded);
 
-        int offset = 0;
+        // lay the blocks out as on disk, each one with its header
         final int maxChunkSize = blockSizeBytes - HEADER_SIZE_BYTES;
-        ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_SIZE_BYTES);
-
+        ByteBuffer buffer = ByteBuffer.allocate(numBlocksNeeded * blockSizeBytes);
+        int offset = 0;
         for (int i = 0; i < numBlocksNeeded; i++)
         {
-            headerBuffer.clear();
             int length = Math.min(maxChunkSize, data.length - offset);
-            headerBuffer.putInt(length);
+            buffer.position(i * blockSizeBytes);
+            buffer.putInt(length);
+            buffer.put(data, offset, length);
+            offset += length;
+        }
+        int end = buffer.position();
 
-            ByteBuffer dataBuffer = ByteBuffer.wrap(data, offset, length);
+        // one write per run of consecutive blocks
+        for (int i = 0; i < numBlocksNeeded; )
+        {
+            int run = runLength(blocks, i);
+            buffer.limit(Math.min(end, (i + run) * blockSizeBytes));
+            buffer.position(i * blockSizeBytes);
 
             long position = calculateByteOffsetForBlockAsLong(blocks[i]);
-            // write the header
-            headerBuffer.flip();
-            int written = fc.write(headerBuffer, position);
-            assert written == HEADER_SIZE_BYTES;
-
-            //write the data
-            written = fc.write(dataBuffer, position + HEADER_SIZE_BYTES);
-            assert written == length;
+            while (buffer.hasRemaining())
+            {
+                position += fc.write(buffer, position);
+            }
 
-            offset += length;
+            buffer.limit(buffer.capacity());
+            i += run;
         }
 
         //fc.force(false);
@@ -266,7 +353,8 @@ public class BlockDisk
     }
 
     /**
-     * Reads an object that is located in the specified blocks.
+     * Reads an object that is located in the specified blocks. Each run of consecutive blocks is
+     * read at once into a single buffer, then the chunks are gathered without their headers.
      * <p>
      * @param blockNumbers
      * @return Serializable
@@ -276,24 +364,54 @@ public class BlockDisk
     protected <T extends Serializable> T read( int[] blockNumbers )
         throws IOException, ClassNotFoundException
     {
-        byte[] data = null;
+        final int maxChunkSize = blockSizeBytes - HEADER_SIZE_BYTES;
+        byte[] blocks = new byte[blockNumbers.length * blockSizeBytes];
+        ByteBuffer buffer = ByteBuffer.wrap(blocks);
+        int totalLength = 0;
 
-        if ( blockNumbers.length == 1 )
+        for (int i = 0; i < blockNumbers.length; )
         {
-            data = readBlock( blockNumbers[0] );
-        }
-        else
-        {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream(getBlockSizeBytes());
-            // get all the blocks into data
-            for ( short i = 0; i < blockNumbers.length; i++ )
+            int run = runLength(blockNumbers, i);
+            buffer.limit((i + run) * blockSizeBytes);
+            buffer.position(i * blockSizeBytes);
+
+            long position = calculateByteOffsetForBlockAsLong(blockNumbers[i]);
+            while (buffer.hasRemaining())
             {
-                byte[] chunk = readBlock( blockNumbers[i] );
-                baos.write(chunk);
+                int read = fc.read(buffer, position);
+                if (read < 0)
+                {
+                    // the last block of the file is not padded
+                    break;
+                }
+                position += read;
             }
 
-            data = baos.toByteArray();
-            baos.close();
+            int readEnd = buffer.position();
+            for (int j = i; j < i + run; j++)
+            {
+                int blockStart = j * blockSizeBytes;
+                int length = blockStart + HEADER_SIZE_BYTES <= readEnd ? buffer.getInt(blockStart) : -1;
+                if (length < 0 || length > maxChunkSize || blockStart + HEADER_SIZE_BYTES + length > readEnd)
+                {
+                    log.warn( "\n The file is corrupt: " + "\n Record " + calculateByteOffsetForBlockAsLong(blockNumbers[j])
+                        + " exceeds file length." );
+                    throw new IOException( "The File Is Corrupt, need to reset" );
+                }
+                totalLength += length;
+            }
+
+            i += run;
+        }
+
+        byte[] data = new byte[totalLength];
+        int offset = 0;
+        for (int i = 0; i < blockNumbers.length; i++)
+        {
+            int blockStart = i * blockSizeBytes;
+            int length = buffer.getInt(blockStart);
+            System.arraycopy(blocks, blockStart + HEADER_SIZE_BYTES, data, offset, length);
+            offset += length;
         }
 
         if ( log.isDebugEnabled() )
@@ -305,69 +423,52 @@ public class BlockDisk
     }
 
     /**
-     * This reads the occupied data in a block.
-     * <p>
-     * The first four bytes of the record should tell us how long it is. The data is read into a
-     * byte array and then an object is constructed from the byte array.
+     * Add these blocks to the emptyBlock list.
      * <p>
-     * @return byte[]
-     * @param block
-     * @throws IOException
+     * @param blocksToFree
      */
-    private byte[] readBlock( int block )
-        throws IOException
+    protected void freeBlocks( int[] blocksToFree )
     {
-        int datalen = 0;
-
-        String message = null;
-        boolean corrupted = false;
-        long fileLength = fc.size();
-
-        long position = calculateByteOffsetForBlockAsLong( block );
-//        if ( position > fileLength )
-//        {
-//            corrupted = true;
-//            message = "Record " + position + " starts past EOF.";
-//        }
-//        else
+        if ( blocksToFree != null )
         {
-            ByteBuffer datalength = ByteBuffer.allocate(HEADER_SIZE_BYTES);
-            fc.read(datalength, position);
-            datalength.flip();
-            datalen = datalength.getInt();
-            if ( position + datalen > fileLength )
+            synchronized ( emptyBlocks )
             {
-                corrupted = true;
-                message = "Record " + position + " exceeds file length.";
+                for ( int block : blocksToFree )
+                {
+                    if ( !emptyBlocks.get( block ) )
+                    {
+                        emptyBlocks.set( block );
+                        emptyBlockCount++;
+                    }
+                }
             }
         }
-
-        if ( corrupted )
-        {
-            log.warn( "\n The file is corrupt: " + "\n " + message );
-            throw new IOException( "The File Is Corrupt, need to reset" );
-        }
-
-        ByteBuffer data = ByteBuffer.allocate(datalen);
-        fc.read(data, position + HEADER_SIZE_BYTES);
-        data.flip();
-
-        return data.array();
     }
 
     /**
-     * Add these blocks to the emptyBlock list.
+     * Rebuilds the empty blocks once the keys are loaded: every block of the file not used by one
+     * of them is free. The free blocks are not saved, they are derived from the key file.
      * <p>
-     * @param blocksToFree
+     * @param usedBlocks the blocks of all the keys
      */
-    protected void freeBlocks( int[] blocksToFree )
+    protected void initEmptyBlocks( Collection<int[]> usedBlocks )
     {
-        if ( blocksToFree != null )
+        synchronized ( emptyBlocks )
         {
-            for ( short i = 0; i < blocksToFree.length; i++ )
+            int total = numberOfBlocks.get();
+            emptyBlocks.clear();
+            emptyBlocks.set( 0, total );
+            for ( int[] blocks : usedBlocks )
             {
-                emptyBlocks.offer( Integer.valueOf( blocksToFree[i] ) );
+                for ( int block : blocks )
+                {
+                    if ( block < total )
+                    {
+                        emptyBlocks.clear( block );
+                    }
+                }
             }
+            emptyBlockCount = emptyBlocks.cardinality();
         }
     }
 
@@ -441,8 +542,12 @@ public class BlockDisk
     protected synchronized void reset()
         throws IOException
     {
-        this.numberOfBlocks.set(0);
-        this.emptyBlocks.clear();
+        synchronized ( emptyBlocks )
+        {
+            this.numberOfBlocks.set(0);
+            this.emptyBlocks.clear();
+            this.emptyBlockCount = 0;
+        }
         fc.truncate(0);
         fc.force(true);
     }
@@ -482,7 +587,10 @@ public class BlockDisk
      */
     protected int getEmptyBlocks()
     {
-        return this.emptyBlocks.size();
+        synchronized ( emptyBlocks )
+        {
+            return this.emptyBlockCount;
+        }
     }
 
     /**
@@ -23,9 +23,9 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
@@ -147,6 +147,12 @@ public class BlockDiskCache<K, V>
             {
                 this.reset();
             }
+            else
+            {
+                // the blocks not used by the loaded keys are free
+                this.dataFile.initEmptyBlocks( keyStore.entrySet().stream()
+                    .map( Map.Entry::getValue ).collect( Collectors.toList() ) );
+            }
 
             // Initialization finished successfully, so set alive to true.
             setAlive(true);
@@ -255,6 +261,46 @@ public class BlockDiskCache<K, V>
         return keys;
     }
 
+    /**
+     * Return the keys of a group from the group index.
+     * <p>
+     * @see org.apache.commons.jcs.auxiliary.AuxiliaryCache#getGroupKeys(GroupId)
+     */
+    @Override
+    public Set<K> getGroupKeys(GroupId groupId) throws IOException
+    {
+        storageLock.readLock().lock();
+
+        try
+        {
+            return this.keyStore.getGroupKeys(groupId);
+        }
+        finally
+        {
+            storageLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Return the groups from the group index.
+     * <p>
+     * @see org.apache.commons.jcs.auxiliary.AuxiliaryCache#getGroupIds()
+     */
+    @Override
+    public Set<GroupId> getGroupIds() throws IOException
+    {
+        storageLock.readLock().lock();
+
+        try
+        {
+            return this.keyStore.getGroupIds();
+        }
+        finally
+        {
+            storageLock.readLock().unlock();
+        }
+    }
+
     /**
      * Gets matching items from the cache.
      * <p>
@@ -265,19 +311,17 @@ public class BlockDiskCache<K, V>
     @Override
     public Map<K, ICacheElement<K, V>> processGetMatching( String pattern )
     {
-        Set<K> keyArray = null;
+        Set<K> matchingKeys = null;
         storageLock.readLock().lock();
         try
         {
-            keyArray = new HashSet<K>(keyStore.keySet());
+            matchingKeys = keyStore.getMatchingKeys( pattern, getKeyMatcher() );
         }
         finally
         {
             storageLock.readLock().unlock();
         }
 
-        Set<K> matchingKeys = getKeyMatcher().getMatchingKeysFromArray( pattern, keyArray );
-
         Map<K, ICacheElement<K, V>> elements = matchingKeys.stream()
             .collect(Collectors.toMap(
                     key -> key,
@@ -302,6 +346,17 @@ public class BlockDiskCache<K, V>
         return this.keyStore.size();
     }
 
+    /**
+     * Checks the key filter of the key store, without taking the storage lock.
+     * <p>
+     * @param key
+     * @return false if the key is surely not on disk
+     */
+    protected boolean mayContainKey( K key )
+    {
+        return this.keyStore.mightContain( key );
+    }
+
     /**
      * Gets the ICacheElement&lt;K, V&gt; for the key if it is in the cache. The program flow is as follows:
      * <ol>
@@ -330,6 +385,12 @@ public class BlockDiskCache<K, V>
             log.debug( logCacheName + "Trying to get from disk: " + key );
         }
 
+        // purgatory was checked before, a definite miss doesn't need the lock
+        if ( !mayContainKey( key ) )
+        {
+            return null;
+        }
+
         ICacheElement<K, V> object = null;
 
 
@@ -479,8 +540,8 @@ public class BlockDiskCache<K, V>
     }
 
     /**
-     * Remove all elements from the group. This does not use the iterator to remove. It builds a
-     * list of group elements and then removes them one by one.
+     * Remove all elements from the group. The keys of the group come from the group index, they
+     * are then removed one by one.
      * <p>
      * This operates under a lock obtained in doRemove().
      * <p>
@@ -491,10 +552,7 @@ public class BlockDiskCache<K, V>
     private boolean performGroupRemoval(GroupId key)
     {
         // remove all keys of the same name group.
-        List<K> itemsToRemove = keyStore.keySet()
-                .stream()
-                .filter(k -> k instanceof GroupAttrName && ((GroupAttrName<?>) k).groupId.equals(key))
-                .collect(Collectors.toList());
+        Set<K> itemsToRemove = keyStore.getGroupKeys(key);
 
         // remove matches.
         // Don't add to recycle bin here
@@ -518,10 +576,7 @@ public class BlockDiskCache<K, V>
     private boolean performPartialKeyRemoval(String key)
     {
         // remove all keys of the same name hierarchy.
-        List<K> itemsToRemove = keyStore.keySet()
-                .stream()
-                .filter(k -> k instanceof String && k.toString().startsWith(key))
-                .collect(Collectors.toList());
+        Collection<K> itemsToRemove = keyStore.getKeysWithPrefix(key);
 
         // remove matches.
         // Don't add to recycle bin here
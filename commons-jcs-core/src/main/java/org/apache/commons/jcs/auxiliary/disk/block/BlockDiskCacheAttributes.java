@@ -47,6 +47,9 @@ public class BlockDiskCacheAttributes
     /** The keys will be persisted at this interval.  -1 mean never. */
     private long keyPersistenceIntervalSeconds = DEFAULT_KEY_PERSISTENCE_INTERVAL_SECONDS;
 
+    /** Should the keys be held in the compact map, with serialized keys and clock eviction. */
+    private boolean useCompactKeyMap = false;
+
     /**
      * The size of the blocks. All blocks are the same size.
      * <p>
@@ -97,6 +100,25 @@ public class BlockDiskCacheAttributes
         return keyPersistenceIntervalSeconds;
     }
 
+    /**
+     * The compact key map stores the keys serialized in direct memory and the blocks as packed
+     * runs, which uses a fraction of the heap of the LRU maps. Its eviction is an approximate LRU.
+     * <p>
+     * @param useCompactKeyMap The useCompactKeyMap to set.
+     */
+    public void setUseCompactKeyMap( boolean useCompactKeyMap )
+    {
+        this.useCompactKeyMap = useCompactKeyMap;
+    }
+
+    /**
+     * @return Returns the useCompactKeyMap.
+     */
+    public boolean isUseCompactKeyMap()
+    {
+        return useCompactKeyMap;
+    }
+
     /**
      * Write out the values for debugging purposes.
      * <p>
@@ -113,6 +135,7 @@ public class BlockDiskCacheAttributes
         str.append( "\n BlockSizeBytes [" + this.getBlockSizeBytes() + "]" );
         str.append( "\n KeyPersistenceIntervalSeconds [" + this.getKeyPersistenceIntervalSeconds() + "]" );
         str.append( "\n DiskLimitType [" + this.getDiskLimitType() + "]" );
+        str.append( "\n UseCompactKeyMap [" + this.isUseCompactKeyMap() + "]" );
         return str.toString();
     }
 }
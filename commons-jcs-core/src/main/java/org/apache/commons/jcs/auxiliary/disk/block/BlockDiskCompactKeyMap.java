@@ -0,0 +1,769 @@
+package org.apache.commons.jcs.auxiliary.disk.block;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import org.apache.commons.jcs.auxiliary.disk.behavior.IDiskCacheAttributes.DiskLimitType;
+import org.apache.commons.jcs.engine.behavior.IElementSerializer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A compact key to blocks map for the block disk cache, used instead of the LRU maps when
+ * UseCompactKeyMap is set.
+ * <p>
+ * It is an open addressing table of parallel arrays: the key hash, the address of the serialized
+ * key and the blocks. The keys are serialized in direct memory chunks, so the heap only holds
+ * 21 bytes per slot. The blocks of an element are usually one run since the block disk
+ * allocates extents, the run is packed in a long (first block and count). The rare fragmented
+ * elements keep their int[] on the side.
+ * <p>
+ * When the size limit is reached an approximate LRU element is evicted with the clock algorithm:
+ * every access sets a referenced flag, the hand clears it and evicts the first unreferenced key.
+ * <p>
+ * The lookups serialize the probe key once, outside the lock, and compare the bytes of the stored
+ * keys of the same hash; a stored key is only deserialized for equals when its bytes differ. The
+ * entrySet and keySet snapshots and the eviction listener deserialize the keys. All methods are
+ * guarded by a lock.
+ */
+public class BlockDiskCompactKeyMap<K>
+    extends AbstractMap<K, int[]>
+{
+    /** The logger */
+    private static final Log log = LogFactory.getLog( BlockDiskCompactKeyMap.class );
+
+    /** Marks an empty slot in keyAddresses. */
+    private static final long EMPTY = -1L;
+
+    /** Initial number of slots, a power of 2. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Size of the direct memory chunks holding the keys. */
+    private static final int ARENA_CHUNK_SIZE = 1024 * 1024;
+
+    /** Serializes the keys. */
+    private final IElementSerializer serializer;
+
+    /** Max number of keys, or max size in kB of the elements; not limited if &lt;= 0. */
+    private final int maxSize;
+
+    /** How maxSize is counted. */
+    private final DiskLimitType limitType;
+
+    /** The block size, for the size limit. */
+    private final int blockSize;
+
+    /** Called out of the lock with the keys evicted by the clock. */
+    private final BiConsumer<K, int[]> evictionListener;
+
+    /** Guards everything. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Spread hash codes of the keys. */
+    private int[] hashes;
+
+    /** Arena addresses of the keys, EMPTY for a free slot. */
+    private long[] keyAddresses;
+
+    /** Packed runs, or -(index + 1) in fragments. */
+    private long[] extents;
+
+    /** Clock flags, set on access. */
+    private byte[] referenced;
+
+    /** The clock hand. */
+    private int hand = 0;
+
+    /** Number of keys. */
+    private int size = 0;
+
+    /** Size of the elements in kB. */
+    private long contentSize = 0;
+
+    /** Blocks of the elements not stored in one run. */
+    private final List<int[]> fragments = new ArrayList<int[]>();
+
+    /** Free indexes in fragments. */
+    private final ArrayDeque<Integer> freeFragments = new ArrayDeque<Integer>();
+
+    /** The direct memory chunks holding the serialized keys. */
+    private final List<ByteBuffer> arena = new ArrayList<ByteBuffer>();
+
+    /** Bytes of the arena used by keys. */
+    private long arenaLiveBytes = 0;
+
+    /** Bytes of the arena used by removed keys. */
+    private long arenaGarbageBytes = 0;
+
+    /**
+     * @param serializer serializes the keys
+     * @param maxSize max number of keys or size in kB depending on limitType, not limited if &lt;= 0
+     * @param limitType COUNT or SIZE
+     * @param blockSize the size of the blocks
+     * @param evictionListener called with the keys evicted to respect the limit
+     */
+    public BlockDiskCompactKeyMap( IElementSerializer serializer, int maxSize, DiskLimitType limitType,
+                                   int blockSize, BiConsumer<K, int[]> evictionListener )
+    {
+        this.serializer = serializer;
+        this.maxSize = maxSize;
+        this.limitType = limitType;
+        this.blockSize = blockSize;
+        this.evictionListener = evictionListener;
+        initTable( INITIAL_CAPACITY );
+    }
+
+    /**
+     * @param key
+     * @return the blocks of the key or null
+     */
+    @Override
+    public int[] get( Object key )
+    {
+        byte[] keyBytes = serializeProbe( key );
+        if ( keyBytes == null )
+        {
+            return null;
+        }
+        lock.lock();
+        try
+        {
+            int slot = find( key, keyBytes );
+            if ( slot < 0 )
+            {
+                return null;
+            }
+            referenced[slot] = 1;
+            return decodeExtent( extents[slot] );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Does not count as an access for the clock.
+     * <p>
+     * @param key
+     * @return true if the key is in the map
+     */
+    @Override
+    public boolean containsKey( Object key )
+    {
+        byte[] keyBytes = serializeProbe( key );
+        if ( keyBytes == null )
+        {
+            return false;
+        }
+        lock.lock();
+        try
+        {
+            return find( key, keyBytes ) >= 0;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores the blocks of the key, then evicts keys until the limit is respected.
+     * <p>
+     * @param key
+     * @param blocks
+     * @return the previous blocks of the key or null
+     */
+    @Override
+    public int[] put( K key, int[] blocks )
+    {
+        byte[] keyBytes;
+        try
+        {
+            keyBytes = serializer.serialize( key );
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( "Cannot serialize key " + key, e );
+        }
+
+        int[] old = null;
+        List<Object[]> evicted = new ArrayList<Object[]>();
+        lock.lock();
+        try
+        {
+            int slot = find( key, keyBytes );
+            if ( slot >= 0 )
+            {
+                old = decodeExtent( extents[slot] );
+                releaseExtent( extents[slot] );
+                contentSize -= weight( old );
+            }
+            else
+            {
+                if ( ( size + 1 ) * 4L > hashes.length * 3L )
+                {
+                    resize( hashes.length * 2 );
+                }
+                slot = freeSlotFor( spread( key.hashCode() ) );
+                hashes[slot] = spread( key.hashCode() );
+                keyAddresses[slot] = append( keyBytes );
+                size++;
+            }
+            extents[slot] = encodeExtent( blocks );
+            referenced[slot] = 1;
+            contentSize += weight( blocks );
+
+            while ( shouldEvict() )
+            {
+                evicted.add( evictOne() );
+            }
+            compactArenaIfNeeded();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        for ( Object[] entry : evicted )
+        {
+            @SuppressWarnings("unchecked")
+            K evictedKey = (K) deserializeKey( (byte[]) entry[0] );
+            evictionListener.accept( evictedKey, (int[]) entry[1] );
+        }
+        return old;
+    }
+
+    /**
+     * @param key
+     * @return the blocks of the removed key or null
+     */
+    @Override
+    public int[] remove( Object key )
+    {
+        byte[] keyBytes = serializeProbe( key );
+        if ( keyBytes == null )
+        {
+            return null;
+        }
+        lock.lock();
+        try
+        {
+            int slot = find( key, keyBytes );
+            if ( slot < 0 )
+            {
+                return null;
+            }
+            int[] blocks = decodeExtent( extents[slot] );
+            removeSlot( slot );
+            compactArenaIfNeeded();
+            return blocks;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of keys
+     */
+    @Override
+    public int size()
+    {
+        lock.lock();
+        try
+        {
+            return size;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all the keys and releases the direct memory.
+     */
+    @Override
+    public void clear()
+    {
+        lock.lock();
+        try
+        {
+            initTable( INITIAL_CAPACITY );
+            size = 0;
+            contentSize = 0;
+            fragments.clear();
+            freeFragments.clear();
+            arena.clear();
+            arenaLiveBytes = 0;
+            arenaGarbageBytes = 0;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return a snapshot of the entries, with deserialized keys
+     */
+    @Override
+    public Set<Map.Entry<K, int[]>> entrySet()
+    {
+        Set<Map.Entry<K, int[]>> entries = new HashSet<Map.Entry<K, int[]>>();
+        forEach( ( key, blocks ) -> entries.add( new AbstractMap.SimpleImmutableEntry<K, int[]>( key, blocks ) ) );
+        return entries;
+    }
+
+    /**
+     * @return a snapshot of the deserialized keys
+     */
+    @Override
+    public Set<K> keySet()
+    {
+        Set<K> keys = new HashSet<K>();
+        forEach( ( key, blocks ) -> keys.add( key ) );
+        return keys;
+    }
+
+    /**
+     * Walks the entries under the lock, without building a snapshot.
+     * <p>
+     * @param action
+     */
+    @Override
+    public void forEach( BiConsumer<? super K, ? super int[]> action )
+    {
+        lock.lock();
+        try
+        {
+            for ( int slot = 0; slot < keyAddresses.length; slot++ )
+            {
+                if ( keyAddresses[slot] != EMPTY )
+                {
+                    @SuppressWarnings("unchecked")
+                    K key = (K) deserializeKey( readKey( keyAddresses[slot] ) );
+                    action.accept( key, decodeExtent( extents[slot] ) );
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of bytes of direct memory holding the keys
+     */
+    public long getKeyBytes()
+    {
+        lock.lock();
+        try
+        {
+            return arenaLiveBytes;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Allocates empty slots. The caller holds the lock.
+     * <p>
+     * @param capacity a power of 2
+     */
+    private void initTable( int capacity )
+    {
+        hashes = new int[capacity];
+        keyAddresses = new long[capacity];
+        extents = new long[capacity];
+        referenced = new byte[capacity];
+        Arrays.fill( keyAddresses, EMPTY );
+        hand = 0;
+    }
+
+    /**
+     * Moves the entries to a table of the given capacity. The caller holds the lock.
+     * <p>
+     * @param capacity a power of 2
+     */
+    private void resize( int capacity )
+    {
+        int[] oldHashes = hashes;
+        long[] oldKeyAddresses = keyAddresses;
+        long[] oldExtents = extents;
+        byte[] oldReferenced = referenced;
+
+        initTable( capacity );
+        for ( int i = 0; i < oldHashes.length; i++ )
+        {
+            if ( oldKeyAddresses[i] != EMPTY )
+            {
+                int slot = freeSlotFor( oldHashes[i] );
+                hashes[slot] = oldHashes[i];
+                keyAddresses[slot] = oldKeyAddresses[i];
+                extents[slot] = oldExtents[i];
+                referenced[slot] = oldReferenced[i];
+            }
+        }
+    }
+
+    /**
+     * Equal serialized forms are the same key. Otherwise the stored key of the same hash is
+     * deserialized and compared with equals, since equal keys may serialize differently, as the
+     * group keys do once their toString is cached.
+     * <p>
+     * @param key the key
+     * @param keyBytes the serialized key
+     * @return the slot of the key or -1
+     */
+    private int find( Object key, byte[] keyBytes )
+    {
+        int hash = spread( key.hashCode() );
+        int mask = hashes.length - 1;
+        for ( int slot = hash & mask; keyAddresses[slot] != EMPTY; slot = ( slot + 1 ) & mask )
+        {
+            if ( hashes[slot] == hash )
+            {
+                byte[] stored = readKey( keyAddresses[slot] );
+                if ( Arrays.equals( keyBytes, stored ) || key.equals( deserializeKey( stored ) ) )
+                {
+                    return slot;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param hash
+     * @return the first empty slot from the home slot of the hash
+     */
+    private int freeSlotFor( int hash )
+    {
+        int mask = hashes.length - 1;
+        int slot = hash & mask;
+        while ( keyAddresses[slot] != EMPTY )
+        {
+            slot = ( slot + 1 ) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Empties the slot and shifts back the following entries of the probe sequence, so there are
+     * no tombstones.
+     * <p>
+     * @param slot
+     */
+    private void removeSlot( int slot )
+    {
+        contentSize -= weight( decodeExtent( extents[slot] ) );
+        releaseExtent( extents[slot] );
+        int stored = 4 + keyLength( keyAddresses[slot] );
+        arenaLiveBytes -= stored;
+        arenaGarbageBytes += stored;
+        size--;
+
+        int mask = hashes.length - 1;
+        int hole = slot;
+        int next = slot;
+        while ( true )
+        {
+            next = ( next + 1 ) & mask;
+            if ( keyAddresses[next] == EMPTY )
+            {
+                break;
+            }
+            int home = hashes[next] & mask;
+            // move the entry if its home is not between the hole and itself
+            boolean movable = hole <= next ? home <= hole || home > next : home <= hole && home > next;
+            if ( movable )
+            {
+                hashes[hole] = hashes[next];
+                keyAddresses[hole] = keyAddresses[next];
+                extents[hole] = extents[next];
+                referenced[hole] = referenced[next];
+                hole = next;
+            }
+        }
+        keyAddresses[hole] = EMPTY;
+        referenced[hole] = 0;
+    }
+
+    /**
+     * @return true if over the limit
+     */
+    private boolean shouldEvict()
+    {
+        if ( maxSize <= 0 )
+        {
+            return false;
+        }
+        if ( limitType == DiskLimitType.SIZE )
+        {
+            return contentSize > maxSize && size > 1;
+        }
+        return size > maxSize;
+    }
+
+    /**
+     * Advances the clock hand to the first unreferenced key, clearing the flags on its way, and
+     * removes it.
+     * <p>
+     * @return the serialized key and the blocks of the evicted entry
+     */
+    private Object[] evictOne()
+    {
+        while ( true )
+        {
+            if ( hand >= keyAddresses.length )
+            {
+                hand = 0;
+            }
+            if ( keyAddresses[hand] != EMPTY )
+            {
+                if ( referenced[hand] == 0 )
+                {
+                    Object[] entry = new Object[] { readKey( keyAddresses[hand] ), decodeExtent( extents[hand] ) };
+                    // the backward shift may bring another entry here, the hand stays
+                    removeSlot( hand );
+                    return entry;
+                }
+                referenced[hand] = 0;
+            }
+            hand++;
+        }
+    }
+
+    /**
+     * @param blocks
+     * @return the size in kB, as counted by the LRU maps
+     */
+    private long weight( int[] blocks )
+    {
+        return limitType == DiskLimitType.SIZE ? (long) blocks.length * blockSize / 1024 + 1 : 0;
+    }
+
+    /**
+     * @param blocks
+     * @return the packed run, or a reference to the fragments
+     */
+    private long encodeExtent( int[] blocks )
+    {
+        boolean run = blocks.length > 0;
+        for ( int i = 1; i < blocks.length && run; i++ )
+        {
+            run = blocks[i] == blocks[i - 1] + 1;
+        }
+        if ( run )
+        {
+            return ( (long) blocks[0] << 32 ) | blocks.length;
+        }
+
+        int index;
+        Integer free = freeFragments.poll();
+        if ( free != null )
+        {
+            index = free.intValue();
+            fragments.set( index, blocks.clone() );
+        }
+        else
+        {
+            index = fragments.size();
+            fragments.add( blocks.clone() );
+        }
+        return -( index + 1L );
+    }
+
+    /**
+     * @param extent
+     * @return a new array with the blocks
+     */
+    private int[] decodeExtent( long extent )
+    {
+        if ( extent < 0 )
+        {
+            return fragments.get( (int) ( -extent - 1 ) ).clone();
+        }
+        int first = (int) ( extent >>> 32 );
+        int[] blocks = new int[(int) extent];
+        for ( int i = 0; i < blocks.length; i++ )
+        {
+            blocks[i] = first + i;
+        }
+        return blocks;
+    }
+
+    /**
+     * Frees the fragments entry of the extent, if any.
+     * <p>
+     * @param extent
+     */
+    private void releaseExtent( long extent )
+    {
+        if ( extent < 0 )
+        {
+            int index = (int) ( -extent - 1 );
+            fragments.set( index, null );
+            freeFragments.push( Integer.valueOf( index ) );
+        }
+    }
+
+    /**
+     * Appends a serialized key, preceded by its length, to the arena.
+     * <p>
+     * @param keyBytes
+     * @return the address of the key: chunk index and offset
+     */
+    private long append( byte[] keyBytes )
+    {
+        int needed = 4 + keyBytes.length;
+        ByteBuffer chunk = arena.isEmpty() ? null : arena.get( arena.size() - 1 );
+        if ( chunk == null || chunk.remaining() < needed )
+        {
+            chunk = ByteBuffer.allocateDirect( Math.max( ARENA_CHUNK_SIZE, needed ) );
+            arena.add( chunk );
+        }
+        long address = ( (long) ( arena.size() - 1 ) << 32 ) | chunk.position();
+        chunk.putInt( keyBytes.length );
+        chunk.put( keyBytes );
+        arenaLiveBytes += needed;
+        return address;
+    }
+
+    /**
+     * @param address
+     * @return the serialized key
+     */
+    private byte[] readKey( long address )
+    {
+        ByteBuffer chunk = arena.get( (int) ( address >>> 32 ) ).duplicate();
+        chunk.position( (int) address );
+        byte[] keyBytes = new byte[chunk.getInt()];
+        chunk.get( keyBytes );
+        return keyBytes;
+    }
+
+    /**
+     * @param address
+     * @return the length of the serialized key, without reading it
+     */
+    private int keyLength( long address )
+    {
+        return arena.get( (int) ( address >>> 32 ) ).getInt( (int) address );
+    }
+
+    /**
+     * Copies the live keys to a new arena once the removed ones use more than the live ones.
+     */
+    private void compactArenaIfNeeded()
+    {
+        if ( arenaGarbageBytes <= ARENA_CHUNK_SIZE || arenaGarbageBytes <= arenaLiveBytes )
+        {
+            return;
+        }
+
+        List<ByteBuffer> oldArena = new ArrayList<ByteBuffer>( arena );
+        long[] oldAddresses = keyAddresses.clone();
+        arena.clear();
+        arenaLiveBytes = 0;
+        arenaGarbageBytes = 0;
+        for ( int slot = 0; slot < keyAddresses.length; slot++ )
+        {
+            if ( oldAddresses[slot] != EMPTY )
+            {
+                ByteBuffer chunk = oldArena.get( (int) ( oldAddresses[slot] >>> 32 ) ).duplicate();
+                chunk.position( (int) oldAddresses[slot] );
+                byte[] keyBytes = new byte[chunk.getInt()];
+                chunk.get( keyBytes );
+                keyAddresses[slot] = append( keyBytes );
+            }
+        }
+    }
+
+    /**
+     * @param key the key looked up
+     * @return the serialized key, or null if it is null or cannot be serialized, so it is not in
+     *         the map
+     */
+    private byte[] serializeProbe( Object key )
+    {
+        if ( key == null )
+        {
+            return null;
+        }
+        try
+        {
+            return serializer.serialize( key );
+        }
+        catch ( IOException e )
+        {
+            if ( log.isDebugEnabled() )
+            {
+                log.debug( "Cannot serialize key " + key, e );
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @param keyBytes
+     * @return the key, or null if it cannot be read
+     */
+    private Object deserializeKey( byte[] keyBytes )
+    {
+        try
+        {
+            return serializer.deSerialize( keyBytes, null );
+        }
+        catch ( IOException | ClassNotFoundException e )
+        {
+            log.error( "Cannot deserialize key", e );
+            return null;
+        }
+    }
+
+    /**
+     * @param h a hash code
+     * @return the hash with the high bits spread to the low ones
+     */
+    private static int spread( int h )
+    {
+        return h ^ ( h >>> 16 );
+    }
+}
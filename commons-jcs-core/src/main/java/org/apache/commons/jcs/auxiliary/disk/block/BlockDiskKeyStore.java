@@ -28,17 +28,27 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.jcs.auxiliary.disk.DiskKeyFilter;
 import org.apache.commons.jcs.auxiliary.disk.behavior.IDiskCacheAttributes.DiskLimitType;
+import org.apache.commons.jcs.engine.behavior.IElementSerializer;
+import org.apache.commons.jcs.engine.control.group.GroupId;
+import org.apache.commons.jcs.engine.control.group.GroupIndex;
+import org.apache.commons.jcs.engine.match.KeyPrefixIndex;
+import org.apache.commons.jcs.engine.match.behavior.IKeyMatcher;
 import org.apache.commons.jcs.io.ObjectInputStreamClassLoaderAware;
 import org.apache.commons.jcs.utils.struct.AbstractLRUMap;
+import org.apache.commons.jcs.utils.serialization.StandardSerializer;
 import org.apache.commons.jcs.utils.struct.LRUMap;
 import org.apache.commons.jcs.utils.timing.ElapsedTimer;
 import org.apache.commons.logging.Log;
@@ -61,6 +71,18 @@ public class BlockDiskKeyStore<K>
     /** The key to block map */
     private Map<K, int[]> keyHash;
 
+    /** Keys of the groups, rebuilt from the keys file on startup. */
+    private final GroupIndex<K> groupIndex = new GroupIndex<K>();
+
+    /** Sorted String keys if enabled, rebuilt from the keys file on startup. */
+    private final KeyPrefixIndex<K> keyIndex;
+
+    /** Counting Bloom filter of the keys if enabled, saved next to the keys file. */
+    private final DiskKeyFilter<K> keyFilter;
+
+    /** The file where we persist the key filter */
+    private final File keyFilterFile;
+
     /** The file where we persist the keys */
     private final File keyFile;
 
@@ -100,6 +122,8 @@ public class BlockDiskKeyStore<K>
         this.blockDiskCache = blockDiskCache;
         this.diskLimitType = cacheAttributes.getDiskLimitType();
         this.blockSize = cacheAttributes.getBlockSizeBytes();
+        this.keyIndex = new KeyPrefixIndex<K>(cacheAttributes.isUseKeyIndex());
+        this.keyFilter = new DiskKeyFilter<K>(cacheAttributes.isUseKeyFilter());
 
         File rootDirectory = cacheAttributes.getDiskPath();
 
@@ -109,6 +133,7 @@ public class BlockDiskKeyStore<K>
         }
 
         this.keyFile = new File(rootDirectory, fileName + ".key");
+        this.keyFilterFile = new File(rootDirectory, fileName + ".filter");
 
         if (log.isInfoEnabled())
         {
@@ -148,6 +173,12 @@ public class BlockDiskKeyStore<K>
 
             synchronized (keyFile)
             {
+                // a filter only exists next to the keys it was saved with
+                if (keyFilterFile.exists() && !keyFilterFile.delete())
+                {
+                    log.warn(logCacheName + "Could not delete the key filter " + keyFilterFile);
+                }
+
                 FileOutputStream fos = new FileOutputStream(keyFile);
                 BufferedOutputStream bos = new BufferedOutputStream(fos, 65536);
 
@@ -168,6 +199,8 @@ public class BlockDiskKeyStore<K>
                         oos.writeUnshared(descriptor);
                     }
                 }
+
+                keyFilter.save(keyFilterFile);
             }
 
             if (log.isInfoEnabled())
@@ -201,6 +234,9 @@ public class BlockDiskKeyStore<K>
     protected void clearMemoryMap()
     {
         this.keyHash.clear();
+        this.groupIndex.clear();
+        this.keyIndex.clear();
+        this.keyFilter.clear();
     }
 
     /**
@@ -209,7 +245,26 @@ public class BlockDiskKeyStore<K>
     private void initKeyMap()
     {
         keyHash = null;
-        if (maxKeySize >= 0)
+        groupIndex.clear();
+        keyIndex.clear();
+        keyFilter.clear();
+        if (blockDiskCacheAttributes.isUseCompactKeyMap())
+        {
+            IElementSerializer serializer = blockDiskCache != null
+                    ? blockDiskCache.getElementSerializer() : new StandardSerializer();
+            keyHash = new BlockDiskCompactKeyMap<K>(serializer, maxKeySize, diskLimitType, blockSize,
+                    (key, blocks) -> {
+                        groupIndex.remove(key);
+                        keyIndex.remove(key);
+                        keyFilter.remove(key);
+                        blockDiskCache.freeBlocks(blocks);
+                    });
+            if (log.isInfoEnabled())
+            {
+                log.info(logCacheName + "Using the compact key map, maxKeySize: '" + maxKeySize + "'");
+            }
+        }
+        else if (maxKeySize >= 0)
         {
             if (this.diskLimitType == DiskLimitType.SIZE)
             {
@@ -282,6 +337,12 @@ public class BlockDiskKeyStore<K>
             if (!keys.isEmpty())
             {
                 keyHash.putAll(keys);
+                groupIndex.addAll(keys.keySet());
+                keyIndex.addAll(keys.keySet());
+                if (!keyFilter.load(keyFilterFile, keyHash.size()))
+                {
+                    keyFilter.rebuild(keyHash.keySet());
+                }
 
                 if (log.isDebugEnabled())
                 {
@@ -355,7 +416,18 @@ public class BlockDiskKeyStore<K>
      */
     public void put(K key, int[] value)
     {
+        // the filter first as the put may evict the new key
+        if (!this.keyHash.containsKey(key))
+        {
+            this.keyFilter.add(key);
+        }
         this.keyHash.put(key, value);
+        this.groupIndex.add(key);
+        this.keyIndex.add(key);
+        if (this.keyFilter.isOverloaded())
+        {
+            this.keyFilter.rebuild(this.keyHash.keySet());
+        }
     }
 
     /**
@@ -367,7 +439,92 @@ public class BlockDiskKeyStore<K>
      */
     public int[] remove(K key)
     {
-        return this.keyHash.remove(key);
+        this.groupIndex.remove(key);
+        this.keyIndex.remove(key);
+        int[] removed = this.keyHash.remove(key);
+        if (removed != null)
+        {
+            this.keyFilter.remove(key);
+        }
+        return removed;
+    }
+
+    /**
+     * Checks the key filter, the key map is not touched.
+     * <p>
+     *
+     * @param key
+     * @return false if the key is surely not in the store
+     */
+    public boolean mightContain(K key)
+    {
+        return this.keyFilter.mightContain(key);
+    }
+
+    /**
+     * Gets the keys of a group from the group index.
+     * <p>
+     *
+     * @param groupId the group
+     * @return the keys of the group
+     */
+    public Set<K> getGroupKeys(GroupId groupId)
+    {
+        return this.groupIndex.getKeys(groupId, this.keyHash::containsKey);
+    }
+
+    /**
+     * Gets the groups having keys in the store.
+     * <p>
+     *
+     * @return the groups
+     */
+    public Set<GroupId> getGroupIds()
+    {
+        return this.groupIndex.getGroupIds(this.keyHash::containsKey);
+    }
+
+    /**
+     * Gets the keys starting with a prefix, from the key index if it is enabled.
+     * <p>
+     *
+     * @param prefix the start of the keys
+     * @return the String keys starting with the prefix
+     */
+    public Collection<K> getKeysWithPrefix(String prefix)
+    {
+        if (this.keyIndex.isEnabled())
+        {
+            return this.keyIndex.getKeysWithPrefix(prefix, this.keyHash::containsKey);
+        }
+
+        List<K> keys = new ArrayList<K>();
+        for (K k : this.keyHash.keySet())
+        {
+            if (k instanceof String && k.toString().startsWith(prefix))
+            {
+                keys.add(k);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Gets the keys matching a pattern, from the key index if it is enabled.
+     * <p>
+     *
+     * @param pattern the pattern
+     * @param keyMatcher the matcher of the cache
+     * @return the matching keys
+     */
+    public Set<K> getMatchingKeys(String pattern, IKeyMatcher<K> keyMatcher)
+    {
+        Set<K> matchingKeys = keyMatcher.getMatchingKeysFromIndex(pattern, this.keyIndex, this.keyHash::containsKey);
+        if (matchingKeys == null)
+        {
+            matchingKeys = keyMatcher.getMatchingKeysFromArray(pattern, new HashSet<K>(this.keyHash.keySet()));
+        }
+        return matchingKeys;
     }
 
     /**
@@ -516,6 +673,9 @@ public class BlockDiskKeyStore<K>
         @Override
         protected void processRemovedLRU(K key, int[] value)
         {
+            groupIndex.remove(key);
+            keyIndex.remove(key);
+            keyFilter.remove(key);
             blockDiskCache.freeBlocks(value);
             if (log.isDebugEnabled())
             {
@@ -564,6 +724,9 @@ public class BlockDiskKeyStore<K>
         @Override
         protected void processRemovedLRU(K key, int[] value)
         {
+            groupIndex.remove(key);
+            keyIndex.remove(key);
+            keyFilter.remove(key);
             blockDiskCache.freeBlocks(value);
             if (log.isDebugEnabled())
             {
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -39,13 +40,16 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.jcs.auxiliary.AuxiliaryCacheAttributes;
 import org.apache.commons.jcs.auxiliary.disk.AbstractDiskCache;
+import org.apache.commons.jcs.auxiliary.disk.DiskKeyFilter;
 import org.apache.commons.jcs.auxiliary.disk.behavior.IDiskCacheAttributes.DiskLimitType;
 import org.apache.commons.jcs.engine.CacheConstants;
 import org.apache.commons.jcs.engine.behavior.ICacheElement;
 import org.apache.commons.jcs.engine.behavior.IElementSerializer;
 import org.apache.commons.jcs.engine.control.group.GroupAttrName;
 import org.apache.commons.jcs.engine.control.group.GroupId;
+import org.apache.commons.jcs.engine.control.group.GroupIndex;
 import org.apache.commons.jcs.engine.logging.behavior.ICacheEvent;
+import org.apache.commons.jcs.engine.match.KeyPrefixIndex;
 import org.apache.commons.jcs.engine.logging.behavior.ICacheEventLogger;
 import org.apache.commons.jcs.engine.stats.StatElement;
 import org.apache.commons.jcs.engine.stats.Stats;
@@ -82,6 +86,15 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
     /** Map containing the keys and disk offsets. */
     private Map<K, IndexedDiskElementDescriptor> keyHash;
 
+    /** Keys of the groups, rebuilt from the keys file on startup. */
+    private final GroupIndex<K> groupIndex = new GroupIndex<K>();
+
+    /** Sorted String keys if enabled, rebuilt from the keys file on startup. */
+    private final KeyPrefixIndex<K> keyIndex;
+
+    /** Counting Bloom filter of the keys if enabled, saved next to the keys file. */
+    private final DiskKeyFilter<K> keyFilter;
+
     /** The maximum number of keys that we will keep in memory. */
     private final int maxKeySize;
 
@@ -173,6 +186,8 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
         this.isShutdownOptimizationEnabled = cattr.isOptimizeOnShutdown();
         this.logCacheName = "Region [" + getCacheName() + "] ";
         this.diskLimitType = cattr.getDiskLimitType();
+        this.keyIndex = new KeyPrefixIndex<K>(cattr.isUseKeyIndex());
+        this.keyFilter = new DiskKeyFilter<K>(cattr.isUseKeyFilter());
         // Make a clean file name
         this.fileName = getCacheName().replaceAll("[^a-zA-Z0-9-_\\.]", "_");
 
@@ -294,6 +309,9 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
             if (!isOk)
             {
                 keyHash.clear();
+                groupIndex.clear();
+                keyIndex.clear();
+                keyFilter.clear();
                 keyFile.reset();
                 dataFile.reset();
                 log.warn(logCacheName + "Corruption detected.  Reseting data and keys files.");
@@ -337,6 +355,12 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
                 }
 
                 keyHash.putAll(keys);
+                groupIndex.addAll(keys.keySet());
+                keyIndex.addAll(keys.keySet());
+                if (!keyFilter.load(getKeyFilterFile(), keyHash.size()))
+                {
+                    keyFilter.rebuild(keyHash.keySet());
+                }
 
                 if (log.isInfoEnabled())
                 {
@@ -464,6 +488,13 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
                 log.info(logCacheName + "Saving keys to: " + fileName + ", key count: " + keyHash.size());
             }
 
+            // a filter only exists next to the keys it was saved with
+            File filterFile = getKeyFilterFile();
+            if (filterFile.exists() && !filterFile.delete())
+            {
+                log.warn(logCacheName + "Could not delete the key filter " + filterFile);
+            }
+
             keyFile.reset();
 
             HashMap<K, IndexedDiskElementDescriptor> keys = new HashMap<K, IndexedDiskElementDescriptor>();
@@ -472,6 +503,7 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
             if (keys.size() > 0)
             {
                 keyFile.writeObject(keys, 0);
+                keyFilter.save(filterFile);
             }
 
             if (log.isInfoEnabled())
@@ -555,8 +587,18 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
                         }
                     }
 
-                    // Put it in the map
+                    // Put it in the map, the filter first as the put may evict the new key
+                    if (old == null)
+                    {
+                        keyFilter.add(ce.getKey());
+                    }
                     keyHash.put(ce.getKey(), ded);
+                    groupIndex.add(ce.getKey());
+                    keyIndex.add(ce.getKey());
+                    if (keyFilter.isOverloaded())
+                    {
+                        keyFilter.rebuild(keyHash.keySet());
+                    }
 
                     if (queueInput)
                     {
@@ -615,6 +657,12 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
             log.debug(logCacheName + "Trying to get from disk: " + key);
         }
 
+        // purgatory was checked before, a definite miss doesn't need the lock
+        if (!mayContainKey(key))
+        {
+            return null;
+        }
+
         ICacheElement<K, V> object = null;
         try
         {
@@ -654,17 +702,25 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
     {
         Map<K, ICacheElement<K, V>> elements = new HashMap<K, ICacheElement<K, V>>();
         Set<K> keyArray = null;
+        Set<K> matchingKeys = null;
         storageLock.readLock().lock();
         try
         {
-            keyArray = new HashSet<K>(keyHash.keySet());
+            matchingKeys = getKeyMatcher().getMatchingKeysFromIndex(pattern, keyIndex, keyHash::containsKey);
+            if (matchingKeys == null)
+            {
+                keyArray = new HashSet<K>(keyHash.keySet());
+            }
         }
         finally
         {
             storageLock.readLock().unlock();
         }
 
-        Set<K> matchingKeys = getKeyMatcher().getMatchingKeysFromArray(pattern, keyArray);
+        if (matchingKeys == null)
+        {
+            matchingKeys = getKeyMatcher().getMatchingKeysFromArray(pattern, keyArray);
+        }
 
         for (K key : matchingKeys)
         {
@@ -743,6 +799,46 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
         return keys;
     }
 
+    /**
+     * Return the keys of a group from the group index.
+     * <p>
+     *
+     * @see org.apache.commons.jcs.auxiliary.AuxiliaryCache#getGroupKeys(GroupId)
+     */
+    @Override
+    public Set<K> getGroupKeys(GroupId groupId) throws IOException
+    {
+        storageLock.readLock().lock();
+        try
+        {
+            return groupIndex.getKeys(groupId, keyHash::containsKey);
+        }
+        finally
+        {
+            storageLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Return the groups from the group index.
+     * <p>
+     *
+     * @see org.apache.commons.jcs.auxiliary.AuxiliaryCache#getGroupIds()
+     */
+    @Override
+    public Set<GroupId> getGroupIds() throws IOException
+    {
+        storageLock.readLock().lock();
+        try
+        {
+            return groupIndex.getGroupIds(keyHash::containsKey);
+        }
+        finally
+        {
+            storageLock.readLock().unlock();
+        }
+    }
+
     /**
      * Returns true if the removal was successful; or false if there is nothing to remove. Current
      * implementation always result in a disk orphan.
@@ -819,13 +915,21 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
         boolean removed = false;
 
         // remove all keys of the same name hierarchy.
-        List<K> itemsToRemove = new LinkedList<K>();
+        Collection<K> itemsToRemove;
 
-        for (K k : keyHash.keySet())
+        if (keyIndex.isEnabled())
+        {
+            itemsToRemove = keyIndex.getKeysWithPrefix(key, keyHash::containsKey);
+        }
+        else
         {
-            if (k instanceof String && k.toString().startsWith(key))
+            itemsToRemove = new LinkedList<K>();
+            for (K k : keyHash.keySet())
             {
-                itemsToRemove.add(k);
+                if (k instanceof String && k.toString().startsWith(key))
+                {
+                    itemsToRemove.add(k);
+                }
             }
         }
 
@@ -843,8 +947,8 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
     }
 
     /**
-     * Remove all elements from the group. This does not use the iterator to remove. It builds a
-     * list of group elements and then removes them one by one.
+     * Remove all elements from the group. The keys of the group come from the group index, they
+     * are then removed one by one.
      * <p>
      * This operates under a lock obtained in doRemove().
      * <p>
@@ -856,20 +960,8 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
     {
         boolean removed = false;
 
-        // remove all keys of the same name group.
-        List<K> itemsToRemove = new LinkedList<K>();
-
-        // remove all keys of the same name hierarchy.
-        for (K k : keyHash.keySet())
-        {
-            if (k instanceof GroupAttrName && ((GroupAttrName<?>) k).groupId.equals(key))
-            {
-                itemsToRemove.add(k);
-            }
-        }
-
-        // remove matches.
-        for (K fullKey : itemsToRemove)
+        // remove matches, the index only returns the keys of the group
+        for (K fullKey : groupIndex.getKeys(key, keyHash::containsKey))
         {
             // Don't add to recycle bin here
             // https://issues.apache.org/jira/browse/JCS-67
@@ -895,7 +987,13 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
         boolean removed;
         // remove single item.
         IndexedDiskElementDescriptor ded = keyHash.remove(key);
+        groupIndex.remove(key);
+        keyIndex.remove(key);
         removed = ded != null;
+        if (removed)
+        {
+            keyFilter.remove(key);
+        }
         addToRecycleBin(ded);
 
         if (log.isDebugEnabled())
@@ -960,6 +1058,12 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
                 log.debug("Could not delete file " + keyFileTemp);
             }
 
+            File filterFile = getKeyFilterFile();
+            if (filterFile.exists() && !filterFile.delete() && log.isDebugEnabled())
+            {
+                log.debug("Could not delete file " + filterFile);
+            }
+
             dataFile = new IndexedDisk(new File(rafDir, fileName + ".data"), getElementSerializer());
             keyFile = new IndexedDisk(new File(rafDir, fileName + ".key"), getElementSerializer());
 
@@ -992,6 +1096,9 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
     private void initializeKeyMap()
     {
         keyHash = null;
+        groupIndex.clear();
+        keyIndex.clear();
+        keyFilter.clear();
         if (maxKeySize >= 0)
         {
             if (this.diskLimitType == DiskLimitType.COUNT)
@@ -1278,6 +1385,9 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
                 log.error(logCacheName + "Error optimizing queued puts.", e);
             }
 
+            // the counters of the removed keys may have saturated, start afresh
+            keyFilter.rebuild(keyHash.keySet());
+
             // RESTORE NORMAL OPERATION
             removeCount = 0;
             resetBytesFree();
@@ -1384,6 +1494,26 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
         return defragList;
     }
 
+    /**
+     * Checks the key filter, without taking the storage lock.
+     * <p>
+     *
+     * @param key
+     * @return false if the key is surely not on disk
+     */
+    protected boolean mayContainKey(K key)
+    {
+        return keyFilter.mightContain(key);
+    }
+
+    /**
+     * @return the file the key filter is saved to, next to the key file
+     */
+    private File getKeyFilterFile()
+    {
+        return new File(rafDir, fileName + ".filter");
+    }
+
     /**
      * Returns the current cache size.
      * <p>
@@ -1730,6 +1860,9 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
         @Override
         protected void processRemovedLRU(K key, IndexedDiskElementDescriptor value)
         {
+            groupIndex.remove(key);
+            keyIndex.remove(key);
+            keyFilter.remove(key);
             if (value != null)
             {
                 subLengthFromCacheSize(value);
@@ -1777,6 +1910,9 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
         @Override
         protected void processRemovedLRU(K key, IndexedDiskElementDescriptor value)
         {
+            groupIndex.remove(key);
+            keyIndex.remove(key);
+            keyFilter.remove(key);
             addToRecycleBin(value);
             if (log.isDebugEnabled())
             {
@@ -20,16 +20,27 @@ package org.apache.commons.jcs.auxiliary.disk.jdbc;
  */
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.sql.DataSource;
 
@@ -77,6 +88,12 @@ import org.apache.commons.logging.LogFactory;
  * To speed up the deletion the SYSTEM_EXPIRE_TIME_SECONDS is used instead. It is recommended that
  * an index be created on this column is you will have over a million records.
  * <p>
+ * While the disk event queue is not empty the updates are buffered, then written in batches of
+ * BatchSize elements in one transaction. The batches use a native upsert when the database has one
+ * (MySQL/MariaDB insert ... on duplicate key update, HSQLDB 2 merge), else a batch of updates
+ * followed by a batch of inserts for the rows which did not exist. Buffered elements are visible to
+ * get and removed by remove.
+ * <p>
  * @author Aaron Smuts
  */
 public class JDBCDiskCache<K, V>
@@ -109,6 +126,21 @@ public class JDBCDiskCache<K, V>
     /** tracks optimization */
     private TableState tableState;
 
+    /** # of batches written */
+    private AtomicInteger batchCount = new AtomicInteger(0);
+
+    /** updates waiting for the next batch by key */
+    private final ConcurrentMap<K, PendingWrite<K, V>> pendingWrites = new ConcurrentHashMap<K, PendingWrite<K, V>>();
+
+    /** serializes the batches and the removals so a batch can't write back a removed element */
+    private final Lock writeLock = new ReentrantLock();
+
+    /** the upsert statement of the database, NO_UPSERT if it has none, null until resolved */
+    private volatile String upsertSql;
+
+    /** marker of the databases without a supported upsert statement */
+    private static final String NO_UPSERT = "";
+
     /**
      * Constructs a JDBC Disk Cache for the provided cache attributes. The table state object is
      * used to mark deletions.
@@ -139,9 +171,9 @@ public class JDBCDiskCache<K, V>
     }
 
     /**
-     * Inserts or updates. By default it will try to insert. If the item exists we will get an
-     * error. It will then update. This behavior is configurable. The cache can be configured to
-     * check before inserting.
+     * Inserts or updates. The element is added to the pending batch, which is written when it is
+     * full or when no other event is waiting in the disk event queue, see
+     * {@link #processEventQueueDrained()}.
      * <p>
      * @param ce
      */
@@ -155,40 +187,285 @@ public class JDBCDiskCache<K, V>
             log.debug( "updating, ce = " + ce );
         }
 
-        try (Connection con = getDataSource().getConnection())
+        byte[] element;
+
+        try
         {
-            if ( log.isDebugEnabled() )
+            element = getElementSerializer().serialize( ce );
+        }
+        catch ( IOException e )
+        {
+            log.error( "Could not serialize element", e );
+            return;
+        }
+
+        writeLock.lock();
+        try
+        {
+            pendingWrites.put( ce.getKey(), new PendingWrite<K, V>( ce, element ) );
+            if ( pendingWrites.size() >= getJdbcDiskCacheAttributes().getBatchSize() || getEventQueueSize() == 0 )
             {
-                log.debug( "Putting [" + ce.getKey() + "] on disk." );
+                flushPendingWrites();
             }
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
 
-            byte[] element;
-
-            try
+        if ( log.isInfoEnabled() )
+        {
+            if ( updateCount.get() % LOG_INTERVAL == 0 )
             {
-                element = getElementSerializer().serialize( ce );
+                // TODO make a log stats method
+                log.info( "Update Count [" + updateCount + "]" );
             }
-            catch ( IOException e )
+        }
+    }
+
+    /**
+     * The updates of the batch may be followed by other events, they are written once the queue is
+     * empty whatever the type of the last event.
+     */
+    @Override
+    protected void processEventQueueDrained()
+    {
+        flushPendingWrites();
+    }
+
+    /**
+     * Writes the pending updates in one transaction.
+     */
+    protected void flushPendingWrites()
+    {
+        writeLock.lock();
+        try
+        {
+            if ( pendingWrites.isEmpty() )
             {
-                log.error( "Could not serialize element", e );
                 return;
             }
 
-            insertOrUpdate( ce, con, element );
+            List<PendingWrite<K, V>> batch = new ArrayList<PendingWrite<K, V>>( pendingWrites.values() );
+
+            if ( log.isDebugEnabled() )
+            {
+                log.debug( "Writing a batch of [" + batch.size() + "] elements on disk." );
+            }
+
+            try (Connection con = getDataSource().getConnection())
+            {
+                try
+                {
+                    writeBatch( con, batch );
+                }
+                catch ( SQLException e )
+                {
+                    // a concurrent insert of another instance for example, retry row by row
+                    log.warn( "Batch failed, writing the [" + batch.size() + "] elements one by one.", e );
+                    for ( PendingWrite<K, V> write : batch )
+                    {
+                        insertOrUpdate( write.ce, con, write.element );
+                    }
+                }
+            }
+            catch ( SQLException e )
+            {
+                log.error( "Problem getting connection.", e );
+            }
+            finally
+            {
+                // only what was written, an element updated meanwhile stays for the next batch
+                for ( PendingWrite<K, V> write : batch )
+                {
+                    pendingWrites.remove( write.ce.getKey(), write );
+                }
+            }
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the elements in one transaction, with the upsert of the database if it has one.
+     * <p>
+     * @param con
+     * @param batch
+     * @throws SQLException if the batch failed, nothing is written then
+     */
+    private void writeBatch( Connection con, List<PendingWrite<K, V>> batch )
+        throws SQLException
+    {
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit( false );
+        try
+        {
+            String upsert = getUpsertSql( con );
+            if ( upsert != NO_UPSERT )
+            {
+                try (PreparedStatement psUpsert = con.prepareStatement( upsert ))
+                {
+                    for ( PendingWrite<K, V> write : batch )
+                    {
+                        bindInsert( psUpsert, write.ce, write.element );
+                        psUpsert.addBatch();
+                    }
+                    psUpsert.executeBatch();
+                }
+            }
+            else
+            {
+                List<PendingWrite<K, V>> inserts = updateBatch( con, batch );
+                if ( !inserts.isEmpty() )
+                {
+                    insertBatch( con, inserts );
+                }
+            }
+            con.commit();
+            batchCount.incrementAndGet();
         }
         catch ( SQLException e )
         {
-            log.error( "Problem getting connection.", e );
+            con.rollback();
+            throw e;
         }
+        finally
+        {
+            con.setAutoCommit( autoCommit );
+        }
+    }
 
-        if ( log.isInfoEnabled() )
+    /**
+     * Updates the existing rows.
+     * <p>
+     * @param con
+     * @param batch
+     * @return the elements without row
+     * @throws SQLException
+     */
+    private List<PendingWrite<K, V>> updateBatch( Connection con, List<PendingWrite<K, V>> batch )
+        throws SQLException
+    {
+        List<PendingWrite<K, V>> inserts = new ArrayList<PendingWrite<K, V>>();
+        try (PreparedStatement psUpdate = con.prepareStatement( getUpdateSql() ))
         {
-            if ( updateCount.get() % LOG_INTERVAL == 0 )
+            for ( PendingWrite<K, V> write : batch )
             {
-                // TODO make a log stats method
-                log.info( "Update Count [" + updateCount + "]" );
+                bindUpdate( psUpdate, write.ce, write.element );
+                psUpdate.addBatch();
+            }
+            int[] counts = psUpdate.executeBatch();
+            for ( int i = 0; i < batch.size(); i++ )
+            {
+                if ( counts[i] == Statement.SUCCESS_NO_INFO )
+                {
+                    // the driver can't tell, check the row
+                    if ( !doesElementExist( batch.get( i ).ce, con ) )
+                    {
+                        inserts.add( batch.get( i ) );
+                    }
+                }
+                else if ( counts[i] == 0 )
+                {
+                    inserts.add( batch.get( i ) );
+                }
             }
         }
+        return inserts;
+    }
+
+    /**
+     * Inserts the new rows.
+     * <p>
+     * @param con
+     * @param batch
+     * @throws SQLException
+     */
+    private void insertBatch( Connection con, List<PendingWrite<K, V>> batch )
+        throws SQLException
+    {
+        try (PreparedStatement psInsert = con.prepareStatement( getInsertSql() ))
+        {
+            for ( PendingWrite<K, V> write : batch )
+            {
+                bindInsert( psInsert, write.ce, write.element );
+                psInsert.addBatch();
+            }
+            psInsert.executeBatch();
+        }
+    }
+
+    /**
+     * Resolves once the upsert statement of the database.
+     * <p>
+     * @param con
+     * @return the upsert statement or NO_UPSERT
+     * @throws SQLException
+     */
+    private String getUpsertSql( Connection con )
+        throws SQLException
+    {
+        String sql = upsertSql;
+        if ( sql == null )
+        {
+            sql = getUpsertSql( con.getMetaData() );
+            if ( sql == null )
+            {
+                sql = NO_UPSERT;
+            }
+            upsertSql = sql;
+
+            if ( log.isInfoEnabled() )
+            {
+                log.info( "Upsert statement for [" + getCacheName() + "]: " + ( sql == NO_UPSERT ? "none" : sql ) );
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * Gets the upsert statement of the database. Its parameters are bound like the insert ones
+     * (CACHE_KEY, REGION, ELEMENT, MAX_LIFE_SECONDS, IS_ETERNAL, CREATE_TIME, UPDATE_TIME_SECONDS,
+     * SYSTEM_EXPIRE_TIME_SECONDS). Sub classes can override it for other databases.
+     * <p>
+     * @param metaData the database metadata
+     * @return the statement or null if the database has none
+     * @throws SQLException
+     */
+    protected String getUpsertSql( DatabaseMetaData metaData )
+        throws SQLException
+    {
+        String product = metaData.getDatabaseProductName();
+        if ( product == null )
+        {
+            return null;
+        }
+
+        String tableName = getJdbcDiskCacheAttributes().getTableName();
+        if ( product.startsWith( "MySQL" ) || product.startsWith( "MariaDB" ) )
+        {
+            return getInsertSql()
+                + " on duplicate key update ELEMENT = values(ELEMENT), CREATE_TIME = values(CREATE_TIME),"
+                + " UPDATE_TIME_SECONDS = values(UPDATE_TIME_SECONDS),"
+                + " SYSTEM_EXPIRE_TIME_SECONDS = values(SYSTEM_EXPIRE_TIME_SECONDS)";
+        }
+        if ( product.startsWith( "HSQL" ) && metaData.getDatabaseMajorVersion() >= 2 )
+        {
+            // merge appeared with HSQLDB 2
+            return "merge into " + tableName + " T using (values(cast(? as varchar(4000)), cast(? as varchar(4000)),"
+                + " cast(? as varbinary(16M)), cast(? as bigint), cast(? as char(1)), cast(? as timestamp),"
+                + " cast(? as bigint), cast(? as bigint)))"
+                + " as V (CACHE_KEY, REGION, ELEMENT, MAX_LIFE_SECONDS, IS_ETERNAL, CREATE_TIME, UPDATE_TIME_SECONDS, SYSTEM_EXPIRE_TIME_SECONDS)"
+                + " on T.CACHE_KEY = V.CACHE_KEY and T.REGION = V.REGION"
+                + " when matched then update set T.ELEMENT = V.ELEMENT, T.CREATE_TIME = V.CREATE_TIME,"
+                + " T.UPDATE_TIME_SECONDS = V.UPDATE_TIME_SECONDS, T.SYSTEM_EXPIRE_TIME_SECONDS = V.SYSTEM_EXPIRE_TIME_SECONDS"
+                + " when not matched then insert (CACHE_KEY, REGION, ELEMENT, MAX_LIFE_SECONDS, IS_ETERNAL, CREATE_TIME,"
+                + " UPDATE_TIME_SECONDS, SYSTEM_EXPIRE_TIME_SECONDS) values (V.CACHE_KEY, V.REGION, V.ELEMENT,"
+                + " V.MAX_LIFE_SECONDS, V.IS_ETERNAL, V.CREATE_TIME, V.UPDATE_TIME_SECONDS, V.SYSTEM_EXPIRE_TIME_SECONDS)";
+        }
+        return null;
     }
 
     /**
@@ -234,34 +511,10 @@ public class JDBCDiskCache<K, V>
     private boolean insertRow( ICacheElement<K, V> ce, Connection con, byte[] element )
     {
         boolean exists = false;
-        String sqlI = "insert into "
-                + getJdbcDiskCacheAttributes().getTableName()
-                + " (CACHE_KEY, REGION, ELEMENT, MAX_LIFE_SECONDS, IS_ETERNAL, CREATE_TIME, UPDATE_TIME_SECONDS, SYSTEM_EXPIRE_TIME_SECONDS) "
-                + " values (?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement psInsert = con.prepareStatement( sqlI ))
+        try (PreparedStatement psInsert = con.prepareStatement( getInsertSql() ))
         {
-            psInsert.setString( 1, (String) ce.getKey() );
-            psInsert.setString( 2, this.getCacheName() );
-            psInsert.setBytes( 3, element );
-            psInsert.setLong( 4, ce.getElementAttributes().getMaxLife() );
-            if ( ce.getElementAttributes().getIsEternal() )
-            {
-                psInsert.setString( 5, "T" );
-            }
-            else
-            {
-                psInsert.setString( 5, "F" );
-            }
-            Timestamp createTime = new Timestamp( ce.getElementAttributes().getCreateTime() );
-            psInsert.setTimestamp( 6, createTime );
-
-            long now = System.currentTimeMillis() / 1000;
-            psInsert.setLong( 7, now );
-
-            long expireTime = now + ce.getElementAttributes().getMaxLife();
-            psInsert.setLong( 8, expireTime );
-
+            bindInsert( psInsert, ce, element );
             psInsert.execute();
         }
         catch ( SQLException e )
@@ -294,25 +547,11 @@ public class JDBCDiskCache<K, V>
      */
     private void updateRow( ICacheElement<K, V> ce, Connection con, byte[] element )
     {
-        String sqlU = "update " + getJdbcDiskCacheAttributes().getTableName()
-                + " set ELEMENT  = ?, CREATE_TIME = ?, UPDATE_TIME_SECONDS = ?, " + " SYSTEM_EXPIRE_TIME_SECONDS = ? "
-                + " where CACHE_KEY = ? and REGION = ?";
+        String sqlU = getUpdateSql();
 
         try (PreparedStatement psUpdate = con.prepareStatement( sqlU ))
         {
-            psUpdate.setBytes( 1, element );
-
-            Timestamp createTime = new Timestamp( ce.getElementAttributes().getCreateTime() );
-            psUpdate.setTimestamp( 2, createTime );
-
-            long now = System.currentTimeMillis() / 1000;
-            psUpdate.setLong( 3, now );
-
-            long expireTime = now + ce.getElementAttributes().getMaxLife();
-            psUpdate.setLong( 4, expireTime );
-
-            psUpdate.setString( 5, (String) ce.getKey() );
-            psUpdate.setString( 6, this.getCacheName() );
+            bindUpdate( psUpdate, ce, element );
             psUpdate.execute();
 
             if ( log.isDebugEnabled() )
@@ -326,6 +565,86 @@ public class JDBCDiskCache<K, V>
         }
     }
 
+    /**
+     * @return the insert statement
+     */
+    private String getInsertSql()
+    {
+        return "insert into "
+                + getJdbcDiskCacheAttributes().getTableName()
+                + " (CACHE_KEY, REGION, ELEMENT, MAX_LIFE_SECONDS, IS_ETERNAL, CREATE_TIME, UPDATE_TIME_SECONDS, SYSTEM_EXPIRE_TIME_SECONDS) "
+                + " values (?, ?, ?, ?, ?, ?, ?, ?)";
+    }
+
+    /**
+     * @return the update statement
+     */
+    private String getUpdateSql()
+    {
+        return "update " + getJdbcDiskCacheAttributes().getTableName()
+                + " set ELEMENT  = ?, CREATE_TIME = ?, UPDATE_TIME_SECONDS = ?, " + " SYSTEM_EXPIRE_TIME_SECONDS = ? "
+                + " where CACHE_KEY = ? and REGION = ?";
+    }
+
+    /**
+     * Binds the parameters of the insert and upsert statements.
+     * <p>
+     * @param psInsert
+     * @param ce
+     * @param element
+     * @throws SQLException
+     */
+    private void bindInsert( PreparedStatement psInsert, ICacheElement<K, V> ce, byte[] element )
+        throws SQLException
+    {
+        psInsert.setString( 1, ce.getKey().toString() );
+        psInsert.setString( 2, this.getCacheName() );
+        psInsert.setBytes( 3, element );
+        psInsert.setLong( 4, ce.getElementAttributes().getMaxLife() );
+        if ( ce.getElementAttributes().getIsEternal() )
+        {
+            psInsert.setString( 5, "T" );
+        }
+        else
+        {
+            psInsert.setString( 5, "F" );
+        }
+        Timestamp createTime = new Timestamp( ce.getElementAttributes().getCreateTime() );
+        psInsert.setTimestamp( 6, createTime );
+
+        long now = System.currentTimeMillis() / 1000;
+        psInsert.setLong( 7, now );
+
+        long expireTime = now + ce.getElementAttributes().getMaxLife();
+        psInsert.setLong( 8, expireTime );
+    }
+
+    /**
+     * Binds the parameters of the update statement.
+     * <p>
+     * @param psUpdate
+     * @param ce
+     * @param element
+     * @throws SQLException
+     */
+    private void bindUpdate( PreparedStatement psUpdate, ICacheElement<K, V> ce, byte[] element )
+        throws SQLException
+    {
+        psUpdate.setBytes( 1, element );
+
+        Timestamp createTime = new Timestamp( ce.getElementAttributes().getCreateTime() );
+        psUpdate.setTimestamp( 2, createTime );
+
+        long now = System.currentTimeMillis() / 1000;
+        psUpdate.setLong( 3, now );
+
+        long expireTime = now + ce.getElementAttributes().getMaxLife();
+        psUpdate.setLong( 4, expireTime );
+
+        psUpdate.setString( 5, ce.getKey().toString() );
+        psUpdate.setString( 6, this.getCacheName() );
+    }
+
     /**
      * Does an element exist for this key?
      * <p>
@@ -343,7 +662,7 @@ public class JDBCDiskCache<K, V>
         try (PreparedStatement psSelect = con.prepareStatement( sqlS ))
         {
             psSelect.setString( 1, this.getCacheName() );
-            psSelect.setString( 2, (String) ce.getKey() );
+            psSelect.setString( 2, ce.getKey().toString() );
 
             try (ResultSet rs = psSelect.executeQuery())
             {
@@ -385,6 +704,12 @@ public class JDBCDiskCache<K, V>
             return null;
         }
 
+        PendingWrite<K, V> pending = pendingWrites.get( key );
+        if ( pending != null )
+        {
+            return pending.ce;
+        }
+
         ICacheElement<K, V> obj = null;
 
         byte[] data = null;
@@ -443,6 +768,107 @@ public class JDBCDiskCache<K, V>
         return obj;
     }
 
+    /**
+     * Queries the database for the values with IN queries of at most chunkSize keys.
+     * <p>
+     * @param keys
+     * @return a map of K key to ICacheElement&lt;K, V&gt; element for the keys found
+     * @see org.apache.commons.jcs.auxiliary.disk.AbstractDiskCache#processGetMultipleFromDisk(Set)
+     */
+    @Override
+    protected Map<K, ICacheElement<K, V>> processGetMultipleFromDisk( Set<K> keys )
+    {
+        getCount.addAndGet( keys.size() );
+
+        Map<K, ICacheElement<K, V>> results = new HashMap<K, ICacheElement<K, V>>();
+
+        if ( !isAlive() )
+        {
+            return results;
+        }
+
+        // the elements not written yet, the others by their CACHE_KEY
+        Map<String, K> diskKeys = new HashMap<String, K>();
+        for ( K key : keys )
+        {
+            PendingWrite<K, V> pending = pendingWrites.get( key );
+            if ( pending != null )
+            {
+                results.put( key, pending.ce );
+            }
+            else
+            {
+                diskKeys.put( key.toString(), key );
+            }
+        }
+
+        if ( diskKeys.isEmpty() )
+        {
+            return results;
+        }
+
+        int chunkSize = Math.max( 1, getJdbcDiskCacheAttributes().getChunkSize() );
+        List<String> cacheKeys = new ArrayList<String>( diskKeys.keySet() );
+
+        try (Connection con = getDataSource().getConnection())
+        {
+            for ( int from = 0; from < cacheKeys.size(); from += chunkSize )
+            {
+                List<String> chunk = cacheKeys.subList( from, Math.min( from + chunkSize, cacheKeys.size() ) );
+
+                StringBuilder selectString = new StringBuilder( "select CACHE_KEY, ELEMENT from " )
+                    .append( getJdbcDiskCacheAttributes().getTableName() )
+                    .append( " where REGION = ? and CACHE_KEY in (" );
+                for ( int i = 0; i < chunk.size(); i++ )
+                {
+                    selectString.append( i == 0 ? "?" : ", ?" );
+                }
+                selectString.append( ")" );
+
+                try (PreparedStatement psSelect = con.prepareStatement( selectString.toString() ))
+                {
+                    psSelect.setString( 1, this.getCacheName() );
+                    for ( int i = 0; i < chunk.size(); i++ )
+                    {
+                        psSelect.setString( i + 2, chunk.get( i ) );
+                    }
+
+                    try (ResultSet rs = psSelect.executeQuery())
+                    {
+                        while ( rs.next() )
+                        {
+                            K key = diskKeys.get( rs.getString( 1 ) );
+                            byte[] data = rs.getBytes( 2 );
+                            if ( key != null && data != null )
+                            {
+                                try
+                                {
+                                    // USE THE SERIALIZER
+                                    ICacheElement<K, V> value = getElementSerializer().deSerialize( data, null );
+                                    results.put( key, value );
+                                }
+                                catch ( IOException ioe )
+                                {
+                                    log.error( "Problem getting item for key [" + key + "]", ioe );
+                                }
+                                catch ( Exception e )
+                                {
+                                    log.error( "Problem getting item for key [" + key + "]", e );
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        catch ( SQLException sqle )
+        {
+            log.error( "Caught a SQL exception trying to get [" + keys.size() + "] items", sqle );
+        }
+
+        return results;
+    }
+
     /**
      * This will run a like query. It will try to construct a usable query but different
      * implementations will be needed to adjust the syntax.
@@ -465,6 +891,8 @@ public class JDBCDiskCache<K, V>
             return null;
         }
 
+        flushPendingWrites();
+
         Map<K, ICacheElement<K, V>> results = new HashMap<K, ICacheElement<K, V>>();
 
         try
@@ -550,6 +978,50 @@ public class JDBCDiskCache<K, V>
      */
     @Override
     protected boolean processRemove( K key )
+    {
+        writeLock.lock();
+        try
+        {
+            removePendingWrites( key );
+            return removeRows( key );
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the pending updates of the key, or of the keys starting with it for a partial key.
+     * <p>
+     * @param key
+     */
+    private void removePendingWrites( K key )
+    {
+        if ( key instanceof String && key.toString().endsWith( CacheConstants.NAME_COMPONENT_DELIMITER ) )
+        {
+            for ( Iterator<K> it = pendingWrites.keySet().iterator(); it.hasNext(); )
+            {
+                K k = it.next();
+                if ( k instanceof String && k.toString().startsWith( key.toString() ) )
+                {
+                    it.remove();
+                }
+            }
+        }
+        else
+        {
+            pendingWrites.remove( key );
+        }
+    }
+
+    /**
+     * Deletes the row of the key, or the rows of the keys starting with it for a partial key.
+     * <p>
+     * @param key
+     * @return false, the removal is not checked
+     */
+    private boolean removeRows( K key )
     {
         // remove single item.
         String sql = "delete from " + getJdbcDiskCacheAttributes().getTableName()
@@ -606,6 +1078,7 @@ public class JDBCDiskCache<K, V>
         // it should never get here from the abstract disk cache.
         if ( this.jdbcDiskCacheAttributes.isAllowRemoveAll() )
         {
+            writeLock.lock();
             try (Connection con = getDataSource().getConnection())
             {
                 String sql = "delete from " + getJdbcDiskCacheAttributes().getTableName() + " where REGION = ?";
@@ -627,6 +1100,11 @@ public class JDBCDiskCache<K, V>
                 log.error( "Problem removing all.", e );
                 reset();
             }
+            finally
+            {
+                pendingWrites.clear();
+                writeLock.unlock();
+            }
         }
         else
         {
@@ -640,42 +1118,131 @@ public class JDBCDiskCache<K, V>
     /**
      * Removed the expired. (now - create time) &gt; max life seconds * 1000
      * <p>
+     * The expired rows are deleted by chunks of chunkSize rows, each in its own transaction, so
+     * the table is never locked for long. They are walked in the order of the
+     * (REGION, IS_ETERNAL, SYSTEM_EXPIRE_TIME_SECONDS) index, the position of the last row
+     * reached is kept between the chunks. The shrinkerMaxDeletesPerSecond attribute limits the
+     * rate of the deletions.
+     * <p>
      * @return the number deleted
      */
     protected int deleteExpired()
     {
         int deleted = 0;
 
+        flushPendingWrites();
+
+        int chunkSize = Math.max( 1, getJdbcDiskCacheAttributes().getChunkSize() );
+        int maxDeletesPerSecond = getJdbcDiskCacheAttributes().getShrinkerMaxDeletesPerSecond();
+
+        String selectSql = "select CACHE_KEY, SYSTEM_EXPIRE_TIME_SECONDS from " + getJdbcDiskCacheAttributes().getTableName()
+            + " where REGION = ? and IS_ETERNAL = ? and ? > SYSTEM_EXPIRE_TIME_SECONDS"
+            + " and (SYSTEM_EXPIRE_TIME_SECONDS > ? or (SYSTEM_EXPIRE_TIME_SECONDS = ? and CACHE_KEY > ?))"
+            + " order by SYSTEM_EXPIRE_TIME_SECONDS, CACHE_KEY";
+
+        // the expiration is checked again, the element may have been updated since the select
+        String deleteSql = "delete from " + getJdbcDiskCacheAttributes().getTableName()
+            + " where REGION = ? and CACHE_KEY = ? and IS_ETERNAL = ? and ? > SYSTEM_EXPIRE_TIME_SECONDS";
+
         try (Connection con = getDataSource().getConnection())
         {
-            getTableState().setState( TableState.DELETE_RUNNING );
-
             long now = System.currentTimeMillis() / 1000;
 
-            // This is to slow when we push over a million records
-            // String sql = "delete from " +
-            // getJdbcDiskCacheAttributes().getTableName() + " where REGION = '"
-            // + this.getCacheName() + "' and IS_ETERNAL = 'F' and (" + now
-            // + " - UPDATE_TIME_SECONDS) > MAX_LIFE_SECONDS";
-
-            String sql = "delete from " + getJdbcDiskCacheAttributes().getTableName()
-                + " where IS_ETERNAL = ? and REGION = ? and ? > SYSTEM_EXPIRE_TIME_SECONDS";
+            // position of the last row reached
+            long lastExpireTime = Long.MIN_VALUE;
+            String lastKey = "";
 
-            try (PreparedStatement psDelete = con.prepareStatement( sql ))
+            boolean autoCommit = con.getAutoCommit();
+            try
             {
-                psDelete.setString( 1, "F" );
-                psDelete.setString( 2, this.getCacheName() );
-                psDelete.setLong( 3, now );
+                while ( true )
+                {
+                    long start = System.currentTimeMillis();
 
-                setAlive(true);
+                    List<String> keys = new ArrayList<String>( chunkSize );
+                    try (PreparedStatement psSelect = con.prepareStatement( selectSql ))
+                    {
+                        psSelect.setMaxRows( chunkSize );
+                        psSelect.setString( 1, this.getCacheName() );
+                        psSelect.setString( 2, "F" );
+                        psSelect.setLong( 3, now );
+                        psSelect.setLong( 4, lastExpireTime );
+                        psSelect.setLong( 5, lastExpireTime );
+                        psSelect.setString( 6, lastKey );
+
+                        try (ResultSet rs = psSelect.executeQuery())
+                        {
+                            while ( rs.next() && keys.size() < chunkSize )
+                            {
+                                lastKey = rs.getString( 1 );
+                                lastExpireTime = rs.getLong( 2 );
+                                keys.add( lastKey );
+                            }
+                        }
+                    }
+
+                    if ( keys.isEmpty() )
+                    {
+                        break;
+                    }
+
+                    getTableState().setState( TableState.DELETE_RUNNING );
+                    con.setAutoCommit( false );
+                    try (PreparedStatement psDelete = con.prepareStatement( deleteSql ))
+                    {
+                        for ( String key : keys )
+                        {
+                            psDelete.setString( 1, this.getCacheName() );
+                            psDelete.setString( 2, key );
+                            psDelete.setString( 3, "F" );
+                            psDelete.setLong( 4, now );
+                            psDelete.addBatch();
+                        }
+                        for ( int count : psDelete.executeBatch() )
+                        {
+                            // SUCCESS_NO_INFO is negative
+                            deleted += Math.max( count, 0 );
+                        }
+                        con.commit();
+                    }
+                    catch ( SQLException e )
+                    {
+                        con.rollback();
+                        throw e;
+                    }
+                    finally
+                    {
+                        con.setAutoCommit( autoCommit );
+                        getTableState().setState( TableState.FREE );
+                    }
+
+                    setAlive(true);
+
+                    if ( keys.size() < chunkSize )
+                    {
+                        break;
+                    }
 
-                deleted = psDelete.executeUpdate();
+                    if ( maxDeletesPerSecond > 0 )
+                    {
+                        long pause = keys.size() * 1000L / maxDeletesPerSecond - ( System.currentTimeMillis() - start );
+                        if ( pause > 0 )
+                        {
+                            Thread.sleep( pause );
+                        }
+                    }
+                }
             }
             catch ( SQLException e )
             {
-                log.error( "Problem creating statement.", e );
+                log.error( "Problem deleting the expired elements.", e );
                 setAlive(false);
             }
+            catch ( InterruptedException e )
+            {
+                log.warn( "Interrupted while deleting the expired elements, [" + deleted + "] deleted." );
+                Thread.currentThread().interrupt();
+            }
 
             logApplicationEvent( getAuxiliaryCacheAttributes().getName(), "deleteExpired",
                                  "Deleted expired elements.  URL: " + getDiskLocation() );
@@ -687,10 +1254,6 @@ public class JDBCDiskCache<K, V>
             log.error( "Problem removing expired elements from the table.", e );
             reset();
         }
-        finally
-        {
-            getTableState().setState( TableState.FREE );
-        }
 
         return deleted;
     }
@@ -710,6 +1273,7 @@ public class JDBCDiskCache<K, V>
         ICacheEvent<K> cacheEvent = createICacheEvent( getCacheName(), (K)"none", ICacheEventLogger.DISPOSE_EVENT );
         try
         {
+            flushPendingWrites();
             try
             {
             	dsFactory.close();
@@ -735,6 +1299,8 @@ public class JDBCDiskCache<K, V>
     {
         int size = 0;
 
+        flushPendingWrites();
+
         // region, key
         String selectString = "select count(*) from " + getJdbcDiskCacheAttributes().getTableName()
             + " where REGION = ?";
@@ -763,15 +1329,100 @@ public class JDBCDiskCache<K, V>
     }
 
     /**
-     * Return the keys in this cache.
+     * Return the keys in this cache. The set reads them by pages of chunkSize rows, ordered by
+     * CACHE_KEY, while it is iterated, so they are never all in memory at once. The keys are taken
+     * from the stored elements, the CACHE_KEY column only has their toString.
      * <p>
      * @see org.apache.commons.jcs.auxiliary.disk.AbstractDiskCache#getKeySet()
      */
     @Override
     public Set<K> getKeySet() throws IOException
     {
-        throw new UnsupportedOperationException( "Groups not implemented." );
-        // return null;
+        flushPendingWrites();
+
+        // read now, the caller gets the IOException if the database can't be reached
+        final KeyPage<K> first = readKeyPage( null );
+
+        return new AbstractSet<K>()
+        {
+            @Override
+            public Iterator<K> iterator()
+            {
+                return new KeyIterator( first );
+            }
+
+            @Override
+            public int size()
+            {
+                return getSize();
+            }
+        };
+    }
+
+    /**
+     * Reads the keys of the rows following the given CACHE_KEY.
+     * <p>
+     * @param after the CACHE_KEY of the last row of the previous page, null for the first page
+     * @return the page
+     * @throws IOException if the select failed
+     */
+    private KeyPage<K> readKeyPage( String after )
+        throws IOException
+    {
+        int chunkSize = getJdbcDiskCacheAttributes().getChunkSize();
+        String selectString = "select CACHE_KEY, ELEMENT from " + getJdbcDiskCacheAttributes().getTableName()
+            + " where REGION = ?" + ( after == null ? "" : " and CACHE_KEY > ?" ) + " order by CACHE_KEY";
+
+        List<K> keys = new ArrayList<K>( chunkSize );
+        String lastKey = after;
+        int rows = 0;
+
+        try (Connection con = getDataSource().getConnection())
+        {
+            try (PreparedStatement psSelect = con.prepareStatement( selectString ))
+            {
+                psSelect.setMaxRows( chunkSize );
+                psSelect.setString( 1, this.getCacheName() );
+                if ( after != null )
+                {
+                    psSelect.setString( 2, after );
+                }
+
+                try (ResultSet rs = psSelect.executeQuery())
+                {
+                    while ( rs.next() && rows < chunkSize )
+                    {
+                        rows++;
+                        lastKey = rs.getString( 1 );
+                        byte[] data = rs.getBytes( 2 );
+                        if ( data == null )
+                        {
+                            continue;
+                        }
+                        try
+                        {
+                            ICacheElement<K, V> element = getElementSerializer().deSerialize( data, null );
+                            keys.add( element.getKey() );
+                        }
+                        catch ( ClassNotFoundException e )
+                        {
+                            log.error( "Problem reading the key [" + lastKey + "]", e );
+                        }
+                        catch ( IOException e )
+                        {
+                            log.error( "Problem reading the key [" + lastKey + "]", e );
+                        }
+                    }
+                }
+            }
+        }
+        catch ( SQLException e )
+        {
+            log.error( "Problem getting the keys.", e );
+            throw new IOException( "Problem getting the keys of [" + getCacheName() + "]", e );
+        }
+
+        return new KeyPage<K>( keys, lastKey, rows < chunkSize );
     }
 
     /**
@@ -833,6 +1484,8 @@ public class JDBCDiskCache<K, V>
         elems.add(new StatElement<AtomicInteger>( "Update Count", updateCount ) );
         elems.add(new StatElement<AtomicInteger>( "Get Count", getCount ) );
         elems.add(new StatElement<AtomicInteger>( "Get Matching Count", getMatchingCount ) );
+        elems.add(new StatElement<AtomicInteger>( "Batch Count", batchCount ) );
+        elems.add(new StatElement<Integer>( "Pending Writes", Integer.valueOf( pendingWrites.size() ) ) );
         elems.add(new StatElement<String>( "DB URL", getJdbcDiskCacheAttributes().getUrl()) );
 
         stats.setStatElements( elems );
@@ -902,4 +1555,102 @@ public class JDBCDiskCache<K, V>
     {
         return this.getStats();
     }
+
+    /**
+     * Iterates over the key pages, reading the next one when the current one is done.
+     */
+    private final class KeyIterator
+        implements Iterator<K>
+    {
+        /** the current page */
+        private KeyPage<K> page;
+
+        /** the position in the current page */
+        private int index = 0;
+
+        /**
+         * @param first
+         */
+        private KeyIterator( KeyPage<K> first )
+        {
+            this.page = first;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while ( index >= page.keys.size() && !page.last )
+            {
+                try
+                {
+                    page = readKeyPage( page.lastKey );
+                }
+                catch ( IOException e )
+                {
+                    throw new UncheckedIOException( e );
+                }
+                index = 0;
+            }
+            return index < page.keys.size();
+        }
+
+        @Override
+        public K next()
+        {
+            if ( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+            return page.keys.get( index++ );
+        }
+    }
+
+    /**
+     * The keys of up to chunkSize rows.
+     */
+    private static final class KeyPage<K>
+    {
+        /** the keys read */
+        private final List<K> keys;
+
+        /** the CACHE_KEY of the last row, the next page starts after it */
+        private final String lastKey;
+
+        /** whether there are no more rows */
+        private final boolean last;
+
+        /**
+         * @param keys
+         * @param lastKey
+         * @param last
+         */
+        private KeyPage( List<K> keys, String lastKey, boolean last )
+        {
+            this.keys = keys;
+            this.lastKey = lastKey;
+            this.last = last;
+        }
+    }
+
+    /**
+     * An update waiting for the next batch.
+     */
+    private static final class PendingWrite<K, V>
+    {
+        /** the element */
+        private final ICacheElement<K, V> ce;
+
+        /** the serialized element */
+        private final byte[] element;
+
+        /**
+         * @param ce
+         * @param element
+         */
+        private PendingWrite( ICacheElement<K, V> ce, byte[] element )
+        {
+            this.ce = ce;
+            this.element = element;
+        }
+    }
 }
@@ -62,6 +62,15 @@ public class JDBCDiskCacheAttributes
     /** If false we will insert and if it fails we will update. */
     private boolean testBeforeInsert = true;
 
+    /** This is the default maximum number of elements written in one batch. */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /** Max number of queued updates written in one batch, 1 to write them one by one. */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /** Should the shared pool cache the prepared statements of its connections. */
+    private boolean poolPreparedStatements = true;
+
     /** This is the default limit on the maximum number of active connections. */
     public static final int DEFAULT_MAX_TOTAL = 10;
 
@@ -77,6 +86,18 @@ public class JDBCDiskCacheAttributes
     /** Should we remove expired in the background. */
     private boolean useDiskShrinker = true;
 
+    /** This is the default number of rows handled per statement when working on many rows. */
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    /**
+     * Max number of rows deleted per statement by the shrinker and of keys per getMultiple query,
+     * also the fetch size used to read the keys.
+     */
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /** Max number of expired rows the shrinker deletes per second, 0 for no limit. */
+    private int shrinkerMaxDeletesPerSecond = 0;
+
     /** The default Pool Name to which the connection pool will be keyed. */
     public static final String DEFAULT_POOL_NAME = "jcs";
 
@@ -290,6 +311,70 @@ public class JDBCDiskCacheAttributes
         return useDiskShrinker;
     }
 
+    /**
+     * @param chunkSize The max number of rows handled by one statement.
+     */
+    public void setChunkSize( int chunkSize )
+    {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return Returns the chunkSize.
+     */
+    public int getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    /**
+     * @param shrinkerMaxDeletesPerSecond The max number of expired rows deleted per second, 0 for no limit.
+     */
+    public void setShrinkerMaxDeletesPerSecond( int shrinkerMaxDeletesPerSecond )
+    {
+        this.shrinkerMaxDeletesPerSecond = shrinkerMaxDeletesPerSecond;
+    }
+
+    /**
+     * @return Returns the shrinkerMaxDeletesPerSecond.
+     */
+    public int getShrinkerMaxDeletesPerSecond()
+    {
+        return shrinkerMaxDeletesPerSecond;
+    }
+
+    /**
+     * @param batchSize The max number of queued updates written in one batch.
+     */
+    public void setBatchSize( int batchSize )
+    {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return Returns the batchSize.
+     */
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    /**
+     * @param poolPreparedStatements true to cache the prepared statements of the pooled connections.
+     */
+    public void setPoolPreparedStatements( boolean poolPreparedStatements )
+    {
+        this.poolPreparedStatements = poolPreparedStatements;
+    }
+
+    /**
+     * @return Returns the poolPreparedStatements.
+     */
+    public boolean isPoolPreparedStatements()
+    {
+        return poolPreparedStatements;
+    }
+
     /**
      * @param connectionPoolName the connectionPoolName to set
      */
@@ -322,10 +407,14 @@ public class JDBCDiskCacheAttributes
         buf.append( "\n DriverClassName [" + getDriverClassName() + "]" );
         buf.append( "\n TableName [" + getTableName() + "]" );
         buf.append( "\n TestBeforeInsert [" + isTestBeforeInsert() + "]" );
+        buf.append( "\n BatchSize [" + getBatchSize() + "]" );
+        buf.append( "\n PoolPreparedStatements [" + isPoolPreparedStatements() + "]" );
         buf.append( "\n MaxActive [" + getMaxTotal() + "]" );
         buf.append( "\n AllowRemoveAll [" + isAllowRemoveAll() + "]" );
         buf.append( "\n ShrinkerIntervalSeconds [" + getShrinkerIntervalSeconds() + "]" );
         buf.append( "\n useDiskShrinker [" + isUseDiskShrinker() + "]" );
+        buf.append( "\n ChunkSize [" + getChunkSize() + "]" );
+        buf.append( "\n ShrinkerMaxDeletesPerSecond [" + getShrinkerMaxDeletesPerSecond() + "]" );
         return buf.toString();
     }
 }
@@ -127,6 +127,7 @@ public class SharedPoolDataSourceFactory implements DataSourceFactory
         cpds.setUrl(config.getUrl());
         cpds.setUser(config.getUserName());
         cpds.setPassword(config.getPassword());
+        cpds.setPoolPreparedStatements(config.isPoolPreparedStatements());
 
         return cpds;
     }
@@ -167,10 +167,38 @@ public class HSQLDiskCacheFactory
         }
         catch ( SQLException e )
         {
-            if (!"23000".equals(e.getSQLState()))
+            if ( !isAlreadyExisting( e ) )
             {
                 throw e;
             }
         }
+
+        // used by the shrinker to walk the expired elements, created on its own so that the tables
+        // created before it get it too
+        String indexSql = "CREATE INDEX " + tableName + "_EXPIRE_IDX ON " + tableName
+            + " (REGION, IS_ETERNAL, SYSTEM_EXPIRE_TIME_SECONDS);";
+
+        try (Statement sStatement = cConn.createStatement())
+        {
+            sStatement.execute( indexSql );
+        }
+        catch ( SQLException e )
+        {
+            if ( !isAlreadyExisting( e ) )
+            {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @param e
+     * @return true if the table or the index was already created, S0001 and S0011 are the states
+     *         of HSQLDB 1.8, 42504 the state of 2.x
+     */
+    private static boolean isAlreadyExisting( SQLException e )
+    {
+        String state = e.getSQLState();
+        return "23000".equals( state ) || "S0001".equals( state ) || "S0011".equals( state ) || "42504".equals( state );
     }
 }
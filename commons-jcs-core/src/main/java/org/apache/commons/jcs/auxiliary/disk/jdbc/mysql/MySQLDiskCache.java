@@ -20,7 +20,9 @@ package org.apache.commons.jcs.auxiliary.disk.jdbc.mysql;
  */
 
 import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.jcs.auxiliary.disk.jdbc.JDBCDiskCache;
 import org.apache.commons.jcs.auxiliary.disk.jdbc.TableState;
@@ -110,6 +112,26 @@ public class MySQLDiskCache<K, V>
         return super.processGetMatching( pattern );
     }
 
+    /**
+     * This delegates to the generic JDBC disk cache. If we are currently optimizing, then this
+     * method will balk and return an empty map.
+     * <p>
+     * @param keys Keys to locate the values for.
+     * @return the elements found by key.
+     */
+    @Override
+    protected Map<K, ICacheElement<K, V>> processGetMultipleFromDisk( Set<K> keys )
+    {
+        if ( this.getTableState().getState() == TableState.OPTIMIZATION_RUNNING )
+        {
+            if ( this.mySQLDiskCacheAttributes.isBalkDuringOptimization() )
+            {
+                return new HashMap<K, ICacheElement<K, V>>();
+            }
+        }
+        return super.processGetMultipleFromDisk( keys );
+    }
+
     /**
      * @param pattern
      * @return String to use in the like query.
@@ -20,6 +20,7 @@ package org.apache.commons.jcs.auxiliary.lateral;
  */
 
 import org.apache.commons.jcs.auxiliary.AbstractAuxiliaryCacheAttributes;
+import org.apache.commons.jcs.auxiliary.HedgedLookup;
 import org.apache.commons.jcs.auxiliary.lateral.behavior.ILateralCacheAttributes;
 
 /**
@@ -68,6 +69,12 @@ public class LateralCacheAttributes
     /** If the primary fails, we will queue items before reconnect.  This limits the number of items that can be queued. */
     private int zombieQueueMaxSize = DEFAULT_ZOMBIE_QUEUE_MAX_SIZE;
 
+    /** How the peers are queried on a get */
+    private HedgedLookup.LookupMode lookupMode = HedgedLookup.LookupMode.SEQUENTIAL;
+
+    /** The delay before asking the next peer in HEDGED mode, 0 for the 95th percentile of the latency */
+    private long hedgeDelayMillis = 0;
+
     /**
      * Sets the httpServer attribute of the LateralCacheAttributes object
      * <P>
@@ -274,6 +281,45 @@ public class LateralCacheAttributes
         return zombieQueueMaxSize;
     }
 
+
+    /**
+     * How the facade queries the peers on a get.
+     * <p>
+     * @param lookupMode The lookupMode to set.
+     */
+    @Override
+    public void setLookupMode( HedgedLookup.LookupMode lookupMode )
+    {
+        this.lookupMode = lookupMode;
+    }
+
+    /**
+     * @return Returns the lookupMode.
+     */
+    @Override
+    public HedgedLookup.LookupMode getLookupMode()
+    {
+        return lookupMode;
+    }
+
+    /**
+     * @param hedgeDelayMillis The hedgeDelayMillis to set.
+     */
+    @Override
+    public void setHedgeDelayMillis( long hedgeDelayMillis )
+    {
+        this.hedgeDelayMillis = hedgeDelayMillis;
+    }
+
+    /**
+     * @return Returns the hedgeDelayMillis.
+     */
+    @Override
+    public long getHedgeDelayMillis()
+    {
+        return hedgeDelayMillis;
+    }
+
     /**
      * @return debug string.
      */
@@ -32,6 +32,7 @@ import java.util.stream.Collectors;
 
 import org.apache.commons.jcs.auxiliary.AbstractAuxiliaryCache;
 import org.apache.commons.jcs.auxiliary.AuxiliaryCacheAttributes;
+import org.apache.commons.jcs.auxiliary.HedgedLookup;
 import org.apache.commons.jcs.auxiliary.lateral.behavior.ILateralCacheAttributes;
 import org.apache.commons.jcs.auxiliary.lateral.behavior.ILateralCacheListener;
 import org.apache.commons.jcs.engine.CacheStatus;
@@ -70,6 +71,9 @@ public class LateralCacheNoWaitFacade<K, V>
     /** Disposed state of this facade */
     private boolean disposed = false;
 
+    /** Queries the no waits on a get */
+    private final HedgedLookup<LateralCacheNoWait<K, V>> lookup;
+
     /**
      * Constructs with the given lateral cache, and fires events to any listeners.
      * <p>
@@ -86,6 +90,7 @@ public class LateralCacheNoWaitFacade<K, V>
         this.noWaits = noWaits;
         this.cacheName = cattr.getCacheName();
         this.lateralCacheAttributes = cattr;
+        this.lookup = new HedgedLookup<LateralCacheNoWait<K, V>>( cattr.getLookupMode(), cattr.getHedgeDelayMillis() );
     }
 
     /**
@@ -209,6 +214,11 @@ public class LateralCacheNoWaitFacade<K, V>
     @Override
     public ICacheElement<K, V> get( K key )
     {
+        if ( lookup.getMode() != HedgedLookup.LookupMode.SEQUENTIAL )
+        {
+            return lookup.get( Arrays.asList( noWaits ), nw -> nw.get( key ) );
+        }
+
         Optional<ICacheElement<K, V>> optional = Arrays.stream(noWaits)
             .map(nw -> nw.get( key ))
             .filter(obj -> obj != null)
@@ -328,6 +338,7 @@ public class LateralCacheNoWaitFacade<K, V>
         }
         finally
         {
+            lookup.dispose();
             disposed = true;
         }
     }
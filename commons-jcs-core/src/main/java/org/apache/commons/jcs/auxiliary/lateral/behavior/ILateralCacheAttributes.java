@@ -20,6 +20,7 @@ package org.apache.commons.jcs.auxiliary.lateral.behavior;
  */
 
 import org.apache.commons.jcs.auxiliary.AuxiliaryCacheAttributes;
+import org.apache.commons.jcs.auxiliary.HedgedLookup;
 
 /**
  * This interface defines configuration options common to lateral cache plugins.
@@ -197,4 +198,31 @@ public interface ILateralCacheAttributes
      * @return Returns the zombieQueueMaxSize.
      */
     int getZombieQueueMaxSize();
+
+    /**
+     * How the facade queries the peers on a get: SEQUENTIAL, the default, asks them one after the
+     * other, PARALLEL asks them all at once and HEDGED asks the next one only when the previous
+     * ones are slower than the hedge delay. The first hit wins.
+     * <p>
+     * @param lookupMode The lookupMode to set.
+     */
+    void setLookupMode( HedgedLookup.LookupMode lookupMode );
+
+    /**
+     * @return Returns the lookupMode.
+     */
+    HedgedLookup.LookupMode getLookupMode();
+
+    /**
+     * The delay before asking the next lateral in HEDGED mode. If 0, the default, the 95th
+     * percentile of the latency of the lateral asked last is used.
+     * <p>
+     * @param hedgeDelayMillis The hedgeDelayMillis to set.
+     */
+    void setHedgeDelayMillis( long hedgeDelayMillis );
+
+    /**
+     * @return Returns the hedgeDelayMillis.
+     */
+    long getHedgeDelayMillis();
 }
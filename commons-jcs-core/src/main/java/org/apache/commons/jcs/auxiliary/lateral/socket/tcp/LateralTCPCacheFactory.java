@@ -437,7 +437,8 @@ public class LateralTCPCacheFactory
             // get dereferenced, also we don't want one for every region.
             discovery = UDPDiscoveryManager.getInstance().getService( lac.getUdpDiscoveryAddr(),
                                                                       lac.getUdpDiscoveryPort(),
-                                                                      lac.getTcpListenerPort(), cacheMgr);
+                                                                      lac.getTcpListenerPort(),
+                                                                      lac.isUdpDiscoveryBinaryFormat(), cacheMgr);
 
             discovery.addParticipatingCacheName( lac.getCacheName() );
             discovery.addDiscoveryListener( discoveryListener );
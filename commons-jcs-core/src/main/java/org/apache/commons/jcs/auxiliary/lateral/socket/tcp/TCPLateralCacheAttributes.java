@@ -42,6 +42,9 @@ public class TCPLateralCacheAttributes
     /** default */
     private static final boolean DEFAULT_UDP_DISCOVERY_ENABLED = true;
 
+    /** default */
+    private static final boolean DEFAULT_UDP_DISCOVERY_BINARY_FORMAT = false;
+
     /** default */
     private static final boolean DEFAULT_ALLOW_GET = true;
 
@@ -78,6 +81,9 @@ public class TCPLateralCacheAttributes
     /** discovery switch */
     private boolean udpDiscoveryEnabled = DEFAULT_UDP_DISCOVERY_ENABLED;
 
+    /** send the discovery messages in the binary layout */
+    private boolean udpDiscoveryBinaryFormat = DEFAULT_UDP_DISCOVERY_BINARY_FORMAT;
+
     /** can we put */
     private boolean allowPut = DEFAULT_ALLOW_GET;
 
@@ -229,6 +235,30 @@ public class TCPLateralCacheAttributes
         this.udpDiscoveryAddr = udpDiscoveryAddr;
     }
 
+    /**
+     * Whether the discovery messages are sent in the compact binary layout instead of the
+     * serialized form that older versions understand.
+     * <p>
+     * @return Returns the udpDiscoveryBinaryFormat.
+     */
+    @Override
+    public boolean isUdpDiscoveryBinaryFormat()
+    {
+        return this.udpDiscoveryBinaryFormat;
+    }
+
+    /**
+     * Sends the discovery messages in the compact binary layout. Only the versions which have it
+     * understand it, so turn it on once all the caches on the multicast address are upgraded.
+     * <p>
+     * @param udpDiscoveryBinaryFormat The udpDiscoveryBinaryFormat to set.
+     */
+    @Override
+    public void setUdpDiscoveryBinaryFormat( boolean udpDiscoveryBinaryFormat )
+    {
+        this.udpDiscoveryBinaryFormat = udpDiscoveryBinaryFormat;
+    }
+
     /**
      * Is the lateral allowed to try and get from other laterals.
      * <p>
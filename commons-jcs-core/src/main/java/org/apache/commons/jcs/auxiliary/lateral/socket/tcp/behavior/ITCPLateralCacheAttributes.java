@@ -124,6 +124,22 @@ public interface ITCPLateralCacheAttributes
      */
     void setUdpDiscoveryAddr( String udpDiscoveryAddr );
 
+    /**
+     * Whether the discovery messages are sent in the compact binary layout instead of the
+     * serialized form.
+     * <p>
+     * @return Returns the udpDiscoveryBinaryFormat.
+     */
+    boolean isUdpDiscoveryBinaryFormat();
+
+    /**
+     * Sends the discovery messages in the compact binary layout.
+     * <p>
+     * @param udpDiscoveryBinaryFormat
+     *            The udpDiscoveryBinaryFormat to set.
+     */
+    void setUdpDiscoveryBinaryFormat( boolean udpDiscoveryBinaryFormat );
+
     /**
      * Is the lateral allowed to try and get from other laterals.
      * <p>
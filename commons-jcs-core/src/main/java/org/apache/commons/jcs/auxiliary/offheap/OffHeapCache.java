@@ -0,0 +1,589 @@
+package org.apache.commons.jcs.auxiliary.offheap;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.apache.commons.jcs.auxiliary.AbstractAuxiliaryCacheEventLogging;
+import org.apache.commons.jcs.auxiliary.AuxiliaryCacheAttributes;
+import org.apache.commons.jcs.auxiliary.OverflowingAuxiliaryCache;
+import org.apache.commons.jcs.engine.CacheConstants;
+import org.apache.commons.jcs.engine.CacheStatus;
+import org.apache.commons.jcs.engine.behavior.ICacheElement;
+import org.apache.commons.jcs.engine.behavior.IElementSerializer;
+import org.apache.commons.jcs.engine.control.group.GroupAttrName;
+import org.apache.commons.jcs.engine.control.group.GroupId;
+import org.apache.commons.jcs.engine.stats.StatElement;
+import org.apache.commons.jcs.engine.stats.Stats;
+import org.apache.commons.jcs.engine.stats.behavior.IStatElement;
+import org.apache.commons.jcs.engine.stats.behavior.IStats;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Keeps the serialized elements in direct memory, outside of the garbage collected heap. Only the
+ * keys and the block numbers stay on the heap, in an LRU index.
+ * <p>
+ * The region spools the elements evicted by the memory cache here. When the direct memory is full
+ * the least recently used elements are evicted to the overflow, which spools them to the disk
+ * auxiliaries configured after this one. Listing this auxiliary before a disk one, for instance
+ * jcs.region.x=OFFHEAP,DC, makes it a tier between the memory cache and the disk.
+ */
+public class OffHeapCache<K, V>
+    extends AbstractAuxiliaryCacheEventLogging<K, V>
+    implements OverflowingAuxiliaryCache<K, V>
+{
+    /** The logger. */
+    private static final Log log = LogFactory.getLog( OffHeapCache.class );
+
+    /** Number of elements copied to the heap at once when the cache is disposed. */
+    private static final int DISPOSE_CHUNK_SIZE = 100;
+
+    /** The name to prefix all log messages with. */
+    private final String logCacheName;
+
+    /** The configuration. */
+    private final OffHeapCacheAttributes offHeapCacheAttributes;
+
+    /** Stores the bytes. */
+    private final OffHeapSlabAllocator allocator;
+
+    /** Key to location, in access order so the eldest entry is the least recently used. */
+    private final LinkedHashMap<K, Entry> index = new LinkedHashMap<K, Entry>( 16, 0.75f, true );
+
+    /** Guards the index and the allocator. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Where the evicted elements go, they are dropped if not set. */
+    private volatile Consumer<ICacheElement<K, V>> overflow;
+
+    /** Is the cache alive. */
+    private volatile boolean alive = true;
+
+    /** Number of elements evicted to make room. */
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /** Number of elements given to the overflow. */
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    /**
+     * Constructs the off heap cache.
+     * <p>
+     * @param cacheAttributes
+     * @param elementSerializer used if supplied, the super's super will not set a null
+     */
+    public OffHeapCache( OffHeapCacheAttributes cacheAttributes, IElementSerializer elementSerializer )
+    {
+        this.offHeapCacheAttributes = cacheAttributes;
+        this.logCacheName = "Region [" + getCacheName() + "] ";
+        this.allocator = new OffHeapSlabAllocator( cacheAttributes.getMaxBytes(),
+            cacheAttributes.getSlabSizeBytes(), cacheAttributes.getBlockSizeBytes() );
+        setElementSerializer( elementSerializer );
+    }
+
+    /**
+     * @see org.apache.commons.jcs.auxiliary.OverflowingAuxiliaryCache#setOverflow(java.util.function.Consumer)
+     */
+    @Override
+    public void setOverflow( Consumer<ICacheElement<K, V>> overflow )
+    {
+        this.overflow = overflow;
+    }
+
+    /**
+     * Serializes the element, then stores it, evicting the least recently used elements until
+     * there is room. The evicted elements are deserialized and given to the overflow once the lock
+     * is released. An element bigger than the whole memory goes straight to the overflow.
+     * <p>
+     * @param element
+     */
+    @Override
+    protected void processUpdate( ICacheElement<K, V> element )
+    {
+        if ( !alive )
+        {
+            return;
+        }
+
+        byte[] data;
+        try
+        {
+            data = getElementSerializer().serialize( element );
+        }
+        catch ( IOException e )
+        {
+            log.error( logCacheName + "Failure serializing element, key: " + element.getKey(), e );
+            return;
+        }
+
+        int needed = allocator.getBlocksNeeded( data.length );
+        List<byte[]> evicted = new ArrayList<byte[]>();
+        boolean tooBig = needed > allocator.getCapacityBlocks();
+
+        lock.lock();
+        try
+        {
+            Entry old = index.remove( element.getKey() );
+            if ( old != null )
+            {
+                allocator.free( old.blocks );
+            }
+
+            if ( !tooBig && alive )
+            {
+                Iterator<Entry> eldest = index.values().iterator();
+                while ( !allocator.canAllocate( needed ) )
+                {
+                    Entry victim = eldest.next();
+                    eldest.remove();
+                    evicted.add( allocator.read( victim.blocks, victim.length ) );
+                    allocator.free( victim.blocks );
+                }
+                index.put( element.getKey(), new Entry( allocator.write( data ), data.length ) );
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        if ( tooBig )
+        {
+            overflow( element );
+        }
+        for ( byte[] bytes : evicted )
+        {
+            evictionCount.incrementAndGet();
+            try
+            {
+                ICacheElement<K, V> victim = getElementSerializer().deSerialize( bytes, null );
+                overflow( victim );
+            }
+            catch ( IOException | ClassNotFoundException e )
+            {
+                log.error( logCacheName + "Failure deserializing evicted element", e );
+            }
+        }
+    }
+
+    /**
+     * Gives an element to the overflow, if any.
+     * <p>
+     * @param element
+     */
+    private void overflow( ICacheElement<K, V> element )
+    {
+        Consumer<ICacheElement<K, V>> target = overflow;
+        if ( target != null )
+        {
+            overflowCount.incrementAndGet();
+            target.accept( element );
+        }
+        else if ( log.isDebugEnabled() )
+        {
+            log.debug( logCacheName + "No overflow, dropping key = " + element.getKey() );
+        }
+    }
+
+    /**
+     * Copies the bytes to the heap under the lock and deserializes them after.
+     * <p>
+     * @param key
+     * @return ICacheElement or null
+     */
+    @Override
+    protected ICacheElement<K, V> processGet( K key )
+    {
+        if ( !alive )
+        {
+            return null;
+        }
+
+        byte[] data = null;
+        lock.lock();
+        try
+        {
+            Entry entry = index.get( key );
+            if ( entry != null )
+            {
+                data = allocator.read( entry.blocks, entry.length );
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        if ( data == null )
+        {
+            return null;
+        }
+
+        try
+        {
+            return getElementSerializer().deSerialize( data, null );
+        }
+        catch ( IOException | ClassNotFoundException e )
+        {
+            log.error( logCacheName + "Failure deserializing element, key = " + key, e );
+            return null;
+        }
+    }
+
+    /**
+     * Gets the elements whose keys match the pattern.
+     * <p>
+     * @param pattern
+     * @return a map of K key to ICacheElement&lt;K, V&gt; element, or an empty map if there is no
+     *         data in cache matching keys
+     */
+    @Override
+    protected Map<K, ICacheElement<K, V>> processGetMatching( String pattern )
+    {
+        Set<K> matchingKeys = getKeyMatcher().getMatchingKeysFromArray( pattern, getKeySet() );
+
+        Map<K, ICacheElement<K, V>> elements = new HashMap<K, ICacheElement<K, V>>();
+        for ( K key : matchingKeys )
+        {
+            ICacheElement<K, V> element = processGet( key );
+            if ( element != null )
+            {
+                elements.put( key, element );
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Removes a single key, all the keys starting with a partial key ending with the
+     * NAME_COMPONENT_DELIMITER, or all the keys of a group when the attribute name is null.
+     * <p>
+     * @param key
+     * @return true if anything was removed
+     */
+    @Override
+    protected boolean processRemove( K key )
+    {
+        if ( !alive )
+        {
+            return false;
+        }
+
+        boolean removed = false;
+        lock.lock();
+        try
+        {
+            if ( key instanceof String && key.toString().endsWith( CacheConstants.NAME_COMPONENT_DELIMITER ) )
+            {
+                Iterator<Map.Entry<K, Entry>> it = index.entrySet().iterator();
+                while ( it.hasNext() )
+                {
+                    Map.Entry<K, Entry> entry = it.next();
+                    if ( entry.getKey() instanceof String && entry.getKey().toString().startsWith( key.toString() ) )
+                    {
+                        allocator.free( entry.getValue().blocks );
+                        it.remove();
+                        removed = true;
+                    }
+                }
+            }
+            else if ( key instanceof GroupAttrName && ( (GroupAttrName<?>) key ).attrName == null )
+            {
+                GroupId groupId = ( (GroupAttrName<?>) key ).groupId;
+                Iterator<Map.Entry<K, Entry>> it = index.entrySet().iterator();
+                while ( it.hasNext() )
+                {
+                    Map.Entry<K, Entry> entry = it.next();
+                    if ( entry.getKey() instanceof GroupAttrName
+                        && ( (GroupAttrName<?>) entry.getKey() ).groupId.equals( groupId ) )
+                    {
+                        allocator.free( entry.getValue().blocks );
+                        it.remove();
+                        removed = true;
+                    }
+                }
+            }
+            else
+            {
+                Entry entry = index.remove( key );
+                if ( entry != null )
+                {
+                    allocator.free( entry.blocks );
+                    removed = true;
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        if ( log.isDebugEnabled() )
+        {
+            log.debug( logCacheName + "Removed key [" + key + "] removed = " + removed );
+        }
+        return removed;
+    }
+
+    /**
+     * Forgets all the elements, the slabs are kept.
+     */
+    @Override
+    protected void processRemoveAll()
+    {
+        lock.lock();
+        try
+        {
+            index.clear();
+            allocator.clear();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives the elements to the overflow, the least recently used first, then releases the direct
+     * memory. The region disposes its auxiliaries in order, so the disk ones after this one get the
+     * elements before they are disposed and nothing is lost at shutdown.
+     */
+    @Override
+    protected void processDispose()
+    {
+        lock.lock();
+        try
+        {
+            alive = false;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        int spooled = 0;
+        if ( overflow != null )
+        {
+            // a chunk at a time so the whole content is never on the heap
+            List<byte[]> chunk = new ArrayList<byte[]>( DISPOSE_CHUNK_SIZE );
+            do
+            {
+                chunk.clear();
+                lock.lock();
+                try
+                {
+                    Iterator<Entry> eldest = index.values().iterator();
+                    while ( eldest.hasNext() && chunk.size() < DISPOSE_CHUNK_SIZE )
+                    {
+                        Entry entry = eldest.next();
+                        eldest.remove();
+                        chunk.add( allocator.read( entry.blocks, entry.length ) );
+                        allocator.free( entry.blocks );
+                    }
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+
+                for ( byte[] bytes : chunk )
+                {
+                    try
+                    {
+                        ICacheElement<K, V> element = getElementSerializer().deSerialize( bytes, null );
+                        overflow( element );
+                        spooled++;
+                    }
+                    catch ( IOException | ClassNotFoundException e )
+                    {
+                        log.error( logCacheName + "Failure deserializing element at shutdown", e );
+                    }
+                }
+            }
+            while ( !chunk.isEmpty() );
+        }
+
+        lock.lock();
+        try
+        {
+            index.clear();
+            allocator.release();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        log.info( logCacheName + "Shutdown complete, " + spooled + " elements given to the overflow." );
+    }
+
+    /**
+     * @return a copy of the keys
+     */
+    @Override
+    public Set<K> getKeySet()
+    {
+        lock.lock();
+        try
+        {
+            return new HashSet<K>( index.keySet() );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of elements
+     */
+    @Override
+    public int getSize()
+    {
+        lock.lock();
+        try
+        {
+            return index.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return ALIVE or DISPOSED
+     */
+    @Override
+    public CacheStatus getStatus()
+    {
+        return alive ? CacheStatus.ALIVE : CacheStatus.DISPOSED;
+    }
+
+    /**
+     * @return the region name
+     */
+    @Override
+    public String getCacheName()
+    {
+        return offHeapCacheAttributes.getCacheName();
+    }
+
+    /**
+     * Spooled to like a disk cache.
+     * <p>
+     * @return DISK_CACHE
+     */
+    @Override
+    public CacheType getCacheType()
+    {
+        return CacheType.DISK_CACHE;
+    }
+
+    /**
+     * @return the attributes
+     */
+    @Override
+    public AuxiliaryCacheAttributes getAuxiliaryCacheAttributes()
+    {
+        return offHeapCacheAttributes;
+    }
+
+    /**
+     * @return String
+     */
+    @Override
+    public String getStats()
+    {
+        return getStatistics().toString();
+    }
+
+    /**
+     * @return the usage of the direct memory and the evictions
+     */
+    @Override
+    public IStats getStatistics()
+    {
+        IStats stats = new Stats();
+        stats.setTypeName( "Off Heap Cache" );
+
+        ArrayList<IStatElement<?>> elems = new ArrayList<IStatElement<?>>();
+
+        lock.lock();
+        try
+        {
+            elems.add( new StatElement<Boolean>( "Is Alive", Boolean.valueOf( alive ) ) );
+            elems.add( new StatElement<Integer>( "Key Map Size", Integer.valueOf( index.size() ) ) );
+            elems.add( new StatElement<Long>( "Allocated Bytes", Long.valueOf( allocator.getAllocatedBytes() ) ) );
+            elems.add( new StatElement<Integer>( "Slabs", Integer.valueOf( allocator.getSlabCount() ) ) );
+            elems.add( new StatElement<Integer>( "Block Size Bytes", Integer.valueOf( allocator.getBlockSizeBytes() ) ) );
+            elems.add( new StatElement<Integer>( "Used Blocks", Integer.valueOf( allocator.getUsedBlocks() ) ) );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        elems.add( new StatElement<Long>( "Evictions", Long.valueOf( evictionCount.get() ) ) );
+        elems.add( new StatElement<Long>( "Overflows", Long.valueOf( overflowCount.get() ) ) );
+
+        stats.setStatElements( elems );
+
+        return stats;
+    }
+
+    /**
+     * @return the kind of memory used, for the event logging
+     */
+    @Override
+    public String getEventLoggingExtraInfo()
+    {
+        return "Off Heap";
+    }
+
+    /** Location of an element in the direct memory. */
+    private static final class Entry
+    {
+        /** The blocks holding the bytes */
+        final int[] blocks;
+
+        /** The number of bytes */
+        final int length;
+
+        /**
+         * @param blocks
+         * @param length
+         */
+        Entry( int[] blocks, int length )
+        {
+            this.blocks = blocks;
+            this.length = length;
+        }
+    }
+}
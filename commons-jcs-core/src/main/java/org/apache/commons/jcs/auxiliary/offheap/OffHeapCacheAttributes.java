@@ -0,0 +1,116 @@
+package org.apache.commons.jcs.auxiliary.offheap;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.commons.jcs.auxiliary.AbstractAuxiliaryCacheAttributes;
+
+/**
+ * This holds attributes for Off Heap Cache configuration.
+ */
+public class OffHeapCacheAttributes
+    extends AbstractAuxiliaryCacheAttributes
+{
+    /** Don't change */
+    private static final long serialVersionUID = -3409183262553446153L;
+
+    /** Default size of the direct memory, 64MB. */
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    /** Default size of a slab, 4MB. */
+    private static final int DEFAULT_SLAB_SIZE_BYTES = 4 * 1024 * 1024;
+
+    /** Default size of a block. */
+    private static final int DEFAULT_BLOCK_SIZE_BYTES = 512;
+
+    /** The maximum size of the direct memory used by the region. */
+    private long maxBytes = DEFAULT_MAX_BYTES;
+
+    /** The direct memory is allocated by slabs of this size, when needed. */
+    private int slabSizeBytes = DEFAULT_SLAB_SIZE_BYTES;
+
+    /** The slabs are divided in blocks of this size. An element uses at least one block. */
+    private int blockSizeBytes = DEFAULT_BLOCK_SIZE_BYTES;
+
+    /**
+     * @param maxBytes The maxBytes to set.
+     */
+    public void setMaxBytes( long maxBytes )
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return Returns the maxBytes.
+     */
+    public long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    /**
+     * @param slabSizeBytes The slabSizeBytes to set.
+     */
+    public void setSlabSizeBytes( int slabSizeBytes )
+    {
+        this.slabSizeBytes = slabSizeBytes;
+    }
+
+    /**
+     * @return Returns the slabSizeBytes.
+     */
+    public int getSlabSizeBytes()
+    {
+        return slabSizeBytes;
+    }
+
+    /**
+     * The size of the blocks. All blocks are the same size.
+     * <p>
+     * @param blockSizeBytes The blockSizeBytes to set.
+     */
+    public void setBlockSizeBytes( int blockSizeBytes )
+    {
+        this.blockSizeBytes = blockSizeBytes;
+    }
+
+    /**
+     * @return Returns the blockSizeBytes.
+     */
+    public int getBlockSizeBytes()
+    {
+        return blockSizeBytes;
+    }
+
+    /**
+     * Write out the values for debugging purposes.
+     * <p>
+     * @return String
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder str = new StringBuilder();
+        str.append( "\nOffHeapCacheAttributes " );
+        str.append( "\n MaxBytes [" + this.getMaxBytes() + "]" );
+        str.append( "\n SlabSizeBytes [" + this.getSlabSizeBytes() + "]" );
+        str.append( "\n BlockSizeBytes [" + this.getBlockSizeBytes() + "]" );
+        return str.toString();
+    }
+}
@@ -0,0 +1,242 @@
+package org.apache.commons.jcs.auxiliary.offheap;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores byte arrays in direct buffers. The memory is allocated by slabs of slabSizeBytes, up to
+ * maxBytes, and each slab is divided in blocks of blockSizeBytes. Like the block disk, a value
+ * occupies as many blocks as needed, they don't need to be contiguous so there is no
+ * fragmentation to manage.
+ * <p>
+ * This class is not thread safe, the callers serialize the accesses.
+ */
+public class OffHeapSlabAllocator
+{
+    /** Size of the blocks */
+    private final int blockSizeBytes;
+
+    /** Number of blocks per slab */
+    private final int blocksPerSlab;
+
+    /** The slabs, allocated when needed */
+    private final ByteBuffer[] slabs;
+
+    /** Blocks freed, they are reused before the never used ones */
+    private int[] freeBlocks = new int[1024];
+
+    /** Number of blocks in freeBlocks */
+    private int freeBlockCount = 0;
+
+    /** Number of blocks of the allocated slabs that were never used */
+    private int neverUsedBlocks = 0;
+
+    /** Number of slabs allocated */
+    private int slabCount = 0;
+
+    /**
+     * @param maxBytes the max size of the memory allocated
+     * @param slabSizeBytes the size of the direct buffers
+     * @param blockSizeBytes the size of the blocks
+     */
+    public OffHeapSlabAllocator( long maxBytes, int slabSizeBytes, int blockSizeBytes )
+    {
+        if ( blockSizeBytes <= 0 || slabSizeBytes < blockSizeBytes || maxBytes < slabSizeBytes )
+        {
+            throw new IllegalArgumentException( "Expected 0 < blockSizeBytes <= slabSizeBytes <= maxBytes but got "
+                + blockSizeBytes + ", " + slabSizeBytes + ", " + maxBytes );
+        }
+        this.blockSizeBytes = blockSizeBytes;
+        this.blocksPerSlab = slabSizeBytes / blockSizeBytes;
+        this.slabs = new ByteBuffer[(int) Math.min( Integer.MAX_VALUE / blocksPerSlab, maxBytes / slabSizeBytes )];
+    }
+
+    /**
+     * @param length a number of bytes
+     * @return the number of blocks needed to store them
+     */
+    public int getBlocksNeeded( int length )
+    {
+        return Math.max( 1, ( length + blockSizeBytes - 1 ) / blockSizeBytes );
+    }
+
+    /**
+     * @param blocks a number of blocks
+     * @return true if they can be allocated without freeing anything
+     */
+    public boolean canAllocate( int blocks )
+    {
+        return blocks <= freeBlockCount + neverUsedBlocks + ( slabs.length - slabCount ) * blocksPerSlab;
+    }
+
+    /**
+     * @return the number of blocks of all the slabs
+     */
+    public int getCapacityBlocks()
+    {
+        return slabs.length * blocksPerSlab;
+    }
+
+    /**
+     * Writes the data in free blocks.
+     * <p>
+     * @param data the bytes to store
+     * @return the blocks holding them or null if there is not enough free blocks
+     */
+    public int[] write( byte[] data )
+    {
+        int needed = getBlocksNeeded( data.length );
+        if ( !canAllocate( needed ) )
+        {
+            return null;
+        }
+
+        int[] blocks = new int[needed];
+        for ( int i = 0; i < needed; i++ )
+        {
+            blocks[i] = allocateBlock();
+            int offset = i * blockSizeBytes;
+            ByteBuffer buffer = blockBuffer( blocks[i] );
+            buffer.put( data, offset, Math.min( blockSizeBytes, data.length - offset ) );
+        }
+        return blocks;
+    }
+
+    /**
+     * @param blocks the blocks returned by write
+     * @param length the number of bytes written
+     * @return the bytes
+     */
+    public byte[] read( int[] blocks, int length )
+    {
+        byte[] data = new byte[length];
+        for ( int i = 0; i < blocks.length; i++ )
+        {
+            int offset = i * blockSizeBytes;
+            ByteBuffer buffer = blockBuffer( blocks[i] );
+            buffer.get( data, offset, Math.min( blockSizeBytes, length - offset ) );
+        }
+        return data;
+    }
+
+    /**
+     * Makes the blocks available again.
+     * <p>
+     * @param blocks
+     */
+    public void free( int[] blocks )
+    {
+        if ( freeBlockCount + blocks.length > freeBlocks.length )
+        {
+            int[] grown = new int[Math.max( freeBlocks.length * 2, freeBlockCount + blocks.length )];
+            System.arraycopy( freeBlocks, 0, grown, 0, freeBlockCount );
+            freeBlocks = grown;
+        }
+        System.arraycopy( blocks, 0, freeBlocks, freeBlockCount, blocks.length );
+        freeBlockCount += blocks.length;
+    }
+
+    /**
+     * Forgets all the blocks, the slabs are kept for reuse.
+     */
+    public void clear()
+    {
+        freeBlockCount = 0;
+        neverUsedBlocks = slabCount * blocksPerSlab;
+    }
+
+    /**
+     * Releases the slabs, the direct memory is given back when they are garbage collected.
+     */
+    public void release()
+    {
+        for ( int i = 0; i < slabCount; i++ )
+        {
+            slabs[i] = null;
+        }
+        slabCount = 0;
+        freeBlockCount = 0;
+        neverUsedBlocks = 0;
+    }
+
+    /**
+     * @return the number of bytes of direct memory allocated
+     */
+    public long getAllocatedBytes()
+    {
+        return (long) slabCount * blocksPerSlab * blockSizeBytes;
+    }
+
+    /**
+     * @return the number of blocks in use
+     */
+    public int getUsedBlocks()
+    {
+        return slabCount * blocksPerSlab - neverUsedBlocks - freeBlockCount;
+    }
+
+    /**
+     * @return the number of slabs allocated
+     */
+    public int getSlabCount()
+    {
+        return slabCount;
+    }
+
+    /**
+     * @return the size of the blocks
+     */
+    public int getBlockSizeBytes()
+    {
+        return blockSizeBytes;
+    }
+
+    /**
+     * Takes a freed block, else a never used one, allocating a new slab if needed. The caller
+     * checked there is one.
+     * <p>
+     * @return the block
+     */
+    private int allocateBlock()
+    {
+        if ( freeBlockCount > 0 )
+        {
+            return freeBlocks[--freeBlockCount];
+        }
+        if ( neverUsedBlocks == 0 )
+        {
+            slabs[slabCount++] = ByteBuffer.allocateDirect( blocksPerSlab * blockSizeBytes );
+            neverUsedBlocks = blocksPerSlab;
+        }
+        return slabCount * blocksPerSlab - neverUsedBlocks--;
+    }
+
+    /**
+     * @param block
+     * @return a buffer positioned on the block
+     */
+    private ByteBuffer blockBuffer( int block )
+    {
+        ByteBuffer buffer = slabs[block / blocksPerSlab].duplicate();
+        buffer.position( ( block % blocksPerSlab ) * blockSizeBytes );
+        return buffer;
+    }
+}
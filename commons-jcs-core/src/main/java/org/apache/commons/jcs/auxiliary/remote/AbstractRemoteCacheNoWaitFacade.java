@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.jcs.auxiliary.AbstractAuxiliaryCache;
+import org.apache.commons.jcs.auxiliary.HedgedLookup;
 import org.apache.commons.jcs.auxiliary.remote.behavior.IRemoteCacheAttributes;
 import org.apache.commons.jcs.engine.CacheStatus;
 import org.apache.commons.jcs.engine.behavior.ICacheElement;
@@ -53,6 +54,9 @@ public abstract class AbstractRemoteCacheNoWaitFacade<K, V>
     /** holds failover and cluster information */
     private IRemoteCacheAttributes remoteCacheAttributes;
 
+    /** Queries the no waits on a get */
+    private final HedgedLookup<RemoteCacheNoWait<K, V>> lookup;
+
     /**
      * Constructs with the given remote cache, and fires events to any listeners.
      * <p>
@@ -69,6 +73,7 @@ public abstract class AbstractRemoteCacheNoWaitFacade<K, V>
             log.debug( "CONSTRUCTING NO WAIT FACADE" );
         }
         this.remoteCacheAttributes = rca;
+        this.lookup = new HedgedLookup<RemoteCacheNoWait<K, V>>( rca.getLookupMode(), rca.getHedgeDelayMillis() );
         setCacheEventLogger( cacheEventLogger );
         setElementSerializer( elementSerializer );
         this.noWaits = new ArrayList<RemoteCacheNoWait<K,V>>(noWaits);
@@ -139,7 +144,24 @@ public abstract class AbstractRemoteCacheNoWaitFacade<K, V>
     @Override
     public ICacheElement<K, V> get( K key )
     {
-        for (RemoteCacheNoWait<K, V> nw : noWaits)
+        return get( key, noWaits );
+    }
+
+    /**
+     * Reads from the given no waits, in the configured lookup mode.
+     * <p>
+     * @param key
+     * @param candidates the no waits to ask, in order
+     * @return Either an ICacheElement&lt;K, V&gt; or null if it is not found.
+     */
+    protected ICacheElement<K, V> get( K key, List<RemoteCacheNoWait<K, V>> candidates )
+    {
+        if ( lookup.getMode() != HedgedLookup.LookupMode.SEQUENTIAL )
+        {
+            return lookup.get( candidates, nw -> nw.get( key ) );
+        }
+
+        for (RemoteCacheNoWait<K, V> nw : candidates)
         {
             try
             {
@@ -284,6 +306,7 @@ public abstract class AbstractRemoteCacheNoWaitFacade<K, V>
         {
             nw.dispose();
         }
+        lookup.dispose();
     }
 
     /**
@@ -370,13 +393,14 @@ public abstract class AbstractRemoteCacheNoWaitFacade<K, V>
     }
 
     /**
-     * restore the primary server in the list of failovers
+     * restore the primary server in the list of failovers, dropping what changed on it meanwhile
      *
      */
     public void restorePrimaryServer(RemoteCacheNoWait<K, V> rcnw)
     {
         noWaits.clear();
         noWaits.add(rcnw);
+        rcnw.invalidateMissedChanges();
     }
 
     /**
@@ -0,0 +1,176 @@
+package org.apache.commons.jcs.auxiliary.remote;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.jcs.utils.serialization.StableHash;
+
+/**
+ * A consistent hash ring with virtual nodes. Each node is hashed to several points on the ring by
+ * its name, and a key belongs to the nodes of the first points after its hash. When a node is
+ * added or removed, only the keys of its points move.
+ * <p>
+ * The ring is immutable, a membership change builds a new one.
+ * <p>
+ * Every client must place a key on the same nodes, so the keys are hashed with their
+ * {@link StableHash}, not their hashCode which may differ between JVMs.
+ */
+class ConsistentHashRing<T>
+{
+    /** The points of the ring, sorted */
+    private final long[] points;
+
+    /** The index in nodes of the node at each point */
+    private final int[] owners;
+
+    /** The nodes */
+    private final List<T> nodes;
+
+    /**
+     * @param names the names of the nodes, the same name gives the same points in every JVM
+     * @param nodes the nodes, in the order of the names
+     * @param virtualNodes the number of points per node
+     */
+    ConsistentHashRing( List<String> names, List<T> nodes, int virtualNodes )
+    {
+        if ( names.size() != nodes.size() )
+        {
+            throw new IllegalArgumentException( "There must be one name per node" );
+        }
+        int perNode = Math.max( 1, virtualNodes );
+        this.nodes = new ArrayList<T>( nodes );
+
+        // sort the points, keeping their owner alongside
+        long[][] pairs = new long[names.size() * perNode][];
+        int p = 0;
+        for ( int n = 0; n < names.size(); n++ )
+        {
+            for ( int v = 0; v < perNode; v++ )
+            {
+                pairs[p++] = new long[] { hash( names.get( n ) + "#" + v ), n };
+            }
+        }
+        Arrays.sort( pairs, ( a, b ) -> Long.compare( a[0], b[0] ) );
+
+        this.points = new long[pairs.length];
+        this.owners = new int[pairs.length];
+        for ( int i = 0; i < pairs.length; i++ )
+        {
+            points[i] = pairs[i][0];
+            owners[i] = (int) pairs[i][1];
+        }
+    }
+
+    /**
+     * @return the nodes
+     */
+    List<T> getNodes()
+    {
+        return nodes;
+    }
+
+    /**
+     * Gets the distinct nodes a key belongs to, the first is its primary.
+     * <p>
+     * @param key the key
+     * @param count the number of nodes wanted, at most the number of nodes
+     * @return the nodes, in ring order
+     */
+    List<T> getNodes( Object key, int count )
+    {
+        int wanted = Math.min( Math.max( 1, count ), nodes.size() );
+        List<T> found = new ArrayList<T>( wanted );
+        if ( points.length == 0 )
+        {
+            return found;
+        }
+
+        int i = Arrays.binarySearch( points, hashKey( key ) );
+        if ( i < 0 )
+        {
+            i = -i - 1;
+        }
+        for ( int step = 0; step < points.length && found.size() < wanted; step++ )
+        {
+            T node = nodes.get( owners[( i + step ) % points.length] );
+            if ( !found.contains( node ) )
+            {
+                found.add( node );
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param key the key
+     * @return the node owning the key
+     */
+    T getNode( Object key )
+    {
+        return points.length == 0 ? null : getNodes( key, 1 ).get( 0 );
+    }
+
+    /**
+     * The stable hash of the key, spread: strings and numbers by their string form, the group keys
+     * by their names, the other keys by their serialized form.
+     * <p>
+     * @param key the key
+     * @return the point of the key
+     */
+    static long hashKey( Object key )
+    {
+        if ( key == null )
+        {
+            return 0;
+        }
+        return mix( StableHash.hash( key ) );
+    }
+
+    /**
+     * FNV-1a of the characters, as computed by {@link StableHash#hash(String)}, spread.
+     * <p>
+     * @param name a node name
+     * @return a point of the ring
+     */
+    static long hash( String name )
+    {
+        return mix( StableHash.hash( name ) );
+    }
+
+    /**
+     * The finalizer of MurmurHash3, so that close values land far apart.
+     * <p>
+     * @param value
+     * @return the spread value
+     */
+    private static long mix( long value )
+    {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -23,8 +23,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 
 import org.apache.commons.jcs.auxiliary.remote.behavior.IRemoteCacheAttributes;
+import org.apache.commons.jcs.auxiliary.remote.behavior.IRemoteCacheChangeLog;
 import org.apache.commons.jcs.auxiliary.remote.behavior.IRemoteCacheListener;
 import org.apache.commons.jcs.auxiliary.remote.server.behavior.RemoteType;
+import org.apache.commons.jcs.auxiliary.remote.value.RemoteCacheChanges;
 import org.apache.commons.jcs.engine.ZombieCacheServiceNonLocal;
 import org.apache.commons.jcs.engine.behavior.ICacheServiceNonLocal;
 import org.apache.commons.jcs.engine.stats.StatElement;
@@ -174,6 +176,71 @@ public class RemoteCache<K, V>
         throw new IOException( ex );
     }
 
+    /**
+     * Replaces the remote service handle, then drops what changed on the server while this was
+     * away.
+     * <p>
+     * @param restoredRemote the remote server or proxy to the remote server
+     */
+    @Override
+    public void fixCache( ICacheServiceNonLocal<?, ?> restoredRemote )
+    {
+        super.fixCache( restoredRemote );
+        invalidateMissedChanges();
+    }
+
+    /**
+     * Asks the server for the keys changed while the listener was not registered, and removes them
+     * locally in one go. If the server no longer remembers them all, the local region is cleared.
+     * <p>
+     * Only a local client which receives events keeps a near cache that can be stale.
+     */
+    public void invalidateMissedChanges()
+    {
+        IRemoteCacheListener<K, V> listener = getRemoteCacheListener();
+        if ( !getRemoteCacheAttributes().isReceive() || listener == null
+            || getRemoteCacheAttributes().getRemoteType() != RemoteType.LOCAL
+            || !( getRemoteCacheService() instanceof IRemoteCacheChangeLog ) )
+        {
+            return;
+        }
+
+        @SuppressWarnings("unchecked") // Checked above, the server serves the regions of this type
+        IRemoteCacheChangeLog<K> changeLog = (IRemoteCacheChangeLog<K>) getRemoteCacheService();
+        try
+        {
+            RemoteCacheChanges<K> changes = changeLog.getMissedChanges( cacheName, listener.getListenerId(), listener );
+            if ( log.isInfoEnabled() )
+            {
+                log.info( "Missed changes for cache [" + cacheName + "]: " + changes );
+            }
+
+            if ( changes.isComplete() )
+            {
+                for ( K key : changes.getKeys() )
+                {
+                    listener.handleRemove( cacheName, key );
+                }
+            }
+            else
+            {
+                listener.handleRemoveAll( cacheName );
+            }
+        }
+        catch ( IOException e )
+        {
+            log.error( "Problem getting the missed changes for cache [" + cacheName + "], clearing it.", e );
+            try
+            {
+                listener.handleRemoveAll( cacheName );
+            }
+            catch ( IOException e1 )
+            {
+                log.error( "Problem clearing cache [" + cacheName + "]", e1 );
+            }
+        }
+    }
+
     /**
      * Debugging info.
      * <p>
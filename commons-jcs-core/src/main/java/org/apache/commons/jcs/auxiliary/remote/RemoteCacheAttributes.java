@@ -21,6 +21,7 @@ package org.apache.commons.jcs.auxiliary.remote;
 
 import java.util.List;
 
+import org.apache.commons.jcs.auxiliary.HedgedLookup;
 import org.apache.commons.jcs.auxiliary.remote.behavior.IRemoteCacheAttributes;
 
 /**
@@ -64,6 +65,21 @@ public class RemoteCacheAttributes
     /** If the primary fails, we will queue items before reconnect.  This limits the number of items that can be queued. */
     private int zombieQueueMaxSize = DEFAULT_ZOMBIE_QUEUE_MAX_SIZE;
 
+    /** How the peers are queried on a get */
+    private HedgedLookup.LookupMode lookupMode = HedgedLookup.LookupMode.SEQUENTIAL;
+
+    /** The delay before asking the next peer in HEDGED mode, 0 for the 95th percentile of the latency */
+    private long hedgeDelayMillis = 0;
+
+    /** The servers the keys are spread over, none if empty */
+    private String shardServers = "";
+
+    /** The number of shard servers each key is stored on */
+    private int shardReplicas = 1;
+
+    /** The number of points of each shard server on the hash ring */
+    private int shardVirtualNodes = DEFAULT_SHARD_VIRTUAL_NODES;
+
     /** Default constructor for the RemoteCacheAttributes object */
     public RemoteCacheAttributes()
     {
@@ -246,6 +262,98 @@ public class RemoteCacheAttributes
         return zombieQueueMaxSize;
     }
 
+    /**
+     * How the facade queries the peers on a get.
+     * <p>
+     * @param lookupMode The lookupMode to set.
+     */
+    @Override
+    public void setLookupMode( HedgedLookup.LookupMode lookupMode )
+    {
+        this.lookupMode = lookupMode;
+    }
+
+    /**
+     * @return Returns the lookupMode.
+     */
+    @Override
+    public HedgedLookup.LookupMode getLookupMode()
+    {
+        return lookupMode;
+    }
+
+    /**
+     * @param hedgeDelayMillis The hedgeDelayMillis to set.
+     */
+    @Override
+    public void setHedgeDelayMillis( long hedgeDelayMillis )
+    {
+        this.hedgeDelayMillis = hedgeDelayMillis;
+    }
+
+    /**
+     * @return Returns the hedgeDelayMillis.
+     */
+    @Override
+    public long getHedgeDelayMillis()
+    {
+        return hedgeDelayMillis;
+    }
+
+    /**
+     * @param shardServers The shardServers to set.
+     */
+    @Override
+    public void setShardServers( String shardServers )
+    {
+        this.shardServers = shardServers;
+    }
+
+    /**
+     * @return Returns the shardServers.
+     */
+    @Override
+    public String getShardServers()
+    {
+        return shardServers;
+    }
+
+    /**
+     * @param shardReplicas The shardReplicas to set.
+     */
+    @Override
+    public void setShardReplicas( int shardReplicas )
+    {
+        this.shardReplicas = shardReplicas;
+    }
+
+    /**
+     * @return Returns the shardReplicas.
+     */
+    @Override
+    public int getShardReplicas()
+    {
+        return shardReplicas;
+    }
+
+    /**
+     * @param shardVirtualNodes The shardVirtualNodes to set.
+     */
+    @Override
+    public void setShardVirtualNodes( int shardVirtualNodes )
+    {
+        this.shardVirtualNodes = shardVirtualNodes;
+    }
+
+    /**
+     * @return Returns the shardVirtualNodes.
+     */
+    @Override
+    public int getShardVirtualNodes()
+    {
+        return shardVirtualNodes;
+    }
+
     /**
      * @return String, all the important values that can be configured
      */
@@ -258,6 +366,11 @@ public class RemoteCacheAttributes
         buf.append( "\n threadPoolName = [" + getThreadPoolName() + "]" );
         buf.append( "\n localClusterConsistency = [" + isLocalClusterConsistency() + "]" );
         buf.append( "\n zombieQueueMaxSize = [" + getZombieQueueMaxSize() + "]" );
+        buf.append( "\n lookupMode = [" + getLookupMode() + "]" );
+        buf.append( "\n hedgeDelayMillis = [" + getHedgeDelayMillis() + "]" );
+        buf.append( "\n shardServers = [" + getShardServers() + "]" );
+        buf.append( "\n shardReplicas = [" + getShardReplicas() + "]" );
+        buf.append( "\n shardVirtualNodes = [" + getShardVirtualNodes() + "]" );
         return buf.toString();
     }
 }
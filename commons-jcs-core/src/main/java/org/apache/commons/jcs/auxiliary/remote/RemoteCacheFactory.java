@@ -76,6 +76,12 @@ public class RemoteCacheFactory
 
         ArrayList<RemoteCacheNoWait<K,V>> noWaits = new ArrayList<RemoteCacheNoWait<K,V>>();
 
+        if ( rca.getRemoteType() == RemoteType.LOCAL && rca.getShardServers() != null
+            && rca.getShardServers().trim().length() > 0 )
+        {
+            return createShardedCache( rca, cacheMgr, cacheEventLogger, elementSerializer );
+        }
+
         switch (rca.getRemoteType())
         {
             case LOCAL:
@@ -159,6 +165,41 @@ public class RemoteCacheFactory
 
     // end createCache
 
+    /**
+     * Registers a listener with each of the shard servers, they all send the changes of their
+     * keys.
+     * <p>
+     * @param rca
+     * @param cacheMgr
+     * @param cacheEventLogger
+     * @param elementSerializer
+     * @return a facade spreading the keys over the shard servers
+     */
+    private <K, V> AuxiliaryCache<K, V> createShardedCache( RemoteCacheAttributes rca,
+            ICompositeCacheManager cacheMgr, ICacheEventLogger cacheEventLogger,
+            IElementSerializer elementSerializer )
+    {
+        ArrayList<RemoteCacheNoWait<K,V>> noWaits = new ArrayList<RemoteCacheNoWait<K,V>>();
+        ArrayList<RemoteLocation> shards = new ArrayList<RemoteLocation>();
+
+        StringTokenizer it = new StringTokenizer( rca.getShardServers(), "," );
+        while ( it.hasMoreTokens() )
+        {
+            RemoteLocation location = RemoteLocation.parseServerAndPort( it.nextToken() );
+
+            if ( location != null && !shards.contains( location ) )
+            {
+                rca.setRemoteLocation( location );
+                RemoteCacheManager rcm = getManager( rca, cacheMgr, cacheEventLogger, elementSerializer );
+                RemoteCacheNoWait<K,V> ic = rcm.getCache( rca );
+                noWaits.add( ic );
+                shards.add( location );
+            }
+        }
+
+        return new ShardedRemoteCacheNoWaitFacade<K, V>( noWaits, shards, rca, cacheEventLogger, elementSerializer );
+    }
+
     /**
      * Returns an instance of RemoteCacheManager for the given connection parameters.
      * <p>
@@ -414,6 +414,19 @@ public class RemoteCacheNoWait<K, V>
         resetEventQ();
     }
 
+    /**
+     * Drops what changed on the server while the client was not registered.
+     * <p>
+     * @see RemoteCache#invalidateMissedChanges()
+     */
+    public void invalidateMissedChanges()
+    {
+        if ( remoteCacheClient instanceof RemoteCache )
+        {
+            ( (RemoteCache<K, V>) remoteCacheClient ).invalidateMissedChanges();
+        }
+    }
+
     /**
      * Resets the event q by first destroying the existing one and starting up new one.
      * <p>
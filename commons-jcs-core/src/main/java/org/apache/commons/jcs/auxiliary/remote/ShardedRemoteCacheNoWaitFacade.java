@@ -0,0 +1,367 @@
+package org.apache.commons.jcs.auxiliary.remote;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.commons.jcs.auxiliary.remote.behavior.IRemoteCacheAttributes;
+import org.apache.commons.jcs.engine.CacheStatus;
+import org.apache.commons.jcs.engine.behavior.ICacheElement;
+import org.apache.commons.jcs.engine.behavior.IElementSerializer;
+import org.apache.commons.jcs.engine.logging.behavior.ICacheEventLogger;
+import org.apache.commons.jcs.utils.threadpool.ThreadPoolManager;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Spreads the keys of a region over several remote servers. Each key is stored on the
+ * ShardReplicas servers which follow its hash on a consistent hash ring, see
+ * {@link ConsistentHashRing}. Adding or removing a server in the ShardServers list only moves the
+ * keys of its points on the ring.
+ * <p>
+ * There is no failover: a server which goes down becomes a zombie which queues the updates, and
+ * the monitor reconnects it. Meanwhile its keys are read from their other replicas, if any.
+ * <p>
+ * The bulk operations are split per server and run in parallel.
+ */
+public class ShardedRemoteCacheNoWaitFacade<K, V>
+    extends AbstractRemoteCacheNoWaitFacade<K, V>
+{
+    /** log instance */
+    private static final Log log = LogFactory.getLog( ShardedRemoteCacheNoWaitFacade.class );
+
+    /** The name of the pool used to call the servers in parallel. */
+    private static final String THREAD_POOL_NAME = "ShardedRemoteCacheNoWaitFacade";
+
+    /** The ring of the no waits */
+    private final ConsistentHashRing<RemoteCacheNoWait<K, V>> ring;
+
+    /** The number of servers each key is stored on */
+    private final int replicas;
+
+    /**
+     * Constructs with the given remote caches, one per server.
+     * <p>
+     * @param noWaits the no waits of the servers
+     * @param locations the servers, in the order of the no waits
+     * @param rca
+     * @param cacheEventLogger
+     * @param elementSerializer
+     */
+    public ShardedRemoteCacheNoWaitFacade( List<RemoteCacheNoWait<K, V>> noWaits,
+                                           List<RemoteLocation> locations,
+                                           IRemoteCacheAttributes rca,
+                                           ICacheEventLogger cacheEventLogger,
+                                           IElementSerializer elementSerializer )
+    {
+        super( noWaits, rca, cacheEventLogger, elementSerializer );
+
+        List<String> names = new ArrayList<String>( locations.size() );
+        for ( RemoteLocation location : locations )
+        {
+            names.add( location.toString() );
+        }
+        this.ring = new ConsistentHashRing<RemoteCacheNoWait<K, V>>( names, noWaits, rca.getShardVirtualNodes() );
+        this.replicas = Math.max( 1, rca.getShardReplicas() );
+    }
+
+    /**
+     * @param key
+     * @return the no waits storing the key, the primary first
+     */
+    protected List<RemoteCacheNoWait<K, V>> getShards( K key )
+    {
+        return ring.getNodes( key, replicas );
+    }
+
+    /**
+     * @param key
+     * @return the first replica of the key which is alive, else its primary
+     */
+    protected RemoteCacheNoWait<K, V> getReadShard( K key )
+    {
+        List<RemoteCacheNoWait<K, V>> shards = getShards( key );
+        for ( RemoteCacheNoWait<K, V> nw : shards )
+        {
+            if ( nw.getStatus() == CacheStatus.ALIVE )
+            {
+                return nw;
+            }
+        }
+        return shards.get( 0 );
+    }
+
+    /**
+     * Puts the element on the replicas of its key.
+     * <p>
+     * @param ce
+     * @throws IOException
+     */
+    @Override
+    public void update( ICacheElement<K, V> ce )
+        throws IOException
+    {
+        for ( RemoteCacheNoWait<K, V> nw : getShards( ce.getKey() ) )
+        {
+            try
+            {
+                nw.update( ce );
+            }
+            catch ( IOException ex )
+            {
+                String message = "Problem updating shard " + nw;
+                log.error( message, ex );
+
+                if ( getCacheEventLogger() != null )
+                {
+                    getCacheEventLogger().logError( "ShardedRemoteCacheNoWaitFacade",
+                                                    ICacheEventLogger.UPDATE_EVENT,
+                                                    message + ":" + ex.getMessage() + " REGION: " + ce.getCacheName()
+                                                        + " ELEMENT: " + ce );
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads from the replicas of the key, in the configured lookup mode.
+     * <p>
+     * @param key
+     * @return Either an ICacheElement&lt;K, V&gt; or null if it is not found.
+     */
+    @Override
+    public ICacheElement<K, V> get( K key )
+    {
+        return get( key, getShards( key ) );
+    }
+
+    /**
+     * Asks each server for its keys, in parallel.
+     * <p>
+     * @param keys
+     * @return a map of K key to ICacheElement&lt;K, V&gt; element, or an empty map if there is no
+     *         data in cache for any of these keys
+     */
+    @Override
+    public Map<K, ICacheElement<K, V>> getMultiple( Set<K> keys )
+    {
+        Map<K, ICacheElement<K, V>> result = new HashMap<K, ICacheElement<K, V>>();
+        if ( keys == null || keys.isEmpty() )
+        {
+            return result;
+        }
+
+        Map<RemoteCacheNoWait<K, V>, Set<K>> divided = new LinkedHashMap<RemoteCacheNoWait<K, V>, Set<K>>();
+        for ( K key : keys )
+        {
+            RemoteCacheNoWait<K, V> nw = getReadShard( key );
+            Set<K> shardKeys = divided.get( nw );
+            if ( shardKeys == null )
+            {
+                shardKeys = new HashSet<K>();
+                divided.put( nw, shardKeys );
+            }
+            shardKeys.add( key );
+        }
+
+        List<Callable<Map<K, ICacheElement<K, V>>>> calls = new ArrayList<Callable<Map<K, ICacheElement<K, V>>>>();
+        for ( Map.Entry<RemoteCacheNoWait<K, V>, Set<K>> entry : divided.entrySet() )
+        {
+            final RemoteCacheNoWait<K, V> nw = entry.getKey();
+            final Set<K> shardKeys = entry.getValue();
+            calls.add( () -> nw.getMultiple( shardKeys ) );
+        }
+
+        for ( Map<K, ICacheElement<K, V>> elements : callInParallel( calls ) )
+        {
+            result.putAll( elements );
+        }
+        return result;
+    }
+
+    /**
+     * Asks all the servers, in parallel.
+     * <p>
+     * @param pattern
+     * @return map
+     * @throws IOException
+     */
+    @Override
+    public Map<K, ICacheElement<K, V>> getMatching( String pattern )
+        throws IOException
+    {
+        List<Callable<Map<K, ICacheElement<K, V>>>> calls = new ArrayList<Callable<Map<K, ICacheElement<K, V>>>>();
+        for ( final RemoteCacheNoWait<K, V> nw : noWaits )
+        {
+            calls.add( () -> nw.getMatching( pattern ) );
+        }
+
+        Map<K, ICacheElement<K, V>> result = new HashMap<K, ICacheElement<K, V>>();
+        for ( Map<K, ICacheElement<K, V>> elements : callInParallel( calls ) )
+        {
+            result.putAll( elements );
+        }
+        return result;
+    }
+
+    /**
+     * Asks all the servers, in parallel.
+     * <p>
+     * @see org.apache.commons.jcs.auxiliary.AuxiliaryCache#getKeySet()
+     */
+    @Override
+    public Set<K> getKeySet()
+        throws IOException
+    {
+        List<Callable<Set<K>>> calls = new ArrayList<Callable<Set<K>>>();
+        for ( final RemoteCacheNoWait<K, V> nw : noWaits )
+        {
+            calls.add( () -> nw.getKeySet() );
+        }
+
+        Set<K> allKeys = new HashSet<K>();
+        for ( Set<K> keys : callInParallel( calls ) )
+        {
+            allKeys.addAll( keys );
+        }
+        return allKeys;
+    }
+
+    /**
+     * Removes the key from its replicas.
+     * <p>
+     * @param key
+     * @return whether or not it was removed, right now it return false.
+     */
+    @Override
+    public boolean remove( K key )
+    {
+        for ( RemoteCacheNoWait<K, V> nw : getShards( key ) )
+        {
+            try
+            {
+                nw.remove( key );
+            }
+            catch ( IOException ex )
+            {
+                log.error( ex );
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The shards do not failover, the monitor reconnects them.
+     * <p>
+     * @param rcnw The no wait in error.
+     */
+    @Override
+    protected void failover( RemoteCacheNoWait<K, V> rcnw )
+    {
+        if ( log.isDebugEnabled() )
+        {
+            log.debug( "No failover for shard " + rcnw );
+        }
+    }
+
+    /**
+     * Runs the calls in parallel, the last one by the calling thread. A call which fails is logged
+     * and left out, as a miss.
+     * <p>
+     * @param calls
+     * @return the results of the calls which succeeded, never null
+     */
+    private <R> List<R> callInParallel( List<Callable<R>> calls )
+    {
+        List<R> results = new ArrayList<R>( calls.size() );
+        if ( calls.isEmpty() )
+        {
+            return results;
+        }
+
+        List<Future<R>> futures = new ArrayList<Future<R>>( calls.size() - 1 );
+        for ( int i = 0; i < calls.size() - 1; i++ )
+        {
+            futures.add( ThreadPoolManager.getInstance().getExecutorService( THREAD_POOL_NAME ).submit( calls.get( i ) ) );
+        }
+
+        try
+        {
+            addResult( results, calls.get( calls.size() - 1 ).call() );
+        }
+        catch ( Exception e )
+        {
+            log.error( "Problem calling shard", e );
+        }
+
+        for ( Future<R> future : futures )
+        {
+            try
+            {
+                addResult( results, future.get() );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                log.error( "Interrupted while calling the shards", e );
+                break;
+            }
+            catch ( ExecutionException e )
+            {
+                log.error( "Problem calling shard", e.getCause() );
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @param results
+     * @param result may be null
+     */
+    private static <R> void addResult( List<R> results, R result )
+    {
+        if ( result != null )
+        {
+            results.add( result );
+        }
+    }
+
+    /**
+     * String form of some of the configuration information for the remote cache.
+     * <p>
+     * @return Some info for logging.
+     */
+    @Override
+    public String toString()
+    {
+        return "ShardedRemoteCacheNoWaitFacade: " + getCacheName() + ", shards = " + noWaits.size()
+            + ", replicas = " + replicas;
+    }
+}
@@ -2,6 +2,7 @@ package org.apache.commons.jcs.auxiliary.remote.behavior;
 
 import java.util.List;
 
+import org.apache.commons.jcs.auxiliary.HedgedLookup;
 import org.apache.commons.jcs.auxiliary.remote.RemoteLocation;
 
 /*
@@ -45,6 +46,9 @@ public interface IRemoteCacheAttributes
      */
     int DEFAULT_ZOMBIE_QUEUE_MAX_SIZE = 1000;
 
+    /** The number of points each shard server gets on the hash ring. */
+    int DEFAULT_SHARD_VIRTUAL_NODES = 160;
+
     /**
      * Gets the failoverIndex attribute of the IRemoteCacheAttributes object.
      * <p>
@@ -179,4 +183,69 @@ public interface IRemoteCacheAttributes
      * @return Returns the zombieQueueMaxSize.
      */
     int getZombieQueueMaxSize();
+
+    /**
+     * How the facade queries the peers on a get: SEQUENTIAL, the default, asks them one after the
+     * other, PARALLEL asks them all at once and HEDGED asks the next one only when the previous
+     * ones are slower than the hedge delay. The first hit wins.
+     * <p>
+     * @param lookupMode The lookupMode to set.
+     */
+    void setLookupMode( HedgedLookup.LookupMode lookupMode );
+
+    /**
+     * @return Returns the lookupMode.
+     */
+    HedgedLookup.LookupMode getLookupMode();
+
+    /**
+     * The delay before asking the next server in HEDGED mode. If 0, the default, the 95th
+     * percentile of the latency of the server asked last is used.
+     * <p>
+     * @param hedgeDelayMillis The hedgeDelayMillis to set.
+     */
+    void setHedgeDelayMillis( long hedgeDelayMillis );
+
+    /**
+     * @return Returns the hedgeDelayMillis.
+     */
+    long getHedgeDelayMillis();
+
+    /**
+     * A comma separated list of servers, host:port. If set, a local cache spreads the keys over
+     * all of them by consistent hashing instead of using a primary and failovers.
+     * <p>
+     * @param shardServers The shardServers to set.
+     */
+    void setShardServers( String shardServers );
+
+    /**
+     * @return Returns the shardServers.
+     */
+    String getShardServers();
+
+    /**
+     * The number of shard servers each key is stored on, 1 by default.
+     * <p>
+     * @param shardReplicas The shardReplicas to set.
+     */
+    void setShardReplicas( int shardReplicas );
+
+    /**
+     * @return Returns the shardReplicas.
+     */
+    int getShardReplicas();
+
+    /**
+     * The number of points each shard server gets on the hash ring. More points spread the keys
+     * more evenly.
+     * <p>
+     * @param shardVirtualNodes The shardVirtualNodes to set.
+     */
+    void setShardVirtualNodes( int shardVirtualNodes );
+
+    /**
+     * @return Returns the shardVirtualNodes.
+     */
+    int getShardVirtualNodes();
 }
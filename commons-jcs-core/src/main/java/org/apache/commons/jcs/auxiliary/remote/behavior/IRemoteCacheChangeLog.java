@@ -0,0 +1,47 @@
+package org.apache.commons.jcs.auxiliary.remote.behavior;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.rmi.Remote;
+
+import org.apache.commons.jcs.auxiliary.remote.value.RemoteCacheChanges;
+
+/**
+ * A remote cache server which versions the changes of its regions, so that a client which
+ * reconnects can find out what it missed.
+ */
+public interface IRemoteCacheChangeLog<K>
+    extends Remote
+{
+    /**
+     * Gets the keys changed in the region between the last event delivered to the listener before
+     * it was registered again, and its registration. The changes are not complete if the listener
+     * is unknown, was never registered again, or if the changes are no longer remembered.
+     * <p>
+     * @param cacheName the region
+     * @param listenerId the id the server gave to the listener
+     * @param listener the listener registered again
+     * @return the keys changed
+     * @throws IOException
+     */
+    RemoteCacheChanges<K> getMissedChanges( String cacheName, long listenerId, IRemoteCacheListener<K, ?> listener )
+        throws IOException;
+}
@@ -0,0 +1,245 @@
+package org.apache.commons.jcs.auxiliary.remote.server;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.jcs.auxiliary.remote.value.RemoteCacheChanges;
+import org.apache.commons.jcs.engine.behavior.ICacheListener;
+
+/**
+ * The versions of the changes of a region, and what was delivered to each listener.
+ * <p>
+ * Each change gets the next version. The keys of the last changes are kept in a ring, a remove all
+ * takes a slot too. When a listener is registered again, the changes it missed are those between
+ * the last version delivered to its previous registration and the version at the new one.
+ * <p>
+ * The tracking of a listener whose event queue was destroyed is kept for a while, for it to come
+ * back, and then dropped. A listener coming back later gets incomplete changes.
+ */
+class RemoteCacheChangeLog<K>
+{
+    /** How long the tracking of a listener without event queue is kept by default, one hour */
+    static final long DEFAULT_DETACHED_TTL_MILLIS = 60 * 60 * 1000L;
+
+    /** Marks a remove all in the ring */
+    private static final Object REMOVE_ALL = new Object();
+
+    /** The keys changed, the key of version v is at v % length */
+    private final Object[] keys;
+
+    /** The version of the last change, guarded by this */
+    private long version = 0;
+
+    /** The tracking of the delivered versions, by listener id */
+    private final ConcurrentMap<Long, VersionTrackingListener<?, ?>> trackers =
+        new ConcurrentHashMap<Long, VersionTrackingListener<?, ?>>();
+
+    /** How long the tracking of a listener without event queue is kept */
+    private final long detachedTtlMillis;
+
+    /**
+     * @param size the number of changes remembered
+     */
+    RemoteCacheChangeLog( int size )
+    {
+        this( size, DEFAULT_DETACHED_TTL_MILLIS );
+    }
+
+    /**
+     * @param size the number of changes remembered
+     * @param detachedTtlMillis how long the tracking of a listener without event queue is kept
+     */
+    RemoteCacheChangeLog( int size, long detachedTtlMillis )
+    {
+        this.keys = new Object[size];
+        this.detachedTtlMillis = detachedTtlMillis;
+    }
+
+    /**
+     * Records a put or a remove.
+     * <p>
+     * @param key
+     * @return the version of the change
+     */
+    synchronized long add( K key )
+    {
+        version++;
+        keys[(int) ( version % keys.length )] = key;
+        return version;
+    }
+
+    /**
+     * Records a remove all.
+     * <p>
+     * @return the version of the change
+     */
+    synchronized long addRemoveAll()
+    {
+        version++;
+        keys[(int) ( version % keys.length )] = REMOVE_ALL;
+        return version;
+    }
+
+    /**
+     * @return the version of the last change
+     */
+    synchronized long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Gets the keys changed after a version up to another.
+     * <p>
+     * @param fromVersion exclusive, negative if unknown
+     * @param toVersion inclusive
+     * @return the keys, not complete if a change is no longer remembered or is a remove all
+     */
+    @SuppressWarnings("unchecked") // Only the keys and the marker are stored
+    synchronized RemoteCacheChanges<K> getChanges( long fromVersion, long toVersion )
+    {
+        if ( fromVersion < 0 || fromVersion < version - keys.length || toVersion > version )
+        {
+            return RemoteCacheChanges.incomplete( fromVersion, toVersion );
+        }
+
+        Set<K> changed = new HashSet<K>();
+        for ( long v = fromVersion + 1; v <= toVersion; v++ )
+        {
+            Object key = keys[(int) ( v % keys.length )];
+            if ( key == REMOVE_ALL )
+            {
+                return RemoteCacheChanges.incomplete( fromVersion, toVersion );
+            }
+            changed.add( (K) key );
+        }
+        return new RemoteCacheChanges<K>( fromVersion, toVersion, true, changed );
+    }
+
+    /**
+     * Starts tracking a registration of the listener. Must be called under the lock of the
+     * region, so that no change is recorded in between.
+     * <p>
+     * @param listenerId
+     * @param listener
+     * @return the listener to give to the event queue
+     */
+    <KK, VV> VersionTrackingListener<KK, VV> register( long listenerId, ICacheListener<KK, VV> listener )
+    {
+        pruneDetached();
+
+        Long id = Long.valueOf( listenerId );
+        VersionTrackingListener<?, ?> previous = trackers.get( id );
+        long missedFromVersion = -1;
+        if ( previous != null && previous.isTracking( listener ) )
+        {
+            missedFromVersion = previous.getDeliveredVersion();
+        }
+
+        VersionTrackingListener<KK, VV> tracker =
+            new VersionTrackingListener<KK, VV>( listener, missedFromVersion, getVersion() );
+        trackers.put( id, tracker );
+        return tracker;
+    }
+
+    /**
+     * Stops tracking the listener, it won't be told what it missed if it comes back.
+     * <p>
+     * @param listenerId
+     */
+    void unregister( long listenerId )
+    {
+        trackers.remove( Long.valueOf( listenerId ) );
+    }
+
+    /**
+     * The event queue of the listener was destroyed. Its tracking is kept for the listener to
+     * come back, until it expires.
+     * <p>
+     * @param listenerId
+     */
+    void detach( long listenerId )
+    {
+        VersionTrackingListener<?, ?> tracker = trackers.get( Long.valueOf( listenerId ) );
+        if ( tracker != null )
+        {
+            tracker.detach( System.currentTimeMillis() );
+        }
+        pruneDetached();
+    }
+
+    /**
+     * Drops the tracking of the listeners detached for longer than the time to live.
+     */
+    private void pruneDetached()
+    {
+        long now = System.currentTimeMillis();
+        for ( Iterator<VersionTrackingListener<?, ?>> itr = trackers.values().iterator(); itr.hasNext(); )
+        {
+            if ( itr.next().isDetachedLongerThan( now, detachedTtlMillis ) )
+            {
+                itr.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the number of listeners tracked
+     */
+    int getTrackedCount()
+    {
+        return trackers.size();
+    }
+
+    /**
+     * Called before queuing an event for the listener.
+     * <p>
+     * @param listenerId
+     * @param changeVersion the version of the change sent
+     */
+    void expect( long listenerId, long changeVersion )
+    {
+        VersionTrackingListener<?, ?> tracker = trackers.get( Long.valueOf( listenerId ) );
+        if ( tracker != null )
+        {
+            tracker.expect( changeVersion );
+        }
+    }
+
+    /**
+     * @param listenerId
+     * @param listener
+     * @return the changes the listener missed before its last registration
+     */
+    RemoteCacheChanges<K> getMissedChanges( long listenerId, ICacheListener<?, ?> listener )
+    {
+        VersionTrackingListener<?, ?> tracker = trackers.get( Long.valueOf( listenerId ) );
+        if ( tracker == null || !tracker.isTracking( listener ) )
+        {
+            return RemoteCacheChanges.incomplete( -1, getVersion() );
+        }
+        return getChanges( tracker.getMissedFromVersion(), tracker.getMissedToVersion() );
+    }
+}
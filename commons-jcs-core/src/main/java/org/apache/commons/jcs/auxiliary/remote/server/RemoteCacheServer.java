@@ -40,6 +40,7 @@ import org.apache.commons.jcs.auxiliary.remote.behavior.IRemoteCacheListener;
 import org.apache.commons.jcs.auxiliary.remote.server.behavior.IRemoteCacheServer;
 import org.apache.commons.jcs.auxiliary.remote.server.behavior.IRemoteCacheServerAttributes;
 import org.apache.commons.jcs.auxiliary.remote.server.behavior.RemoteType;
+import org.apache.commons.jcs.auxiliary.remote.value.RemoteCacheChanges;
 import org.apache.commons.jcs.engine.CacheEventQueueFactory;
 import org.apache.commons.jcs.engine.CacheListeners;
 import org.apache.commons.jcs.engine.behavior.ICacheElement;
@@ -94,6 +95,10 @@ public class RemoteCacheServer<K, V>
     private final transient ConcurrentMap<String, CacheListeners<K, V>> clusterListenersMap =
         new ConcurrentHashMap<String, CacheListeners<K, V>>();
 
+    /** The versions of the changes of each region, none if the change log is disabled */
+    private final transient ConcurrentMap<String, RemoteCacheChangeLog<K>> changeLogs =
+        new ConcurrentHashMap<String, RemoteCacheChangeLog<K>>();
+
     /** The central hub */
     private transient CompositeCacheManager cacheManager;
 
@@ -342,6 +347,9 @@ public class RemoteCacheServer<K, V>
                     }
                 }
 
+                RemoteCacheChangeLog<K> changeLog = getChangeLog( item.getCacheName() );
+                long version = changeLog != null ? changeLog.add( item.getKey() ) : 0;
+
                 // UPDATE LOCALS IF A REQUEST COMES FROM A CLUSTER
                 // IF LOCAL CLUSTER CONSISTENCY IS CONFIGURED
                 if ( !fromCluster || ( fromCluster && remoteCacheServerAttributes.isLocalClusterConsistency() ) )
@@ -353,6 +361,10 @@ public class RemoteCacheServer<K, V>
                     }
                     for ( int i = 0; i < qlist.length; i++ )
                     {
+                        if ( changeLog != null )
+                        {
+                            changeLog.expect( qlist[i].getListenerId(), version );
+                        }
                         qlist[i].addPutEvent( item );
                     }
                 }
@@ -945,6 +957,9 @@ public class RemoteCacheServer<K, V>
                         + removeSuccess );
                 }
 
+                RemoteCacheChangeLog<K> changeLog = getChangeLog( cacheName );
+                long version = changeLog != null ? changeLog.add( key ) : 0;
+
                 // UPDATE LOCALS IF A REQUEST COMES FROM A CLUSTER
                 // IF LOCAL CLUSTER CONSISTENCY IS CONFIGURED
                 if ( !fromCluster || ( fromCluster && remoteCacheServerAttributes.isLocalClusterConsistency() ) )
@@ -953,6 +968,10 @@ public class RemoteCacheServer<K, V>
 
                     for ( int i = 0; i < qlist.length; i++ )
                     {
+                        if ( changeLog != null )
+                        {
+                            changeLog.expect( qlist[i].getListenerId(), version );
+                        }
                         qlist[i].addRemoveEvent( key );
                     }
                 }
@@ -1037,6 +1056,9 @@ public class RemoteCacheServer<K, V>
                     c.removeAll();
                 }
 
+                RemoteCacheChangeLog<K> changeLog = getChangeLog( cacheName );
+                long version = changeLog != null ? changeLog.addRemoveAll() : 0;
+
                 // update registered listeners
                 if ( !fromCluster || ( fromCluster && remoteCacheServerAttributes.isLocalClusterConsistency() ) )
                 {
@@ -1044,6 +1066,10 @@ public class RemoteCacheServer<K, V>
 
                     for ( int i = 0; i < qlist.length; i++ )
                     {
+                        if ( changeLog != null )
+                        {
+                            changeLog.expect( qlist[i].getListenerId(), version );
+                        }
                         qlist[i].addRemoveAllEvent();
                     }
                 }
@@ -1272,7 +1298,8 @@ public class RemoteCacheServer<K, V>
      * <p>
      * @param eventQMap
      */
-    private static <KK, VV> void cleanupEventQMap( Map<Long, ICacheEventQueue<KK, VV>> eventQMap )
+    private static <KK, VV> void cleanupEventQMap( Map<Long, ICacheEventQueue<KK, VV>> eventQMap,
+                                                   RemoteCacheChangeLog<?> changeLog )
     {
         synchronized ( eventQMap )
         {
@@ -1288,6 +1315,10 @@ public class RemoteCacheServer<K, V>
                 if ( !q.isWorking() )
                 {
                     itr.remove();
+                    if ( changeLog != null )
+                    {
+                        changeLog.detach( e.getKey().longValue() );
+                    }
                     log.warn( "Cache event queue " + q + " is not working and removed from cache server." );
                 }
             }
@@ -1332,7 +1363,7 @@ public class RemoteCacheServer<K, V>
             cacheListeners = (CacheListeners<KK, VV>)getCacheListeners( cacheName );
         }
         Map<Long, ICacheEventQueue<KK, VV>> eventQMap = cacheListeners.eventQMap;
-        cleanupEventQMap( eventQMap );
+        cleanupEventQMap( eventQMap, changeLogs.get( cacheName ) );
 
         // synchronized ( listenerId )
         synchronized ( ICacheListener.class )
@@ -1395,11 +1426,25 @@ public class RemoteCacheServer<K, V>
                 }
             }
 
-            CacheEventQueueFactory<KK, VV> fact = new CacheEventQueueFactory<KK, VV>();
-            ICacheEventQueue<KK, VV> q = fact.createCacheEventQueue( listener, id, cacheName, remoteCacheServerAttributes
-                .getEventQueuePoolName(), remoteCacheServerAttributes.getEventQueueType() );
+            long queueId = listener.getListenerId();
+            RemoteCacheChangeLog<K> changeLog = remoteType == RemoteType.CLUSTER ? null : getChangeLog( cacheName );
 
-            eventQMap.put(Long.valueOf(listener.getListenerId()), q);
+            // under the region lock, no change must come between the start of the tracking and
+            // the registration of the queue
+            synchronized ( cacheListeners )
+            {
+                ICacheListener<KK, VV> queued = listener;
+                if ( changeLog != null )
+                {
+                    queued = changeLog.register( queueId, listener );
+                }
+
+                CacheEventQueueFactory<KK, VV> fact = new CacheEventQueueFactory<KK, VV>();
+                ICacheEventQueue<KK, VV> q = fact.createCacheEventQueue( queued, id, cacheName, remoteCacheServerAttributes
+                    .getEventQueuePoolName(), remoteCacheServerAttributes.getEventQueueType() );
+
+                eventQMap.put(Long.valueOf(queueId), q);
+            }
 
             if ( log.isInfoEnabled() )
             {
@@ -1473,7 +1518,8 @@ public class RemoteCacheServer<K, V>
             cacheDesc = getCacheListeners( cacheName );
         }
         Map<Long, ICacheEventQueue<K, V>> eventQMap = cacheDesc.eventQMap;
-        cleanupEventQMap( eventQMap );
+        RemoteCacheChangeLog<K> changeLog = changeLogs.get( cacheName );
+        cleanupEventQMap( eventQMap, changeLog );
         ICacheEventQueue<K, V> q = eventQMap.remove( Long.valueOf( listenerId ) );
 
         if ( q != null )
@@ -1483,7 +1529,7 @@ public class RemoteCacheServer<K, V>
                 log.debug( "Found queue for cache region = [" + cacheName + "] and listenerId  [" + listenerId + "]" );
             }
             q.destroy();
-            cleanupEventQMap( eventQMap );
+            cleanupEventQMap( eventQMap, changeLog );
         }
         else
         {
@@ -1494,6 +1540,11 @@ public class RemoteCacheServer<K, V>
             }
         }
 
+        if ( changeLog != null )
+        {
+            changeLog.unregister( listenerId );
+        }
+
         // cleanup
         idTypeMap.remove( Long.valueOf( listenerId ) );
         idIPMap.remove( Long.valueOf( listenerId ) );
@@ -1622,6 +1673,56 @@ public class RemoteCacheServer<K, V>
         return id;
     }
 
+    /**
+     * Gets the keys changed in the region while the listener was away, see
+     * {@link RemoteCacheChangeLog}.
+     * <p>
+     * @param cacheName the region
+     * @param listenerId the id the server gave to the listener
+     * @param listener the listener registered again
+     * @return the keys changed, not complete if the region should be cleared
+     * @throws IOException
+     */
+    @Override
+    public RemoteCacheChanges<K> getMissedChanges( String cacheName, long listenerId, IRemoteCacheListener<K, ?> listener )
+        throws IOException
+    {
+        RemoteCacheChangeLog<K> changeLog = changeLogs.get( cacheName );
+        RemoteCacheChanges<K> changes = changeLog != null ? changeLog.getMissedChanges( listenerId, listener )
+            : RemoteCacheChanges.<K>incomplete( -1, 0 );
+
+        if ( log.isInfoEnabled() )
+        {
+            log.info( "Missed changes for listener [" + listenerId + "] in cache [" + cacheName + "]: " + changes );
+        }
+        return changes;
+    }
+
+    /**
+     * @param cacheName
+     * @return the change log of the region, null if the change log is disabled
+     */
+    private RemoteCacheChangeLog<K> getChangeLog( String cacheName )
+    {
+        final int size = remoteCacheServerAttributes.getChangeLogSize();
+        if ( size <= 0 )
+        {
+            return null;
+        }
+
+        RemoteCacheChangeLog<K> changeLog = changeLogs.get( cacheName );
+        if ( changeLog == null )
+        {
+            changeLog = new RemoteCacheChangeLog<K>( size );
+            RemoteCacheChangeLog<K> existing = changeLogs.putIfAbsent( cacheName, changeLog );
+            if ( existing != null )
+            {
+                changeLog = existing;
+            }
+        }
+        return changeLog;
+    }
+
     /**
      * Gets the stats attribute of the RemoteCacheServer object.
      * <p>
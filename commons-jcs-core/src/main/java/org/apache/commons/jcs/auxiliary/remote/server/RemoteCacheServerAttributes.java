@@ -56,6 +56,12 @@ public class RemoteCacheServerAttributes
     /** The delay between runs */
     private long registryKeepAliveDelayMillis = 15 * 1000;
 
+    /** The default number of changes remembered per region */
+    private static final int DEFAULT_CHANGE_LOG_SIZE = 10000;
+
+    /** The number of changes remembered per region for the clients which reconnect */
+    private int changeLogSize = DEFAULT_CHANGE_LOG_SIZE;
+
     /** Default constructor for the RemoteCacheAttributes object */
     public RemoteCacheServerAttributes()
     {
@@ -192,6 +198,24 @@ public class RemoteCacheServerAttributes
         return registryKeepAliveDelayMillis;
     }
 
+    /**
+     * @param changeLogSize the number of changes remembered per region, 0 to disable
+     */
+    @Override
+    public void setChangeLogSize( int changeLogSize )
+    {
+        this.changeLogSize = changeLogSize;
+    }
+
+    /**
+     * @return the number of changes remembered per region
+     */
+    @Override
+    public int getChangeLogSize()
+    {
+        return changeLogSize;
+    }
+
     /**
      * @return String details
      */
@@ -207,6 +231,7 @@ public class RemoteCacheServerAttributes
         buf.append( "\n registryKeepAliveDelayMillis = [" + this.getRegistryKeepAliveDelayMillis() + "]" );
         buf.append( "\n eventQueueType = [" + this.getEventQueueType() + "]" );
         buf.append( "\n eventQueuePoolName = [" + this.getEventQueuePoolName() + "]" );
+        buf.append( "\n changeLogSize = [" + this.getChangeLogSize() + "]" );
         return buf.toString();
     }
 }
@@ -0,0 +1,224 @@
+package org.apache.commons.jcs.auxiliary.remote.server;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.commons.jcs.engine.behavior.ICacheElement;
+import org.apache.commons.jcs.engine.behavior.ICacheListener;
+
+/**
+ * Wraps the listener of a client in its event queue, to know the version of the last change
+ * delivered to it.
+ * <p>
+ * The server queues the version of each event here before queuing the event, both under the
+ * region lock, so the versions are in the order of the events. A delivered event takes the oldest
+ * version. An event which fails is retried by the queue, or the queue is destroyed, so the
+ * delivered version never gets ahead of what the client has seen.
+ */
+class VersionTrackingListener<K, V>
+    implements ICacheListener<K, V>
+{
+    /** The listener of the client */
+    private final ICacheListener<K, V> listener;
+
+    /** The versions of the events queued and not delivered yet */
+    private final ConcurrentLinkedQueue<Long> versions = new ConcurrentLinkedQueue<Long>();
+
+    /** The version of the last change delivered */
+    private volatile long deliveredVersion;
+
+    /** The version of the last change delivered before this registration, negative if unknown */
+    private final long missedFromVersion;
+
+    /** The version of the region at this registration */
+    private final long missedToVersion;
+
+    /** When the event queue was destroyed, negative while it is alive */
+    private volatile long detachedTime = -1;
+
+    /**
+     * @param listener the listener of the client
+     * @param missedFromVersion the version of the last change delivered to the previous
+     *            registration of the listener, negative if unknown
+     * @param version the version of the region
+     */
+    VersionTrackingListener( ICacheListener<K, V> listener, long missedFromVersion, long version )
+    {
+        this.listener = listener;
+        this.missedFromVersion = missedFromVersion;
+        this.missedToVersion = version;
+        this.deliveredVersion = version;
+    }
+
+    /**
+     * @param other a listener
+     * @return true if this tracks the listener, according to its equals, a remote reference for a
+     *         remote client
+     */
+    boolean isTracking( ICacheListener<?, ?> other )
+    {
+        return listener.equals( other );
+    }
+
+    /**
+     * Called before queuing an event.
+     * <p>
+     * @param version the version of the change sent
+     */
+    void expect( long version )
+    {
+        versions.add( Long.valueOf( version ) );
+    }
+
+    /**
+     * @return the version of the last change delivered
+     */
+    long getDeliveredVersion()
+    {
+        return deliveredVersion;
+    }
+
+    /**
+     * @return the version of the last change delivered before this registration, negative if
+     *         unknown
+     */
+    long getMissedFromVersion()
+    {
+        return missedFromVersion;
+    }
+
+    /**
+     * @return the version of the region at this registration
+     */
+    long getMissedToVersion()
+    {
+        return missedToVersion;
+    }
+
+    /**
+     * The event queue of this registration was destroyed.
+     * <p>
+     * @param now the current time in millis
+     */
+    void detach( long now )
+    {
+        if ( detachedTime < 0 )
+        {
+            detachedTime = now;
+        }
+    }
+
+    /**
+     * @param now the current time in millis
+     * @param ttlMillis the time to live of a detached registration
+     * @return true if the event queue was destroyed longer than the time to live ago
+     */
+    boolean isDetachedLongerThan( long now, long ttlMillis )
+    {
+        long detached = detachedTime;
+        return detached >= 0 && now - detached >= ttlMillis;
+    }
+
+    /**
+     * An event was delivered.
+     */
+    private void delivered()
+    {
+        Long version = versions.poll();
+        if ( version != null )
+        {
+            deliveredVersion = version.longValue();
+        }
+    }
+
+    /**
+     * @see org.apache.commons.jcs.engine.behavior.ICacheListener#handlePut(org.apache.commons.jcs.engine.behavior.ICacheElement)
+     */
+    @Override
+    public void handlePut( ICacheElement<K, V> item )
+        throws IOException
+    {
+        listener.handlePut( item );
+        delivered();
+    }
+
+    /**
+     * @see org.apache.commons.jcs.engine.behavior.ICacheListener#handleRemove(java.lang.String, java.lang.Object)
+     */
+    @Override
+    public void handleRemove( String cacheName, K key )
+        throws IOException
+    {
+        listener.handleRemove( cacheName, key );
+        delivered();
+    }
+
+    /**
+     * @see org.apache.commons.jcs.engine.behavior.ICacheListener#handleRemoveAll(java.lang.String)
+     */
+    @Override
+    public void handleRemoveAll( String cacheName )
+        throws IOException
+    {
+        listener.handleRemoveAll( cacheName );
+        delivered();
+    }
+
+    /**
+     * @see org.apache.commons.jcs.engine.behavior.ICacheListener#handleDispose(java.lang.String)
+     */
+    @Override
+    public void handleDispose( String cacheName )
+        throws IOException
+    {
+        listener.handleDispose( cacheName );
+    }
+
+    /**
+     * @see org.apache.commons.jcs.engine.behavior.ICacheListener#setListenerId(long)
+     */
+    @Override
+    public void setListenerId( long id )
+        throws IOException
+    {
+        listener.setListenerId( id );
+    }
+
+    /**
+     * @see org.apache.commons.jcs.engine.behavior.ICacheListener#getListenerId()
+     */
+    @Override
+    public long getListenerId()
+        throws IOException
+    {
+        return listener.getListenerId();
+    }
+
+    /**
+     * @return the listener and the versions
+     */
+    @Override
+    public String toString()
+    {
+        return listener + " deliveredVersion = [" + deliveredVersion + "]";
+    }
+}
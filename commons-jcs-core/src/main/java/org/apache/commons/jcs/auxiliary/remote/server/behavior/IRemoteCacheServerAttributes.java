@@ -117,4 +117,17 @@ public interface IRemoteCacheServerAttributes
      * @return the registryKeepAliveDelayMillis
      */
     long getRegistryKeepAliveDelayMillis();
+
+    /**
+     * The number of changes remembered per region. A client which reconnects is told which keys
+     * changed while it was away, if they are still remembered. Otherwise it clears its region.
+     * <p>
+     * @param changeLogSize the number of changes remembered per region, 0 to disable
+     */
+    void setChangeLogSize( int changeLogSize );
+
+    /**
+     * @return the number of changes remembered per region
+     */
+    int getChangeLogSize();
 }
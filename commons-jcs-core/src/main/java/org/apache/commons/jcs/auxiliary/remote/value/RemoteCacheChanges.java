@@ -0,0 +1,119 @@
+package org.apache.commons.jcs.auxiliary.remote.value;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The keys of a region which changed on the remote server between two versions. If the server
+ * doesn't remember all the changes, or the region was cleared, the list is not complete and the
+ * client should clear its region instead.
+ */
+public class RemoteCacheChanges<K>
+    implements Serializable
+{
+    /** Don't change. */
+    private static final long serialVersionUID = 3506236725451618522L;
+
+    /** The version the changes start after */
+    private final long fromVersion;
+
+    /** The version of the last change */
+    private final long toVersion;
+
+    /** Are all the changes in the keys */
+    private final boolean complete;
+
+    /** The keys changed */
+    private final Set<K> keys;
+
+    /**
+     * @param fromVersion the version the changes start after
+     * @param toVersion the version of the last change
+     * @param complete are all the changes in the keys
+     * @param keys the keys changed
+     */
+    public RemoteCacheChanges( long fromVersion, long toVersion, boolean complete, Set<K> keys )
+    {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.complete = complete;
+        this.keys = keys;
+    }
+
+    /**
+     * @param fromVersion the version the changes start after
+     * @param toVersion the version of the last change
+     * @return changes which are not known
+     */
+    public static <K> RemoteCacheChanges<K> incomplete( long fromVersion, long toVersion )
+    {
+        return new RemoteCacheChanges<K>( fromVersion, toVersion, false, Collections.<K>emptySet() );
+    }
+
+    /**
+     * @return the version the changes start after
+     */
+    public long getFromVersion()
+    {
+        return fromVersion;
+    }
+
+    /**
+     * @return the version of the last change
+     */
+    public long getToVersion()
+    {
+        return toVersion;
+    }
+
+    /**
+     * @return true if all the changes are in the keys, false if the region should be cleared
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    /**
+     * @return the keys changed
+     */
+    public Set<K> getKeys()
+    {
+        return keys;
+    }
+
+    /**
+     * @return debugging string
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder buf = new StringBuilder();
+        buf.append( "\n RemoteCacheChanges " );
+        buf.append( "\n FromVersion = [" + fromVersion + "]" );
+        buf.append( "\n ToVersion = [" + toVersion + "]" );
+        buf.append( "\n Complete = [" + complete + "]" );
+        buf.append( "\n Keys = [" + keys.size() + "]" );
+        return buf.toString();
+    }
+}
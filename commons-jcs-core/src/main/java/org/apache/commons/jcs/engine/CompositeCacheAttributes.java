@@ -64,6 +64,9 @@ public class CompositeCacheAttributes
     /** Default number to send to disk at a time when memory fills. */
     private static final int DEFAULT_CHUNK_SIZE = 2;
 
+    /** Default time a confirmed miss is remembered */
+    private static final long DEFAULT_NEGATIVE_CACHE_TTL_MILLIS = 1000;
+
     /** allow lateral caches */
     private boolean useLateral = DEFAULT_USE_LATERAL;
 
@@ -100,6 +103,15 @@ public class CompositeCacheAttributes
     /** How many to spool to disk at a time. */
     private int spoolChunkSize = DEFAULT_CHUNK_SIZE;
 
+    /** Whether the memory cache keeps a sorted index of its String keys. */
+    private boolean useKeyIndex = false;
+
+    /** number of confirmed misses remembered, 0 to disable */
+    private int negativeCacheMaxObjects = 0;
+
+    /** how long a confirmed miss is remembered */
+    private long negativeCacheTtlMillis = DEFAULT_NEGATIVE_CACHE_TTL_MILLIS;
+
     /**
      * Constructor for the CompositeCacheAttributes object
      */
@@ -393,6 +405,66 @@ public class CompositeCacheAttributes
         this.spoolChunkSize = spoolChunkSize;
     }
 
+    /**
+     * Whether the memory cache keeps a sorted index of its String keys.
+     * <p>
+     * @param useKeyIndex
+     */
+    @Override
+    public void setUseKeyIndex( boolean useKeyIndex )
+    {
+        this.useKeyIndex = useKeyIndex;
+    }
+
+    /**
+     * @return true if the memory cache keeps a sorted index of its String keys
+     */
+    @Override
+    public boolean isUseKeyIndex()
+    {
+        return useKeyIndex;
+    }
+
+    /**
+     * The number of keys confirmed absent from memory and every auxiliary that the region remembers.
+     * <p>
+     * @param negativeCacheMaxObjects
+     */
+    @Override
+    public void setNegativeCacheMaxObjects( int negativeCacheMaxObjects )
+    {
+        this.negativeCacheMaxObjects = negativeCacheMaxObjects;
+    }
+
+    /**
+     * @return the number of confirmed misses remembered, 0 if disabled
+     */
+    @Override
+    public int getNegativeCacheMaxObjects()
+    {
+        return negativeCacheMaxObjects;
+    }
+
+    /**
+     * How long a confirmed miss is remembered.
+     * <p>
+     * @param negativeCacheTtlMillis
+     */
+    @Override
+    public void setNegativeCacheTtlMillis( long negativeCacheTtlMillis )
+    {
+        this.negativeCacheTtlMillis = negativeCacheTtlMillis;
+    }
+
+    /**
+     * @return how long a confirmed miss is remembered
+     */
+    @Override
+    public long getNegativeCacheTtlMillis()
+    {
+        return negativeCacheTtlMillis;
+    }
+
     /**
      * @return Returns the diskUsagePattern.
      */
@@ -420,6 +492,9 @@ public class CompositeCacheAttributes
         dump.append( ", maxSpoolPerRun = " ).append( maxSpoolPerRun );
         dump.append( ", diskUsagePattern = " ).append( diskUsagePattern );
         dump.append( ", spoolChunkSize = " ).append( spoolChunkSize );
+        dump.append( ", useKeyIndex = " ).append( useKeyIndex );
+        dump.append( ", negativeCacheMaxObjects = " ).append( negativeCacheMaxObjects );
+        dump.append( ", negativeCacheTtlMillis = " ).append( negativeCacheTtlMillis );
         dump.append( " ]" );
 
         return dump.toString();
@@ -237,6 +237,46 @@ public interface ICompositeCacheAttributes
      */
     void setSpoolChunkSize( int spoolChunkSize );
 
+    /**
+     * Whether the memory cache keeps a sorted index of its String keys, used by getMatching and the hierarchical
+     * removals.
+     * <p>
+     * @param useKeyIndex
+     */
+    void setUseKeyIndex( boolean useKeyIndex );
+
+    /**
+     * @return true if the memory cache keeps a sorted index of its String keys
+     */
+    boolean isUseKeyIndex();
+
+    /**
+     * The number of keys confirmed absent from memory and every auxiliary that the region remembers,
+     * so that repeated gets of missing keys don't go to the auxiliaries again. 0, the default,
+     * disables it.
+     * <p>
+     * @param negativeCacheMaxObjects
+     */
+    void setNegativeCacheMaxObjects( int negativeCacheMaxObjects );
+
+    /**
+     * @return the number of confirmed misses remembered, 0 if disabled
+     */
+    int getNegativeCacheMaxObjects();
+
+    /**
+     * How long a confirmed miss is remembered. A put on the key, local or received from a lateral or
+     * remote, forgets it sooner.
+     * <p>
+     * @param negativeCacheTtlMillis
+     */
+    void setNegativeCacheTtlMillis( long negativeCacheTtlMillis );
+
+    /**
+     * @return how long a confirmed miss is remembered
+     */
+    long getNegativeCacheTtlMillis();
+
     /**
      * Clone object
      */
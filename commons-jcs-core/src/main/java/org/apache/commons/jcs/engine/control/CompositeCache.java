@@ -24,7 +24,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -35,6 +37,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.jcs.access.exception.CacheException;
 import org.apache.commons.jcs.access.exception.ObjectNotFoundException;
 import org.apache.commons.jcs.auxiliary.AuxiliaryCache;
+import org.apache.commons.jcs.auxiliary.OverflowingAuxiliaryCache;
 import org.apache.commons.jcs.engine.CacheConstants;
 import org.apache.commons.jcs.engine.CacheStatus;
 import org.apache.commons.jcs.engine.behavior.ICache;
@@ -51,6 +54,7 @@ import org.apache.commons.jcs.engine.control.event.behavior.IElementEventQueue;
 import org.apache.commons.jcs.engine.control.group.GroupId;
 import org.apache.commons.jcs.engine.match.KeyMatcherPatternImpl;
 import org.apache.commons.jcs.engine.match.behavior.IKeyMatcher;
+import org.apache.commons.jcs.engine.memory.AbstractMemoryCache;
 import org.apache.commons.jcs.engine.memory.behavior.IMemoryCache;
 import org.apache.commons.jcs.engine.memory.lru.LRUMemoryCache;
 import org.apache.commons.jcs.engine.memory.shrinking.ShrinkerThread;
@@ -125,6 +129,9 @@ public class CompositeCache<K, V>
 
     private ScheduledFuture<?> future;
 
+    /** The keys recently confirmed absent, null if disabled */
+    private volatile NegativeLookupCache<K> negativeCache;
+
     /**
      * Constructor for the Cache object
      * <p>
@@ -144,6 +151,7 @@ public class CompositeCache<K, V>
         this.missCountExpired = new AtomicInteger(0);
 
         createMemoryCache( cattr );
+        createNegativeCache( cattr );
 
         if ( log.isInfoEnabled() )
         {
@@ -193,6 +201,16 @@ public class CompositeCache<K, V>
     public void setAuxCaches( AuxiliaryCache<K, V>[] auxCaches )
     {
         this.auxCaches = auxCaches;
+
+        // what an overflowing auxiliary evicts goes to the disk auxiliaries after it
+        for ( int i = 0; i < auxCaches.length; i++ )
+        {
+            if ( auxCaches[i] instanceof OverflowingAuxiliaryCache )
+            {
+                final int next = i + 1;
+                ( (OverflowingAuxiliaryCache<K, V>) auxCaches[i] ).setOverflow( ce -> spoolToDisk( ce, next ) );
+            }
+        }
     }
 
     /**
@@ -262,6 +280,11 @@ public class CompositeCache<K, V>
 
         synchronized ( this )
         {
+            NegativeLookupCache<K> negativeCache = this.negativeCache;
+            if ( negativeCache != null )
+            {
+                negativeCache.invalidate( cacheElement.getKey() );
+            }
             memCache.update( cacheElement );
             updateAuxiliaries( cacheElement, localOnly );
         }
@@ -402,6 +425,18 @@ public class CompositeCache<K, V>
      * @param ce The CacheElement
      */
     public void spoolToDisk( ICacheElement<K, V> ce )
+    {
+        spoolToDisk( ce, 0 );
+    }
+
+    /**
+     * Writes the specified element to the disk auxiliaries starting at the given index. An
+     * overflowing auxiliary takes the element alone, it spools what it evicts to the ones after it.
+     * <p>
+     * @param ce The CacheElement
+     * @param from index of the first auxiliary to consider
+     */
+    private void spoolToDisk( ICacheElement<K, V> ce, int from )
     {
         // if the item is not spoolable, return
         if ( !ce.getElementAttributes().getIsSpool() )
@@ -414,8 +449,9 @@ public class CompositeCache<K, V>
         boolean diskAvailable = false;
 
         // SPOOL TO DISK.
-        for ( ICache<K, V> aux : auxCaches )
+        for ( int i = from; i < auxCaches.length; i++ )
         {
+            ICache<K, V> aux = auxCaches[i];
             if ( aux != null && aux.getCacheType() == CacheType.DISK_CACHE )
             {
                 diskAvailable = true;
@@ -439,6 +475,12 @@ public class CompositeCache<K, V>
                     {
                         log.debug( "spoolToDisk done for: " + ce.getKey() + " on disk cache[" + aux.getCacheName() + "]" );
                     }
+
+                    if ( aux instanceof OverflowingAuxiliaryCache )
+                    {
+                        // the next ones get what it evicts
+                        break;
+                    }
                 }
                 else
                 {
@@ -501,6 +543,8 @@ public class CompositeCache<K, V>
     protected ICacheElement<K, V> get( K key, boolean localOnly )
     {
         ICacheElement<K, V> element = null;
+        NegativeLookupCache<K> negativeCache = this.negativeCache;
+        long generation = negativeCache == null ? 0 : negativeCache.getGeneration();
 
         boolean found = false;
 
@@ -542,6 +586,13 @@ public class CompositeCache<K, V>
 
                     found = true;
                 }
+                else if ( negativeCache != null && negativeCache.isKnownMiss( key ) )
+                {
+                    if ( log.isDebugEnabled() )
+                    {
+                        log.debug( cacheAttr.getCacheName() + " - Known miss, not asking the auxiliaries" );
+                    }
+                }
                 else
                 {
                     // Item not found in memory. If local invocation look in aux
@@ -610,6 +661,12 @@ public class CompositeCache<K, V>
                             }
                         }
                     }
+
+                    // the remote and lateral auxiliaries were asked too, it is missing everywhere
+                    if ( !found && !localOnly && negativeCache != null && auxCaches.length > 0 )
+                    {
+                        negativeCache.recordMiss( key, generation );
+                    }
                 }
             }
             catch ( IOException e )
@@ -682,6 +739,8 @@ public class CompositeCache<K, V>
     protected Map<K, ICacheElement<K, V>> getMultiple( Set<K> keys, boolean localOnly )
     {
         Map<K, ICacheElement<K, V>> elements = new HashMap<K, ICacheElement<K, V>>();
+        NegativeLookupCache<K> negativeCache = this.negativeCache;
+        long generation = negativeCache == null ? 0 : negativeCache.getGeneration();
 
         if ( log.isDebugEnabled() )
         {
@@ -697,7 +756,24 @@ public class CompositeCache<K, V>
             if ( elements.size() != keys.size() )
             {
                 Set<K> remainingKeys = pruneKeysFound( keys, elements );
-                elements.putAll( getMultipleFromAuxiliaryCaches( remainingKeys, localOnly ) );
+                if ( negativeCache != null )
+                {
+                    remainingKeys.removeIf( negativeCache::isKnownMiss );
+                }
+                if ( !remainingKeys.isEmpty() )
+                {
+                    Map<K, ICacheElement<K, V>> elementsFromAuxiliaries =
+                        getMultipleFromAuxiliaryCaches( remainingKeys, localOnly );
+                    elements.putAll( elementsFromAuxiliaries );
+
+                    if ( !localOnly && negativeCache != null && auxCaches.length > 0 )
+                    {
+                        for ( K key : pruneKeysFound( remainingKeys, elementsFromAuxiliaries ) )
+                        {
+                            negativeCache.recordMiss( key, generation );
+                        }
+                    }
+                }
             }
         }
         catch ( IOException e )
@@ -905,11 +981,9 @@ public class CompositeCache<K, V>
     protected Map<K, ICacheElement<K, V>> getMatchingFromMemory( String pattern )
         throws IOException
     {
-        // find matches in key array
+        // find matches in the key index or in a copy of the key set
         // this avoids locking the memory cache, but it uses more memory
-        Set<K> keyArray = memCache.getKeySet();
-
-        Set<K> matchingKeys = getKeyMatcher().getMatchingKeysFromArray( pattern, keyArray );
+        Set<K> matchingKeys = memCache.getMatchingKeys( pattern, getKeyMatcher() );
 
         // call get multiple
         return getMultipleFromMemory( matchingKeys );
@@ -1108,6 +1182,77 @@ public class CompositeCache<K, V>
         return allKeys;
     }
 
+    /**
+     * Get the keys of a group. The stores maintaining a group index only return the keys of the
+     * group instead of filtering all their keys.
+     * <p>
+     * @param groupId the group
+     * @return A set of the keys of the group
+     */
+    public Set<K> getGroupKeySet( GroupId groupId )
+    {
+        HashSet<K> groupKeys = new HashSet<K>();
+
+        groupKeys.addAll( memCache.getGroupKeys( groupId ) );
+        for ( AuxiliaryCache<K, V> aux : auxCaches )
+        {
+            if ( aux != null )
+            {
+                try
+                {
+                    groupKeys.addAll( aux.getGroupKeys( groupId ) );
+                }
+                catch ( IOException e )
+                {
+                    // ignore
+                }
+            }
+        }
+        return groupKeys;
+    }
+
+    /**
+     * Get the groups having elements in the cache.
+     * <p>
+     * @return A set of the group ids
+     */
+    public Set<GroupId> getGroupIds()
+    {
+        HashSet<GroupId> groupIds = new HashSet<GroupId>();
+
+        groupIds.addAll( memCache.getGroupIds() );
+        for ( AuxiliaryCache<K, V> aux : auxCaches )
+        {
+            if ( aux != null )
+            {
+                try
+                {
+                    groupIds.addAll( aux.getGroupIds() );
+                }
+                catch ( IOException e )
+                {
+                    // ignore
+                }
+            }
+        }
+        return groupIds;
+    }
+
+    /**
+     * Iterate over the keys for all elements in the cache without building the set of all of them.
+     * <p>
+     * Memory keys are read from the memory map itself when it supports it, the keys of each auxiliary
+     * are only requested once the previous store is exhausted and the ones already returned by memory or
+     * a previous auxiliary are skipped. Like the concurrent collections the iteration is weakly consistent:
+     * an element moving between stores during the iteration can be missed or returned twice.
+     * <p>
+     * @return an iterator over the keys, removal is not supported
+     */
+    public Iterator<K> getKeyIterator()
+    {
+        return new KeyIterator();
+    }
+
     /**
      * Removes an item from the cache.
      * <p>
@@ -1157,6 +1302,13 @@ public class CompositeCache<K, V>
 
         synchronized (this)
         {
+            // a remote put arrives as a remove, the key may be present again
+            NegativeLookupCache<K> negativeCache = this.negativeCache;
+            if ( negativeCache != null )
+            {
+                negativeCache.invalidate( key );
+            }
+
             try
             {
                 removed = memCache.remove( key );
@@ -1243,6 +1395,12 @@ public class CompositeCache<K, V>
     {
         synchronized (this)
         {
+            NegativeLookupCache<K> negativeCache = this.negativeCache;
+            if ( negativeCache != null )
+            {
+                negativeCache.clear();
+            }
+
             try
             {
                 memCache.removeAll();
@@ -1501,6 +1659,11 @@ public class CompositeCache<K, V>
 
         elems.add(new StatElement<Integer>( "HitCountRam", Integer.valueOf(getHitCountRam()) ) );
         elems.add(new StatElement<Integer>( "HitCountAux", Integer.valueOf(getHitCountAux()) ) );
+        NegativeLookupCache<K> negativeCache = this.negativeCache;
+        if ( negativeCache != null )
+        {
+            elems.add(new StatElement<Long>( "HitCountNegative", Long.valueOf(negativeCache.getHitCount()) ) );
+        }
 
         stats.setStatElements( elems );
 
@@ -1577,6 +1740,7 @@ public class CompositeCache<K, V>
         this.cacheAttr = cattr;
         // need a better way to do this, what if it is in error
         this.memCache.initialize( this );
+        createNegativeCache( cattr );
     }
 
     /**
@@ -1718,6 +1882,23 @@ public class CompositeCache<K, V>
         }
     }
 
+    /**
+     * Creates the cache of confirmed misses if the region remembers them.
+     * <p>
+     * @param cattr
+     */
+    private void createNegativeCache( ICompositeCacheAttributes cattr )
+    {
+        if ( cattr.getNegativeCacheMaxObjects() > 0 )
+        {
+            negativeCache = new NegativeLookupCache<K>( cattr.getNegativeCacheMaxObjects(), cattr.getNegativeCacheTtlMillis() );
+        }
+        else
+        {
+            negativeCache = null;
+        }
+    }
+
     /**
      * Create the MemoryCache based on the config parameters.
      * TODO: consider making this an auxiliary, despite its close tie to the CacheHub.
@@ -1840,4 +2021,108 @@ public class CompositeCache<K, V>
     {
         return getStats();
     }
+
+    /**
+     * Walks the memory cache then the auxiliaries one after the other.
+     */
+    private class KeyIterator implements Iterator<K>
+    {
+        private final Iterator<K> memoryKeys;
+        private final List<Set<K>> auxiliaryKeys = new ArrayList<Set<K>>();
+        private Iterator<K> current;
+        private int nextAuxiliary = 0;
+        private K next;
+
+        private KeyIterator()
+        {
+            memoryKeys = memCache instanceof AbstractMemoryCache
+                    ? ((AbstractMemoryCache<K, V>) memCache).getKeyIterator()
+                    : memCache.getKeySet().iterator();
+            current = memoryKeys;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while ( next == null )
+            {
+                if ( current.hasNext() )
+                {
+                    final K candidate = current.next();
+                    if ( current == memoryKeys || !isKnown( candidate ) )
+                    {
+                        next = candidate;
+                    }
+                }
+                else if ( !nextAuxiliary() )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public K next()
+        {
+            if ( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+            final K key = next;
+            next = null;
+            return key;
+        }
+
+        private boolean isKnown( K key )
+        {
+            try
+            {
+                if ( memCache.getQuiet( key ) != null )
+                {
+                    return true;
+                }
+            }
+            catch ( IOException e )
+            {
+                // then check auxiliaries
+            }
+            // the last one is the set being iterated
+            for ( int i = 0; i < auxiliaryKeys.size() - 1; i++ )
+            {
+                if ( auxiliaryKeys.get( i ).contains( key ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean nextAuxiliary()
+        {
+            while ( nextAuxiliary < auxCaches.length )
+            {
+                final AuxiliaryCache<K, V> aux = auxCaches[nextAuxiliary++];
+                if ( aux == null )
+                {
+                    continue;
+                }
+                try
+                {
+                    final Set<K> keys = aux.getKeySet();
+                    if ( keys != null && !keys.isEmpty() )
+                    {
+                        auxiliaryKeys.add( keys );
+                        current = keys.iterator();
+                        return true;
+                    }
+                }
+                catch ( IOException e )
+                {
+                    // ignore like getKeySet()
+                }
+            }
+            return false;
+        }
+    }
 }
@@ -679,6 +679,8 @@ public class CompositeCacheManager
                 factory.dispose();
             }
 
+            // the disposed auxiliaries must not be reused if the manager is configured again
+            auxiliaryCaches.clear();
             auxiliaryAttributeRegistry.clear();
             auxiliaryFactoryRegistry.clear();
 
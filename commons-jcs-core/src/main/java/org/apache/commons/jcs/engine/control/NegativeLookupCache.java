@@ -0,0 +1,185 @@
+package org.apache.commons.jcs.engine.control;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the keys a region recently failed to find in memory and in all its auxiliaries, so
+ * that repeated gets of missing keys don't go to disk, lateral or remote again.
+ * <p>
+ * The misses are forgotten after a time to live, when the key is put or removed, or when there are
+ * more than maxObjects of them, oldest first. All the misses have the same time to live, so the
+ * insertion order is also the expiration order.
+ * <p>
+ * A get reads the generation before asking the auxiliaries and records its miss with it, the miss
+ * is dropped if a key was invalidated in between since it may have been the key of this get.
+ */
+public class NegativeLookupCache<K>
+{
+    /** The number of misses remembered */
+    private final int maxObjects;
+
+    /** How long a miss is remembered */
+    private final long ttlMillis;
+
+    /** The expiration time of the misses, oldest first */
+    private final LinkedHashMap<K, Long> misses;
+
+    /** Number of gets answered by a remembered miss */
+    private long hitCount = 0;
+
+    /** Incremented by each invalidation */
+    private long generation = 0;
+
+    /**
+     * @param maxObjects the number of misses remembered
+     * @param ttlMillis how long a miss is remembered
+     */
+    public NegativeLookupCache( final int maxObjects, long ttlMillis )
+    {
+        this.maxObjects = maxObjects;
+        this.ttlMillis = ttlMillis;
+        this.misses = new LinkedHashMap<K, Long>()
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<K, Long> eldest )
+            {
+                return size() > maxObjects;
+            }
+        };
+    }
+
+    /**
+     * @param key
+     * @return true if the key was recently confirmed absent
+     */
+    public synchronized boolean isKnownMiss( K key )
+    {
+        Long expiration = misses.get( key );
+        if ( expiration == null )
+        {
+            return false;
+        }
+        if ( expiration.longValue() <= System.currentTimeMillis() )
+        {
+            misses.remove( key );
+            return false;
+        }
+        hitCount++;
+        return true;
+    }
+
+    /**
+     * Remembers that the key is absent everywhere.
+     * <p>
+     * @param key
+     */
+    public synchronized void recordMiss( K key )
+    {
+        long now = System.currentTimeMillis();
+
+        // move it to the end, the expired ones are at the start
+        misses.remove( key );
+        for ( Iterator<Long> it = misses.values().iterator(); it.hasNext(); )
+        {
+            if ( it.next().longValue() > now )
+            {
+                break;
+            }
+            it.remove();
+        }
+        misses.put( key, Long.valueOf( now + ttlMillis ) );
+    }
+
+    /**
+     * Remembers that the key is absent everywhere, unless a key was invalidated since the generation
+     * was read.
+     * <p>
+     * @param key
+     * @param generation the generation read before looking the key up
+     * @return true if the miss was recorded
+     */
+    public synchronized boolean recordMiss( K key, long generation )
+    {
+        if ( generation != this.generation )
+        {
+            return false;
+        }
+        recordMiss( key );
+        return true;
+    }
+
+    /**
+     * Forgets the miss, the key was put or removed.
+     * <p>
+     * @param key
+     */
+    public synchronized void invalidate( K key )
+    {
+        generation++;
+        misses.remove( key );
+    }
+
+    /**
+     * Forgets all the misses.
+     */
+    public synchronized void clear()
+    {
+        generation++;
+        misses.clear();
+    }
+
+    /**
+     * @return the current generation, to pass to recordMiss( K, long )
+     */
+    public synchronized long getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * @return the number of misses remembered, some may have expired
+     */
+    public synchronized int size()
+    {
+        return misses.size();
+    }
+
+    /**
+     * @return the maximum number of misses remembered
+     */
+    public int getMaxObjects()
+    {
+        return maxObjects;
+    }
+
+    /**
+     * @return the number of gets answered by a remembered miss
+     */
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+}
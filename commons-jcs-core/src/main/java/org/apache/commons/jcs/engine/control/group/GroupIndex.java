@@ -0,0 +1,182 @@
+package org.apache.commons.jcs.engine.control.group;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+/**
+ * Index of the {@link GroupAttrName} keys of a store by {@link GroupId}, so that the group operations only touch the
+ * keys of the group instead of scanning the whole store.
+ * <p>
+ * The stores add and remove the keys under the lock guarding the changes of their map, and look them up under it
+ * too: an index update interleaved with the opposite change of the map would lose the key. Stores evicting entries
+ * on their own (the LRU maps for instance) can leave stale keys behind, this is why the lookups take a predicate
+ * checking the keys are still in the store: the stale keys found are dropped from the index.
+ */
+public class GroupIndex<K>
+{
+    /** group to the keys of this group */
+    private final ConcurrentMap<GroupId, Set<K>> groups = new ConcurrentHashMap<GroupId, Set<K>>();
+
+    /**
+     * Indexes the key if it is a group member.
+     * <p>
+     * @param key the key added to the store
+     */
+    public void add( K key )
+    {
+        if ( key instanceof GroupAttrName && ( (GroupAttrName<?>) key ).attrName != null )
+        {
+            groups.compute( ( (GroupAttrName<?>) key ).groupId, ( id, keys ) -> {
+                Set<K> members = keys == null ? ConcurrentHashMap.<K>newKeySet() : keys;
+                members.add( key );
+                return members;
+            } );
+        }
+    }
+
+    /**
+     * Indexes all the group members of the given keys.
+     * <p>
+     * @param keys keys added to the store
+     */
+    public void addAll( Collection<? extends K> keys )
+    {
+        for ( K key : keys )
+        {
+            add( key );
+        }
+    }
+
+    /**
+     * Removes the key from the index if it is a group member.
+     * <p>
+     * @param key the key removed from the store
+     */
+    public void remove( Object key )
+    {
+        if ( key instanceof GroupAttrName )
+        {
+            // atomic with add() so a group emptied while a key is added can't be lost
+            groups.computeIfPresent( ( (GroupAttrName<?>) key ).groupId, ( id, keys ) -> {
+                keys.remove( key );
+                return keys.isEmpty() ? null : keys;
+            } );
+        }
+    }
+
+    /**
+     * @param groupId the group
+     * @param exists checks a key is still in the store
+     * @return a copy of the keys of the group, never null
+     */
+    public Set<K> getKeys( GroupId groupId, Predicate<? super K> exists )
+    {
+        Set<K> keys = groups.get( groupId );
+        if ( keys == null )
+        {
+            return new HashSet<K>();
+        }
+
+        Set<K> result = new HashSet<K>( keys.size() );
+        for ( K key : keys )
+        {
+            if ( exists.test( key ) )
+            {
+                result.add( key );
+            }
+            else
+            {
+                remove( key );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param exists checks a key is still in the store
+     * @return the groups having at least one key in the store
+     */
+    public Set<GroupId> getGroupIds( Predicate<? super K> exists )
+    {
+        Set<GroupId> result = new HashSet<GroupId>();
+        for ( GroupId groupId : groups.keySet() )
+        {
+            if ( !getKeys( groupId, exists ).isEmpty() )
+            {
+                result.add( groupId );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fallback for the stores without index.
+     * <p>
+     * @param keys all the keys of a store
+     * @param groupId the group
+     * @return the keys of the group
+     */
+    public static <K> Set<K> filterGroupKeys( Collection<K> keys, GroupId groupId )
+    {
+        Set<K> result = new HashSet<K>();
+        for ( K key : keys )
+        {
+            if ( key instanceof GroupAttrName && ( (GroupAttrName<?>) key ).attrName != null
+                && ( (GroupAttrName<?>) key ).groupId.equals( groupId ) )
+            {
+                result.add( key );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fallback for the stores without index.
+     * <p>
+     * @param keys all the keys of a store
+     * @return the groups of the keys
+     */
+    public static Set<GroupId> filterGroupIds( Collection<?> keys )
+    {
+        Set<GroupId> result = new HashSet<GroupId>();
+        for ( Object key : keys )
+        {
+            if ( key instanceof GroupAttrName )
+            {
+                result.add( ( (GroupAttrName<?>) key ).groupId );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Forgets all the keys.
+     */
+    public void clear()
+    {
+        groups.clear();
+    }
+}
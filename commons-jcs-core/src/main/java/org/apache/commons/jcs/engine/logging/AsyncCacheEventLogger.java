@@ -0,0 +1,730 @@
+package org.apache.commons.jcs.engine.logging;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.jcs.engine.logging.behavior.ICacheEvent;
+import org.apache.commons.jcs.engine.logging.behavior.ICacheEventLogger;
+import org.apache.commons.jcs.utils.config.OptionConverter;
+import org.apache.commons.jcs.utils.threadpool.DaemonThreadFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Takes the event logging off the cache threads. The events are copied into a preallocated ring
+ * buffer and handed to the sink, another event logger, by a daemon consumer thread. The events
+ * returned by createICacheEvent are reused by the thread which created them once logged, so
+ * logging allocates nothing on the cache threads. When the buffer is full the events are dropped
+ * and counted, the cache is never blocked; the drops are reported to the sink as errors.
+ * <p>
+ * The consumer parks while the buffer is empty and the producers unpark it, so an idle logger
+ * costs nothing. dispose hands the pending events to the sink and stops the consumer, the next
+ * event starts a new one.
+ * <p>
+ * In SAMPLED mode only one cache event in SampleRate is logged. In AGGREGATED mode the cache
+ * events are rolled into counts and timings per source, region and event name, which are logged
+ * as application events every AggregationIntervalSeconds. Application events and errors are always
+ * logged.
+ * <p>
+ * jcs.auxiliary.NAME.cacheeventlogger=org.apache.commons.jcs.engine.logging.AsyncCacheEventLogger
+ * <p>
+ * jcs.auxiliary.NAME.cacheeventlogger.attributes.SinkClassName=CLASSNAME
+ */
+public class AsyncCacheEventLogger
+    implements ICacheEventLogger
+{
+    /** The logger. */
+    private static final Log log = LogFactory.getLog( AsyncCacheEventLogger.class );
+
+    /** The default number of events the buffer holds. */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /** How long flush and dispose wait for the consumer. */
+    private static final long FLUSH_TIMEOUT_MILLIS = 5000;
+
+    /** Number of reusable events kept per thread, more only happen with nested operations. */
+    private static final int POOLED_EVENTS_PER_THREAD = 8;
+
+    /** A cache event. */
+    private static final int KIND_EVENT = 0;
+
+    /** An application event. */
+    private static final int KIND_APPLICATION = 1;
+
+    /** An error. */
+    private static final int KIND_ERROR = 2;
+
+    /** What is logged. */
+    public enum LoggingMode
+    {
+        /** Every event. */
+        ALL,
+
+        /** One cache event in SampleRate. */
+        SAMPLED,
+
+        /** Counts and timings of the cache events. */
+        AGGREGATED
+    }
+
+    /** The logger the events are handed to. */
+    private ICacheEventLogger sink = new CacheEventLoggerDebugLogger();
+
+    /** What is logged. */
+    private LoggingMode mode = LoggingMode.ALL;
+
+    /** One cache event in sampleRate is logged in SAMPLED mode. */
+    private int sampleRate = 100;
+
+    /** How often the aggregates are logged in AGGREGATED mode. */
+    private int aggregationIntervalSeconds = 60;
+
+    /** The requested buffer size, rounded up to a power of two. */
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    /** The ring buffer, created with the consumer. */
+    private Slot[] slots;
+
+    /** The next sequence claimed by a producer. */
+    private final AtomicLong head = new AtomicLong();
+
+    /** The next sequence the consumer will read, the slots before it can be reused. */
+    private volatile long tail = 0;
+
+    /** Number of events dropped because the buffer was full. */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** The number of flushes requested, incremented by flush under flushLock. */
+    private volatile long flushRequests = 0;
+
+    /** The number of flushes done by the consumer, the waiters are notified on flushLock. */
+    private volatile long flushesDone = 0;
+
+    /** The head when the last flush was requested, the consumer must reach it first. */
+    private volatile long flushTarget = 0;
+
+    /** Serializes the flushes, the consumer notifies it when one is done. */
+    private final Object flushLock = new Object();
+
+    /** Set while the consumer is parked, the producers then unpark it. */
+    private volatile boolean parked = false;
+
+    /** Set by dispose, the consumer stops once the buffer is empty. */
+    private volatile boolean stopping = false;
+
+    /** The consumer thread, started by the first event and stopped by dispose. */
+    private volatile Thread consumer;
+
+    /** The reusable events of each thread. */
+    private final ThreadLocal<ArrayDeque<PooledEvent<?>>> pool = new ThreadLocal<ArrayDeque<PooledEvent<?>>>()
+    {
+        @Override
+        protected ArrayDeque<PooledEvent<?>> initialValue()
+        {
+            return new ArrayDeque<PooledEvent<?>>( POOLED_EVENTS_PER_THREAD );
+        }
+    };
+
+    /**
+     * Returns a reusable event of the calling thread, it is recycled by logICacheEvent.
+     * <p>
+     * @param source
+     * @param region
+     * @param eventName
+     * @param optionalDetails
+     * @param key
+     * @return ICacheEvent
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> ICacheEvent<T> createICacheEvent( String source, String region, String eventName,
+            String optionalDetails, T key )
+    {
+        PooledEvent<T> event = (PooledEvent<T>) pool.get().poll();
+        if ( event == null )
+        {
+            event = new PooledEvent<T>();
+        }
+        event.start();
+        event.setSource( source );
+        event.setRegion( region );
+        event.setEventName( eventName );
+        event.setOptionalDetails( optionalDetails );
+        event.setKey( key );
+        return event;
+    }
+
+    /**
+     * Queues the event for the sink, or drops it if it is not sampled.
+     * <p>
+     * @param event
+     */
+    @Override
+    public <T> void logICacheEvent( ICacheEvent<T> event )
+    {
+        long elapsedNanos = 0;
+        if ( event instanceof PooledEvent )
+        {
+            elapsedNanos = System.nanoTime() - ( (PooledEvent<T>) event ).startNanos;
+        }
+
+        if ( mode != LoggingMode.SAMPLED || ThreadLocalRandom.current().nextInt( sampleRate ) == 0 )
+        {
+            // the keys are not needed to aggregate, don't keep them alive in the buffer
+            publish( KIND_EVENT, event.getSource(), event.getRegion(), event.getEventName(),
+                     event.getOptionalDetails(), mode == LoggingMode.AGGREGATED ? null : event.getKey(),
+                     elapsedNanos );
+        }
+
+        if ( event instanceof PooledEvent )
+        {
+            release( (PooledEvent<T>) event );
+        }
+    }
+
+    /**
+     * @param source
+     * @param eventName
+     * @param optionalDetails
+     */
+    @Override
+    public void logApplicationEvent( String source, String eventName, String optionalDetails )
+    {
+        publish( KIND_APPLICATION, source, null, eventName, optionalDetails, null, 0 );
+    }
+
+    /**
+     * @param source
+     * @param eventName
+     * @param errorMessage
+     */
+    @Override
+    public void logError( String source, String eventName, String errorMessage )
+    {
+        publish( KIND_ERROR, source, null, eventName, errorMessage, null, 0 );
+    }
+
+    /**
+     * Waits until the events logged so far were handed to the sink and, in AGGREGATED mode, logs
+     * the aggregates.
+     */
+    public void flush()
+    {
+        Thread thread = consumer;
+        if ( thread == null )
+        {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT_MILLIS;
+        synchronized ( flushLock )
+        {
+            flushTarget = head.get();
+            long request = ++flushRequests;
+            LockSupport.unpark( thread );
+            long remaining = FLUSH_TIMEOUT_MILLIS;
+            while ( flushesDone < request && remaining > 0 && consumer == thread )
+            {
+                try
+                {
+                    flushLock.wait( remaining );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Hands the pending events and the aggregates to the sink and stops the consumer. The logger
+     * can still be used, the next event starts a new consumer.
+     */
+    public synchronized void dispose()
+    {
+        Thread thread = consumer;
+        if ( thread == null )
+        {
+            return;
+        }
+        stopping = true;
+        LockSupport.unpark( thread );
+        try
+        {
+            thread.join( FLUSH_TIMEOUT_MILLIS );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        if ( thread.isAlive() )
+        {
+            log.warn( "The event logger consumer did not stop within " + FLUSH_TIMEOUT_MILLIS + " ms" );
+            thread.interrupt();
+        }
+        consumer = null;
+        stopping = false;
+        synchronized ( flushLock )
+        {
+            flushLock.notifyAll();
+        }
+    }
+
+    /**
+     * @return the number of events dropped because the buffer was full
+     */
+    public long getDroppedCount()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * @param sink the logger the events are handed to
+     */
+    public void setSink( ICacheEventLogger sink )
+    {
+        this.sink = sink;
+    }
+
+    /**
+     * @return the logger the events are handed to
+     */
+    public ICacheEventLogger getSink()
+    {
+        return sink;
+    }
+
+    /**
+     * @param sinkClassName the class of the logger the events are handed to
+     */
+    public void setSinkClassName( String sinkClassName )
+    {
+        ICacheEventLogger instance = OptionConverter.instantiateByClassName( sinkClassName, null );
+        if ( instance != null )
+        {
+            this.sink = instance;
+        }
+        else
+        {
+            log.warn( "Could not create the event logger sink " + sinkClassName + ", keeping " + sink );
+        }
+    }
+
+    /**
+     * @param mode what is logged
+     */
+    public void setMode( LoggingMode mode )
+    {
+        this.mode = mode;
+    }
+
+    /**
+     * @return what is logged
+     */
+    public LoggingMode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * @param sampleRate one cache event in sampleRate is logged in SAMPLED mode
+     */
+    public void setSampleRate( int sampleRate )
+    {
+        this.sampleRate = Math.max( 1, sampleRate );
+    }
+
+    /**
+     * @return one cache event in sampleRate is logged in SAMPLED mode
+     */
+    public int getSampleRate()
+    {
+        return sampleRate;
+    }
+
+    /**
+     * @param aggregationIntervalSeconds how often the aggregates are logged in AGGREGATED mode
+     */
+    public void setAggregationIntervalSeconds( int aggregationIntervalSeconds )
+    {
+        this.aggregationIntervalSeconds = aggregationIntervalSeconds;
+    }
+
+    /**
+     * @return how often the aggregates are logged in AGGREGATED mode
+     */
+    public int getAggregationIntervalSeconds()
+    {
+        return aggregationIntervalSeconds;
+    }
+
+    /**
+     * @param bufferSize the number of events the buffer holds, only used before the first event
+     */
+    public void setBufferSize( int bufferSize )
+    {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @return the number of events the buffer holds
+     */
+    public int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    /**
+     * Copies the event in the next free slot, or drops it if there is none.
+     */
+    private void publish( int kind, String source, String region, String eventName, String details, Object key,
+                          long elapsedNanos )
+    {
+        if ( consumer == null )
+        {
+            start();
+        }
+        Slot[] ring = slots;
+        long sequence;
+        do
+        {
+            sequence = head.get();
+            if ( sequence - tail >= ring.length )
+            {
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+        while ( !head.compareAndSet( sequence, sequence + 1 ) );
+
+        Slot slot = ring[(int) ( sequence & ( ring.length - 1 ) )];
+        slot.kind = kind;
+        slot.source = source;
+        slot.region = region;
+        slot.eventName = eventName;
+        slot.details = details;
+        slot.key = key;
+        slot.elapsedNanos = elapsedNanos;
+        // publishes the fields above to the consumer
+        slot.sequence = sequence;
+        if ( parked )
+        {
+            LockSupport.unpark( consumer );
+        }
+    }
+
+    /**
+     * Creates the buffer, once, and starts the consumer from the tail.
+     */
+    private synchronized void start()
+    {
+        if ( consumer != null )
+        {
+            return;
+        }
+        if ( slots == null )
+        {
+            int size = Integer.highestOneBit( Math.max( 2, bufferSize - 1 ) ) << 1;
+            Slot[] ring = new Slot[size];
+            for ( int i = 0; i < size; i++ )
+            {
+                ring[i] = new Slot();
+            }
+            this.slots = ring;
+        }
+        Thread thread = new DaemonThreadFactory( "JCS-AsyncCacheEventLogger-" ).newThread( new Consumer() );
+        this.consumer = thread;
+        thread.start();
+    }
+
+    /**
+     * Gives the event back to the pool of its thread.
+     */
+    private void release( PooledEvent<?> event )
+    {
+        if ( event.owner != Thread.currentThread() )
+        {
+            return;
+        }
+        event.setKey( null );
+        ArrayDeque<PooledEvent<?>> events = pool.get();
+        if ( events.size() < POOLED_EVENTS_PER_THREAD )
+        {
+            events.push( event );
+        }
+    }
+
+    /**
+     * A reusable cache event, it keeps the time it was started at to time the operation.
+     */
+    private static class PooledEvent<K>
+        extends CacheEvent<K>
+    {
+        /** Don't change. */
+        private static final long serialVersionUID = 1L;
+
+        /** The thread which created the event. */
+        private final transient Thread owner = Thread.currentThread();
+
+        /** When the event was last started. */
+        private long createTime;
+
+        /** When the event was last started, to time it. */
+        private long startNanos;
+
+        /**
+         * Resets the times for a new operation.
+         */
+        void start()
+        {
+            this.createTime = System.currentTimeMillis();
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * @return the time at which this event was last started
+         */
+        @Override
+        public long getCreateTime()
+        {
+            return createTime;
+        }
+    }
+
+    /**
+     * An entry of the ring buffer.
+     */
+    private static class Slot
+    {
+        /** The sequence of the event in the slot, written last by the producer. */
+        volatile long sequence = -1;
+
+        /** KIND_EVENT, KIND_APPLICATION or KIND_ERROR */
+        int kind;
+
+        /** The source */
+        String source;
+
+        /** The region */
+        String region;
+
+        /** The event name */
+        String eventName;
+
+        /** The details or the error message */
+        String details;
+
+        /** The key */
+        Object key;
+
+        /** How long the operation took */
+        long elapsedNanos;
+    }
+
+    /**
+     * The counts and timings of one source, region and event name.
+     */
+    private static class Aggregate
+    {
+        /** The source */
+        String source;
+
+        /** The region */
+        String region;
+
+        /** The event name */
+        String eventName;
+
+        /** The number of events */
+        long count;
+
+        /** Their total duration */
+        long totalNanos;
+
+        /** Their max duration */
+        long maxNanos;
+    }
+
+    /**
+     * Hands the events to the sink, in order.
+     */
+    private class Consumer
+        implements Runnable
+    {
+        /** The aggregates in AGGREGATED mode, only used by the consumer. */
+        private final Map<String, Aggregate> aggregates = new HashMap<String, Aggregate>();
+
+        /** When the aggregates were last logged. */
+        private long lastAggregation = System.currentTimeMillis();
+
+        /** The number of drops already reported. */
+        private long reportedDrops = 0;
+
+        /**
+         * Reads the buffer, parking when it is empty, until dispose.
+         */
+        @Override
+        public void run()
+        {
+            Slot[] ring = slots;
+            long next = tail;
+            while ( true )
+            {
+                Slot slot = ring[(int) ( next & ( ring.length - 1 ) )];
+                if ( slot.sequence == next )
+                {
+                    try
+                    {
+                        deliver( slot );
+                    }
+                    catch ( RuntimeException e )
+                    {
+                        log.warn( "The event logger sink failed", e );
+                    }
+                    slot.source = null;
+                    slot.region = null;
+                    slot.eventName = null;
+                    slot.details = null;
+                    slot.key = null;
+                    next++;
+                    tail = next;
+                }
+                else if ( stopping )
+                {
+                    // the events claimed but not yet written are left to the next consumer
+                    idle( true );
+                    return;
+                }
+                else
+                {
+                    idle( false );
+                    parked = true;
+                    // a producer which wrote the slot before seeing parked did not unpark us
+                    if ( slot.sequence != next && !stopping && flushRequests == flushesDone )
+                    {
+                        if ( mode == LoggingMode.AGGREGATED )
+                        {
+                            LockSupport.parkNanos( TimeUnit.MILLISECONDS.toNanos( Math.max( 1, lastAggregation
+                                + TimeUnit.SECONDS.toMillis( aggregationIntervalSeconds ) - System.currentTimeMillis() ) ) );
+                        }
+                        else
+                        {
+                            LockSupport.park( this );
+                        }
+                    }
+                    parked = false;
+                }
+            }
+        }
+
+        /**
+         * Logs the event to the sink, or adds it to its aggregate.
+         */
+        private void deliver( Slot slot )
+        {
+            switch ( slot.kind )
+            {
+                case KIND_APPLICATION:
+                    sink.logApplicationEvent( slot.source, slot.eventName, slot.details );
+                    break;
+
+                case KIND_ERROR:
+                    sink.logError( slot.source, slot.eventName, slot.details );
+                    break;
+
+                default:
+                    if ( mode == LoggingMode.AGGREGATED )
+                    {
+                        String name = slot.source + "|" + slot.region + "|" + slot.eventName;
+                        Aggregate aggregate = aggregates.get( name );
+                        if ( aggregate == null )
+                        {
+                            aggregate = new Aggregate();
+                            aggregate.source = slot.source;
+                            aggregate.region = slot.region;
+                            aggregate.eventName = slot.eventName;
+                            aggregates.put( name, aggregate );
+                        }
+                        aggregate.count++;
+                        aggregate.totalNanos += slot.elapsedNanos;
+                        aggregate.maxNanos = Math.max( aggregate.maxNanos, slot.elapsedNanos );
+                    }
+                    else
+                    {
+                        // the sink may keep the event
+                        ICacheEvent<Object> event = sink.createICacheEvent( slot.source, slot.region, slot.eventName,
+                                                                            slot.details, slot.key );
+                        sink.logICacheEvent( event );
+                    }
+                    break;
+            }
+        }
+
+        /**
+         * Reports the drops and logs the aggregates when they are due, flushed or the consumer
+         * stops.
+         * <p>
+         * @param last true if the consumer stops
+         */
+        private void idle( boolean last )
+        {
+            long drops = dropped.get();
+            if ( drops > reportedDrops )
+            {
+                sink.logError( "AsyncCacheEventLogger", "dropped", ( drops - reportedDrops )
+                    + " events dropped, the buffer is full" );
+                reportedDrops = drops;
+            }
+
+            long request = flushRequests;
+            boolean flush = request != flushesDone && tail >= flushTarget;
+            long now = System.currentTimeMillis();
+            if ( last || flush || now - lastAggregation >= TimeUnit.SECONDS.toMillis( aggregationIntervalSeconds ) )
+            {
+                for ( Aggregate aggregate : aggregates.values() )
+                {
+                    sink.logApplicationEvent( aggregate.source, aggregate.eventName, "region = " + aggregate.region
+                        + ", count = " + aggregate.count
+                        + ", averageMicros = " + TimeUnit.NANOSECONDS.toMicros( aggregate.totalNanos / aggregate.count )
+                        + ", maxMicros = " + TimeUnit.NANOSECONDS.toMicros( aggregate.maxNanos ) );
+                }
+                aggregates.clear();
+                lastAggregation = now;
+            }
+            if ( flush )
+            {
+                synchronized ( flushLock )
+                {
+                    flushesDone = request;
+                    flushLock.notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.apache.commons.jcs.engine.match.behavior.IKeyMatcher;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -63,4 +64,22 @@ public class KeyMatcherPatternImpl<K>
 
         return matchingKeys;
     }
+
+    /**
+     * Narrows the search to the indexed keys starting with the literal prefix of the pattern.
+     * <p>
+     * @param pattern
+     * @param keyIndex
+     * @param exists
+     * @return Set of the matching keys, null if the index is disabled
+     */
+    @Override
+    public Set<K> getMatchingKeysFromIndex( String pattern, KeyPrefixIndex<K> keyIndex, Predicate<? super K> exists )
+    {
+        if ( keyIndex == null || !keyIndex.isEnabled() )
+        {
+            return null;
+        }
+        return keyIndex.getMatchingKeys( pattern, exists );
+    }
 }
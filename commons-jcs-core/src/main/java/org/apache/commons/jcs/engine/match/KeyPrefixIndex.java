@@ -0,0 +1,215 @@
+package org.apache.commons.jcs.engine.match;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Sorted index of the String keys of a store. The keys sharing a prefix are contiguous in the index so the
+ * hierarchical removals (keys ending with the name component delimiter) and the getMatching patterns are resolved
+ * with a range lookup instead of a scan of the whole store: a regular expression is first narrowed to the keys
+ * starting with its literal prefix.
+ * <p>
+ * The index is optional (UseKeyIndex attribute), a disabled index ignores the changes of the store. Like the
+ * {@link org.apache.commons.jcs.engine.control.group.GroupIndex} the lookups take a predicate checking the keys are
+ * still in the store, the stale keys found are dropped from the index.
+ */
+public class KeyPrefixIndex<K>
+{
+    /** the characters ending the literal prefix of a regular expression */
+    private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+
+    /** String form of the key to the key */
+    private final ConcurrentNavigableMap<String, K> keys;
+
+    /**
+     * @param enabled false to get an index doing nothing
+     */
+    public KeyPrefixIndex( boolean enabled )
+    {
+        this.keys = enabled ? new ConcurrentSkipListMap<String, K>() : null;
+    }
+
+    /**
+     * @return true if the store changes are indexed
+     */
+    public boolean isEnabled()
+    {
+        return keys != null;
+    }
+
+    /**
+     * Indexes the key if it is a String.
+     * <p>
+     * @param key the key added to the store
+     */
+    public void add( K key )
+    {
+        if ( keys != null && key instanceof String )
+        {
+            keys.put( (String) key, key );
+        }
+    }
+
+    /**
+     * Indexes all the String keys of the collection.
+     * <p>
+     * @param added keys added to the store
+     */
+    public void addAll( Collection<? extends K> added )
+    {
+        if ( keys != null )
+        {
+            for ( K key : added )
+            {
+                add( key );
+            }
+        }
+    }
+
+    /**
+     * Removes the key from the index.
+     * <p>
+     * @param key the key removed from the store
+     */
+    public void remove( Object key )
+    {
+        if ( keys != null && key instanceof String )
+        {
+            keys.remove( key );
+        }
+    }
+
+    /**
+     * Forgets all the keys.
+     */
+    public void clear()
+    {
+        if ( keys != null )
+        {
+            keys.clear();
+        }
+    }
+
+    /**
+     * @param prefix the start of the keys, the empty String returns all the keys
+     * @param exists checks a key is still in the store
+     * @return the indexed keys starting with the prefix, never null
+     */
+    public Set<K> getKeysWithPrefix( String prefix, Predicate<? super K> exists )
+    {
+        Set<K> result = new HashSet<K>();
+        if ( keys == null )
+        {
+            return result;
+        }
+
+        for ( Map.Entry<String, K> entry : keys.tailMap( prefix, true ).entrySet() )
+        {
+            if ( !entry.getKey().startsWith( prefix ) )
+            {
+                break;
+            }
+            if ( exists.test( entry.getValue() ) )
+            {
+                result.add( entry.getValue() );
+            }
+            else
+            {
+                keys.remove( entry.getKey(), entry.getValue() );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Resolves a regular expression against the keys starting with its literal prefix.
+     * <p>
+     * @param pattern a regular expression the whole key must match
+     * @param exists checks a key is still in the store
+     * @return the indexed keys matching the pattern, never null
+     */
+    public Set<K> getMatchingKeys( String pattern, Predicate<? super K> exists )
+    {
+        Pattern compiledPattern = Pattern.compile( pattern );
+
+        Set<K> matchingKeys = new HashSet<K>();
+        for ( K key : getKeysWithPrefix( getLiteralPrefix( pattern ), exists ) )
+        {
+            if ( compiledPattern.matcher( (String) key ).matches() )
+            {
+                matchingKeys.add( key );
+            }
+        }
+        return matchingKeys;
+    }
+
+    /**
+     * Computes a prefix all the Strings matching the whole regular expression start with. This is the sequence of
+     * literal characters at the beginning of the expression, an optional or repeatable last character is excluded.
+     * An alternation can start anywhere so it disables the prefix.
+     * <p>
+     * @param pattern a regular expression
+     * @return the literal prefix, the empty String if there is none
+     */
+    public static String getLiteralPrefix( String pattern )
+    {
+        if ( pattern.indexOf( '|' ) >= 0 )
+        {
+            return "";
+        }
+
+        StringBuilder prefix = new StringBuilder();
+        int i = pattern.startsWith( "^" ) ? 1 : 0;
+        while ( i < pattern.length() )
+        {
+            char c = pattern.charAt( i );
+            if ( c == '\\' )
+            {
+                // escaped punctuation is a literal, letters and digits are classes, quotes or back references
+                if ( i + 1 >= pattern.length() || Character.isLetterOrDigit( pattern.charAt( i + 1 ) ) )
+                {
+                    break;
+                }
+                c = pattern.charAt( i + 1 );
+                i++;
+            }
+            else if ( META_CHARACTERS.indexOf( c ) >= 0 )
+            {
+                if ( ( c == '?' || c == '*' || c == '{' ) && prefix.length() > 0 )
+                {
+                    // the previous character may be absent
+                    prefix.setLength( prefix.length() - 1 );
+                }
+                break;
+            }
+            prefix.append( c );
+            i++;
+        }
+        return prefix.toString();
+    }
+}
@@ -19,8 +19,11 @@ package org.apache.commons.jcs.engine.match.behavior;
  * under the License.
  */
 
+import org.apache.commons.jcs.engine.match.KeyPrefixIndex;
+
 import java.io.Serializable;
 import java.util.Set;
+import java.util.function.Predicate;
 
 /** Key matchers need to implement this interface. */
 public interface IKeyMatcher<K> extends Serializable
@@ -33,4 +36,17 @@ public interface IKeyMatcher<K> extends Serializable
      * @return Set of the matching keys
      */
     Set<K> getMatchingKeysFromArray( String pattern, Set<K> keyArray );
+
+    /**
+     * Finds the matches using a sorted key index instead of the whole key set.
+     * <p>
+     * @param pattern
+     * @param keyIndex the index of the store keys
+     * @param exists checks a key is still in the store
+     * @return Set of the matching keys, null if this matcher can't use the index
+     */
+    default Set<K> getMatchingKeysFromIndex( String pattern, KeyPrefixIndex<K> keyIndex, Predicate<? super K> exists )
+    {
+        return null;
+    }
 }
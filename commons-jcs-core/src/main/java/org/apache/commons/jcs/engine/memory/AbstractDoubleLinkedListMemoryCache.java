@@ -103,6 +103,8 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
             // this should be synchronized if we were not using a ConcurrentHashMap
             final K key = newNode.getCacheElement().getKey();
             MemoryElementDescriptor<K, V> oldNode = map.put(key, newNode);
+            groupIndex.add(key);
+            keyIndex.add(key);
 
             // If the node was the same as an existing node, remove it.
             if (oldNode != null && key.equals(oldNode.getCacheElement().getKey()))
@@ -248,6 +250,8 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
             if (toSpool != null)
             {
                 getCompositeCache().spoolToDisk(toSpool);
+                groupIndex.remove(toSpool.getKey());
+                keyIndex.remove(toSpool.getKey());
                 if (map.remove(toSpool.getKey()) == null)
                 {
                     log.warn("update: remove failed for key: " + toSpool.getKey());
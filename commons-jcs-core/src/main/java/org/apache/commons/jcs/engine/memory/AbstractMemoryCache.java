@@ -26,6 +26,7 @@ import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -35,6 +36,10 @@ import org.apache.commons.jcs.engine.behavior.ICacheElement;
 import org.apache.commons.jcs.engine.behavior.ICompositeCacheAttributes;
 import org.apache.commons.jcs.engine.control.CompositeCache;
 import org.apache.commons.jcs.engine.control.group.GroupAttrName;
+import org.apache.commons.jcs.engine.control.group.GroupId;
+import org.apache.commons.jcs.engine.control.group.GroupIndex;
+import org.apache.commons.jcs.engine.match.KeyPrefixIndex;
+import org.apache.commons.jcs.engine.match.behavior.IKeyMatcher;
 import org.apache.commons.jcs.engine.memory.behavior.IMemoryCache;
 import org.apache.commons.jcs.engine.memory.util.MemoryElementDescriptor;
 import org.apache.commons.jcs.engine.stats.StatElement;
@@ -67,6 +72,12 @@ public abstract class AbstractMemoryCache<K, V>
     /** Map where items are stored by key.  This is created by the concrete child class. */
     protected Map<K, MemoryElementDescriptor<K, V>> map;// TODO privatise
 
+    /** Keys of the groups, avoids to scan all the keys for the group operations. */
+    protected GroupIndex<K> groupIndex;
+
+    /** Sorted String keys (if enabled), avoids to scan all the keys for getMatching and hierarchical removals. */
+    protected KeyPrefixIndex<K> keyIndex;
+
     /** number of hits */
     protected AtomicLong hitCnt;
 
@@ -93,6 +104,8 @@ public abstract class AbstractMemoryCache<K, V>
         this.cache = hub;
 
         this.map = createMap();
+        this.groupIndex = new GroupIndex<K>();
+        this.keyIndex = new KeyPrefixIndex<K>(cacheAttributes.isUseKeyIndex());
     }
 
     /**
@@ -188,6 +201,8 @@ public abstract class AbstractMemoryCache<K, V>
         {
             lockedRemoveAll();
             map.clear();
+            groupIndex.clear();
+            keyIndex.clear();
         }
         finally
         {
@@ -331,24 +346,22 @@ public abstract class AbstractMemoryCache<K, V>
         boolean removed = false;
 
         // remove all keys of the same group hierarchy.
-        for (Iterator<Map.Entry<K, MemoryElementDescriptor<K, V>>> itr = map.entrySet().iterator(); itr.hasNext();)
+        for (K k : getGroupKeys(((GroupAttrName<?>) key).groupId))
         {
-            Map.Entry<K, MemoryElementDescriptor<K, V>> entry = itr.next();
-            K k = entry.getKey();
-
-            if (k instanceof GroupAttrName && ((GroupAttrName<?>) k).groupId.equals(((GroupAttrName<?>) key).groupId))
+            lock.lock();
+            try
             {
-                lock.lock();
-                try
+                MemoryElementDescriptor<K, V> me = map.remove(k);
+                groupIndex.remove(k);
+                if (me != null)
                 {
-                    itr.remove();
-                    lockedRemoveElement(entry.getValue());
+                    lockedRemoveElement(me);
                     removed = true;
                 }
-                finally
-                {
-                    lock.unlock();
-                }
+            }
+            finally
+            {
+                lock.unlock();
             }
         }
 
@@ -365,6 +378,30 @@ public abstract class AbstractMemoryCache<K, V>
     {
         boolean removed = false;
 
+        if (keyIndex.isEnabled())
+        {
+            for (K k : keyIndex.getKeysWithPrefix(key.toString(), map::containsKey))
+            {
+                lock.lock();
+                try
+                {
+                    MemoryElementDescriptor<K, V> me = map.remove(k);
+                    keyIndex.remove(k);
+                    if (me != null)
+                    {
+                        lockedRemoveElement(me);
+                        removed = true;
+                    }
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+            }
+
+            return removed;
+        }
+
         // remove all keys of the same name hierarchy.
         for (Iterator<Map.Entry<K, MemoryElementDescriptor<K, V>>> itr = map.entrySet().iterator(); itr.hasNext();)
         {
@@ -434,6 +471,8 @@ public abstract class AbstractMemoryCache<K, V>
             try
             {
                 MemoryElementDescriptor<K, V> me = map.remove(key);
+                groupIndex.remove(key);
+                keyIndex.remove(key);
                 if (me != null)
                 {
                     lockedRemoveElement(me);
@@ -449,6 +488,62 @@ public abstract class AbstractMemoryCache<K, V>
         return removed;
     }
 
+    /**
+     * Get the keys of a group from the group index.
+     *
+     * @param groupId the group
+     * @return the keys of the group in memory
+     */
+    @Override
+    public Set<K> getGroupKeys(GroupId groupId)
+    {
+        // under the lock of the map changes so a stale key is not dropped while it is put again
+        lock.lock();
+        try
+        {
+            return groupIndex.getKeys(groupId, map::containsKey);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the groups having elements in memory
+     */
+    @Override
+    public Set<GroupId> getGroupIds()
+    {
+        lock.lock();
+        try
+        {
+            return groupIndex.getGroupIds(map::containsKey);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the keys matching a pattern, from the key index if it is enabled.
+     *
+     * @param pattern the pattern
+     * @param keyMatcher the matcher of the region
+     * @return the matching keys in memory
+     */
+    @Override
+    public Set<K> getMatchingKeys(String pattern, IKeyMatcher<K> keyMatcher)
+    {
+        Set<K> matchingKeys = keyMatcher.getMatchingKeysFromIndex(pattern, keyIndex, map::containsKey);
+        if (matchingKeys == null)
+        {
+            matchingKeys = keyMatcher.getMatchingKeysFromArray(pattern, getKeySet());
+        }
+        return matchingKeys;
+    }
+
     /**
      * Get an Array of the keys for all elements in the memory cache
      *
@@ -460,6 +555,31 @@ public abstract class AbstractMemoryCache<K, V>
         return new LinkedHashSet<K>(map.keySet());
     }
 
+    /**
+     * Iterate over the keys of the memory cache without copying them when the map is concurrent.
+     * The iterator is weakly consistent then: it may or may not see keys added or removed after its creation.
+     *
+     * @return an iterator over the keys, removal is not supported
+     */
+    public Iterator<K> getKeyIterator()
+    {
+        final Iterator<K> keys = map instanceof ConcurrentMap ? map.keySet().iterator() : getKeySet().iterator();
+        return new Iterator<K>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return keys.hasNext();
+            }
+
+            @Override
+            public K next()
+            {
+                return keys.next();
+            }
+        };
+    }
+
     /**
      * Get an item from the cache.
      * <p>
@@ -22,6 +22,9 @@ package org.apache.commons.jcs.engine.memory.behavior;
 import org.apache.commons.jcs.engine.behavior.ICacheElement;
 import org.apache.commons.jcs.engine.behavior.ICompositeCacheAttributes;
 import org.apache.commons.jcs.engine.control.CompositeCache;
+import org.apache.commons.jcs.engine.control.group.GroupId;
+import org.apache.commons.jcs.engine.control.group.GroupIndex;
+import org.apache.commons.jcs.engine.match.behavior.IKeyMatcher;
 import org.apache.commons.jcs.engine.stats.behavior.IStats;
 
 import java.io.IOException;
@@ -70,6 +73,37 @@ public interface IMemoryCache<K, V>
      */
     Set<K> getKeySet();
 
+    /**
+     * Get the keys of a group. This default implementation filters {@link #getKeySet()}.
+     * <p>
+     * @param groupId the group
+     * @return a set of the keys of the group
+     */
+    default Set<K> getGroupKeys( GroupId groupId )
+    {
+        return GroupIndex.filterGroupKeys( getKeySet(), groupId );
+    }
+
+    /**
+     * @return the groups having elements in the memory cache
+     */
+    default Set<GroupId> getGroupIds()
+    {
+        return GroupIndex.filterGroupIds( getKeySet() );
+    }
+
+    /**
+     * Get the keys matching a pattern. This default implementation gives {@link #getKeySet()} to the matcher.
+     * <p>
+     * @param pattern the pattern
+     * @param keyMatcher the matcher of the region
+     * @return a set of the matching keys
+     */
+    default Set<K> getMatchingKeys( String pattern, IKeyMatcher<K> keyMatcher )
+    {
+        return keyMatcher.getMatchingKeysFromArray( pattern, getKeySet() );
+    }
+
     /**
      * Removes an item from the cache
      * <p>
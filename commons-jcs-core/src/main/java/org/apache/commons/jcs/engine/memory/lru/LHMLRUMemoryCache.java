@@ -74,7 +74,19 @@ public class LHMLRUMemoryCache<K, V>
         throws IOException
     {
         putCnt.incrementAndGet();
-        map.put( ce.getKey(), new MemoryElementDescriptor<K, V>(ce) );
+
+        // the indexes are updated with the map, atomically with the removals
+        lock.lock();
+        try
+        {
+            map.put( ce.getKey(), new MemoryElementDescriptor<K, V>(ce) );
+            groupIndex.add( ce.getKey() );
+            keyIndex.add( ce.getKey() );
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
     /**
@@ -197,6 +209,8 @@ public class LHMLRUMemoryCache<K, V>
                 }
 
                 waterfal( element );
+                groupIndex.remove( element.getKey() );
+                keyIndex.remove( element.getKey() );
 
                 if ( log.isDebugEnabled() )
                 {
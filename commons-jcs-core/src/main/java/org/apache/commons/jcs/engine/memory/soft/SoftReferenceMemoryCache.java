@@ -199,6 +199,8 @@ public class SoftReferenceMemoryCache<K, V> extends AbstractMemoryCache<K, V>
         try
         {
             map.put(ce.getKey(), new SoftReferenceElementDescriptor<K, V>(ce));
+            groupIndex.add(ce.getKey());
+            keyIndex.add(ce.getKey());
             strongReferences.add(ce);
             trimStrongReferences();
         }
@@ -19,13 +19,21 @@ package org.apache.commons.jcs.utils.access;
  * under the License.
  */
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.jcs.JCS;
 import org.apache.commons.jcs.access.CacheAccess;
 import org.apache.commons.jcs.access.GroupCacheAccess;
 import org.apache.commons.jcs.access.exception.CacheException;
+import org.apache.commons.jcs.utils.threadpool.ThreadPoolManager;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -41,11 +49,19 @@ import org.apache.commons.logging.LogFactory;
  * into the cache. If the object is already in cache, the cached result will be
  * returned instead.
  * <p>
- * As an added bonus, multiple JCSWorkers with the same region, and key won't do
- * the work multiple times: The first JCSWorker to get started will do the work,
- * and all subsequent workers with the same region, group, and key will wait on
- * the first one and use his resulting work instead of doing the work
- * themselves.
+ * As an added bonus, concurrent requests for the same key and group won't do
+ * the work multiple times: the first one starts the work and the subsequent
+ * ones join the same {@link CompletableFuture} instead of doing the work
+ * themselves. Nobody blocks on a monitor, the waiters get the result, or the
+ * exception thrown by the work, as soon as it is done.
+ * <p>
+ * {@link #getResult(Object, JCSWorkerHelper)} does the work in the calling
+ * thread and waits for it, {@link #getResultAsync(Object, JCSWorkerHelper)}
+ * does it with the executor given to the constructor (by default the
+ * "JCSWorker" pool of the ThreadPoolManager, any Executor can be used, virtual
+ * threads included). Null results are not cached by JCS, they can be
+ * remembered for a while with {@link #setNegativeResultTtl(long)} so the work
+ * isn't redone on every request.
  * <p>
  * This is ideal when the work being done is a query to the database where the
  * results may take time to be retrieved.
@@ -96,6 +112,12 @@ public class JCSWorker<K, V>
     /** The logger */
     private static final Log logger = LogFactory.getLog( JCSWorker.class );
 
+    /** Name of the ThreadPoolManager pool used when no executor is given */
+    private static final String THREAD_POOL_NAME = "JCSWorker";
+
+    /** Size of the negative result map triggering a purge of the expired entries */
+    private static final int NEGATIVE_RESULTS_PURGE_SIZE = 10000;
+
     /** The cache we are working with */
     private CacheAccess<K, V> cache;
 
@@ -103,23 +125,53 @@ public class JCSWorker<K, V>
     private GroupCacheAccess<K, V> groupCache;
 
     /**
-     * Map to hold who's doing work presently.
+     * Work in progress by key and group.
+     */
+    private final ConcurrentMap<WorkKey<K>, CompletableFuture<V>> inFlight = new ConcurrentHashMap<WorkKey<K>, CompletableFuture<V>>();
+
+    /**
+     * Expiration time of the null results by key and group.
      */
-    private volatile ConcurrentMap<String, JCSWorkerHelper<V>> map = new ConcurrentHashMap<String, JCSWorkerHelper<V>>();
+    private final ConcurrentMap<WorkKey<K>, Long> negativeResults = new ConcurrentHashMap<WorkKey<K>, Long>();
 
     /**
      * Region for the JCS cache.
      */
     private final String region;
 
+    /**
+     * Executor of the asynchronous work, null to use the ThreadPoolManager.
+     */
+    private final Executor executor;
+
+    /**
+     * How long (ms) a null result is remembered, 0 to not remember it.
+     */
+    private volatile long negativeResultTtl = 0;
+
     /**
      * Constructor which takes a region for the JCS cache.
      * @param aRegion
      *            The Region to use for the JCS cache.
      */
     public JCSWorker( final String aRegion )
+    {
+        this( aRegion, null );
+    }
+
+    /**
+     * Constructor which takes a region for the JCS cache and the executor of
+     * the asynchronous work.
+     * @param aRegion
+     *            The Region to use for the JCS cache.
+     * @param anExecutor
+     *            Runs the work of getResultAsync, null to use the "JCSWorker"
+     *            pool of the ThreadPoolManager.
+     */
+    public JCSWorker( final String aRegion, final Executor anExecutor )
     {
         region = aRegion;
+        executor = anExecutor;
         try
         {
             cache = JCS.getInstance( aRegion );
@@ -140,6 +192,29 @@ public class JCSWorker<K, V>
         return region;
     }
 
+    /**
+     * How long a null result of the work is remembered, during this time the
+     * requests for the same key and group return null without doing the work.
+     * @param millis
+     *            The time in milliseconds, 0 (the default) to redo the work.
+     */
+    public void setNegativeResultTtl( long millis )
+    {
+        negativeResultTtl = millis;
+        if ( millis <= 0 )
+        {
+            negativeResults.clear();
+        }
+    }
+
+    /**
+     * @return How long (ms) a null result of the work is remembered.
+     */
+    public long getNegativeResultTtl()
+    {
+        return negativeResultTtl;
+    }
+
     /**
      * Gets the cached result for this region/key OR does the work and caches
      * the result, returning the result. If the result has not been cached yet,
@@ -188,12 +263,76 @@ public class JCSWorker<K, V>
         return run( aKey, aGroup, aWorker );
     }
 
+    /**
+     * Same as {@link #getResult(Object, String, JCSWorkerHelper)} but the
+     * work is done by the executor and the wait is bounded. The work keeps
+     * going after a timeout, its result is cached as usual.
+     * @param aKey
+     *            The key to get/put with on the Cache.
+     * @param aGroup
+     *            The cache group to put the result in, may be null.
+     * @param aWorker
+     *            The JCSWorkerHelper doing the work if the cache get misses.
+     * @param timeout
+     *            The maximum time to wait.
+     * @param unit
+     *            The unit of the timeout.
+     * @return The result of doing the work, or the cached result.
+     * @throws java.util.concurrent.TimeoutException
+     *             If the work isn't done in time.
+     * @throws Exception
+     *             Throws an exception if anything goes wrong while doing the
+     *             work.
+     */
+    public V getResult( K aKey, String aGroup, JCSWorkerHelper<V> aWorker, long timeout, TimeUnit unit )
+        throws Exception
+    {
+        CompletableFuture<V> future = getResultAsync( aKey, aGroup, aWorker );
+        try
+        {
+            return future.get( timeout, unit );
+        }
+        catch ( ExecutionException e )
+        {
+            throw unwrap( e );
+        }
+    }
+
+    /**
+     * Gets the cached result for this region/key OR does the work with the
+     * executor and caches the result.
+     * @param aKey
+     *            The key to get/put with on the Cache.
+     * @param aWorker
+     *            The JCSWorkerHelper doing the work if the cache get misses.
+     * @return The future result, completed exceptionally if the work failed.
+     */
+    public CompletableFuture<V> getResultAsync( K aKey, JCSWorkerHelper<V> aWorker )
+    {
+        return getResultAsync( aKey, null, aWorker );
+    }
+
+    /**
+     * Gets the cached result for this region/key/group OR does the work with
+     * the executor and caches the result. Concurrent calls for the same key
+     * and group get the same future.
+     * @param aKey
+     *            The key to get/put with on the Cache.
+     * @param aGroup
+     *            The cache group to put the result in, may be null.
+     * @param aWorker
+     *            The JCSWorkerHelper doing the work if the cache get misses.
+     * @return The future result, completed exceptionally if the work failed.
+     */
+    public CompletableFuture<V> getResultAsync( K aKey, String aGroup, JCSWorkerHelper<V> aWorker )
+    {
+        return submit( new WorkKey<K>( aKey, aGroup ), aWorker, true );
+    }
+
     /**
      * Try and get the object from the cache, and if it's not there, do the work
-     * and cache it. This also ensures that only one CachedWorker is doing the
-     * work and subsequent calls to a CachedWorker with identical
-     * region/key/group will wait on the results of this call. It will call the
-     * JCSWorkerHelper.doWork() if the cache misses, and will put the result.
+     * in the calling thread and cache it, unless another call is already doing
+     * it: then its result is used.
      * @param aKey
      * @param aGroup
      * @param aHelper
@@ -205,93 +344,255 @@ public class JCSWorker<K, V>
     private V run( K aKey, String aGroup, JCSWorkerHelper<V> aHelper )
         throws Exception
     {
-        V result = null;
-        // long start = 0;
-        // long dbTime = 0;
-        JCSWorkerHelper<V> helper = map.putIfAbsent(getRegion() + aKey, aHelper);
+        CompletableFuture<V> future = submit( new WorkKey<K>( aKey, aGroup ), aHelper, false );
+        try
+        {
+            return future.get();
+        }
+        catch ( ExecutionException e )
+        {
+            throw unwrap( e );
+        }
+    }
 
-        if ( helper != null )
+    /**
+     * Returns a completed future on a cache hit, else joins the work in
+     * progress for this key or starts it.
+     * @param workKey
+     * @param aHelper
+     * @param async
+     *            true to do the work with the executor, false to do it in
+     *            the calling thread.
+     * @return the future result
+     */
+    private CompletableFuture<V> submit( final WorkKey<K> workKey, final JCSWorkerHelper<V> aHelper, boolean async )
+    {
+        V result = getFromCache( workKey );
+        if ( result != null || isNegativeResult( workKey ) )
         {
-            synchronized ( helper )
-            {
-                if ( logger.isDebugEnabled() )
-                {
-                    logger.debug( "Found a worker already doing this work (" + getRegion() + ":" + aKey + ")." );
-                }
-                while ( !helper.isFinished() )
-                {
-                    try
-                    {
-                        helper.wait();
-                    }
-                    catch (InterruptedException e)
-                    {
-                        // expected
-                    }
-                }
-                if ( logger.isDebugEnabled() )
-                {
-                    logger.debug( "Another thread finished our work for us. Using those results instead. ("
-                        + getRegion() + ":" + aKey + ")." );
-                }
-            }
+            return CompletableFuture.completedFuture( result );
         }
-        // Do the work
-        try
+
+        final CompletableFuture<V> future = new CompletableFuture<V>();
+        CompletableFuture<V> running = inFlight.putIfAbsent( workKey, future );
+        while ( running != null && running.isCompletedExceptionally() )
+        {
+            // a failed work not cleaned up yet, failures are not shared with the later callers
+            running = inFlight.replace( workKey, running, future ) ? null : inFlight.putIfAbsent( workKey, future );
+        }
+        if ( running != null )
         {
             if ( logger.isDebugEnabled() )
             {
-                logger.debug( getRegion() + " is doing the work." );
+                logger.debug( "Found a worker already doing this work (" + getRegion() + ":" + workKey + ")." );
             }
+            return running;
+        }
 
-            // Try to get the item from the cache
-            if ( aGroup != null )
-            {
-                result = groupCache.getFromGroup( aKey, aGroup );
-            }
-            else
-            {
-                result = cache.get( aKey );
-            }
-            // If the cache dosn't have it, do the work.
+        if ( !async )
+        {
+            doWork( workKey, aHelper, future );
+            return future;
+        }
+
+        try
+        {
+            getExecutor().execute( () -> doWork( workKey, aHelper, future ) );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            inFlight.remove( workKey, future );
+            future.completeExceptionally( e );
+        }
+        return future;
+    }
+
+    /**
+     * Does the work, caches the result and completes the future. The future
+     * is completed before being removed from the work in progress so no
+     * waiter can miss the result.
+     * @param workKey
+     * @param aHelper
+     * @param future
+     */
+    private void doWork( WorkKey<K> workKey, JCSWorkerHelper<V> aHelper, CompletableFuture<V> future )
+    {
+        try
+        {
+            // a previous worker may have finished between our cache miss and our registration
+            V result = getFromCache( workKey );
             if ( result == null )
             {
+                if ( logger.isDebugEnabled() )
+                {
+                    logger.debug( getRegion() + " is doing the work." );
+                }
                 result = aHelper.doWork();
                 if ( logger.isDebugEnabled() )
                 {
-                    logger.debug( "Work Done, caching: key:" + aKey + ", group:" + aGroup + ", result:" + result + "." );
+                    logger.debug( "Work Done, caching: key:" + workKey.key + ", group:" + workKey.group + ", result:" + result + "." );
                 }
                 // Stick the result of the work in the cache.
-                if ( aGroup != null )
+                if ( result == null )
+                {
+                    addNegativeResult( workKey );
+                }
+                else if ( workKey.group != null )
                 {
-                    groupCache.putInGroup( aKey, aGroup, result );
+                    groupCache.putInGroup( workKey.key, workKey.group, result );
                 }
                 else
                 {
-                    cache.put( aKey, result );
+                    cache.put( workKey.key, result );
                 }
             }
-            // return the result
-            return result;
+            future.complete( result );
+        }
+        catch ( Throwable e )
+        {
+            future.completeExceptionally( e );
         }
         finally
         {
-            if ( logger.isDebugEnabled() )
+            inFlight.remove( workKey, future );
+            aHelper.setFinished( true );
+        }
+    }
+
+    /**
+     * @param workKey
+     * @return the cached value or null
+     */
+    private V getFromCache( WorkKey<K> workKey )
+    {
+        if ( workKey.group != null )
+        {
+            return groupCache.getFromGroup( workKey.key, workKey.group );
+        }
+        return cache.get( workKey.key );
+    }
+
+    /**
+     * @param workKey
+     * @return true if the work returned null for this key less than negativeResultTtl ago
+     */
+    private boolean isNegativeResult( WorkKey<K> workKey )
+    {
+        Long expiration = negativeResults.get( workKey );
+        if ( expiration == null )
+        {
+            return false;
+        }
+        if ( expiration.longValue() > System.currentTimeMillis() )
+        {
+            return true;
+        }
+        negativeResults.remove( workKey, expiration );
+        return false;
+    }
+
+    /**
+     * Remembers a null result if negative results are enabled.
+     * @param workKey
+     */
+    private void addNegativeResult( WorkKey<K> workKey )
+    {
+        long ttl = negativeResultTtl;
+        if ( ttl <= 0 )
+        {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if ( negativeResults.size() >= NEGATIVE_RESULTS_PURGE_SIZE )
+        {
+            for ( Iterator<Map.Entry<WorkKey<K>, Long>> it = negativeResults.entrySet().iterator(); it.hasNext(); )
             {
-                logger.debug( getRegion() + ":" + aKey + " entered finally." );
+                if ( it.next().getValue().longValue() <= now )
+                {
+                    it.remove();
+                }
             }
+        }
+        negativeResults.put( workKey, Long.valueOf( now + ttl ) );
+    }
 
-            // Remove ourselves as the worker.
-            if ( helper == null )
+    /**
+     * @return the executor of the asynchronous work
+     */
+    private Executor getExecutor()
+    {
+        if ( executor != null )
+        {
+            return executor;
+        }
+        return ThreadPoolManager.getInstance().getExecutorService( THREAD_POOL_NAME );
+    }
+
+    /**
+     * @param e
+     * @return the exception thrown by the work
+     */
+    private static Exception unwrap( ExecutionException e )
+    {
+        Throwable cause = e.getCause();
+        if ( cause instanceof Exception )
+        {
+            return (Exception) cause;
+        }
+        if ( cause instanceof Error )
+        {
+            throw (Error) cause;
+        }
+        return e;
+    }
+
+    /**
+     * Identifies a piece of work, avoids building a String for every request.
+     */
+    private static final class WorkKey<K>
+    {
+        /** the cache key */
+        private final K key;
+
+        /** the cache group, may be null */
+        private final String group;
+
+        /** the pre-computed hash code */
+        private final int hashCode;
+
+        private WorkKey( K key, String group )
+        {
+            this.key = key;
+            this.group = group;
+            this.hashCode = 31 * key.hashCode() + ( group == null ? 0 : group.hashCode() );
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if ( this == obj )
             {
-                map.remove( getRegion() + aKey );
+                return true;
             }
-            synchronized ( aHelper )
+            if ( !( obj instanceof WorkKey ) )
             {
-                aHelper.setFinished( true );
-                // Wake everyone waiting on us
-                aHelper.notifyAll();
+                return false;
             }
+            WorkKey<?> other = (WorkKey<?>) obj;
+            return key.equals( other.key ) && ( group == null ? other.group == null : group.equals( other.group ) );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        @Override
+        public String toString()
+        {
+            return group == null ? String.valueOf( key ) : group + ":" + key;
         }
     }
 }
@@ -67,6 +67,9 @@ public final class UDPDiscoveryAttributes
     /** amount of time before we remove services that we haven't heard from */
     private int maxIdleTimeSec = DEFAULT_MAX_IDLE_TIME_SEC;
 
+    /** send the messages in the binary layout instead of the serialized form */
+    private boolean binaryFormat = false;
+
     /**
      * @param serviceName The serviceName to set.
      */
@@ -195,6 +198,22 @@ public final class UDPDiscoveryAttributes
         this.isDark = isDark;
     }
 
+    /**
+     * @return Returns the binaryFormat.
+     */
+    public boolean isBinaryFormat()
+    {
+        return binaryFormat;
+    }
+
+    /**
+     * @param binaryFormat The binaryFormat to set.
+     */
+    public void setBinaryFormat( boolean binaryFormat )
+    {
+        this.binaryFormat = binaryFormat;
+    }
+
     /** @return a clone of this object */
     @Override
     public UDPDiscoveryAttributes clone()
@@ -207,6 +226,7 @@ public final class UDPDiscoveryAttributes
         attributes.setUdpDiscoveryAddr( this.getUdpDiscoveryAddr() );
         attributes.setUdpDiscoveryPort( this.getUdpDiscoveryPort() );
         attributes.setDark( this.isDark() );
+        attributes.setBinaryFormat( this.isBinaryFormat() );
         return attributes;
     }
 
@@ -226,6 +246,7 @@ public final class UDPDiscoveryAttributes
         buf.append( "\n SendDelaySec = [" + getSendDelaySec() + "]" );
         buf.append( "\n MaxIdleTimeSec = [" + getMaxIdleTimeSec() + "]" );
         buf.append( "\n IsDark = [" + isDark() + "]" );
+        buf.append( "\n BinaryFormat = [" + isBinaryFormat() + "]" );
         return buf.toString();
     }
 }
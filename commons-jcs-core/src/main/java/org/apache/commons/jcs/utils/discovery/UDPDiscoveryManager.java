@@ -74,6 +74,22 @@ public class UDPDiscoveryManager
      */
     public synchronized UDPDiscoveryService getService( String discoveryAddress, int discoveryPort, int servicePort,
                                                         ICompositeCacheManager cacheMgr )
+    {
+        return getService( discoveryAddress, discoveryPort, servicePort, false, cacheMgr );
+    }
+
+    /**
+     * Creates a service for the address and port if one doesn't exist already.
+     * <p>
+     * @param discoveryAddress
+     * @param discoveryPort
+     * @param servicePort
+     * @param binaryFormat send the messages in the binary layout instead of the serialized form
+     * @param cacheMgr
+     * @return UDPDiscoveryService
+     */
+    public synchronized UDPDiscoveryService getService( String discoveryAddress, int discoveryPort, int servicePort,
+                                                        boolean binaryFormat, ICompositeCacheManager cacheMgr )
     {
         String key = discoveryAddress + ":" + discoveryPort + ":" + servicePort;
 
@@ -89,6 +105,7 @@ public class UDPDiscoveryManager
             attributes.setUdpDiscoveryAddr( discoveryAddress );
             attributes.setUdpDiscoveryPort( discoveryPort );
             attributes.setServicePort( servicePort );
+            attributes.setBinaryFormat( binaryFormat );
 
             service = new UDPDiscoveryService( attributes );
 
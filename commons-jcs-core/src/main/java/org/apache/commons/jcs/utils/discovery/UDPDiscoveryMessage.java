@@ -65,6 +65,9 @@ public class UDPDiscoveryMessage
     /** Names of regions */
     private ArrayList<String> cacheNames = new ArrayList<String>();
 
+    /** Hash of the names of regions, sent instead of the names when they haven't changed */
+    private int cacheNamesHash;
+
     /**
      * @param port The port to set.
      */
@@ -145,6 +148,22 @@ public class UDPDiscoveryMessage
         return cacheNames;
     }
 
+    /**
+     * @param cacheNamesHash The hash of the cacheNames to set.
+     */
+    public void setCacheNamesHash( int cacheNamesHash )
+    {
+        this.cacheNamesHash = cacheNamesHash;
+    }
+
+    /**
+     * @return Returns the hash of the cacheNames.
+     */
+    public int getCacheNamesHash()
+    {
+        return cacheNamesHash;
+    }
+
     /**
      * @return debugging string
      */
@@ -156,10 +175,14 @@ public class UDPDiscoveryMessage
         buf.append( "\n port = [" + port + "]" );
         buf.append( "\n requesterId = [" + requesterId + "]" );
         buf.append( "\n messageType = [" + messageType + "]" );
+        buf.append( "\n cacheNamesHash = [" + cacheNamesHash + "]" );
         buf.append( "\n Cache Names" );
-        for (String name : cacheNames)
+        if ( cacheNames != null )
         {
-            buf.append( " cacheName = [" + name + "]" );
+            for (String name : cacheNames)
+            {
+                buf.append( " cacheName = [" + name + "]" );
+            }
         }
         return buf.toString();
     }
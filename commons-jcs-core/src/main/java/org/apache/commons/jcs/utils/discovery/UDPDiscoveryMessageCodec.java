@@ -0,0 +1,211 @@
+package org.apache.commons.jcs.utils.discovery;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.apache.commons.jcs.utils.discovery.UDPDiscoveryMessage.BroadcastType;
+
+/**
+ * Encodes the discovery messages in a compact binary layout, instead of serializing them.
+ * <p>
+ * The layout, big endian, is a fixed header of 20 bytes:
+ * <ul>
+ * <li>magic byte 'J' and version byte</li>
+ * <li>message type byte and flags byte</li>
+ * <li>requester id, 8 bytes</li>
+ * <li>service port, 4 bytes</li>
+ * <li>hash of the cache names, 4 bytes</li>
+ * </ul>
+ * followed, when the flags say so, by the number of cache names and each name as a length and
+ * its UTF-8 bytes. The host is not sent, the receiver takes it from the packet.
+ * <p>
+ * A serialized message starts with 0xAC, so the receiver can tell the formats apart.
+ */
+final class UDPDiscoveryMessageCodec
+{
+    /** The first byte of a binary message */
+    static final byte MAGIC = 'J';
+
+    /** The version of the layout */
+    static final byte VERSION = 1;
+
+    /** The first byte of a serialized message */
+    static final byte SERIALIZED = (byte) 0xAC;
+
+    /** The flag for the cache names following the header */
+    private static final byte FLAG_CACHE_NAMES = 1;
+
+    /** The size of the fixed header */
+    static final int HEADER_SIZE = 20;
+
+    /** The charset of the cache names */
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    /** The message types by ordinal */
+    private static final BroadcastType[] TYPES = BroadcastType.values();
+
+    /** Static methods only */
+    private UDPDiscoveryMessageCodec()
+    {
+        super();
+    }
+
+    /**
+     * Computes a hash of the cache names which doesn't depend on their order.
+     * <p>
+     * @param cacheNames
+     * @return the hash
+     */
+    static int hashCacheNames( Collection<String> cacheNames )
+    {
+        int hash = cacheNames.size();
+        for ( String name : cacheNames )
+        {
+            // mix each hash so that the sum doesn't cancel out similar names
+            int h = name.hashCode() * 0x9E3779B9;
+            hash += h ^ ( h >>> 16 );
+        }
+        return hash;
+    }
+
+    /**
+     * Encodes the message. The cache names are written if the message has them, otherwise only
+     * the hash of the message is.
+     * <p>
+     * @param message
+     * @param buffer the buffer to reuse, may be null
+     * @return the buffer holding the message, flipped for reading, the given one if it was large
+     *         enough
+     * @throws IOException if a name is too long
+     */
+    static ByteBuffer encode( UDPDiscoveryMessage message, ByteBuffer buffer )
+        throws IOException
+    {
+        ArrayList<String> cacheNames = message.getCacheNames();
+        byte[][] names = null;
+        int size = HEADER_SIZE;
+        if ( cacheNames != null )
+        {
+            names = new byte[cacheNames.size()][];
+            size += 2;
+            for ( int i = 0; i < names.length; i++ )
+            {
+                names[i] = cacheNames.get( i ).getBytes( UTF8 );
+                if ( names[i].length > 0xFFFF )
+                {
+                    throw new IOException( "Cache name is too long [" + cacheNames.get( i ) + "]" );
+                }
+                size += 2 + names[i].length;
+            }
+        }
+
+        ByteBuffer out = buffer;
+        if ( out == null || out.capacity() < size )
+        {
+            out = ByteBuffer.allocate( Math.max( size, 512 ) );
+        }
+        out.clear();
+
+        out.put( MAGIC );
+        out.put( VERSION );
+        out.put( (byte) message.getMessageType().ordinal() );
+        out.put( names != null ? FLAG_CACHE_NAMES : 0 );
+        out.putLong( message.getRequesterId() );
+        out.putInt( message.getPort() );
+        out.putInt( cacheNames != null ? hashCacheNames( cacheNames ) : message.getCacheNamesHash() );
+        if ( names != null )
+        {
+            out.putShort( (short) names.length );
+            for ( byte[] name : names )
+            {
+                out.putShort( (short) name.length );
+                out.put( name );
+            }
+        }
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Decodes a binary message. The cache names of the message are null if they were not sent.
+     * <p>
+     * @param in a buffer positioned at the magic byte
+     * @return the message
+     * @throws IOException if it isn't a binary message of this version or is truncated
+     */
+    static UDPDiscoveryMessage decode( ByteBuffer in )
+        throws IOException
+    {
+        try
+        {
+            if ( in.get() != MAGIC )
+            {
+                throw new IOException( "Not a binary discovery message" );
+            }
+            byte version = in.get();
+            if ( version != VERSION )
+            {
+                throw new IOException( "Unsupported discovery message version [" + version + "]" );
+            }
+            int type = in.get();
+            if ( type < 0 || type >= TYPES.length )
+            {
+                throw new IOException( "Unknown discovery message type [" + type + "]" );
+            }
+            byte flags = in.get();
+
+            UDPDiscoveryMessage message = new UDPDiscoveryMessage();
+            message.setMessageType( TYPES[type] );
+            message.setRequesterId( in.getLong() );
+            message.setPort( in.getInt() );
+            message.setCacheNamesHash( in.getInt() );
+            message.setCacheNames( null );
+
+            if ( ( flags & FLAG_CACHE_NAMES ) != 0 )
+            {
+                int count = in.getShort() & 0xFFFF;
+                ArrayList<String> cacheNames = new ArrayList<String>( count );
+                for ( int i = 0; i < count; i++ )
+                {
+                    int length = in.getShort() & 0xFFFF;
+                    if ( length > in.remaining() )
+                    {
+                        throw new BufferUnderflowException();
+                    }
+                    // straight from the backing array, no copy
+                    cacheNames.add( new String( in.array(), in.arrayOffset() + in.position(), length, UTF8 ) );
+                    in.position( in.position() + length );
+                }
+                message.setCacheNames( cacheNames );
+            }
+            return message;
+        }
+        catch ( BufferUnderflowException e )
+        {
+            throw new IOException( "Truncated discovery message", e );
+        }
+    }
+}
@@ -25,6 +25,9 @@ import java.io.ObjectInputStream;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.MulticastSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.jcs.engine.CacheInfo;
@@ -47,6 +50,22 @@ public class UDPDiscoveryReceiver
     /** buffer */
     private final byte[] mBuffer = new byte[65536];
 
+    /** The packet receiving in the buffer, reused */
+    private final DatagramPacket packet = new DatagramPacket( mBuffer, mBuffer.length );
+
+    /** The buffer to decode from, reused */
+    private final ByteBuffer byteBuffer = ByteBuffer.wrap( mBuffer );
+
+    /** Min time between two requests for the cache names of other services */
+    private static final long CACHE_NAMES_REQUEST_INTERVAL_MILLIS = 15000;
+
+    /** The last cache names sent by each service, by host and port */
+    private final ConcurrentHashMap<String, UDPDiscoveryMessage> knownCacheNames =
+        new ConcurrentHashMap<String, UDPDiscoveryMessage>();
+
+    /** The last time we asked the others to broadcast their cache names */
+    private volatile long lastCacheNamesRequestTime = 0;
+
     /** The socket used for communication. */
     private MulticastSocket mSocket;
 
@@ -143,13 +162,15 @@ public class UDPDiscoveryReceiver
      * Highly unreliable. If it is processing one message while another comes in, the second
      * message is lost. This is for low concurrency peppering.
      * <p>
+     * The packet and its buffer are reused. The binary messages are decoded straight from the
+     * buffer, the serialized ones of older versions are still read.
+     * <p>
      * @return the object message
      * @throws IOException
      */
     public Object waitForMessage()
         throws IOException
     {
-        final DatagramPacket packet = new DatagramPacket( mBuffer, mBuffer.length );
         Object obj = null;
         try
         {
@@ -158,6 +179,7 @@ public class UDPDiscoveryReceiver
                 log.debug( "Waiting for message." );
             }
 
+            packet.setLength( mBuffer.length );
             mSocket.receive( packet );
 
             if ( log.isDebugEnabled() )
@@ -165,11 +187,20 @@ public class UDPDiscoveryReceiver
                 log.debug( "Received packet from address [" + packet.getSocketAddress() + "]" );
             }
 
-            final ByteArrayInputStream byteStream = new ByteArrayInputStream( mBuffer, 0, packet.getLength() );
+            if ( packet.getLength() > 0 && mBuffer[0] == UDPDiscoveryMessageCodec.SERIALIZED )
+            {
+                final ByteArrayInputStream byteStream = new ByteArrayInputStream( mBuffer, 0, packet.getLength() );
 
-            try (ObjectInputStream objectStream = new ObjectInputStreamClassLoaderAware( byteStream, null ))
+                try (ObjectInputStream objectStream = new ObjectInputStreamClassLoaderAware( byteStream, null ))
+                {
+                    obj = objectStream.readObject();
+                }
+            }
+            else
             {
-                obj = objectStream.readObject();
+                byteBuffer.clear();
+                byteBuffer.limit( packet.getLength() );
+                obj = UDPDiscoveryMessageCodec.decode( byteBuffer );
             }
 
             if ( obj instanceof UDPDiscoveryMessage )
@@ -194,6 +225,45 @@ public class UDPDiscoveryReceiver
         return obj;
     }
 
+    /**
+     * Fills in the cache names of a message which only has their hash, with the names last sent by
+     * the same service. If they are unknown or have changed, asks the others to broadcast their
+     * names, at most every CACHE_NAMES_REQUEST_INTERVAL_MILLIS.
+     * <p>
+     * Remembers the names of the messages which have them.
+     * <p>
+     * @param message
+     */
+    protected void resolveCacheNames( UDPDiscoveryMessage message )
+    {
+        String key = message.getHost() + ":" + message.getPort();
+        if ( message.getCacheNames() != null )
+        {
+            message.setCacheNamesHash( UDPDiscoveryMessageCodec.hashCacheNames( message.getCacheNames() ) );
+            knownCacheNames.put( key, message );
+            return;
+        }
+
+        UDPDiscoveryMessage known = knownCacheNames.get( key );
+        if ( known != null && known.getRequesterId() == message.getRequesterId()
+            && known.getCacheNamesHash() == message.getCacheNamesHash() )
+        {
+            message.setCacheNames( known.getCacheNames() );
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if ( now - lastCacheNamesRequestTime >= CACHE_NAMES_REQUEST_INTERVAL_MILLIS )
+        {
+            lastCacheNamesRequestTime = now;
+            if ( log.isDebugEnabled() )
+            {
+                log.debug( "Unknown cache names for " + key + ", requesting a broadcast." );
+            }
+            service.requestBroadcast();
+        }
+    }
+
     /** Main processing method for the LateralUDPReceiver object */
     @Override
     public void run()
@@ -312,7 +382,14 @@ public class UDPDiscoveryReceiver
                     log.debug( "Message = " + message );
                 }
 
-                if ( message.getHost() == null || message.getCacheNames() == null || message.getCacheNames().isEmpty() )
+                if ( message.getMessageType() != BroadcastType.REQUEST )
+                {
+                    resolveCacheNames( message );
+                }
+
+                // a request has no cache names
+                if ( message.getHost() == null || message.getMessageType() != BroadcastType.REQUEST
+                    && ( message.getCacheNames() == null || message.getCacheNames().isEmpty() ) )
                 {
                     if ( log.isDebugEnabled() )
                     {
@@ -355,6 +432,7 @@ public class UDPDiscoveryReceiver
                 {
                     log.debug( "Removing service from set " + discoveredService );
                 }
+                knownCacheNames.remove( message.getHost() + ":" + message.getPort() );
                 service.removeDiscoveredService( discoveredService );
             }
             else
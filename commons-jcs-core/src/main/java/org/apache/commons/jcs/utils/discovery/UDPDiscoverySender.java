@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.MulticastSocket;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 /*
@@ -51,9 +52,15 @@ public class UDPDiscoverySender implements AutoCloseable
     /** The port */
     private final int multicastPort;
 
+    /** Send in the binary layout of UDPDiscoveryMessageCodec instead of the serialized form */
+    private final boolean binaryFormat;
+
     /** Used to serialize messages */
     private final StandardSerializer serializer = new StandardSerializer();
 
+    /** Reused to encode messages */
+    private ByteBuffer buffer;
+
     /**
      * Constructor for the UDPDiscoverySender object
      * <p>
@@ -61,6 +68,8 @@ public class UDPDiscoverySender implements AutoCloseable
      * <p>
      * When you are done sending, you should destroy the socket sender.
      * <p>
+     * The messages are serialized, as the older versions expect.
+     * <p>
      * @param host
      * @param port
      * @throws IOException
@@ -68,6 +77,22 @@ public class UDPDiscoverySender implements AutoCloseable
     public UDPDiscoverySender( String host, int port )
         throws IOException
     {
+        this( host, port, false );
+    }
+
+    /**
+     * Constructor for the UDPDiscoverySender object
+     * <p>
+     * @param host
+     * @param port
+     * @param binaryFormat send in the binary layout of UDPDiscoveryMessageCodec, which only the
+     *            versions having it understand, instead of the serialized form
+     * @throws IOException
+     */
+    public UDPDiscoverySender( String host, int port, boolean binaryFormat )
+        throws IOException
+    {
+        this.binaryFormat = binaryFormat;
         try
         {
             if ( log.isDebugEnabled() )
@@ -122,7 +147,8 @@ public class UDPDiscoverySender implements AutoCloseable
     }
 
     /**
-     * Send messages.
+     * Send messages, serialized or in the binary layout of UDPDiscoveryMessageCodec. In the binary
+     * layout, the cache names are only sent if the message has them.
      * <p>
      * @param message
      * @throws IOException
@@ -148,15 +174,22 @@ public class UDPDiscoverySender implements AutoCloseable
 
         try
         {
-            final byte[] bytes = serializer.serialize( message );
-
-            // put the byte array in a packet
-            final DatagramPacket packet = new DatagramPacket( bytes, bytes.length, multicastAddress, multicastPort );
+            final DatagramPacket packet;
+            if ( binaryFormat )
+            {
+                buffer = UDPDiscoveryMessageCodec.encode( message, buffer );
+                packet = new DatagramPacket( buffer.array(), buffer.limit(), multicastAddress, multicastPort );
+            }
+            else
+            {
+                final byte[] bytes = serializer.serialize( message );
+                packet = new DatagramPacket( bytes, bytes.length, multicastAddress, multicastPort );
+            }
 
             if ( log.isDebugEnabled() )
             {
-                log.debug( "Sending DatagramPacket. bytes.length [" + bytes.length + "] to " + multicastAddress + ":"
-                    + multicastPort );
+                log.debug( "Sending DatagramPacket. bytes.length [" + packet.getLength() + "] to " + multicastAddress
+                    + ":" + multicastPort );
             }
 
             localSocket.send( packet );
@@ -229,6 +262,57 @@ public class UDPDiscoverySender implements AutoCloseable
         send( message );
     }
 
+    /**
+     * This sends a message broadcasting out that the host and port is still available. In the
+     * binary layout only the hash of the cache names is sent, the receivers which don't know the
+     * names for this hash will request a broadcast. The serialized form carries the names, the
+     * older versions can't resolve a hash.
+     * <p>
+     * It uses the vmid as the requesterId
+     * @param host
+     * @param port
+     * @param cacheNames names of the cache regions, unchanged since the last passive broadcast
+     * @throws IOException
+     */
+    public void passiveHeartbeat( String host, int port, ArrayList<String> cacheNames )
+        throws IOException
+    {
+        passiveHeartbeat( host, port, cacheNames, CacheInfo.listenerId );
+    }
+
+    /**
+     * This allows you to set the sender id. This is mainly for testing.
+     * <p>
+     * @param host
+     * @param port
+     * @param cacheNames names of the cache regions
+     * @param listenerId
+     * @throws IOException
+     */
+    protected void passiveHeartbeat( String host, int port, ArrayList<String> cacheNames, long listenerId )
+        throws IOException
+    {
+        if ( !binaryFormat )
+        {
+            passiveBroadcast( host, port, cacheNames, listenerId );
+            return;
+        }
+
+        if ( log.isDebugEnabled() )
+        {
+            log.debug( "sending passiveHeartbeat " );
+        }
+
+        UDPDiscoveryMessage message = new UDPDiscoveryMessage();
+        message.setHost( host );
+        message.setPort( port );
+        message.setCacheNames( null );
+        message.setCacheNamesHash( UDPDiscoveryMessageCodec.hashCacheNames( cacheNames ) );
+        message.setRequesterId( listenerId );
+        message.setMessageType( BroadcastType.PASSIVE );
+        send( message );
+    }
+
     /**
      * This sends a message broadcasting our that the host and port is no longer available.
      * <p>
@@ -42,6 +42,9 @@ public class UDPDiscoverySenderThread
     /** List of known regions. */
     private ArrayList<String> cacheNames = new ArrayList<String>();
 
+    /** Were the current names broadcast, after that only their hash is */
+    private volatile boolean cacheNamesSent = false;
+
     /**
      * @param cacheNames The cacheNames to set.
      */
@@ -52,6 +55,7 @@ public class UDPDiscoverySenderThread
             log.info( "Resetting cacheNames = [" + cacheNames + "]" );
         }
         this.cacheNames = cacheNames;
+        this.cacheNamesSent = false;
     }
 
     /**
@@ -83,7 +87,7 @@ public class UDPDiscoverySenderThread
         }
 
         try (UDPDiscoverySender sender = new UDPDiscoverySender( attributes.getUdpDiscoveryAddr(),
-                attributes.getUdpDiscoveryPort() ))
+                attributes.getUdpDiscoveryPort(), attributes.isBinaryFormat() ))
         {
             // move this to the run method and determine how often to call it.
             sender.requestBroadcast();
@@ -108,9 +112,18 @@ public class UDPDiscoverySenderThread
         // create this connection each time.
         // more robust
         try (UDPDiscoverySender sender = new UDPDiscoverySender( attributes.getUdpDiscoveryAddr(),
-                attributes.getUdpDiscoveryPort() ))
+                attributes.getUdpDiscoveryPort(), attributes.isBinaryFormat() ))
         {
-            sender.passiveBroadcast( attributes.getServiceAddress(), attributes.getServicePort(), cacheNames );
+            // the full list only when it changed, the receivers which missed it ask for it
+            if ( cacheNamesSent )
+            {
+                sender.passiveHeartbeat( attributes.getServiceAddress(), attributes.getServicePort(), cacheNames );
+            }
+            else
+            {
+                cacheNamesSent = true;
+                sender.passiveBroadcast( attributes.getServiceAddress(), attributes.getServicePort(), cacheNames );
+            }
 
             // todo we should consider sending a request broadcast every so
             // often.
@@ -135,7 +148,7 @@ public class UDPDiscoverySenderThread
         // create this connection each time.
         // more robust
         try (UDPDiscoverySender sender = new UDPDiscoverySender( attributes.getUdpDiscoveryAddr(),
-                attributes.getUdpDiscoveryPort() ))
+                attributes.getUdpDiscoveryPort(), attributes.isBinaryFormat() ))
         {
             sender.removeBroadcast( attributes.getServiceAddress(), attributes.getServicePort(), cacheNames );
 
@@ -139,7 +139,8 @@ public class UDPDiscoveryService
         // more robust
         try (UDPDiscoverySender sender = new UDPDiscoverySender(
                 getUdpDiscoveryAttributes().getUdpDiscoveryAddr(),
-                getUdpDiscoveryAttributes().getUdpDiscoveryPort() ))
+                getUdpDiscoveryAttributes().getUdpDiscoveryPort(),
+                getUdpDiscoveryAttributes().isBinaryFormat() ))
         {
             sender.passiveBroadcast( getUdpDiscoveryAttributes().getServiceAddress(), getUdpDiscoveryAttributes()
                 .getServicePort(), this.getCacheNames() );
@@ -160,6 +161,26 @@ public class UDPDiscoveryService
         }
     }
 
+    /**
+     * Ask the others to broadcast their location and cache names, when we don't know them.
+     */
+    protected void requestBroadcast()
+    {
+        try (UDPDiscoverySender sender = new UDPDiscoverySender(
+                getUdpDiscoveryAttributes().getUdpDiscoveryAddr(),
+                getUdpDiscoveryAttributes().getUdpDiscoveryPort(),
+                getUdpDiscoveryAttributes().isBinaryFormat() ))
+        {
+            sender.requestBroadcast();
+        }
+        catch ( IOException e )
+        {
+            log.error( "Problem calling the UDP Discovery Sender. address ["
+                + getUdpDiscoveryAttributes().getUdpDiscoveryAddr() + "] port ["
+                + getUdpDiscoveryAttributes().getUdpDiscoveryPort() + "]", e );
+        }
+    }
+
     /**
      * Adds a region to the list that is participating in discovery.
      * <p>
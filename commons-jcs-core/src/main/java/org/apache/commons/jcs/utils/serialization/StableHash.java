@@ -0,0 +1,172 @@
+package org.apache.commons.jcs.utils.serialization;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.apache.commons.jcs.engine.behavior.IElementSerializer;
+import org.apache.commons.jcs.engine.control.group.GroupAttrName;
+import org.apache.commons.jcs.engine.control.group.GroupId;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Hashes keys the same way in every JVM, so that the hashes can be persisted or compared between
+ * servers. The hashCode of a key may not be stable: it is the identity hash for enums and for the
+ * classes which do not override it.
+ * <p>
+ * The canonical keys are hashed by their content: strings, characters, booleans, the boxed
+ * numbers, BigInteger and BigDecimal by their string form, the group ids by their region and group
+ * names and the group keys by their group id and attribute name, if it is canonical too. The other
+ * keys are hashed by their serialized form, so two equal keys must serialize to the same bytes. A
+ * key which cannot be serialized falls back to its hashCode.
+ */
+public final class StableHash
+{
+    /** The logger */
+    private static final Log log = LogFactory.getLog( StableHash.class );
+
+    /** FNV-1a offset basis */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /** FNV-1a prime */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** Serializes the other keys */
+    private static final IElementSerializer SERIALIZER = new StandardSerializer();
+
+    /** Static methods only */
+    private StableHash()
+    {
+    }
+
+    /**
+     * @param key the key, not null
+     * @return true if the key is hashed by its content, the same for all the equal keys
+     */
+    public static boolean isCanonical( Object key )
+    {
+        if ( key instanceof GroupAttrName )
+        {
+            Object attrName = ( (GroupAttrName<?>) key ).attrName;
+            return attrName == null || isCanonical( attrName );
+        }
+        return key instanceof String || key instanceof GroupId || isValue( key );
+    }
+
+    /**
+     * @param key the key, not null
+     * @return the FNV-1a hash of the content of a canonical key, else of its serialized form
+     */
+    public static long hash( Object key )
+    {
+        if ( key instanceof String )
+        {
+            return hash( (String) key );
+        }
+        if ( isCanonical( key ) )
+        {
+            return hash( FNV_OFFSET, key );
+        }
+        try
+        {
+            return hash( SERIALIZER.serialize( key ) );
+        }
+        catch ( IOException e )
+        {
+            if ( log.isDebugEnabled() )
+            {
+                log.debug( "Cannot serialize key " + key + ", using its hash code", e );
+            }
+            return key.hashCode();
+        }
+    }
+
+    /**
+     * @param value
+     * @return the FNV-1a hash of the characters
+     */
+    public static long hash( String value )
+    {
+        return hash( FNV_OFFSET, value );
+    }
+
+    /**
+     * Continues the hash with the content of a canonical key, the names separated by a 0 char.
+     */
+    private static long hash( long hash, Object key )
+    {
+        if ( key instanceof GroupAttrName )
+        {
+            GroupAttrName<?> groupKey = (GroupAttrName<?>) key;
+            long h = hash( hash( hash, groupKey.groupId ), "\0" );
+            return groupKey.attrName == null ? h : hash( h, groupKey.attrName );
+        }
+        if ( key instanceof GroupId )
+        {
+            GroupId groupId = (GroupId) key;
+            return hash( hash( hash( hash, groupId.cacheName ), "\0" ), groupId.groupName );
+        }
+        return hash( hash, key instanceof String ? (String) key : key.toString() );
+    }
+
+    /**
+     * Continues the hash with the characters.
+     */
+    private static long hash( long hash, String value )
+    {
+        long h = hash;
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            h ^= value.charAt( i );
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * @param key
+     * @return true for the JDK value types hashed by their string form
+     */
+    private static boolean isValue( Object key )
+    {
+        return key instanceof Character || key instanceof Boolean || key instanceof Byte
+            || key instanceof Short || key instanceof Integer || key instanceof Long
+            || key instanceof Float || key instanceof Double
+            || key instanceof BigInteger || key instanceof BigDecimal;
+    }
+
+    /**
+     * @param bytes
+     * @return the FNV-1a hash of the bytes
+     */
+    public static long hash( byte[] bytes )
+    {
+        long h = FNV_OFFSET;
+        for ( byte b : bytes )
+        {
+            h ^= b & 0xFF;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,96 @@
+package org.apache.commons.jcs.access;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.jcs.engine.behavior.ICacheElement;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the partitioned cache access.
+ */
+public class PartitionedCacheAccessUnitTest
+    extends TestCase
+{
+    /**
+     * Verify the partitions are in range and growing the partitions only moves the keys to the new partition.
+     */
+    public void testJumpConsistentHash()
+    {
+        int keys = 10000;
+        int moved = 0;
+        for ( int i = 0; i < keys; i++ )
+        {
+            int before = PartitionedCacheAccess.jumpConsistentHash( i, 10 );
+            int after = PartitionedCacheAccess.jumpConsistentHash( i, 11 );
+            assertTrue( "Out of range " + before, before >= 0 && before < 10 );
+            if ( before != after )
+            {
+                assertEquals( "Keys should only move to the new partition", 10, after );
+                moved++;
+            }
+        }
+        assertTrue( "Too many keys moved: " + moved, moved > keys / 22 && moved < keys / 7 );
+        assertEquals( 0, PartitionedCacheAccess.jumpConsistentHash( 123, 1 ) );
+    }
+
+    /**
+     * Verify non numeric keys are supported.
+     */
+    public void testGetNumericValueForKey()
+    {
+        PartitionedCacheAccess<Object, String> access = new PartitionedCacheAccess<Object, String>();
+        assertEquals( 42, access.getNumericValueForKey( Long.valueOf( 42 ) ) );
+        assertEquals( "foo".hashCode(), access.getNumericValueForKey( "foo" ) );
+    }
+
+    /**
+     * Put and get through the partitions.
+     */
+    public void testPutGetCacheElements()
+    {
+        Properties properties = new Properties();
+        properties.setProperty( "PartitionedCacheAccess.numberOfPartitions", "3" );
+        properties.setProperty( "PartitionedCacheAccess.partitionRegionNamePrefix", "testPartitioned" );
+        PartitionedCacheAccess<String, String> access = new PartitionedCacheAccess<String, String>();
+        access.setProperties( properties );
+
+        Set<String> keys = new HashSet<String>();
+        for ( int i = 0; i < 30; i++ )
+        {
+            access.put( "key" + i, "value" + i );
+            keys.add( "key" + i );
+        }
+        assertEquals( "value7", access.get( "key7" ) );
+
+        keys.add( "missing" );
+        Map<String, ICacheElement<String, String>> elements = access.getCacheElements( keys );
+        assertEquals( 30, elements.size() );
+        for ( int i = 0; i < 30; i++ )
+        {
+            assertEquals( "value" + i, elements.get( "key" + i ).getVal() );
+        }
+    }
+}
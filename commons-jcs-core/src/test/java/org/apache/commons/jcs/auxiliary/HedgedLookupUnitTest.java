@@ -0,0 +1,264 @@
+package org.apache.commons.jcs.auxiliary;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/** Unit tests for the hedged lookup of the facades. */
+public class HedgedLookupUnitTest
+    extends TestCase
+{
+    /** The peers called, in order. */
+    private final List<String> called = new CopyOnWriteArrayList<String>();
+
+    /** Counted down when a slow peer is interrupted. */
+    private final CountDownLatch interrupted = new CountDownLatch( 1 );
+
+    /** Counted down when a slow peer starts. */
+    private final CountDownLatch slowStarted = new CountDownLatch( 1 );
+
+    /** The threads which called the peers. */
+    private final Set<Thread> threads = Collections.newSetFromMap( new ConcurrentHashMap<Thread, Boolean>() );
+
+    /**
+     * Fake peer lookup. "slow" answers after 2 seconds, "fast" answers once a slow peer started,
+     * "busy" misses after 200 ms, "miss" returns null, "error" throws and the others answer their
+     * name immediately.
+     * <p>
+     * @param peer
+     * @return the answer of the peer
+     * @throws IOException
+     */
+    private String lookup( String peer )
+        throws IOException
+    {
+        called.add( peer );
+        threads.add( Thread.currentThread() );
+        if ( peer.startsWith( "slow" ) )
+        {
+            slowStarted.countDown();
+            try
+            {
+                Thread.sleep( 2000 );
+            }
+            catch ( InterruptedException e )
+            {
+                interrupted.countDown();
+                return null;
+            }
+        }
+        else if ( peer.startsWith( "fast" ) )
+        {
+            // so that the slow peer is running, not just submitted, when it is cancelled
+            try
+            {
+                slowStarted.await( 1, TimeUnit.SECONDS );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        else if ( peer.startsWith( "busy" ) )
+        {
+            try
+            {
+                Thread.sleep( 200 );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+        else if ( peer.startsWith( "miss" ) )
+        {
+            return null;
+        }
+        else if ( peer.startsWith( "error" ) )
+        {
+            throw new IOException( "Peer down" );
+        }
+        return peer;
+    }
+
+    /**
+     * Verify that in parallel mode the fast peer wins and the slow one is cancelled.
+     * <p>
+     * @throws Exception
+     */
+    public void testParallel_FirstHitWins()
+        throws Exception
+    {
+        // SETUP
+        HedgedLookup<String> lookup = new HedgedLookup<String>( HedgedLookup.LookupMode.PARALLEL, 0 );
+
+        // DO WORK
+        long start = System.currentTimeMillis();
+        String result = lookup.get( Arrays.asList( "slow", "fast" ), this::lookup );
+        long elapsed = System.currentTimeMillis() - start;
+
+        // VERIFY
+        assertEquals( "Wrong result", "fast", result );
+        assertTrue( "Should not have waited for the slow peer: " + elapsed, elapsed < 1000 );
+        assertTrue( "The slow peer should have been cancelled", interrupted.await( 1, TimeUnit.SECONDS ) );
+    }
+
+    /**
+     * Verify that in hedged mode the next peer is asked when the first is late.
+     */
+    public void testHedged_AsksNextWhenLate()
+    {
+        // SETUP
+        HedgedLookup<String> lookup = new HedgedLookup<String>( HedgedLookup.LookupMode.HEDGED, 20 );
+
+        // DO WORK
+        long start = System.currentTimeMillis();
+        String result = lookup.get( Arrays.asList( "slow", "fast" ), this::lookup );
+        long elapsed = System.currentTimeMillis() - start;
+
+        // VERIFY
+        assertEquals( "Wrong result", "fast", result );
+        assertTrue( "Should not have waited for the slow peer: " + elapsed, elapsed < 1000 );
+    }
+
+    /**
+     * Verify that in hedged mode a miss or a failure asks the next peer without waiting.
+     */
+    public void testHedged_MissAsksNextImmediately()
+    {
+        // SETUP
+        HedgedLookup<String> lookup = new HedgedLookup<String>( HedgedLookup.LookupMode.HEDGED, 5000 );
+
+        // DO WORK
+        long start = System.currentTimeMillis();
+        String result = lookup.get( Arrays.asList( "miss", "error", "hit" ), this::lookup );
+        long elapsed = System.currentTimeMillis() - start;
+
+        // VERIFY
+        assertEquals( "Wrong result", "hit", result );
+        assertTrue( "Should not have waited for the hedge delay: " + elapsed, elapsed < 1000 );
+        assertEquals( "Wrong calls", Arrays.asList( "miss", "error", "hit" ), called );
+    }
+
+    /**
+     * Verify that null is returned when every peer misses.
+     */
+    public void testAllMiss()
+    {
+        // SETUP
+        HedgedLookup<String> parallel = new HedgedLookup<String>( HedgedLookup.LookupMode.PARALLEL, 0 );
+        HedgedLookup<String> hedged = new HedgedLookup<String>( HedgedLookup.LookupMode.HEDGED, 0 );
+
+        // DO WORK & VERIFY
+        assertNull( "Should miss", parallel.get( Arrays.asList( "miss", "error" ), this::lookup ) );
+        assertNull( "Should miss", hedged.get( Arrays.asList( "miss", "error" ), this::lookup ) );
+        assertNull( "Should miss", hedged.get( Collections.<String>emptyList(), this::lookup ) );
+    }
+
+    /**
+     * Verify that the pool never runs more than MAX_THREADS calls, the caller runs the others.
+     */
+    public void testParallel_BoundedPool()
+    {
+        // SETUP
+        HedgedLookup<String> lookup = new HedgedLookup<String>( HedgedLookup.LookupMode.PARALLEL, 0 );
+        List<String> peers = new ArrayList<String>();
+        for ( int i = 0; i < HedgedLookup.MAX_THREADS + 4; i++ )
+        {
+            peers.add( "busy" + i );
+        }
+
+        // DO WORK
+        assertNull( "Should miss", lookup.get( peers, this::lookup ) );
+
+        // VERIFY
+        assertEquals( "Wrong number of calls", peers.size(), called.size() );
+        assertTrue( "The caller should have run the calls the pool could not take",
+                    threads.remove( Thread.currentThread() ) );
+        assertTrue( "Too many threads: " + threads.size(), threads.size() <= HedgedLookup.MAX_THREADS );
+    }
+
+    /**
+     * Verify that the lookups still work once disposed, in the calling thread.
+     */
+    public void testDispose()
+    {
+        // SETUP
+        HedgedLookup<String> lookup = new HedgedLookup<String>( HedgedLookup.LookupMode.PARALLEL, 0 );
+        assertEquals( "Wrong result", "hit", lookup.get( Arrays.asList( "miss", "hit" ), this::lookup ) );
+
+        // DO WORK
+        lookup.dispose();
+        threads.clear();
+        String result = lookup.get( Arrays.asList( "miss", "hit" ), this::lookup );
+
+        // VERIFY
+        assertEquals( "Wrong result", "hit", result );
+        assertEquals( "The caller should have run the calls", Collections.singleton( Thread.currentThread() ),
+                      threads );
+    }
+
+    /**
+     * Verify that the fastest peer is asked first.
+     * <p>
+     * @throws Exception
+     */
+    public void testOrderByLatency()
+        throws Exception
+    {
+        // SETUP
+        HedgedLookup<String> lookup = new HedgedLookup<String>( HedgedLookup.LookupMode.SEQUENTIAL, 0 );
+        String late = "late";
+        String quick = "quick";
+        lookup.get( Arrays.asList( late ), peer -> {
+            try
+            {
+                Thread.sleep( 50 );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        } );
+        lookup.get( Arrays.asList( quick ), peer -> null );
+        assertTrue( "The late peer should be slower",
+                    lookup.getMeanLatencyNanos( late ) > lookup.getMeanLatencyNanos( quick ) );
+
+        // DO WORK
+        String result = lookup.get( Arrays.asList( late, quick ), this::lookup );
+
+        // VERIFY
+        assertEquals( "Wrong result", quick, result );
+        assertEquals( "The quick peer should have been asked first", Arrays.asList( quick ), called );
+    }
+}
@@ -45,6 +45,15 @@ public class MockAuxiliaryCache<K, V>
     /** Times getMatching was Called */
     public int getMatchingCallCount = 0;
 
+    /** Times get was Called */
+    public int getCallCount = 0;
+
+    /** Times getMultiple was Called */
+    public int getMultipleCallCount = 0;
+
+    /** Returned by getKeySet */
+    public Set<K> keySet = null;
+
     /**
      * @param ce
      * @throws IOException
@@ -66,7 +75,7 @@ public class MockAuxiliaryCache<K, V>
     public ICacheElement<K, V> get( K key )
         throws IOException
     {
-        // TODO Auto-generated method stub
+        getCallCount++;
         return null;
     }
 
@@ -93,6 +102,7 @@ public class MockAuxiliaryCache<K, V>
     @Override
     public Map<K, ICacheElement<K, V>> getMultiple(Set<K> keys)
     {
+        getMultipleCallCount++;
         return new HashMap<K, ICacheElement<K, V>>();
     }
 
@@ -167,7 +177,7 @@ public class MockAuxiliaryCache<K, V>
     @Override
     public Set<K> getKeySet() throws IOException
     {
-        return null;
+        return keySet;
     }
 
     /**
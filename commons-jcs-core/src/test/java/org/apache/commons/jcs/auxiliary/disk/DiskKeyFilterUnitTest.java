@@ -0,0 +1,245 @@
+package org.apache.commons.jcs.auxiliary.disk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.jcs.engine.control.group.GroupAttrName;
+import org.apache.commons.jcs.engine.control.group.GroupId;
+
+/** Unit tests for the key filter of the disk caches. */
+public class DiskKeyFilterUnitTest
+    extends TestCase
+{
+    /**
+     * Verify that a removed key is no longer contained.
+     */
+    public void testAddRemove()
+    {
+        // SETUP
+        DiskKeyFilter<String> filter = new DiskKeyFilter<String>( true );
+
+        // DO WORK
+        filter.add( "a" );
+        filter.add( "b" );
+        filter.remove( "a" );
+
+        // VERIFY
+        assertFalse( "Should not contain a", filter.mightContain( "a" ) );
+        assertTrue( "Should contain b", filter.mightContain( "b" ) );
+        assertEquals( "Wrong size", 1, filter.size() );
+    }
+
+    /**
+     * Verify that there are no false negatives and few false positives, including after the filter
+     * grew.
+     */
+    public void testNoFalseNegatives()
+    {
+        // SETUP
+        DiskKeyFilter<String> filter = new DiskKeyFilter<String>( true );
+        List<String> keys = new ArrayList<String>();
+
+        // DO WORK
+        for ( int i = 0; i < 10000; i++ )
+        {
+            String key = "key" + i;
+            keys.add( key );
+            filter.add( key );
+            if ( filter.isOverloaded() )
+            {
+                filter.rebuild( keys );
+            }
+        }
+
+        // VERIFY
+        for ( String key : keys )
+        {
+            assertTrue( "Should contain " + key, filter.mightContain( key ) );
+        }
+        int falsePositives = 0;
+        for ( int i = 0; i < 10000; i++ )
+        {
+            if ( filter.mightContain( "other" + i ) )
+            {
+                falsePositives++;
+            }
+        }
+        assertTrue( "Too many false positives: " + falsePositives, falsePositives < 500 );
+    }
+
+    /**
+     * Verify that a saved filter is only loaded for the same number of keys.
+     * <p>
+     * @throws Exception
+     */
+    public void testSaveLoad()
+        throws Exception
+    {
+        // SETUP
+        File file = new File( "target/test-sandbox/DiskKeyFilterUnitTest/keys.filter" );
+        file.getParentFile().mkdirs();
+        DiskKeyFilter<String> filter = new DiskKeyFilter<String>( true );
+        filter.add( "a" );
+        filter.add( "b" );
+        filter.save( file );
+
+        // DO WORK
+        DiskKeyFilter<String> loaded = new DiskKeyFilter<String>( true );
+        DiskKeyFilter<String> stale = new DiskKeyFilter<String>( true );
+
+        // VERIFY
+        assertTrue( "Should have been loaded", loaded.load( file, 2 ) );
+        assertTrue( "Should contain a", loaded.mightContain( "a" ) );
+        assertTrue( "Should contain b", loaded.mightContain( "b" ) );
+        assertFalse( "Should not contain c", loaded.mightContain( "c" ) );
+        assertEquals( "Wrong size", 2, loaded.size() );
+        assertFalse( "A filter for another key count should be rejected", stale.load( file, 3 ) );
+        assertFalse( "A missing file should be rejected",
+                     stale.load( new File( file.getParentFile(), "missing.filter" ), 0 ) );
+    }
+
+    /**
+     * Verify that the group keys are found, removed and reloaded through equal keys which
+     * serialize differently, once their toString is cached.
+     * <p>
+     * @throws Exception
+     */
+    public void testSaveLoad_GroupKeys()
+        throws Exception
+    {
+        // SETUP
+        File file = new File( "target/test-sandbox/DiskKeyFilterUnitTest/group.filter" );
+        file.getParentFile().mkdirs();
+        DiskKeyFilter<GroupAttrName<String>> filter = new DiskKeyFilter<GroupAttrName<String>>( true );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            filter.add( groupKey( i, i % 2 == 0 ) );
+        }
+        filter.save( file );
+
+        // DO WORK
+        DiskKeyFilter<GroupAttrName<String>> loaded = new DiskKeyFilter<GroupAttrName<String>>( true );
+        assertTrue( "Should have been loaded", loaded.load( file, 1000 ) );
+        loaded.remove( groupKey( 0, false ) );
+
+        // VERIFY
+        for ( int i = 1; i < 1000; i++ )
+        {
+            assertTrue( "Should contain key" + i, filter.mightContain( groupKey( i, i % 2 != 0 ) ) );
+            assertTrue( "Should have loaded key" + i, loaded.mightContain( groupKey( i, i % 2 != 0 ) ) );
+        }
+        assertFalse( "Should have been removed", loaded.mightContain( groupKey( 0, true ) ) );
+    }
+
+    /**
+     * Verify that a filter holding keys without a stable hash is not saved, so it is rebuilt.
+     * <p>
+     * @throws Exception
+     */
+    public void testSave_NotCanonical()
+        throws Exception
+    {
+        // SETUP
+        File file = new File( "target/test-sandbox/DiskKeyFilterUnitTest/identity.filter" );
+        file.getParentFile().mkdirs();
+        file.delete();
+        DiskKeyFilter<Object> filter = new DiskKeyFilter<Object>( true );
+        filter.add( "a" );
+        filter.add( new IdentityKey( "b" ) );
+
+        // DO WORK
+        filter.save( file );
+
+        // VERIFY
+        assertFalse( "Should not have been saved", file.exists() );
+        assertFalse( "Should not load", new DiskKeyFilter<Object>( true ).load( file, 2 ) );
+        filter.rebuild( Arrays.<Object>asList( "a", "c" ) );
+        filter.save( file );
+        assertTrue( "The canonical keys only should have been saved", file.exists() );
+    }
+
+    /**
+     * @param i
+     * @param cached whether to cache the toString, which is serialized
+     * @return a group key equal to the others of the same index
+     */
+    private static GroupAttrName<String> groupKey( int i, boolean cached )
+    {
+        GroupAttrName<String> key = new GroupAttrName<String>( new GroupId( "region", "group" + i % 10 ), "attr" + i );
+        if ( cached )
+        {
+            key.toString();
+        }
+        return key;
+    }
+
+    /**
+     * Verify that a disabled filter contains every key.
+     */
+    public void testDisabled()
+    {
+        // SETUP
+        DiskKeyFilter<String> filter = new DiskKeyFilter<String>( false );
+
+        // DO WORK
+        filter.add( "a" );
+        filter.remove( "a" );
+
+        // VERIFY
+        assertFalse( "Should be disabled", filter.isEnabled() );
+        assertTrue( "Should contain everything", filter.mightContain( "a" ) );
+        assertTrue( "Should contain everything", filter.mightContain( "b" ) );
+    }
+
+    /** A key without hashCode, so hashed by identity. */
+    private static class IdentityKey
+        implements Serializable
+    {
+        /** Don't change */
+        private static final long serialVersionUID = 1L;
+
+        /** The name */
+        private final String name;
+
+        /**
+         * @param name
+         */
+        IdentityKey( String name )
+        {
+            this.name = name;
+        }
+
+        /**
+         * @return the name
+         */
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+}
@@ -48,6 +48,81 @@ public class PurgatoryElementUnitTest
         assertFalse( "Should not be spoolable.", result );
     }
 
+    /** Verify the handoff between the writer and a remove */
+    public void testSpooling_removedWhileSpooling()
+    {
+        // SETUP
+        ICacheElement<String, String> cacheElement = new CacheElement<String, String>( "myCacheName", "myKey", "myValue" );
+        PurgatoryElement<String, String> purgatoryElement = new PurgatoryElement<String, String>( cacheElement );
+        purgatoryElement.setSpoolable( true );
+
+        // DO WORK
+        boolean started = purgatoryElement.startSpooling();
+        purgatoryElement.setSpoolable( false );
+
+        // VERIFY
+        assertTrue( "Should have started spooling.", started );
+        assertFalse( "Should not start twice.", purgatoryElement.startSpooling() );
+        assertFalse( "The writer should have to remove it.", purgatoryElement.finishSpooling() );
+    }
+
+    /**
+     * Verify that a remove while spooling waits for the writer to remove the element again.
+     * <p>
+     * @throws InterruptedException
+     */
+    public void testSpooling_cancelWaitsForTheWriter()
+        throws InterruptedException
+    {
+        // SETUP
+        ICacheElement<String, String> cacheElement = new CacheElement<String, String>( "myCacheName", "myKey", "myValue" );
+        final PurgatoryElement<String, String> purgatoryElement = new PurgatoryElement<String, String>( cacheElement );
+        purgatoryElement.setSpoolable( true );
+        assertTrue( "Should have started spooling.", purgatoryElement.startSpooling() );
+
+        // DO WORK
+        purgatoryElement.cancelSpooling();
+        Thread remover = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    purgatoryElement.awaitCancelled();
+                }
+                catch ( InterruptedException e )
+                {
+                    // the test fails on the join
+                }
+            }
+        };
+        remover.start();
+        remover.join( 200 );
+
+        // VERIFY
+        assertTrue( "The remove should wait for the writer.", remover.isAlive() );
+        assertFalse( "The writer should have to remove it.", purgatoryElement.finishSpooling() );
+        purgatoryElement.spoolingRemoved();
+        remover.join( 5000 );
+        assertFalse( "The remove should be done.", remover.isAlive() );
+    }
+
+    /** Verify that a removed element is not spooled */
+    public void testSpooling_removedBeforeSpooling()
+    {
+        // SETUP
+        ICacheElement<String, String> cacheElement = new CacheElement<String, String>( "myCacheName", "myKey", "myValue" );
+        PurgatoryElement<String, String> purgatoryElement = new PurgatoryElement<String, String>( cacheElement );
+        purgatoryElement.setSpoolable( true );
+
+        // DO WORK
+        purgatoryElement.setSpoolable( false );
+
+        // VERIFY
+        assertFalse( "Should not start spooling.", purgatoryElement.startSpooling() );
+    }
+
     /** Verify basic data */
     public void testElementAttributes_normal()
     {
@@ -0,0 +1,157 @@
+package org.apache.commons.jcs.auxiliary.disk;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Set;
+
+import junit.framework.TestCase;
+import org.apache.commons.jcs.engine.CacheElement;
+
+/** Unit tests for the lock free purgatory. */
+public class PurgatoryUnitTest
+    extends TestCase
+{
+    /**
+     * @param key
+     * @return a purgatory element for the key
+     */
+    private PurgatoryElement<String, String> element( String key )
+    {
+        return new PurgatoryElement<String, String>( new CacheElement<String, String>( "myCacheName", key, "value" ) );
+    }
+
+    /** Verify that the oldest elements are dropped past the max size */
+    public void testMaxSize()
+    {
+        // SETUP
+        Purgatory<String, String> purgatory = new Purgatory<String, String>( 3 );
+
+        // DO WORK
+        for ( int i = 0; i < 5; i++ )
+        {
+            purgatory.put( element( "key" + i ) );
+        }
+
+        // VERIFY
+        assertEquals( "Wrong size", 3, purgatory.size() );
+        assertNull( "Oldest should have been dropped", purgatory.get( "key0" ) );
+        assertNull( "Oldest should have been dropped", purgatory.get( "key1" ) );
+        assertNotNull( "Newest should be kept", purgatory.get( "key4" ) );
+    }
+
+    /** Verify that the elements already spooled don't count against the max size */
+    public void testMaxSize_spooled()
+    {
+        // SETUP
+        Purgatory<String, String> purgatory = new Purgatory<String, String>( 2 );
+        PurgatoryElement<String, String> spooled = element( "key0" );
+        purgatory.put( spooled );
+        purgatory.put( element( "key1" ) );
+
+        // DO WORK
+        purgatory.remove( spooled );
+        purgatory.put( element( "key2" ) );
+
+        // VERIFY
+        assertEquals( "Wrong size", 2, purgatory.size() );
+        assertNotNull( "Should be kept", purgatory.get( "key1" ) );
+        assertNotNull( "Should be kept", purgatory.get( "key2" ) );
+    }
+
+    /** Verify that the writer of a replaced element doesn't remove the new one */
+    public void testReplaced()
+    {
+        // SETUP
+        Purgatory<String, String> purgatory = new Purgatory<String, String>( -1 );
+        PurgatoryElement<String, String> first = element( "key" );
+        PurgatoryElement<String, String> second = element( "key" );
+        purgatory.put( first );
+
+        // DO WORK
+        purgatory.put( second );
+        purgatory.remove( first );
+
+        // VERIFY
+        assertFalse( "Should no longer be waiting", purgatory.contains( first ) );
+        assertTrue( "Should still be waiting", purgatory.contains( second ) );
+    }
+
+    /** Verify that removing a key cancels the element it replaced while that one was spooled */
+    public void testReplacedWhileSpooling()
+    {
+        // SETUP
+        Purgatory<String, String> purgatory = new Purgatory<String, String>( -1 );
+        PurgatoryElement<String, String> first = element( "key" );
+        first.setSpoolable( true );
+        purgatory.put( first );
+        assertTrue( "Should start spooling", first.startSpooling() );
+        PurgatoryElement<String, String> second = element( "key" );
+        second.setSpoolable( true );
+        purgatory.put( second );
+
+        // DO WORK
+        purgatory.remove( "key" ).cancelSpooling();
+
+        // VERIFY
+        assertFalse( "The writer should have to remove the first one", first.finishSpooling() );
+        assertFalse( "The second one should not be spooled", second.startSpooling() );
+    }
+
+    /** Verify that an element replaced before being spooled is superseded */
+    public void testReplacedBeforeSpooling()
+    {
+        // SETUP
+        Purgatory<String, String> purgatory = new Purgatory<String, String>( -1 );
+        PurgatoryElement<String, String> first = element( "key" );
+        first.setSpoolable( true );
+        purgatory.put( first );
+
+        // DO WORK
+        purgatory.put( element( "key" ) );
+
+        // VERIFY
+        assertFalse( "The first one should not be spooled", first.startSpooling() );
+    }
+
+    /** Verify that the key view can be walked while the purgatory changes */
+    public void testKeySet_weaklyConsistent()
+    {
+        // SETUP
+        Purgatory<String, String> purgatory = new Purgatory<String, String>( -1 );
+        for ( int i = 0; i < 10; i++ )
+        {
+            purgatory.put( element( "key" + i ) );
+        }
+        Set<String> keys = purgatory.keySet();
+
+        // DO WORK
+        int count = 0;
+        for ( String key : keys )
+        {
+            purgatory.remove( key );
+            purgatory.put( element( "other" + count ) );
+            count++;
+        }
+
+        // VERIFY
+        assertTrue( "Should have walked the keys", count >= 10 );
+        assertNull( "Should have been removed", purgatory.get( "key0" ) );
+    }
+}
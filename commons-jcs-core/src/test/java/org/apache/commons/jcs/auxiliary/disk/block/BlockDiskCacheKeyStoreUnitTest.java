@@ -68,6 +68,20 @@ public class BlockDiskCacheKeyStoreUnitTest
         innerTestPutKeys(attributes);
     }
 
+    public void testPutKeysCompact()
+            throws Exception
+    {
+        // SETUP
+        BlockDiskCacheAttributes attributes = new BlockDiskCacheAttributes();
+        attributes.setCacheName("testPutKeysCompact");
+        attributes.setDiskPath(rootDirName);
+        attributes.setMaxKeySize(1000);
+        attributes.setBlockSizeBytes(2000);
+        attributes.setUseCompactKeyMap(true);
+
+        innerTestPutKeys(attributes);
+    }
+
     private void innerTestPutKeys(BlockDiskCacheAttributes attributes)
     {
         BlockDiskCache<String, String> blockDiskCache = new BlockDiskCache<String, String>(attributes);
@@ -123,6 +137,20 @@ public class BlockDiskCacheKeyStoreUnitTest
         testSaveLoadKeysInner(attributes);
     }
 
+    public void testSaveLoadKeysCompact()
+            throws Exception
+    {
+        // SETUP
+        BlockDiskCacheAttributes attributes = new BlockDiskCacheAttributes();
+        attributes.setCacheName("testSaveLoadKeysCompact");
+        attributes.setDiskPath(rootDirName);
+        attributes.setMaxKeySize(10000);
+        attributes.setBlockSizeBytes(2000);
+        attributes.setUseCompactKeyMap(true);
+
+        testSaveLoadKeysInner(attributes);
+    }
+
     private void testSaveLoadKeysInner(BlockDiskCacheAttributes attributes)
     {
         BlockDiskKeyStore<String> keyStore = new BlockDiskKeyStore<String>(attributes, null);
@@ -187,4 +215,23 @@ public class BlockDiskCacheKeyStoreUnitTest
         assertNull(keyStore.get("1"));
         assertNotNull(keyStore.get("2"));
     }
+
+    public void testObjectLargerThanMaxSizeCompact()
+    {
+        BlockDiskCacheAttributes attributes = new BlockDiskCacheAttributes();
+        attributes.setCacheName("testObjectLargerThanMaxSizeCompact");
+        attributes.setDiskPath(rootDirName);
+        attributes.setMaxKeySize(1000);
+        attributes.setBlockSizeBytes(2000);
+        attributes.setDiskLimitType(DiskLimitType.SIZE);
+        attributes.setUseCompactKeyMap(true);
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        BlockDiskKeyStore<String> keyStore = new BlockDiskKeyStore<String>(attributes, new BlockDiskCache(attributes));
+
+        keyStore.put("1", new int[1000]);
+        keyStore.put("2", new int[1000]);
+        assertNull(keyStore.get("1"));
+        assertNotNull(keyStore.get("2"));
+    }
 }
@@ -98,6 +98,46 @@ public abstract class BlockDiskCacheUnitTestAbstract extends TestCase
         // System.out.println( "\nAFTER TEST \n" + diskCache.getStats() );
     }
 
+    /**
+     * Test get matching and hierarchical removal with the key index, also once rebuilt from the keys file.
+     * <p>
+     *
+     * @throws Exception
+     */
+    public void testPutGetMatching_KeyIndex() throws Exception
+    {
+        // SETUP
+        int items = 200;
+
+        String cacheName = "testPutGetMatching_KeyIndex";
+        BlockDiskCacheAttributes cattr = getCacheAttributes();
+        cattr.setCacheName(cacheName);
+        cattr.setMaxKeySize(1000);
+        cattr.setUseKeyIndex(true);
+        cattr.setDiskPath("target/test-sandbox/BlockDiskCacheUnitTest");
+        BlockDiskCache<String, String> diskCache = new BlockDiskCache<String, String>(cattr);
+        diskCache.processRemoveAll();
+
+        // DO WORK
+        for (int i = 0; i < items; i++)
+        {
+            diskCache.processUpdate(new CacheElement<String, String>(cacheName, "a:" + i, cacheName + " data " + i));
+            diskCache.processUpdate(new CacheElement<String, String>(cacheName, "b:" + i, cacheName + " data " + i));
+        }
+
+        // VERIFY
+        assertEquals("Wrong number returned", 10, diskCache.processGetMatching("a:1.8").size());
+        assertTrue("Should have removed the hierarchy", diskCache.processRemove("a:"));
+        assertTrue("Should not have matches", diskCache.processGetMatching("a:.*").isEmpty());
+
+        diskCache.dispose();
+        diskCache = new BlockDiskCache<String, String>(cattr);
+
+        assertEquals("Wrong number returned after reload", items, diskCache.processGetMatching("b:.*").size());
+        assertTrue("Should have removed the hierarchy after reload", diskCache.processRemove("b:"));
+        assertEquals("Wrong size", 0, diskCache.getSize());
+    }
+
     /**
      * Verify that the block disk cache can handle a big string.
      * <p>
@@ -0,0 +1,224 @@
+package org.apache.commons.jcs.auxiliary.disk.block;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.jcs.auxiliary.disk.behavior.IDiskCacheAttributes.DiskLimitType;
+import org.apache.commons.jcs.engine.control.group.GroupAttrName;
+import org.apache.commons.jcs.engine.control.group.GroupId;
+import org.apache.commons.jcs.utils.serialization.StandardSerializer;
+
+/**
+ * Tests for the compact key map of the block disk cache.
+ */
+public class BlockDiskCompactKeyMapUnitTest
+    extends TestCase
+{
+    /** The keys evicted by the map under test */
+    private final List<String> evicted = new ArrayList<String>();
+
+    /**
+     * @param maxSize
+     * @param limitType
+     * @return a map recording its evictions
+     */
+    private BlockDiskCompactKeyMap<String> createMap( int maxSize, DiskLimitType limitType )
+    {
+        return new BlockDiskCompactKeyMap<String>( new StandardSerializer(), maxSize, limitType, 1024,
+                                                   ( key, blocks ) -> evicted.add( key ) );
+    }
+
+    /**
+     * Verify that runs and fragmented blocks are returned as put.
+     */
+    public void testPutGetRemove()
+    {
+        BlockDiskCompactKeyMap<String> map = createMap( -1, DiskLimitType.COUNT );
+
+        assertNull( "Nothing there yet", map.put( "run", new int[] { 5, 6, 7 } ) );
+        map.put( "fragmented", new int[] { 9, 2, 4 } );
+
+        assertEquals( "Wrong size", 2, map.size() );
+        assertArrayEquals( new int[] { 5, 6, 7 }, map.get( "run" ) );
+        assertArrayEquals( new int[] { 9, 2, 4 }, map.get( "fragmented" ) );
+        assertArrayEquals( new int[] { 5, 6, 7 }, map.put( "run", new int[] { 1 } ) );
+        assertArrayEquals( new int[] { 1 }, map.get( "run" ) );
+        assertArrayEquals( new int[] { 9, 2, 4 }, map.remove( "fragmented" ) );
+        assertNull( "Should be removed", map.get( "fragmented" ) );
+        assertTrue( "Should be there", map.containsKey( "run" ) );
+        assertEquals( "Wrong key set", 1, map.keySet().size() );
+    }
+
+    /**
+     * Verify the map against a HashMap through random operations, growing the table and removing
+     * enough to compact the key arena.
+     */
+    public void testRandomOperations()
+    {
+        BlockDiskCompactKeyMap<String> map = createMap( -1, DiskLimitType.COUNT );
+        Map<String, int[]> expected = new HashMap<String, int[]>();
+        Random random = new Random( 42 );
+
+        for ( int i = 0; i < 200000; i++ )
+        {
+            String key = "key-with-some-length-" + random.nextInt( 20000 );
+            if ( random.nextInt( 3 ) == 0 )
+            {
+                int[] removed = map.remove( key );
+                int[] expectedRemoved = expected.remove( key );
+                assertArrayEquals( expectedRemoved, removed );
+            }
+            else
+            {
+                int[] blocks = new int[] { i, i + 1 };
+                map.put( key, blocks );
+                expected.put( key, blocks );
+            }
+        }
+
+        assertEquals( "Wrong size", expected.size(), map.size() );
+        for ( Map.Entry<String, int[]> entry : expected.entrySet() )
+        {
+            assertArrayEquals( entry.getValue(), map.get( entry.getKey() ) );
+        }
+        assertEquals( "Wrong key set", expected.keySet(), map.keySet() );
+    }
+
+    /**
+     * Verify that the clock evicts an unreferenced key and keeps the accessed ones. One character
+     * keys hash to consecutive slots, in the order of the characters.
+     */
+    public void testClockEviction()
+    {
+        BlockDiskCompactKeyMap<String> map = createMap( 3, DiskLimitType.COUNT );
+        map.put( "a", new int[] { 0 } );
+        map.put( "b", new int[] { 1 } );
+        map.put( "c", new int[] { 2 } );
+
+        // all referenced by their put: the first turn clears the flags, the second evicts a
+        map.put( "d", new int[] { 3 } );
+        assertEquals( "Wrong size", 3, map.size() );
+        assertEquals( "Wrong key evicted", "[a]", evicted.toString() );
+
+        // c is referenced again, so b is the next one
+        map.get( "c" );
+        map.put( "e", new int[] { 4 } );
+
+        assertEquals( "Wrong keys evicted", "[a, b]", evicted.toString() );
+        assertNotNull( "An accessed key should not be evicted", map.get( "c" ) );
+        assertNotNull( "Should be there", map.get( "d" ) );
+        assertNotNull( "Should be there", map.get( "e" ) );
+    }
+
+    /**
+     * Verify that the size limit counts the blocks like the LRU maps.
+     */
+    public void testSizeLimit()
+    {
+        // 1024 byte blocks count 2kB each, 5kB holds two
+        BlockDiskCompactKeyMap<String> map = createMap( 5, DiskLimitType.SIZE );
+        map.put( "a", new int[] { 0 } );
+        map.put( "b", new int[] { 1 } );
+        assertEquals( "Nothing evicted yet", 0, evicted.size() );
+
+        map.put( "c", new int[] { 2 } );
+        assertEquals( "Wrong number evicted", 1, evicted.size() );
+        assertEquals( "Wrong size", 2, map.size() );
+    }
+
+    /**
+     * Verify that the lookups compare the serialized keys and do not deserialize the stored ones.
+     */
+    public void testLookupsDoNotDeserialize()
+    {
+        final AtomicInteger deserialized = new AtomicInteger();
+        BlockDiskCompactKeyMap<String> map = new BlockDiskCompactKeyMap<String>( new StandardSerializer()
+        {
+            @Override
+            public <T> T deSerialize( byte[] data, ClassLoader loader )
+                throws IOException, ClassNotFoundException
+            {
+                deserialized.incrementAndGet();
+                return super.deSerialize( data, loader );
+            }
+        }, -1, DiskLimitType.COUNT, 1024, ( key, blocks ) -> evicted.add( key ) );
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            map.put( "key" + i, new int[] { i } );
+        }
+        for ( int i = 0; i < 100; i++ )
+        {
+            assertArrayEquals( new int[] { i }, map.get( "key" + i ) );
+            assertTrue( "Should be there", map.containsKey( "key" + i ) );
+        }
+        assertNull( "Not there", map.get( "missing" ) );
+        assertFalse( "Not serializable, so not there", map.containsKey( new Object() ) );
+        assertArrayEquals( new int[] { 7 }, map.remove( "key7" ) );
+        assertEquals( "No key should be deserialized", 0, deserialized.get() );
+
+        assertEquals( "Wrong key set", 99, map.keySet().size() );
+        assertEquals( "The snapshot deserializes", 99, deserialized.get() );
+    }
+
+    /**
+     * Verify that an equal key which serializes differently is found, the group keys serialize
+     * their cached toString.
+     */
+    public void testEqualKeySerializedDifferently()
+    {
+        // SETUP
+        BlockDiskCompactKeyMap<GroupAttrName<String>> map = new BlockDiskCompactKeyMap<GroupAttrName<String>>(
+            new StandardSerializer(), -1, DiskLimitType.COUNT, 1024, ( key, blocks ) -> evicted.add( key.toString() ) );
+        map.put( new GroupAttrName<String>( new GroupId( "region", "group" ), "attr" ), new int[] { 3 } );
+
+        // DO WORK
+        GroupAttrName<String> equal = new GroupAttrName<String>( new GroupId( "region", "group" ), "attr" );
+        equal.toString();
+
+        // VERIFY
+        assertArrayEquals( new int[] { 3 }, map.get( equal ) );
+        assertTrue( "Should be there", map.containsKey( equal ) );
+        assertArrayEquals( new int[] { 3 }, map.put( equal, new int[] { 4 } ) );
+        assertEquals( "Should not be duplicated", 1, map.size() );
+        assertArrayEquals( new int[] { 4 }, map.remove( equal ) );
+        assertEquals( "Should be removed", 0, map.size() );
+    }
+
+    /**
+     * @param expected
+     * @param actual
+     */
+    private static void assertArrayEquals( int[] expected, int[] actual )
+    {
+        assertTrue( "Expected " + Arrays.toString( expected ) + " but got "
+            + Arrays.toString( actual ), Arrays.equals( expected, actual ) );
+    }
+}
@@ -23,6 +23,7 @@ import junit.framework.TestCase;
 import org.apache.commons.jcs.utils.serialization.StandardSerializer;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.Random;
 
 /**
@@ -299,6 +300,19 @@ public class BlockDiskUnitTest
         return blockSize * numBlocks - ( numBlocks * BlockDisk.HEADER_SIZE_BYTES ) - ( numBlocks * 14 );
     }
 
+    /**
+     * Gets a byte array size whose serialized form needs exactly the given number of blocks.
+     *
+     * @param blockSize
+     * @param numBlocks
+     * @return the array size
+     */
+    private int getBytesFillingBlocks( int blockSize, int numBlocks )
+    {
+        // leaves room for the serialization overhead
+        return ( blockSize - BlockDisk.HEADER_SIZE_BYTES ) * numBlocks - 64;
+    }
+
     /**
      * Verify that the block disk can handle a big string.
      * <p>
@@ -361,6 +375,84 @@ public class BlockDiskUnitTest
         assertEquals( "Wrong item retured.", string, result );
     }
 
+    /**
+     * Verify that a freed run of blocks is reused contiguously, and that scattered free blocks are
+     * used before growing the file when no run is long enough.
+     * <p>
+     * @throws Exception
+     */
+    public void testAllocateContiguousRuns()
+        throws Exception
+    {
+        // SETUP
+        String fileName = "testAllocateContiguousRuns";
+        File file = new File( rafDir, fileName + ".data" );
+        file.delete();
+        BlockDisk disk = new BlockDisk( file, new StandardSerializer() );
+        int blockSize = disk.getBlockSizeBytes();
+
+        int[] a = disk.write( new byte[getBytesFillingBlocks( blockSize, 3 )] );
+        int[] b = disk.write( new byte[getBytesFillingBlocks( blockSize, 1 )] );
+        int[] c = disk.write( new byte[getBytesFillingBlocks( blockSize, 1 )] );
+        int[] d = disk.write( new byte[getBytesFillingBlocks( blockSize, 1 )] );
+        assertEquals( "Wrong number of blocks recorded.", 6, disk.getNumberOfBlocks() );
+
+        // DO WORK
+        disk.freeBlocks( a );
+        int[] e = disk.write( new byte[getBytesFillingBlocks( blockSize, 2 )] );
+
+        // VERIFY
+        assertEquals( "Should reuse the freed run.", 0, e[0] );
+        assertEquals( "Should reuse the freed run.", 1, e[1] );
+        assertEquals( "Wrong number of empty blocks.", 1, disk.getEmptyBlocks() );
+
+        // DO WORK
+        disk.freeBlocks( c );
+        int[] f = disk.write( new byte[getBytesFillingBlocks( blockSize, 3 )] );
+
+        // VERIFY
+        assertEquals( "Should use the scattered free blocks first.", 2, f[0] );
+        assertEquals( "Should use the scattered free blocks first.", 4, f[1] );
+        assertEquals( "Should append the rest.", 6, f[2] );
+        assertEquals( "Wrong number of empty blocks.", 0, disk.getEmptyBlocks() );
+        assertEquals( "Wrong item retured.", getBytesFillingBlocks( blockSize, 3 ),
+                      ( (byte[]) disk.read( f ) ).length );
+        assertEquals( "Wrong item retured.", getBytesFillingBlocks( blockSize, 1 ),
+                      ( (byte[]) disk.read( b ) ).length );
+        assertEquals( "Wrong item retured.", getBytesFillingBlocks( blockSize, 1 ),
+                      ( (byte[]) disk.read( d ) ).length );
+    }
+
+    /**
+     * Verify that the blocks not used by the loaded keys are free after a restart.
+     * <p>
+     * @throws Exception
+     */
+    public void testInitEmptyBlocks()
+        throws Exception
+    {
+        // SETUP
+        String fileName = "testInitEmptyBlocks";
+        File file = new File( rafDir, fileName + ".data" );
+        file.delete();
+        BlockDisk disk = new BlockDisk( file, new StandardSerializer() );
+        int blockSize = disk.getBlockSizeBytes();
+        disk.write( new byte[getBytesFillingBlocks( blockSize, 2 )] );
+        int[] kept = disk.write( new byte[getBytesFillingBlocks( blockSize, 2 )] );
+        disk.close();
+
+        // DO WORK
+        disk = new BlockDisk( file, new StandardSerializer() );
+        disk.initEmptyBlocks( Collections.singletonList( kept ) );
+
+        // VERIFY
+        assertEquals( "Wrong number of empty blocks.", 2, disk.getEmptyBlocks() );
+        int[] reused = disk.write( new byte[getBytesFillingBlocks( blockSize, 2 )] );
+        assertEquals( "Should reuse the free run.", 0, reused[0] );
+        assertEquals( "Wrong number of blocks recorded.", 4, disk.getNumberOfBlocks() );
+        disk.close();
+    }
+
     public void testJCS156() throws Exception {
         // SETUP
         String fileName = "testJCS156";
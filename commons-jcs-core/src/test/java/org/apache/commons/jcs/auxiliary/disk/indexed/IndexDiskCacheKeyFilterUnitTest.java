@@ -0,0 +1,87 @@
+package org.apache.commons.jcs.auxiliary.disk.indexed;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+import org.apache.commons.jcs.auxiliary.disk.behavior.IDiskCacheAttributes.DiskLimitType;
+import org.apache.commons.jcs.engine.CacheElement;
+
+/** Runs the indexed disk cache tests with the key filter, and checks it survives a restart. */
+public class IndexDiskCacheKeyFilterUnitTest extends IndexDiskCacheUnitTestAbstract
+{
+    @Override
+    public IndexedDiskCacheAttributes getCacheAttributes()
+    {
+        IndexedDiskCacheAttributes ret = new IndexedDiskCacheAttributes();
+        ret.setDiskLimitType(DiskLimitType.COUNT);
+        ret.setUseKeyFilter(true);
+        return ret;
+    }
+
+    /**
+     * Verify that the filter is saved with the keys and still rejects the missing keys after a
+     * restart.
+     * <p>
+     *
+     * @throws Exception
+     */
+    public void testKeyFilter_Reload() throws Exception
+    {
+        // SETUP
+        int items = 200;
+        String cacheName = "testKeyFilter_Reload";
+        IndexedDiskCacheAttributes cattr = getCacheAttributes();
+        cattr.setCacheName(cacheName);
+        cattr.setMaxKeySize(1000);
+        cattr.setDiskPath("target/test-sandbox/IndexDiskCacheKeyFilterUnitTest");
+        IndexedDiskCache<String, String> diskCache = new IndexedDiskCache<String, String>(cattr);
+        diskCache.processRemoveAll();
+        for (int i = 0; i < items; i++)
+        {
+            diskCache.processUpdate(new CacheElement<String, String>(cacheName, "key" + i, "data" + i));
+        }
+        diskCache.processRemove("key0");
+
+        // DO WORK
+        diskCache.dispose();
+        assertTrue("The filter should have been saved",
+                new File(cattr.getDiskPath(), cacheName + ".filter").exists());
+        diskCache = new IndexedDiskCache<String, String>(cattr);
+
+        // VERIFY
+        assertNull("Removed key should be missing", diskCache.get("key0"));
+        for (int i = 1; i < items; i++)
+        {
+            assertEquals("Wrong value for key" + i, "data" + i, diskCache.get("key" + i).getVal());
+            assertTrue("Filter should contain key" + i, diskCache.mayContainKey("key" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < items; i++)
+        {
+            if (diskCache.mayContainKey("other" + i))
+            {
+                falsePositives++;
+            }
+        }
+        assertTrue("Too many false positives: " + falsePositives, falsePositives < 20);
+        diskCache.dispose();
+    }
+}
@@ -432,6 +432,41 @@ public abstract class IndexDiskCacheUnitTestAbstract extends TestCase
         assertEquals("Recylenbin should not have more elements than we removed. Check for JCS-67", cnt, disk.getRecyleBinSize());
     }
 
+    /**
+     * Verify the hierarchical removal and getMatching with the key index, also once rebuilt from the keys file.
+     *
+     * @throws IOException
+     */
+    public void testRemove_PartialKey_KeyIndex() throws IOException
+    {
+        IndexedDiskCacheAttributes cattr = getCacheAttributes();
+        cattr.setCacheName("testRemove_PartialKey_KeyIndex");
+        cattr.setMaxKeySize(100);
+        cattr.setUseKeyIndex(true);
+        cattr.setDiskPath("target/test-sandbox/IndexDiskCacheUnitTest");
+        IndexedDiskCache<String, String> disk = new IndexedDiskCache<String, String>(cattr);
+
+        disk.processRemoveAll();
+
+        int cnt = 25;
+        for (int i = 0; i < cnt; i++)
+        {
+            disk.processUpdate(new CacheElement<String, String>("testRemove_PartialKey_KeyIndex", "a:" + i, "data:" + i));
+            disk.processUpdate(new CacheElement<String, String>("testRemove_PartialKey_KeyIndex", "b:" + i, "data:" + i));
+        }
+
+        assertEquals("Wrong number of matches", 11, disk.processGetMatching("a:1\\d?").size());
+        assertTrue("Should have removed the hierarchy", disk.processRemove("a:"));
+        assertTrue("Should not have matches", disk.processGetMatching("a:.*").isEmpty());
+
+        disk.dispose();
+        disk = new IndexedDiskCache<String, String>(cattr);
+
+        assertEquals("Wrong number of matches after reload", cnt, disk.processGetMatching("b:.*").size());
+        assertTrue("Should have removed the hierarchy after reload", disk.processRemove("b:"));
+        assertEquals("Wrong size", 0, disk.getSize());
+    }
+
     /**
      * Verify that group members are removed if we call remove with a group.
      *
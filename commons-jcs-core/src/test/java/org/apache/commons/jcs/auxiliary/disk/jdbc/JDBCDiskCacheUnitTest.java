@@ -21,17 +21,22 @@ package org.apache.commons.jcs.auxiliary.disk.jdbc;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import junit.framework.TestCase;
 
 import org.apache.commons.jcs.JCS;
 import org.apache.commons.jcs.access.CacheAccess;
 import org.apache.commons.jcs.auxiliary.disk.jdbc.dsfactory.DataSourceFactory;
+import org.apache.commons.jcs.engine.CacheElement;
+import org.apache.commons.jcs.engine.ElementAttributes;
 import org.apache.commons.jcs.engine.behavior.ICacheElement;
 import org.apache.commons.jcs.engine.control.MockCompositeCacheManager;
 import org.apache.commons.jcs.utils.serialization.StandardSerializer;
@@ -203,4 +208,314 @@ public class JDBCDiskCacheUnitTest
         HsqlSetupTableUtil.setupTABLE( cConn, "JCSTESTTABLE_InitializePoolAccess" );
 
     }
+
+    /**
+     * Verify the buffered updates are written in batches and visible to the reads before and after the flush.
+     * <p>
+     * @throws Exception
+     */
+    public void testBatchedUpdates()
+        throws Exception
+    {
+        // SETUP
+        JDBCDiskCacheAttributes cattr = createAttributes( "JCSTESTTABLE_BatchedUpdates", "testBatchedUpdates" );
+        cattr.setBatchSize( 10 );
+        JDBCDiskCache<String, String> diskCache = createDiskCache( cattr );
+        diskCache.processRemoveAll();
+
+        int items = 55;
+
+        // DO WORK
+        for ( int i = 0; i < items; i++ )
+        {
+            diskCache.update( new CacheElement<String, String>( "testBatchedUpdates", i + ":key", "data " + i ) );
+        }
+        for ( int i = 0; i < 50 && diskCache.getSize() < items; i++ )
+        {
+            Thread.sleep( 100 );
+        }
+        // overwrite some of them, they go through the update statements
+        for ( int i = 0; i < items; i += 2 )
+        {
+            diskCache.update( new CacheElement<String, String>( "testBatchedUpdates", i + ":key", "new data " + i ) );
+        }
+        for ( int i = 0; i < items; i++ )
+        {
+            ICacheElement<String, String> element = diskCache.get( i + ":key" );
+            assertNotNull( "element " + i + ":key is missing", element );
+        }
+
+        // wait for the event queue to be processed
+        ICacheElement<String, String> last = null;
+        for ( int i = 0; i < 50 && ( last == null || !last.getVal().startsWith( "new" ) ); i++ )
+        {
+            last = diskCache.processGet( ( items - 1 ) + ":key" );
+            Thread.sleep( 100 );
+        }
+
+        // VERIFY
+        assertEquals( "Wrong size", items, diskCache.getSize() );
+        for ( int i = 0; i < items; i++ )
+        {
+            String expected = ( i % 2 == 0 ? "new data " : "data " ) + i;
+            assertEquals( "Wrong value", expected, diskCache.processGet( i + ":key" ).getVal() );
+        }
+
+        diskCache.processRemove( "0:key" );
+        assertNull( "Removed element should be gone", diskCache.processGet( "0:key" ) );
+        assertEquals( "Wrong size", items - 1, diskCache.getSize() );
+
+        diskCache.processDispose();
+    }
+
+    /**
+     * Verify an update followed by another kind of event is written once the queue is empty.
+     * <p>
+     * @throws Exception
+     */
+    public void testUpdateFollowedByRemoveIsWritten()
+        throws Exception
+    {
+        // SETUP
+        JDBCDiskCacheAttributes cattr = createAttributes( "JCSTESTTABLE_UpdateThenRemove", "testUpdateThenRemove" );
+        cattr.setBatchSize( 100 );
+        JDBCDiskCacheFactory dcFactory = new JDBCDiskCacheFactory();
+        dcFactory.initialize();
+        MockCompositeCacheManager compositeCacheManager = new MockCompositeCacheManager();
+        final AtomicBoolean updating = new AtomicBoolean();
+        JDBCDiskCache<String, String> diskCache = new JDBCDiskCache<String, String>( cattr,
+            dcFactory.getDataSourceFactory( cattr, compositeCacheManager.getConfigurationProperties() ),
+            dcFactory.getTableState( cattr.getTableName() ), compositeCacheManager )
+        {
+            // as if another event was queued behind the update, the write waits for the queue to drain
+            @Override
+            protected void processUpdate( ICacheElement<String, String> ce )
+            {
+                updating.set( true );
+                try
+                {
+                    super.processUpdate( ce );
+                }
+                finally
+                {
+                    updating.set( false );
+                }
+            }
+
+            @Override
+            protected int getEventQueueSize()
+            {
+                return updating.get() ? 1 : super.getEventQueueSize();
+            }
+        };
+        diskCache.setElementSerializer( new StandardSerializer() );
+
+        // DO WORK
+        diskCache.update( new CacheElement<String, String>( "testUpdateThenRemove", "key", "data" ) );
+        diskCache.remove( "other" );
+
+        // VERIFY, counting the rows directly, getSize would flush the pending writes itself
+        for ( int i = 0; i < 50 && countRows( cattr ) < 1; i++ )
+        {
+            Thread.sleep( 100 );
+        }
+        assertEquals( "The update should be written", 1, countRows( cattr ) );
+
+        diskCache.processDispose();
+    }
+
+    /**
+     * Verify the expired elements are deleted by chunks and the others kept.
+     * <p>
+     * @throws Exception
+     */
+    public void testDeleteExpiredByChunks()
+        throws Exception
+    {
+        // SETUP
+        JDBCDiskCacheAttributes cattr = createAttributes( "JCSTESTTABLE_DeleteExpired", "testDeleteExpired" );
+        cattr.setChunkSize( 10 );
+        cattr.setShrinkerMaxDeletesPerSecond( 100 );
+        JDBCDiskCache<String, String> diskCache = createDiskCache( cattr );
+
+        int expiring = 25;
+        for ( int i = 0; i < expiring; i++ )
+        {
+            diskCache.processUpdate( createElement( "testDeleteExpired", "expiring" + i, 1, false ) );
+        }
+        for ( int i = 0; i < 5; i++ )
+        {
+            diskCache.processUpdate( createElement( "testDeleteExpired", "eternal" + i, 1, true ) );
+            diskCache.processUpdate( createElement( "testDeleteExpired", "living" + i, 1000, false ) );
+        }
+        Thread.sleep( 2100 );
+
+        // DO WORK
+        long start = System.currentTimeMillis();
+        int deleted = diskCache.deleteExpired();
+
+        // VERIFY
+        assertEquals( "Wrong number deleted", expiring, deleted );
+        assertTrue( "The deletions should have been rate limited", System.currentTimeMillis() - start >= 200 );
+        assertEquals( "Wrong size", 10, diskCache.getSize() );
+        assertNull( "Should be deleted", diskCache.processGet( "expiring0" ) );
+        assertNotNull( "Eternal should be kept", diskCache.processGet( "eternal0" ) );
+        assertNotNull( "Living should be kept", diskCache.processGet( "living0" ) );
+        assertEquals( "Nothing more to delete", 0, diskCache.deleteExpired() );
+
+        diskCache.processDispose();
+    }
+
+    /**
+     * Verify the keys are all read and getMultiple queries the keys by chunks.
+     * <p>
+     * @throws Exception
+     */
+    public void testGetKeySetAndGetMultiple()
+        throws Exception
+    {
+        // SETUP
+        JDBCDiskCacheAttributes cattr = createAttributes( "JCSTESTTABLE_GetMultiple", "testGetMultiple" );
+        cattr.setChunkSize( 7 );
+        JDBCDiskCache<String, String> diskCache = createDiskCache( cattr );
+
+        int items = 30;
+        Set<String> keys = new HashSet<String>();
+        for ( int i = 0; i < items; i++ )
+        {
+            diskCache.processUpdate( createElement( "testGetMultiple", i + ":key", 100, false ) );
+            keys.add( i + ":key" );
+        }
+
+        // DO WORK
+        Set<String> keySet = diskCache.getKeySet();
+        keys.add( "missing" );
+        Map<String, ICacheElement<String, String>> elements = diskCache.getMultiple( keys );
+
+        // VERIFY
+        assertEquals( "Wrong keys", items, keySet.size() );
+        assertEquals( "Wrong keys", items, new HashSet<String>( keySet ).size() );
+        assertTrue( "Wrong keys", keys.containsAll( keySet ) );
+        assertEquals( "Wrong number of elements", items, elements.size() );
+        for ( int i = 0; i < items; i++ )
+        {
+            assertEquals( "Wrong value", "data " + i + ":key", elements.get( i + ":key" ).getVal() );
+        }
+
+        diskCache.processDispose();
+    }
+
+    /**
+     * Verify the keys which are not strings are read back with their type.
+     * <p>
+     * @throws Exception
+     */
+    public void testGetKeySet_NotStringKeys()
+        throws Exception
+    {
+        // SETUP
+        JDBCDiskCacheAttributes cattr = createAttributes( "JCSTESTTABLE_IntegerKeys", "testIntegerKeys" );
+        cattr.setChunkSize( 4 );
+        JDBCDiskCache<Integer, String> diskCache = createDiskCache( cattr );
+
+        int items = 10;
+        for ( int i = 0; i < items; i++ )
+        {
+            diskCache.processUpdate( new CacheElement<Integer, String>( "testIntegerKeys", Integer.valueOf( i ), "data " + i ) );
+        }
+
+        // DO WORK
+        Set<Integer> keySet = new HashSet<Integer>( diskCache.getKeySet() );
+
+        // VERIFY
+        assertEquals( "Wrong keys", items, keySet.size() );
+        for ( int i = 0; i < items; i++ )
+        {
+            assertTrue( "Missing key " + i, keySet.contains( Integer.valueOf( i ) ) );
+        }
+
+        diskCache.processDispose();
+    }
+
+    /**
+     * @param tableName
+     * @param region
+     * @return the attributes of a cache on the test database
+     * @throws Exception
+     */
+    private JDBCDiskCacheAttributes createAttributes( String tableName, String region )
+        throws Exception
+    {
+        String url = "jdbc:hsqldb:target/cache_hsql_db";
+        String driverClassName = "org.hsqldb.jdbcDriver";
+
+        System.setProperty( "hsqldb.cache_scale", "8" );
+        new org.hsqldb.jdbcDriver();
+        Class.forName( driverClassName ).newInstance();
+        Connection cConn = DriverManager.getConnection( url, "sa", "" );
+        HsqlSetupTableUtil.setupTABLE( cConn, tableName );
+
+        JDBCDiskCacheAttributes cattr = new JDBCDiskCacheAttributes();
+        cattr.setCacheName( region );
+        cattr.setUrl( url );
+        cattr.setUserName( "sa" );
+        cattr.setPassword( "" );
+        cattr.setDriverClassName( driverClassName );
+        cattr.setTableName( tableName );
+        cattr.setUseDiskShrinker( false );
+        return cattr;
+    }
+
+    /**
+     * @param cattr
+     * @return the number of rows of the region in the table
+     * @throws Exception
+     */
+    private int countRows( JDBCDiskCacheAttributes cattr )
+        throws Exception
+    {
+        try (Connection con = DriverManager.getConnection( cattr.getUrl(), cattr.getUserName(), cattr.getPassword() );
+             PreparedStatement ps = con.prepareStatement( "select count(*) from " + cattr.getTableName() + " where REGION = ?" ))
+        {
+            ps.setString( 1, cattr.getCacheName() );
+            try (ResultSet rs = ps.executeQuery())
+            {
+                rs.next();
+                return rs.getInt( 1 );
+            }
+        }
+    }
+
+    /**
+     * @param cattr
+     * @return an empty cache
+     * @throws Exception
+     */
+    private <K> JDBCDiskCache<K, String> createDiskCache( JDBCDiskCacheAttributes cattr )
+        throws Exception
+    {
+        JDBCDiskCacheFactory dcFactory = new JDBCDiskCacheFactory();
+        dcFactory.initialize();
+        dcFactory.setScheduledExecutorService(Executors.newScheduledThreadPool(2,
+            new DaemonThreadFactory("JCS-JDBCDiskCacheManager-", Thread.MIN_PRIORITY)));
+        JDBCDiskCache<K, String> diskCache =
+            dcFactory.createCache( cattr, new MockCompositeCacheManager(), null, new StandardSerializer() );
+        diskCache.processRemoveAll();
+        return diskCache;
+    }
+
+    /**
+     * @param region
+     * @param key
+     * @param maxLife
+     * @param eternal
+     * @return an element with the given life
+     */
+    private ICacheElement<String, String> createElement( String region, String key, long maxLife, boolean eternal )
+    {
+        ElementAttributes attributes = new ElementAttributes();
+        attributes.setMaxLife( maxLife );
+        attributes.setIsEternal( eternal );
+        return new CacheElement<String, String>( region, key, "data " + key, attributes );
+    }
 }
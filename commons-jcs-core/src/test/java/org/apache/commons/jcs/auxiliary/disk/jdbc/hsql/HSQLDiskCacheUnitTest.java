@@ -25,6 +25,10 @@ import org.apache.commons.jcs.access.CacheAccess;
 import org.apache.commons.jcs.access.exception.CacheException;
 import org.apache.commons.jcs.engine.behavior.ICacheElement;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -186,4 +190,42 @@ public class HSQLDiskCacheUnitTest
             assertEquals( "key = [" + i + ":key] value = [" + value + "]", region + " data " + i, value );
         }
     }
+
+    /**
+     * Verify a table created before the expiration index gets it, and that setting up an existing
+     * table again is not an error.
+     * <p>
+     * @throws Exception
+     */
+    public void testSetupTable_AddsIndexToExistingTable()
+        throws Exception
+    {
+        // SETUP
+        new org.hsqldb.jdbcDriver();
+        Connection cConn = DriverManager.getConnection( "jdbc:hsqldb:mem:testSetupTable", "sa", "" );
+        try (Statement sStatement = cConn.createStatement())
+        {
+            sStatement.execute( "CREATE CACHED TABLE JCS_OLD_STORE ( CACHE_KEY VARCHAR(250) NOT NULL, "
+                + "REGION VARCHAR(250) NOT NULL, ELEMENT BINARY, CREATE_TIME TIMESTAMP, UPDATE_TIME_SECONDS BIGINT, "
+                + "MAX_LIFE_SECONDS BIGINT, SYSTEM_EXPIRE_TIME_SECONDS BIGINT, IS_ETERNAL CHAR(1), "
+                + "PRIMARY KEY (CACHE_KEY, REGION) );" );
+        }
+        HSQLDiskCacheFactory factory = new HSQLDiskCacheFactory();
+
+        // DO WORK
+        factory.setupTable( cConn, "JCS_OLD_STORE" );
+        factory.setupTable( cConn, "JCS_OLD_STORE" );
+
+        // VERIFY
+        Set<String> indexes = new HashSet<String>();
+        try (ResultSet rs = cConn.getMetaData().getIndexInfo( null, null, "JCS_OLD_STORE", false, false ))
+        {
+            while ( rs.next() )
+            {
+                indexes.add( rs.getString( "INDEX_NAME" ) );
+            }
+        }
+        assertTrue( "Missing index, found " + indexes, indexes.contains( "JCS_OLD_STORE_EXPIRE_IDX" ) );
+        cConn.close();
+    }
 }
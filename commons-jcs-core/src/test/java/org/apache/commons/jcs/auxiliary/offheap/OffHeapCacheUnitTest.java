@@ -0,0 +1,240 @@
+package org.apache.commons.jcs.auxiliary.offheap;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.jcs.engine.CacheElement;
+import org.apache.commons.jcs.engine.CacheStatus;
+import org.apache.commons.jcs.engine.behavior.ICacheElement;
+import org.apache.commons.jcs.engine.control.CompositeCache;
+import org.apache.commons.jcs.engine.control.CompositeCacheManager;
+import org.apache.commons.jcs.engine.control.group.GroupAttrName;
+import org.apache.commons.jcs.engine.control.group.GroupId;
+
+/**
+ * Tests for the off heap cache.
+ */
+public class OffHeapCacheUnitTest
+    extends TestCase
+{
+    /** The region name */
+    private static final String CACHE_NAME = "testOffHeap";
+
+    /**
+     * @param blocks the number of blocks of the cache
+     * @return a cache of blocks of 2KB, with slabs of 2 blocks
+     */
+    private <K> OffHeapCache<K, String> createCache( int blocks )
+    {
+        OffHeapCacheAttributes cattr = new OffHeapCacheAttributes();
+        cattr.setCacheName( CACHE_NAME );
+        cattr.setBlockSizeBytes( 2048 );
+        cattr.setSlabSizeBytes( 2 * 2048 );
+        cattr.setMaxBytes( blocks * 2048 );
+        return new OffHeapCache<K, String>( cattr, null );
+    }
+
+    /**
+     * Verify that the elements are read back and replaced.
+     * <p>
+     * @throws Exception
+     */
+    public void testPutGet()
+        throws Exception
+    {
+        OffHeapCache<String, String> cache = createCache( 8 );
+
+        for ( int i = 0; i < 4; i++ )
+        {
+            cache.update( new CacheElement<String, String>( CACHE_NAME, "key" + i, "value" + i ) );
+        }
+        cache.update( new CacheElement<String, String>( CACHE_NAME, "key1", "value1b" ) );
+
+        assertEquals( "Wrong size", 4, cache.getSize() );
+        assertEquals( "Wrong value", "value0", cache.get( "key0" ).getVal() );
+        assertEquals( "Wrong value", "value1b", cache.get( "key1" ).getVal() );
+        assertNull( "Should not be there", cache.get( "key9" ) );
+        assertEquals( "Wrong key set size", 4, cache.getKeySet().size() );
+        assertEquals( "Wrong matching size", 4, cache.getMatching( "key\\d" ).size() );
+    }
+
+    /**
+     * Verify that the least recently used element goes to the overflow when the memory is full.
+     * <p>
+     * @throws Exception
+     */
+    public void testEvictionToOverflow()
+        throws Exception
+    {
+        OffHeapCache<String, String> cache = createCache( 4 );
+        List<ICacheElement<String, String>> overflowed = new ArrayList<ICacheElement<String, String>>();
+        cache.setOverflow( overflowed::add );
+
+        for ( int i = 0; i < 4; i++ )
+        {
+            cache.update( new CacheElement<String, String>( CACHE_NAME, "key" + i, "value" + i ) );
+        }
+        // key0 becomes the most recently used
+        cache.get( "key0" );
+        cache.update( new CacheElement<String, String>( CACHE_NAME, "key4", "value4" ) );
+
+        assertEquals( "Wrong number overflowed", 1, overflowed.size() );
+        assertEquals( "Wrong element overflowed", "key1", overflowed.get( 0 ).getKey() );
+        assertEquals( "Wrong value overflowed", "value1", overflowed.get( 0 ).getVal() );
+        assertNull( "Should have been evicted", cache.get( "key1" ) );
+        assertEquals( "Wrong value", "value0", cache.get( "key0" ).getVal() );
+        assertEquals( "Wrong size", 4, cache.getSize() );
+    }
+
+    /**
+     * Verify that an element bigger than the memory goes straight to the overflow.
+     * <p>
+     * @throws Exception
+     */
+    public void testTooBigGoesToOverflow()
+        throws Exception
+    {
+        OffHeapCache<String, String> cache = createCache( 2 );
+        List<ICacheElement<String, String>> overflowed = new ArrayList<ICacheElement<String, String>>();
+        cache.setOverflow( overflowed::add );
+
+        cache.update( new CacheElement<String, String>( CACHE_NAME, "small", "value" ) );
+        StringBuilder big = new StringBuilder();
+        for ( int i = 0; i < 8192; i++ )
+        {
+            big.append( 'x' );
+        }
+        cache.update( new CacheElement<String, String>( CACHE_NAME, "big", big.toString() ) );
+
+        assertEquals( "Wrong number overflowed", 1, overflowed.size() );
+        assertEquals( "Wrong element overflowed", "big", overflowed.get( 0 ).getKey() );
+        assertNull( "Should not be stored", cache.get( "big" ) );
+        assertNotNull( "Should not be evicted", cache.get( "small" ) );
+    }
+
+    /**
+     * Verify single, partial and group removal.
+     * <p>
+     * @throws Exception
+     */
+    public void testRemove()
+        throws Exception
+    {
+        OffHeapCache<Object, String> cache = createCache( 16 );
+        GroupId groupId = new GroupId( CACHE_NAME, "group" );
+
+        cache.update( new CacheElement<Object, String>( CACHE_NAME, "a:1", "value" ) );
+        cache.update( new CacheElement<Object, String>( CACHE_NAME, "a:2", "value" ) );
+        cache.update( new CacheElement<Object, String>( CACHE_NAME, "b", "value" ) );
+        cache.update( new CacheElement<Object, String>( CACHE_NAME, new GroupAttrName<String>( groupId, "x" ), "value" ) );
+        cache.update( new CacheElement<Object, String>( CACHE_NAME, new GroupAttrName<String>( groupId, "y" ), "value" ) );
+
+        assertTrue( "Should remove the partial key", cache.remove( "a:" ) );
+        assertEquals( "Wrong size", 3, cache.getSize() );
+        assertTrue( "Should remove the group", cache.remove( new GroupAttrName<String>( groupId, null ) ) );
+        assertEquals( "Wrong size", 1, cache.getSize() );
+        assertTrue( "Should remove the key", cache.remove( "b" ) );
+        assertFalse( "Nothing left to remove", cache.remove( "b" ) );
+        assertEquals( "Wrong size", 0, cache.getSize() );
+    }
+
+    /**
+     * Verify that removeAll keeps the cache usable and dispose does not.
+     * <p>
+     * @throws Exception
+     */
+    public void testRemoveAllAndDispose()
+        throws Exception
+    {
+        OffHeapCache<String, String> cache = createCache( 4 );
+        cache.update( new CacheElement<String, String>( CACHE_NAME, "key", "value" ) );
+
+        cache.removeAll();
+        assertEquals( "Wrong size", 0, cache.getSize() );
+        cache.update( new CacheElement<String, String>( CACHE_NAME, "key", "value2" ) );
+        assertEquals( "Wrong value", "value2", cache.get( "key" ).getVal() );
+
+        cache.dispose();
+        assertEquals( "Wrong status", CacheStatus.DISPOSED, cache.getStatus() );
+        assertNull( "Should be disposed", cache.get( "key" ) );
+    }
+
+    /**
+     * Verify that an OFFHEAP,DC region gets its off heap elements back from the disk after a
+     * restart.
+     * <p>
+     * @throws Exception
+     */
+    public void testRestartWithDiskTier()
+        throws Exception
+    {
+        Properties props = new Properties();
+        props.setProperty( "jcs.region.offHeapRestart", "OFFHEAP,DC" );
+        props.setProperty( "jcs.region.offHeapRestart.cacheattributes", "org.apache.commons.jcs.engine.CompositeCacheAttributes" );
+        props.setProperty( "jcs.region.offHeapRestart.cacheattributes.MaxObjects", "10" );
+        props.setProperty( "jcs.region.offHeapRestart.cacheattributes.MemoryCacheName",
+                           "org.apache.commons.jcs.engine.memory.lru.LRUMemoryCache" );
+        props.setProperty( "jcs.auxiliary.OFFHEAP", "org.apache.commons.jcs.auxiliary.offheap.OffHeapCacheFactory" );
+        props.setProperty( "jcs.auxiliary.OFFHEAP.attributes", "org.apache.commons.jcs.auxiliary.offheap.OffHeapCacheAttributes" );
+        props.setProperty( "jcs.auxiliary.OFFHEAP.attributes.MaxBytes", "1048576" );
+        props.setProperty( "jcs.auxiliary.OFFHEAP.attributes.SlabSizeBytes", "65536" );
+        props.setProperty( "jcs.auxiliary.OFFHEAP.attributes.BlockSizeBytes", "512" );
+        props.setProperty( "jcs.auxiliary.DC", "org.apache.commons.jcs.auxiliary.disk.indexed.IndexedDiskCacheFactory" );
+        props.setProperty( "jcs.auxiliary.DC.attributes", "org.apache.commons.jcs.auxiliary.disk.indexed.IndexedDiskCacheAttributes" );
+        props.setProperty( "jcs.auxiliary.DC.attributes.DiskPath", "target/test-sandbox/offHeapRestart" );
+
+        int items = 200;
+
+        CompositeCacheManager manager = CompositeCacheManager.getUnconfiguredInstance();
+        manager.configure( props );
+        CompositeCache<String, String> cache = manager.getCache( "offHeapRestart" );
+        cache.removeAll();
+        for ( int i = 0; i < items; i++ )
+        {
+            ICacheElement<String, String> element = new CacheElement<String, String>( "offHeapRestart", "key" + i, "value" + i );
+            element.setElementAttributes( cache.getElementAttributes() );
+            cache.update( element );
+        }
+        // the memory keeps 10 of them, the others are off heap only
+        manager.shutDown();
+
+        manager = CompositeCacheManager.getUnconfiguredInstance();
+        manager.configure( props );
+        cache = manager.getCache( "offHeapRestart" );
+        try
+        {
+            for ( int i = 0; i < items; i++ )
+            {
+                ICacheElement<String, String> element = cache.get( "key" + i );
+                assertNotNull( "key" + i + " should be read back from the disk", element );
+                assertEquals( "Wrong value", "value" + i, element.getVal() );
+            }
+        }
+        finally
+        {
+            manager.shutDown();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.apache.commons.jcs.auxiliary.remote;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.jcs.auxiliary.remote.behavior.IRemoteCacheAttributes;
+import org.apache.commons.jcs.engine.control.group.GroupAttrName;
+import org.apache.commons.jcs.engine.control.group.GroupId;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the consistent hash ring.
+ */
+public class ConsistentHashRingUnitTest
+    extends TestCase
+{
+    /**
+     * @param names
+     * @return a ring of the names
+     */
+    private static ConsistentHashRing<String> ring( String... names )
+    {
+        List<String> list = Arrays.asList( names );
+        return new ConsistentHashRing<String>( list, list, IRemoteCacheAttributes.DEFAULT_SHARD_VIRTUAL_NODES );
+    }
+
+    /**
+     * Verify that the keys are spread evenly enough.
+     */
+    public void testSpread()
+    {
+        ConsistentHashRing<String> ring = ring( "a:1", "b:1", "c:1", "d:1" );
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        int numKeys = 20000;
+
+        // DO WORK
+        for ( int i = 0; i < numKeys; i++ )
+        {
+            String node = ring.getNode( "key" + i );
+            Integer count = counts.get( node );
+            counts.put( node, Integer.valueOf( count == null ? 1 : count.intValue() + 1 ) );
+        }
+
+        // VERIFY
+        assertEquals( "Every node should get keys.", 4, counts.size() );
+        for ( Integer count : counts.values() )
+        {
+            assertTrue( "Too uneven: " + counts, Math.abs( count.intValue() - numKeys / 4 ) < numKeys / 10 );
+        }
+    }
+
+    /**
+     * Verify that adding a node only moves keys to it, about a fifth of them for the fifth node.
+     */
+    public void testAddNode()
+    {
+        ConsistentHashRing<String> before = ring( "a:1", "b:1", "c:1", "d:1" );
+        ConsistentHashRing<String> after = ring( "a:1", "b:1", "c:1", "d:1", "e:1" );
+        int numKeys = 20000;
+        int moved = 0;
+
+        // DO WORK
+        for ( int i = 0; i < numKeys; i++ )
+        {
+            Integer key = Integer.valueOf( i );
+            String was = before.getNode( key );
+            String is = after.getNode( key );
+            if ( !was.equals( is ) )
+            {
+                assertEquals( "A key should only move to the new node.", "e:1", is );
+                moved++;
+            }
+        }
+
+        // VERIFY
+        assertTrue( "Wrong number moved: " + moved, moved > numKeys / 10 && moved < numKeys * 3 / 10 );
+    }
+
+    /**
+     * Verify that the replicas are distinct and start with the primary.
+     */
+    public void testReplicas()
+    {
+        ConsistentHashRing<String> ring = ring( "a:1", "b:1", "c:1" );
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            // DO WORK
+            List<String> nodes = ring.getNodes( "key" + i, 2 );
+
+            // VERIFY
+            assertEquals( "Wrong number of replicas.", 2, nodes.size() );
+            assertEquals( "Should be distinct.", 2, new HashSet<String>( nodes ).size() );
+            assertEquals( "The primary should come first.", ring.getNode( "key" + i ), nodes.get( 0 ) );
+        }
+        assertEquals( "There are only 3 nodes.", 3, ring.getNodes( "key", 5 ).size() );
+    }
+
+    /**
+     * Verify that the order of the nodes doesn't matter.
+     */
+    public void testOrderIndependent()
+    {
+        ConsistentHashRing<String> ring1 = ring( "a:1", "b:1", "c:1" );
+        ConsistentHashRing<String> ring2 = ring( "c:1", "a:1", "b:1" );
+
+        for ( int i = 0; i < 1000; i++ )
+        {
+            assertEquals( "Should be the same node.", ring1.getNode( "key" + i ), ring2.getNode( "key" + i ) );
+        }
+    }
+
+    /**
+     * Verify that a fresh ring, as built by another client, places the keys on the same nodes,
+     * including the keys whose hashCode is the identity hash.
+     */
+    public void testFreshRingPlacesKeysAlike()
+    {
+        ConsistentHashRing<String> ring = ring( "a:1", "b:1", "c:1", "d:1" );
+        Map<String, String> placed = new HashMap<String, String>();
+        for ( int i = 0; i < 1000; i++ )
+        {
+            placed.put( "key" + i, ring.getNode( new IdentityKey( "key" + i ) ) );
+        }
+
+        // DO WORK
+        ConsistentHashRing<String> fresh = ring( "a:1", "b:1", "c:1", "d:1" );
+
+        // VERIFY
+        for ( int i = 0; i < 1000; i++ )
+        {
+            assertEquals( "Should be the same node.", placed.get( "key" + i ),
+                          fresh.getNode( new IdentityKey( "key" + i ) ) );
+        }
+        assertEquals( "A number and its string form are the same point.", ConsistentHashRing.hashKey( "42" ),
+                      ConsistentHashRing.hashKey( Long.valueOf( 42 ) ) );
+        assertEquals( "The points should not change between releases.", 0xcf8c79838f3b3030L,
+                      ConsistentHashRing.hashKey( "key" ) );
+    }
+
+    /**
+     * Verify that equal group keys go to the same node, whether their toString, which is
+     * serialized, was cached or not.
+     */
+    public void testGroupKeys()
+    {
+        ConsistentHashRing<String> ring = ring( "a:1", "b:1", "c:1", "d:1" );
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            GroupAttrName<String> key = new GroupAttrName<String>( new GroupId( "region", "group" ), "attr" + i );
+            GroupAttrName<String> equal = new GroupAttrName<String>( new GroupId( "region", "group" ), "attr" + i );
+            equal.toString();
+
+            // VERIFY
+            assertEquals( "Should be the same point.", ConsistentHashRing.hashKey( key ),
+                          ConsistentHashRing.hashKey( equal ) );
+            assertEquals( "Should be the same node.", ring.getNode( key ), ring.getNode( equal ) );
+        }
+    }
+
+    /** A key without hashCode, so hashed by identity. */
+    private static class IdentityKey
+        implements Serializable
+    {
+        /** Don't change */
+        private static final long serialVersionUID = 1L;
+
+        /** The name */
+        final String name;
+
+        /**
+         * @param name
+         */
+        IdentityKey( String name )
+        {
+            this.name = name;
+        }
+    }
+}
@@ -53,6 +53,9 @@ public class MockRemoteCacheListener<K, V>
     /** Number of times handleRemote was called. */
     public int removeCount;
 
+    /** Number of times handleRemoveAll was called. */
+    public int removeAllCount;
+
     /** The type of remote listener */
     public RemoteType remoteType = RemoteType.LOCAL;
 
@@ -156,6 +159,8 @@ public class MockRemoteCacheListener<K, V>
     }
 
     /**
+     * Increments the remove all count.
+     * <p>
      * @param cacheName
      * @throws IOException
      */
@@ -163,6 +168,6 @@ public class MockRemoteCacheListener<K, V>
     public void handleRemoveAll( String cacheName )
         throws IOException
     {
-        // TODO Auto-generated method stub
+        removeAllCount++;
     }
 }
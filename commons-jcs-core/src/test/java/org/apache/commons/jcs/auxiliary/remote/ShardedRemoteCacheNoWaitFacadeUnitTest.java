@@ -0,0 +1,168 @@
+package org.apache.commons.jcs.auxiliary.remote;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.jcs.auxiliary.remote.behavior.IRemoteCacheAttributes;
+import org.apache.commons.jcs.engine.CacheElement;
+import org.apache.commons.jcs.engine.behavior.ICacheElement;
+import org.apache.commons.jcs.utils.timing.SleepUtil;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the sharded facade.
+ */
+public class ShardedRemoteCacheNoWaitFacadeUnitTest
+    extends TestCase
+{
+    /** Records all the keys asked */
+    private static class RecordingRemoteCacheService
+        extends MockRemoteCacheService<String, String>
+    {
+        /** The keys asked, from several threads */
+        final Set<String> getKeys = Collections.synchronizedSet( new HashSet<String>() );
+
+        /**
+         * @see org.apache.commons.jcs.auxiliary.remote.MockRemoteCacheService#get(java.lang.String, java.lang.Object, long)
+         */
+        @Override
+        public ICacheElement<String, String> get( String cacheName, String key, long requesterId )
+        {
+            getKeys.add( key );
+            return super.get( cacheName, key, requesterId );
+        }
+    }
+
+    /** The services of the shards */
+    private List<RecordingRemoteCacheService> services;
+
+    /** The no waits of the shards */
+    private List<RemoteCacheNoWait<String, String>> noWaits;
+
+    /** The facade */
+    private ShardedRemoteCacheNoWaitFacade<String, String> facade;
+
+    /**
+     * @param replicas
+     */
+    private void setUpShards( int replicas )
+    {
+        IRemoteCacheAttributes cattr = new RemoteCacheAttributes();
+        cattr.setCacheName( "testShards" );
+        cattr.setShardReplicas( replicas );
+
+        services = new ArrayList<RecordingRemoteCacheService>();
+        noWaits = new ArrayList<RemoteCacheNoWait<String, String>>();
+        List<RemoteLocation> locations = new ArrayList<RemoteLocation>();
+        for ( int i = 0; i < 3; i++ )
+        {
+            RecordingRemoteCacheService service = new RecordingRemoteCacheService();
+            services.add( service );
+            RemoteCache<String, String> client = new RemoteCache<String, String>( cattr, service, null, null );
+            noWaits.add( new RemoteCacheNoWait<String, String>( client ) );
+            locations.add( new RemoteLocation( "localhost", 1101 + i ) );
+        }
+        facade = new ShardedRemoteCacheNoWaitFacade<String, String>( noWaits, locations, cattr, null, null );
+    }
+
+    /**
+     * Verify that a get only goes to the shard of the key.
+     * <p>
+     * @throws Exception
+     */
+    public void testGet_primaryOnly()
+        throws Exception
+    {
+        setUpShards( 1 );
+        int owner = noWaits.indexOf( facade.getShards( "key" ).get( 0 ) );
+
+        // DO WORK
+        facade.get( "key" );
+
+        // VERIFY
+        for ( int i = 0; i < services.size(); i++ )
+        {
+            assertEquals( "Wrong shard asked.", i == owner ? "key" : null, services.get( i ).lastGetKey );
+        }
+    }
+
+    /**
+     * Verify that the keys of a getMultiple are split by shard.
+     * <p>
+     * @throws Exception
+     */
+    public void testGetMultiple_split()
+        throws Exception
+    {
+        setUpShards( 1 );
+        Set<String> keys = new HashSet<String>();
+        for ( int i = 0; i < 30; i++ )
+        {
+            keys.add( "key" + i );
+        }
+
+        // DO WORK
+        facade.getMultiple( keys );
+
+        // VERIFY
+        Set<String> asked = new HashSet<String>();
+        for ( int i = 0; i < services.size(); i++ )
+        {
+            Set<String> shardKeys = services.get( i ).getKeys;
+            assertFalse( "Each shard should be asked.", shardKeys.isEmpty() );
+            for ( String key : shardKeys )
+            {
+                assertSame( "Wrong shard for " + key, noWaits.get( i ), facade.getShards( key ).get( 0 ) );
+            }
+            asked.addAll( shardKeys );
+        }
+        assertEquals( "All the keys should be asked.", keys, asked );
+    }
+
+    /**
+     * Verify that an update goes to the replicas of the key only.
+     * <p>
+     * @throws Exception
+     */
+    public void testUpdate_replicas()
+        throws Exception
+    {
+        setUpShards( 2 );
+
+        // DO WORK
+        facade.update( new CacheElement<String, String>( "testShards", "key", "value" ) );
+        SleepUtil.sleepAtLeast( 200 );
+
+        // VERIFY
+        List<RemoteCacheNoWait<String, String>> replicas = facade.getShards( "key" );
+        assertEquals( "Wrong number of replicas.", 2, replicas.size() );
+        for ( int i = 0; i < services.size(); i++ )
+        {
+            boolean replica = replicas.contains( noWaits.get( i ) );
+            assertEquals( "Wrong shard updated.", replica ? 1 : 0, services.get( i ).updateRequestList.size() );
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.apache.commons.jcs.auxiliary.remote.server;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.apache.commons.jcs.auxiliary.remote.MockRemoteCacheListener;
+import org.apache.commons.jcs.auxiliary.remote.value.RemoteCacheChanges;
+import org.apache.commons.jcs.engine.CacheElement;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the change log of a region.
+ */
+public class RemoteCacheChangeLogUnitTest
+    extends TestCase
+{
+    /**
+     * Verify that the keys between two versions are returned.
+     */
+    public void testGetChanges()
+    {
+        RemoteCacheChangeLog<String> changeLog = new RemoteCacheChangeLog<String>( 10 );
+        changeLog.add( "a" );
+        changeLog.add( "b" );
+        changeLog.add( "c" );
+        changeLog.add( "b" );
+
+        // DO WORK
+        RemoteCacheChanges<String> changes = changeLog.getChanges( 1, 4 );
+
+        // VERIFY
+        assertEquals( "Wrong version.", 4, changeLog.getVersion() );
+        assertTrue( "Should be complete.", changes.isComplete() );
+        assertEquals( "Wrong keys.", new HashSet<String>( Arrays.asList( "b", "c" ) ), changes.getKeys() );
+    }
+
+    /**
+     * Verify that the changes are not complete once the ring wrapped past them.
+     */
+    public void testGetChanges_agedOut()
+    {
+        RemoteCacheChangeLog<String> changeLog = new RemoteCacheChangeLog<String>( 3 );
+        for ( int i = 0; i < 5; i++ )
+        {
+            changeLog.add( String.valueOf( i ) );
+        }
+
+        // VERIFY
+        assertTrue( "The last 3 should be known.", changeLog.getChanges( 2, 5 ).isComplete() );
+        assertFalse( "The 2nd should be forgotten.", changeLog.getChanges( 1, 5 ).isComplete() );
+        assertFalse( "An unknown version can't be complete.", changeLog.getChanges( -1, 5 ).isComplete() );
+        assertFalse( "A future version can't be complete.", changeLog.getChanges( 4, 6 ).isComplete() );
+    }
+
+    /**
+     * Verify that a remove all in the range makes the changes not complete.
+     */
+    public void testGetChanges_removeAll()
+    {
+        RemoteCacheChangeLog<String> changeLog = new RemoteCacheChangeLog<String>( 10 );
+        changeLog.add( "a" );
+        changeLog.addRemoveAll();
+        changeLog.add( "b" );
+
+        // VERIFY
+        assertFalse( "Should not be complete.", changeLog.getChanges( 0, 3 ).isComplete() );
+        assertTrue( "Should be complete after the remove all.", changeLog.getChanges( 2, 3 ).isComplete() );
+    }
+
+    /**
+     * Verify that a listener registered again misses the changes after the last one delivered to
+     * it.
+     * <p>
+     * @throws Exception
+     */
+    public void testGetMissedChanges()
+        throws Exception
+    {
+        RemoteCacheChangeLog<String> changeLog = new RemoteCacheChangeLog<String>( 10 );
+        MockRemoteCacheListener<String, String> listener = new MockRemoteCacheListener<String, String>();
+        VersionTrackingListener<String, String> tracker = changeLog.register( 1, listener );
+
+        changeLog.expect( 1, changeLog.add( "delivered" ) );
+        tracker.handlePut( new CacheElement<String, String>( "region", "delivered", "value" ) );
+        changeLog.expect( 1, changeLog.add( "failed" ) );
+        changeLog.add( "missed" );
+
+        // DO WORK
+        changeLog.register( 1, listener );
+        changeLog.add( "after" );
+        RemoteCacheChanges<String> changes = changeLog.getMissedChanges( 1, listener );
+
+        // VERIFY
+        assertTrue( "Should be complete.", changes.isComplete() );
+        assertEquals( "Wrong keys.", new HashSet<String>( Arrays.asList( "failed", "missed" ) ), changes.getKeys() );
+        assertFalse( "Another listener should not get the changes.",
+                     changeLog.getMissedChanges( 1, new MockRemoteCacheListener<String, String>() ).isComplete() );
+    }
+
+    /**
+     * Verify that a listener whose queue was destroyed is still tracked until it expires.
+     * <p>
+     * @throws Exception
+     */
+    public void testDetach_keptUntilExpired()
+        throws Exception
+    {
+        RemoteCacheChangeLog<String> changeLog = new RemoteCacheChangeLog<String>( 10, 60 * 1000L );
+        MockRemoteCacheListener<String, String> listener = new MockRemoteCacheListener<String, String>();
+        changeLog.register( 1, listener );
+        changeLog.add( "missed" );
+
+        // DO WORK
+        changeLog.detach( 1 );
+        changeLog.register( 1, listener );
+
+        // VERIFY
+        assertTrue( "Should be complete.", changeLog.getMissedChanges( 1, listener ).isComplete() );
+    }
+
+    /**
+     * Verify that the tracking of a listener whose queue was destroyed is dropped once expired.
+     * <p>
+     * @throws Exception
+     */
+    public void testDetach_expired()
+        throws Exception
+    {
+        RemoteCacheChangeLog<String> changeLog = new RemoteCacheChangeLog<String>( 10, 0 );
+        MockRemoteCacheListener<String, String> listener = new MockRemoteCacheListener<String, String>();
+        changeLog.register( 1, listener );
+        changeLog.register( 2, new MockRemoteCacheListener<String, String>() );
+        changeLog.add( "missed" );
+
+        // DO WORK
+        changeLog.detach( 1 );
+
+        // VERIFY
+        assertEquals( "Only the live listener should be tracked.", 1, changeLog.getTrackedCount() );
+        changeLog.register( 1, listener );
+        assertFalse( "Should not be complete.", changeLog.getMissedChanges( 1, listener ).isComplete() );
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.commons.jcs.auxiliary.remote.server;
  * under the License.
  */
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -26,9 +27,13 @@ import java.util.Properties;
 
 import org.apache.commons.jcs.auxiliary.MockCacheEventLogger;
 import org.apache.commons.jcs.auxiliary.remote.MockRemoteCacheListener;
+import org.apache.commons.jcs.auxiliary.remote.RemoteCache;
+import org.apache.commons.jcs.auxiliary.remote.RemoteCacheAttributes;
+import org.apache.commons.jcs.auxiliary.remote.RemoteCacheMonitor;
 import org.apache.commons.jcs.auxiliary.remote.RemoteUtils;
 import org.apache.commons.jcs.auxiliary.remote.server.behavior.IRemoteCacheServerAttributes;
 import org.apache.commons.jcs.auxiliary.remote.server.behavior.RemoteType;
+import org.apache.commons.jcs.auxiliary.remote.value.RemoteCacheChanges;
 import org.apache.commons.jcs.engine.CacheElement;
 import org.apache.commons.jcs.engine.behavior.ICacheElement;
 import org.apache.commons.jcs.utils.timing.SleepUtil;
@@ -462,4 +467,116 @@ public class RemoteCacheServerUnitTest
         assertEquals( "Start should have been called.", 1, cacheEventLogger.startICacheEventCalls );
         assertEquals( "End should have been called.", 1, cacheEventLogger.endICacheEventCalls );
     }
+
+    /**
+     * Register a listener, lose its queue as if the client went away, change the region, and
+     * register the listener again. The server should list the keys it missed, and the client
+     * should remove them.
+     * <p>
+     * @throws Exception
+     */
+    public void testGetMissedChanges_reconnect()
+        throws Exception
+    {
+        MockRemoteCacheListener<String, String> mockListener = new MockRemoteCacheListener<String, String>();
+        String cacheName = "testGetMissedChanges_reconnect";
+        server.addCacheListener( cacheName, mockListener );
+
+        server.update( new CacheElement<String, String>( cacheName, "seen", "value" ), 9999 );
+        SleepUtil.sleepAtLeast( 200 );
+        assertEquals( "Wrong number of items put to listener.", 1, mockListener.putItems.size() );
+
+        // the queue is destroyed when the client can't be reached
+        server.getCacheListeners( cacheName ).eventQMap.remove( Long.valueOf( mockListener.getListenerId() ) );
+
+        // DO WORK
+        server.update( new CacheElement<String, String>( cacheName, "missed1", "value" ), 9999 );
+        server.remove( cacheName, "missed2", 9999 );
+        server.addCacheListener( cacheName, mockListener );
+        server.update( new CacheElement<String, String>( cacheName, "after", "value" ), 9999 );
+
+        RemoteCacheChanges<String> changes =
+            server.getMissedChanges( cacheName, mockListener.getListenerId(), mockListener );
+
+        // VERIFY
+        assertTrue( "Should be complete " + changes, changes.isComplete() );
+        assertEquals( "Wrong keys.", new HashSet<String>( Arrays.asList( "missed1", "missed2" ) ), changes.getKeys() );
+
+        // DO WORK
+        RemoteCacheAttributes cattr = new RemoteCacheAttributes();
+        cattr.setCacheName( cacheName );
+        RemoteCache<String, String> remoteCache =
+            new RemoteCache<String, String>( cattr, server, mockListener, new RemoteCacheMonitor() );
+        remoteCache.invalidateMissedChanges();
+
+        // VERIFY
+        assertTrue( "Should have removed missed1", mockListener.removedKeys.contains( "missed1" ) );
+        assertTrue( "Should have removed missed2", mockListener.removedKeys.contains( "missed2" ) );
+        assertEquals( "Should not have cleared.", 0, mockListener.removeAllCount );
+    }
+
+    /**
+     * A listener the server doesn't know should clear its region.
+     * <p>
+     * @throws Exception
+     */
+    public void testGetMissedChanges_unknownListener()
+        throws Exception
+    {
+        MockRemoteCacheListener<String, String> mockListener = new MockRemoteCacheListener<String, String>();
+        mockListener.setListenerId( 42 );
+        String cacheName = "testGetMissedChanges_unknownListener";
+        server.update( new CacheElement<String, String>( cacheName, "key", "value" ), 9999 );
+
+        // DO WORK
+        RemoteCacheChanges<String> changes = server.getMissedChanges( cacheName, 42, mockListener );
+
+        // VERIFY
+        assertFalse( "Should not be complete.", changes.isComplete() );
+
+        // DO WORK
+        RemoteCacheAttributes cattr = new RemoteCacheAttributes();
+        cattr.setCacheName( cacheName );
+        RemoteCache<String, String> remoteCache =
+            new RemoteCache<String, String>( cattr, server, mockListener, new RemoteCacheMonitor() );
+        remoteCache.invalidateMissedChanges();
+
+        // VERIFY
+        assertEquals( "Should have cleared.", 1, mockListener.removeAllCount );
+    }
+
+    /**
+     * When more changes were missed than the server remembers, the changes are not complete.
+     * <p>
+     * @throws Exception
+     */
+    public void testGetMissedChanges_agedOut()
+        throws Exception
+    {
+        IRemoteCacheServerAttributes rcsa = new RemoteCacheServerAttributes();
+        rcsa.setConfigFileName( "/TestRemoteCacheServer.ccf" );
+        rcsa.setChangeLogSize( 2 );
+        Properties config = RemoteUtils.loadProps( rcsa.getConfigFileName() );
+        RemoteCacheServer<String, String> smallServer = new RemoteCacheServer<String, String>( rcsa, config );
+
+        MockRemoteCacheListener<String, String> mockListener = new MockRemoteCacheListener<String, String>();
+        String cacheName = "testGetMissedChanges_agedOut";
+        smallServer.addCacheListener( cacheName, mockListener );
+        smallServer.getCacheListeners( cacheName ).eventQMap.remove( Long.valueOf( mockListener.getListenerId() ) );
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            smallServer.remove( cacheName, String.valueOf( i ), 9999 );
+        }
+        smallServer.addCacheListener( cacheName, mockListener );
+
+        // DO WORK
+        RemoteCacheChanges<String> changes =
+            smallServer.getMissedChanges( cacheName, mockListener.getListenerId(), mockListener );
+
+        // VERIFY
+        assertFalse( "Should not be complete.", changes.isComplete() );
+
+        smallServer.shutdown();
+    }
 }
@@ -33,6 +33,8 @@ import org.apache.commons.jcs.access.exception.CacheException;
 import org.apache.commons.jcs.auxiliary.AbstractAuxiliaryCache;
 import org.apache.commons.jcs.auxiliary.AuxiliaryCache;
 import org.apache.commons.jcs.auxiliary.AuxiliaryCacheAttributes;
+import org.apache.commons.jcs.auxiliary.offheap.OffHeapCache;
+import org.apache.commons.jcs.auxiliary.offheap.OffHeapCacheAttributes;
 import org.apache.commons.jcs.engine.CacheElement;
 import org.apache.commons.jcs.engine.CacheStatus;
 import org.apache.commons.jcs.engine.CompositeCacheAttributes;
@@ -308,6 +310,58 @@ public class CompositeCacheDiskUsageUnitTest
         assertEquals( "Wrong element updated with lateral.", inputElement, mockLateral.lastUpdatedItem );
     }
 
+    /**
+     * Setup an off heap cache in front of a disk cache. Spool more than the off heap cache can
+     * hold. Verify that only the off heap cache is spooled to and that it overflows to the disk.
+     * <p>
+     * @throws IOException
+     */
+    public void testSpoolToOffHeapOverflowsToDisk()
+        throws IOException
+    {
+        // SETUP
+        ICompositeCacheAttributes cattr = new CompositeCacheAttributes();
+        cattr.setCacheName(CACHE_NAME);
+        cattr.setDiskUsagePattern( ICompositeCacheAttributes.DiskUsagePattern.SWAP );
+
+        IElementAttributes attr = new ElementAttributes();
+
+        CompositeCache<String, String> cache = new CompositeCache<String, String>( cattr, attr );
+
+        OffHeapCacheAttributes ohca = new OffHeapCacheAttributes();
+        ohca.setCacheName( CACHE_NAME );
+        ohca.setBlockSizeBytes( 2048 );
+        ohca.setSlabSizeBytes( 8 * 1024 );
+        ohca.setMaxBytes( 8 * 1024 );
+        OffHeapCache<String, String> offHeap = new OffHeapCache<String, String>( ohca, null );
+
+        MockAuxCache<String, String> mock = new MockAuxCache<String, String>();
+        mock.cacheType = CacheType.DISK_CACHE;
+
+        @SuppressWarnings("unchecked")
+        AuxiliaryCache<String, String>[] auxArray = new AuxiliaryCache[] { offHeap, mock };
+        cache.setAuxCaches( auxArray );
+
+        // DO WORK
+        for ( int i = 0; i < 4; i++ )
+        {
+            cache.spoolToDisk( new CacheElement<String, String>( CACHE_NAME, "key" + i, "value" + i ) );
+        }
+
+        // VERIFY
+        assertEquals( "Wrong number of calls to the disk cache update.", 0, mock.updateCount );
+        assertEquals( "Wrong off heap size.", 4, offHeap.getSize() );
+
+        // DO WORK
+        cache.spoolToDisk( new CacheElement<String, String>( CACHE_NAME, "key4", "value4" ) );
+
+        // VERIFY
+        assertEquals( "Wrong number of calls to the disk cache update.", 1, mock.updateCount );
+        assertEquals( "Wrong element overflowed.", "key0", mock.lastUpdatedItem.getKey() );
+        assertEquals( "Wrong element overflowed.", "value0", mock.lastUpdatedItem.getVal() );
+        assertEquals( "Wrong element spooled.", "value4", offHeap.get( "key4" ).getVal() );
+    }
+
     /**
      * Used to test the disk cache functionality.
      * <p>
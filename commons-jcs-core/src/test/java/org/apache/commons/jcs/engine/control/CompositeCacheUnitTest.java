@@ -32,6 +32,11 @@ import org.apache.commons.jcs.engine.behavior.IElementAttributes;
 import org.apache.commons.jcs.engine.memory.MockMemoryCache;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -242,4 +247,184 @@ public class CompositeCacheUnitTest
         // VERIFY
         assertEquals( "Wrong number of calls", 1, diskMock.getMatchingCallCount );
     }
+
+    /**
+     * Verify the key iterator walks memory then the auxiliaries without returning a key twice.
+     * <p>
+     * @throws IOException
+     */
+    public void testGetKeyIterator()
+        throws IOException
+    {
+        // SETUP
+        String cacheName = "testGetKeyIterator";
+        ICompositeCacheAttributes cattr = new CompositeCacheAttributes();
+        cattr.setCacheName(cacheName);
+        cattr.setMemoryCacheName( "org.apache.commons.jcs.engine.memory.lru.LRUMemoryCache" );
+        cattr.setMaxObjects( 100 );
+
+        CompositeCache<String, Integer> cache = new CompositeCache<String, Integer>( cattr, new ElementAttributes() );
+
+        MockAuxiliaryCache<String, Integer> diskMock = new MockAuxiliaryCache<String, Integer>();
+        diskMock.cacheType = CacheType.DISK_CACHE;
+        diskMock.keySet = new HashSet<String>( Arrays.asList( "b", "c" ) );
+        @SuppressWarnings("unchecked")
+        AuxiliaryCache<String, Integer>[] aux = new AuxiliaryCache[] { diskMock };
+        cache.setAuxCaches( aux );
+
+        cache.update( new CacheElement<String, Integer>( cacheName, "a", Integer.valueOf( 1 ) ), false );
+        cache.update( new CacheElement<String, Integer>( cacheName, "b", Integer.valueOf( 2 ) ), false );
+
+        // DO WORK
+        List<String> keys = new ArrayList<String>();
+        for ( Iterator<String> it = cache.getKeyIterator(); it.hasNext(); )
+        {
+            keys.add( it.next() );
+        }
+
+        // VERIFY
+        assertEquals( "Wrong number of keys: " + keys, 3, keys.size() );
+        assertEquals( new HashSet<String>( Arrays.asList( "a", "b", "c" ) ), new HashSet<String>( keys ) );
+    }
+
+    /**
+     * Create a cache remembering its confirmed misses, backed by a remote mock.
+     * <p>
+     * @param remoteMock
+     * @return the cache
+     */
+    private CompositeCache<String, Integer> createNegativeCachingCache( MockAuxiliaryCache<String, Integer> remoteMock )
+    {
+        ICompositeCacheAttributes cattr = new CompositeCacheAttributes();
+        cattr.setCacheName( "testNegativeCache" );
+        cattr.setMemoryCacheName( "org.apache.commons.jcs.engine.memory.MockMemoryCache" );
+        cattr.setNegativeCacheMaxObjects( 100 );
+        cattr.setNegativeCacheTtlMillis( 60000 );
+
+        CompositeCache<String, Integer> cache = new CompositeCache<String, Integer>( cattr, new ElementAttributes() );
+
+        remoteMock.cacheType = CacheType.REMOTE_CACHE;
+        @SuppressWarnings("unchecked")
+        AuxiliaryCache<String, Integer>[] aux = new AuxiliaryCache[] { remoteMock };
+        cache.setAuxCaches( aux );
+        return cache;
+    }
+
+    /**
+     * Verify that a confirmed miss doesn't go to the auxiliaries again.
+     */
+    public void testGet_NegativeCacheSkipsAuxiliaries()
+    {
+        // SETUP
+        MockAuxiliaryCache<String, Integer> remoteMock = new MockAuxiliaryCache<String, Integer>();
+        CompositeCache<String, Integer> cache = createNegativeCachingCache( remoteMock );
+
+        // DO WORK
+        assertNull( cache.get( "missing" ) );
+        assertNull( cache.get( "missing" ) );
+        assertNull( cache.get( "missing" ) );
+
+        // VERIFY
+        assertEquals( "Wrong number of calls", 1, remoteMock.getCallCount );
+        assertEquals( "Wrong number of misses", 3, cache.getMissCountNotFound() );
+    }
+
+    /**
+     * Verify that a put forgets the confirmed miss.
+     * <p>
+     * @throws IOException
+     */
+    public void testGet_NegativeCacheInvalidatedByPut()
+        throws IOException
+    {
+        // SETUP
+        MockAuxiliaryCache<String, Integer> remoteMock = new MockAuxiliaryCache<String, Integer>();
+        CompositeCache<String, Integer> cache = createNegativeCachingCache( remoteMock );
+        assertNull( cache.get( "key" ) );
+
+        // DO WORK
+        cache.localUpdate( new CacheElement<String, Integer>( "testNegativeCache", "key", Integer.valueOf( 1 ) ) );
+        // as if it was spooled or evicted
+        cache.getMemoryCache().remove( "key" );
+        cache.get( "key" );
+
+        // VERIFY
+        assertEquals( "The auxiliary should have been asked again", 2, remoteMock.getCallCount );
+    }
+
+    /**
+     * Verify that a remove, the way a remote put arrives, forgets the confirmed miss.
+     */
+    public void testGet_NegativeCacheInvalidatedByLocalRemove()
+    {
+        // SETUP
+        MockAuxiliaryCache<String, Integer> remoteMock = new MockAuxiliaryCache<String, Integer>();
+        CompositeCache<String, Integer> cache = createNegativeCachingCache( remoteMock );
+        assertNull( cache.get( "key" ) );
+
+        // DO WORK
+        cache.localRemove( "key" );
+        cache.get( "key" );
+
+        // VERIFY
+        assertEquals( "The auxiliary should have been asked again", 2, remoteMock.getCallCount );
+    }
+
+    /**
+     * Verify that a removeAll forgets all the confirmed misses.
+     * <p>
+     * @throws IOException
+     */
+    public void testGet_NegativeCacheClearedByRemoveAll()
+        throws IOException
+    {
+        // SETUP
+        MockAuxiliaryCache<String, Integer> remoteMock = new MockAuxiliaryCache<String, Integer>();
+        CompositeCache<String, Integer> cache = createNegativeCachingCache( remoteMock );
+        assertNull( cache.get( "a" ) );
+        assertNull( cache.get( "b" ) );
+
+        // DO WORK
+        cache.localRemoveAll();
+        cache.get( "a" );
+        cache.get( "b" );
+
+        // VERIFY
+        assertEquals( "The auxiliary should have been asked again", 4, remoteMock.getCallCount );
+    }
+
+    /**
+     * Verify that a local miss is not remembered, the remote was not asked.
+     */
+    public void testGet_NegativeCacheIgnoresLocalMiss()
+    {
+        // SETUP
+        MockAuxiliaryCache<String, Integer> remoteMock = new MockAuxiliaryCache<String, Integer>();
+        CompositeCache<String, Integer> cache = createNegativeCachingCache( remoteMock );
+
+        // DO WORK
+        assertNull( cache.localGet( "missing" ) );
+        assertNull( cache.get( "missing" ) );
+
+        // VERIFY
+        assertEquals( "The remote should have been asked", 1, remoteMock.getCallCount );
+    }
+
+    /**
+     * Verify that getMultiple only asks the auxiliaries for the keys not confirmed missing.
+     */
+    public void testGetMultiple_NegativeCacheSkipsAuxiliaries()
+    {
+        // SETUP
+        MockAuxiliaryCache<String, Integer> remoteMock = new MockAuxiliaryCache<String, Integer>();
+        CompositeCache<String, Integer> cache = createNegativeCachingCache( remoteMock );
+        assertNull( cache.get( "a" ) );
+
+        // DO WORK
+        cache.getMultiple( new HashSet<String>( Arrays.asList( "a", "b" ) ) );
+        cache.getMultiple( new HashSet<String>( Arrays.asList( "a", "b" ) ) );
+
+        // VERIFY
+        assertEquals( "Only the first getMultiple should have gone to the auxiliary", 1, remoteMock.getMultipleCallCount );
+    }
 }
@@ -0,0 +1,107 @@
+package org.apache.commons.jcs.engine.control;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+
+/** Unit tests for the cache of confirmed misses. */
+public class NegativeLookupCacheUnitTest
+    extends TestCase
+{
+    /**
+     * Verify that a miss is remembered until it is invalidated.
+     */
+    public void testRecordAndInvalidate()
+    {
+        // SETUP
+        NegativeLookupCache<String> cache = new NegativeLookupCache<String>( 10, 60000 );
+
+        // DO WORK
+        cache.recordMiss( "a" );
+
+        // VERIFY
+        assertTrue( "Should be a known miss", cache.isKnownMiss( "a" ) );
+        assertFalse( "Should not be a known miss", cache.isKnownMiss( "b" ) );
+        cache.invalidate( "a" );
+        assertFalse( "Should have been forgotten", cache.isKnownMiss( "a" ) );
+        assertEquals( "Wrong hit count", 1, cache.getHitCount() );
+    }
+
+    /**
+     * Verify that a miss looked up before an invalidation is not recorded.
+     */
+    public void testRecordMiss_StaleGeneration()
+    {
+        // SETUP
+        NegativeLookupCache<String> cache = new NegativeLookupCache<String>( 10, 60000 );
+        long generation = cache.getGeneration();
+
+        // DO WORK
+        cache.invalidate( "a" );
+
+        // VERIFY
+        assertFalse( "Should not have been recorded", cache.recordMiss( "a", generation ) );
+        assertFalse( "Should not be a known miss", cache.isKnownMiss( "a" ) );
+        assertTrue( "Should have been recorded", cache.recordMiss( "a", cache.getGeneration() ) );
+        assertTrue( "Should be a known miss", cache.isKnownMiss( "a" ) );
+    }
+
+    /**
+     * Verify that the misses expire.
+     * <p>
+     * @throws InterruptedException
+     */
+    public void testExpiration()
+        throws InterruptedException
+    {
+        // SETUP
+        NegativeLookupCache<String> cache = new NegativeLookupCache<String>( 10, 20 );
+        cache.recordMiss( "a" );
+
+        // DO WORK
+        Thread.sleep( 50 );
+        cache.recordMiss( "b" );
+
+        // VERIFY
+        assertFalse( "Should have expired", cache.isKnownMiss( "a" ) );
+        assertEquals( "The expired miss should have been purged", 1, cache.size() );
+    }
+
+    /**
+     * Verify that the oldest misses are forgotten past the max.
+     */
+    public void testMaxObjects()
+    {
+        // SETUP
+        NegativeLookupCache<String> cache = new NegativeLookupCache<String>( 3, 60000 );
+
+        // DO WORK
+        for ( int i = 0; i < 5; i++ )
+        {
+            cache.recordMiss( String.valueOf( i ) );
+        }
+
+        // VERIFY
+        assertEquals( "Wrong size", 3, cache.size() );
+        assertFalse( "Oldest should have been evicted", cache.isKnownMiss( "0" ) );
+        assertFalse( "Oldest should have been evicted", cache.isKnownMiss( "1" ) );
+        assertTrue( "Newest should be kept", cache.isKnownMiss( "4" ) );
+    }
+}
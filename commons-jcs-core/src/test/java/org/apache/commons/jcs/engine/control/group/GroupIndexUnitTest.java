@@ -0,0 +1,102 @@
+package org.apache.commons.jcs.engine.control.group;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the group index.
+ */
+public class GroupIndexUnitTest
+    extends TestCase
+{
+    /** region */
+    private static final String REGION = "testGroupIndex";
+
+    /**
+     * Verify the keys are indexed by group and removed.
+     */
+    public void testAddRemove()
+    {
+        GroupIndex<Object> index = new GroupIndex<Object>();
+        GroupId g1 = new GroupId( REGION, "g1" );
+        GroupId g2 = new GroupId( REGION, "g2" );
+        GroupAttrName<String> a = new GroupAttrName<String>( g1, "a" );
+        GroupAttrName<String> b = new GroupAttrName<String>( g1, "b" );
+        GroupAttrName<String> c = new GroupAttrName<String>( g2, "c" );
+
+        index.add( a );
+        index.add( b );
+        index.add( c );
+        index.add( "notAGroupKey" );
+        index.add( new GroupAttrName<String>( g2, null ) );
+
+        assertEquals( new HashSet<Object>( Arrays.asList( a, b ) ), index.getKeys( g1, k -> true ) );
+        assertEquals( new HashSet<GroupId>( Arrays.asList( g1, g2 ) ), index.getGroupIds( k -> true ) );
+
+        index.remove( a );
+        index.remove( c );
+        assertEquals( new HashSet<Object>( Arrays.asList( b ) ), index.getKeys( g1, k -> true ) );
+        assertTrue( index.getKeys( g2, k -> true ).isEmpty() );
+        assertEquals( new HashSet<GroupId>( Arrays.asList( g1 ) ), index.getGroupIds( k -> true ) );
+
+        index.clear();
+        assertTrue( index.getGroupIds( k -> true ).isEmpty() );
+    }
+
+    /**
+     * Verify the keys no more in the store are dropped from the index.
+     */
+    public void testStaleKeys()
+    {
+        GroupIndex<Object> index = new GroupIndex<Object>();
+        GroupId g1 = new GroupId( REGION, "g1" );
+        GroupAttrName<String> a = new GroupAttrName<String>( g1, "a" );
+        GroupAttrName<String> b = new GroupAttrName<String>( g1, "b" );
+        index.add( a );
+        index.add( b );
+
+        final Set<Object> store = new HashSet<Object>( Arrays.asList( b ) );
+        assertEquals( store, index.getKeys( g1, store::contains ) );
+
+        store.clear();
+        assertTrue( index.getGroupIds( store::contains ).isEmpty() );
+        assertTrue( "stale keys should have been dropped", index.getKeys( g1, k -> true ).isEmpty() );
+    }
+
+    /**
+     * Verify the fallback filtering of the stores without index.
+     */
+    public void testFilter()
+    {
+        GroupId g1 = new GroupId( REGION, "g1" );
+        GroupId g2 = new GroupId( REGION, "g2" );
+        GroupAttrName<String> a = new GroupAttrName<String>( g1, "a" );
+        GroupAttrName<String> c = new GroupAttrName<String>( g2, "c" );
+        Set<Object> keys = new HashSet<Object>( Arrays.asList( a, c, "other" ) );
+
+        assertEquals( new HashSet<Object>( Arrays.asList( a ) ), GroupIndex.filterGroupKeys( keys, g1 ) );
+        assertEquals( new HashSet<GroupId>( Arrays.asList( g1, g2 ) ), GroupIndex.filterGroupIds( keys ) );
+    }
+}
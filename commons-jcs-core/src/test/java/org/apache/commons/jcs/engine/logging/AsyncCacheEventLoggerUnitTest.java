@@ -0,0 +1,316 @@
+package org.apache.commons.jcs.engine.logging;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+import org.apache.commons.jcs.engine.logging.behavior.ICacheEvent;
+import org.apache.commons.jcs.engine.logging.behavior.ICacheEventLogger;
+
+/** Unit tests for the asynchronous event logger */
+public class AsyncCacheEventLoggerUnitTest
+    extends TestCase
+{
+    /** What the sink received. */
+    private final List<String> logged = Collections.synchronizedList( new ArrayList<String>() );
+
+    /** Released to let the sink log. */
+    private final CountDownLatch open = new CountDownLatch( 1 );
+
+    /** Records what it logs, once open. */
+    private class RecordingSink
+        extends CacheEventLoggerDebugLogger
+    {
+        /** Whether to wait for open. */
+        private final boolean blocking;
+
+        /**
+         * @param blocking whether to wait for open
+         */
+        RecordingSink( boolean blocking )
+        {
+            this.blocking = blocking;
+        }
+
+        /** Waits for the test if needed. */
+        private void await()
+        {
+            try
+            {
+                if ( blocking )
+                {
+                    open.await();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public <T> void logICacheEvent( ICacheEvent<T> event )
+        {
+            await();
+            logged.add( event.getEventName() + ":" + event.getKey() );
+        }
+
+        @Override
+        public void logApplicationEvent( String source, String eventName, String optionalDetails )
+        {
+            await();
+            logged.add( eventName + ":" + optionalDetails );
+        }
+
+        @Override
+        public void logError( String source, String eventName, String errorMessage )
+        {
+            await();
+            logged.add( "error:" + errorMessage );
+        }
+    }
+
+    /**
+     * @param logger
+     * @param eventName
+     * @param key
+     */
+    private void logEvent( ICacheEventLogger logger, String eventName, String key )
+    {
+        ICacheEvent<String> event = logger.createICacheEvent( "source", "region", eventName, null, key );
+        logger.logICacheEvent( event );
+    }
+
+    /**
+     * @return the live consumer threads of all the loggers
+     */
+    private static Set<Thread> consumers()
+    {
+        Set<Thread> consumers = new HashSet<Thread>();
+        for ( Thread thread : Thread.getAllStackTraces().keySet() )
+        {
+            if ( thread.getName().startsWith( "JCS-AsyncCacheEventLogger-" ) && thread.isAlive() )
+            {
+                consumers.add( thread );
+            }
+        }
+        return consumers;
+    }
+
+    /** Verify that all the events reach the sink in order. */
+    public void testAll()
+    {
+        // SETUP
+        AsyncCacheEventLogger logger = new AsyncCacheEventLogger();
+        logger.setSink( new RecordingSink( false ) );
+
+        // DO WORK
+        for ( int i = 0; i < 100; i++ )
+        {
+            logEvent( logger, ICacheEventLogger.GET_EVENT, "key" + i );
+        }
+        logger.logApplicationEvent( "source", "started", "details" );
+        logger.flush();
+
+        // VERIFY
+        assertEquals( "Wrong number logged", 101, logged.size() );
+        assertEquals( "Wrong first event", "get:key0", logged.get( 0 ) );
+        assertEquals( "Wrong last event", "get:key99", logged.get( 99 ) );
+        assertEquals( "Wrong application event", "started:details", logged.get( 100 ) );
+    }
+
+    /** Verify that the events are reused by their thread. */
+    public void testEventReused()
+    {
+        // SETUP
+        AsyncCacheEventLogger logger = new AsyncCacheEventLogger();
+        logger.setSink( new RecordingSink( false ) );
+        ICacheEvent<String> first = logger.createICacheEvent( "source", "region", "get", null, "key" );
+
+        // DO WORK
+        logger.logICacheEvent( first );
+        ICacheEvent<String> second = logger.createICacheEvent( "source", "region", "update", null, "other" );
+
+        // VERIFY
+        assertSame( "Should have been reused", first, second );
+        assertEquals( "Should have been reset", "other", second.getKey() );
+        logger.logICacheEvent( second );
+        logger.flush();
+        assertEquals( "Wrong events", "[get:key, update:other]", logged.toString() );
+    }
+
+    /** Verify that sampling drops the cache events but not the errors. */
+    public void testSampled()
+    {
+        // SETUP
+        AsyncCacheEventLogger logger = new AsyncCacheEventLogger();
+        logger.setSink( new RecordingSink( false ) );
+        logger.setMode( AsyncCacheEventLogger.LoggingMode.SAMPLED );
+        logger.setSampleRate( Integer.MAX_VALUE );
+
+        // DO WORK
+        for ( int i = 0; i < 100; i++ )
+        {
+            logEvent( logger, ICacheEventLogger.GET_EVENT, "key" + i );
+        }
+        logger.logError( "source", "get", "failed" );
+        logger.flush();
+
+        // VERIFY
+        assertEquals( "Only the error should have been logged", "[error:failed]", logged.toString() );
+    }
+
+    /** Verify that the cache events are rolled into counts. */
+    public void testAggregated()
+    {
+        // SETUP
+        AsyncCacheEventLogger logger = new AsyncCacheEventLogger();
+        logger.setSink( new RecordingSink( false ) );
+        logger.setMode( AsyncCacheEventLogger.LoggingMode.AGGREGATED );
+
+        // DO WORK
+        for ( int i = 0; i < 10; i++ )
+        {
+            logEvent( logger, ICacheEventLogger.GET_EVENT, "key" + i );
+        }
+        for ( int i = 0; i < 5; i++ )
+        {
+            logEvent( logger, ICacheEventLogger.UPDATE_EVENT, "key" + i );
+        }
+        logger.flush();
+
+        // VERIFY
+        assertEquals( "Wrong number of aggregates", 2, logged.size() );
+        String all = logged.toString();
+        assertTrue( "Wrong get count " + all, all.contains( "get:region = region, count = 10," ) );
+        assertTrue( "Wrong update count " + all, all.contains( "update:region = region, count = 5," ) );
+    }
+
+    /** Verify that a full buffer drops the events instead of blocking, and reports it. */
+    public void testBufferFull()
+    {
+        // SETUP
+        AsyncCacheEventLogger logger = new AsyncCacheEventLogger();
+        logger.setSink( new RecordingSink( true ) );
+        logger.setBufferSize( 16 );
+
+        // DO WORK
+        for ( int i = 0; i < 100; i++ )
+        {
+            logEvent( logger, ICacheEventLogger.GET_EVENT, "key" + i );
+        }
+        open.countDown();
+        logger.flush();
+
+        // VERIFY
+        assertTrue( "Should have dropped some", logger.getDroppedCount() > 0 );
+        assertTrue( "Should have logged some", logged.size() >= 16 );
+        assertTrue( "Should have reported the drops " + logged,
+                    logged.get( logged.size() - 1 ).startsWith( "error:" ) );
+    }
+
+    /**
+     * Verify that an idle consumer parks until the next event instead of polling.
+     * <p>
+     * @throws Exception
+     */
+    public void testIdleConsumerParks()
+        throws Exception
+    {
+        // SETUP
+        AsyncCacheEventLogger logger = new AsyncCacheEventLogger();
+        logger.setSink( new RecordingSink( false ) );
+        Set<Thread> before = consumers();
+        logEvent( logger, ICacheEventLogger.GET_EVENT, "key0" );
+        logger.flush();
+        Set<Thread> started = consumers();
+        started.removeAll( before );
+        assertEquals( "Should have started a consumer", 1, started.size() );
+        Thread consumer = started.iterator().next();
+
+        // DO WORK
+        for ( int i = 0; i < 100 && consumer.getState() != Thread.State.WAITING; i++ )
+        {
+            Thread.sleep( 10 );
+        }
+
+        // VERIFY
+        assertEquals( "The idle consumer should be parked without timeout", Thread.State.WAITING, consumer.getState() );
+        logEvent( logger, ICacheEventLogger.GET_EVENT, "key1" );
+        logger.flush();
+        assertEquals( "Wrong events", "[get:key0, get:key1]", logged.toString() );
+        logger.dispose();
+    }
+
+    /**
+     * Verify that dispose logs the pending aggregates and stops the consumer, and that the logger
+     * starts again with the next event.
+     * <p>
+     * @throws Exception
+     */
+    public void testDispose()
+        throws Exception
+    {
+        // SETUP
+        AsyncCacheEventLogger logger = new AsyncCacheEventLogger();
+        logger.setSink( new RecordingSink( false ) );
+        logger.setMode( AsyncCacheEventLogger.LoggingMode.AGGREGATED );
+        Set<Thread> before = consumers();
+        for ( int i = 0; i < 10; i++ )
+        {
+            logEvent( logger, ICacheEventLogger.GET_EVENT, "key" + i );
+        }
+        Set<Thread> started = consumers();
+        started.removeAll( before );
+        assertEquals( "Should have started a consumer", 1, started.size() );
+
+        // DO WORK
+        logger.dispose();
+
+        // VERIFY
+        assertFalse( "The consumer should have stopped", started.iterator().next().isAlive() );
+        assertEquals( "The aggregates should have been logged", 1, logged.size() );
+        assertTrue( "Wrong get count " + logged, logged.get( 0 ).startsWith( "get:region = region, count = 10," ) );
+
+        logger.logApplicationEvent( "source", "restarted", "details" );
+        logger.flush();
+        assertEquals( "Wrong event after dispose", "restarted:details", logged.get( logged.size() - 1 ) );
+        logger.dispose();
+    }
+
+    /** Verify that the sink can be configured by class name. */
+    public void testSinkClassName()
+    {
+        // SETUP
+        AsyncCacheEventLogger logger = new AsyncCacheEventLogger();
+
+        // DO WORK
+        logger.setSinkClassName( MockCacheEventLogger.class.getName() );
+
+        // VERIFY
+        assertTrue( "Wrong sink", logger.getSink() instanceof MockCacheEventLogger );
+    }
+}
@@ -0,0 +1,119 @@
+package org.apache.commons.jcs.engine.match;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the sorted key index.
+ */
+public class KeyPrefixIndexUnitTest
+    extends TestCase
+{
+    /**
+     * Verify the literal prefix of some regular expressions.
+     */
+    public void testGetLiteralPrefix()
+    {
+        assertEquals( "user:12:", KeyPrefixIndex.getLiteralPrefix( "user:12:.*" ) );
+        assertEquals( "user:12:", KeyPrefixIndex.getLiteralPrefix( "^user:12:\\d+$" ) );
+        assertEquals( "MyPrefix", KeyPrefixIndex.getLiteralPrefix( "MyPrefix\\S+" ) );
+        assertEquals( "a.b", KeyPrefixIndex.getLiteralPrefix( "a\\.b[0-9]" ) );
+        assertEquals( "ab", KeyPrefixIndex.getLiteralPrefix( "abc?d" ) );
+        assertEquals( "ab", KeyPrefixIndex.getLiteralPrefix( "abc*" ) );
+        assertEquals( "ab", KeyPrefixIndex.getLiteralPrefix( "abc{0,2}" ) );
+        assertEquals( "abc", KeyPrefixIndex.getLiteralPrefix( "abc+" ) );
+        assertEquals( "exact", KeyPrefixIndex.getLiteralPrefix( "exact" ) );
+        assertEquals( "", KeyPrefixIndex.getLiteralPrefix( "a.*|b.*" ) );
+        assertEquals( "", KeyPrefixIndex.getLiteralPrefix( "(?i)abc" ) );
+        assertEquals( "", KeyPrefixIndex.getLiteralPrefix( ".*abc" ) );
+    }
+
+    /**
+     * Verify the prefix lookups only return the keys of the range.
+     */
+    public void testGetKeysWithPrefix()
+    {
+        KeyPrefixIndex<Object> index = new KeyPrefixIndex<Object>( true );
+        index.addAll( Arrays.<Object>asList( "a:1", "a:2", "a:", "a", "ab:1", "b:1", Integer.valueOf( 1 ) ) );
+
+        assertEquals( new HashSet<Object>( Arrays.asList( "a:1", "a:2", "a:" ) ), index.getKeysWithPrefix( "a:", k -> true ) );
+        assertEquals( 6, index.getKeysWithPrefix( "", k -> true ).size() );
+        assertTrue( index.getKeysWithPrefix( "c", k -> true ).isEmpty() );
+
+        index.remove( "a:1" );
+        assertEquals( new HashSet<Object>( Arrays.asList( "a:2", "a:" ) ), index.getKeysWithPrefix( "a:", k -> true ) );
+
+        index.clear();
+        assertTrue( index.getKeysWithPrefix( "", k -> true ).isEmpty() );
+    }
+
+    /**
+     * Verify the keys no more in the store are dropped from the index.
+     */
+    public void testStaleKeys()
+    {
+        KeyPrefixIndex<String> index = new KeyPrefixIndex<String>( true );
+        index.addAll( Arrays.asList( "a:1", "a:2" ) );
+
+        final Set<String> store = new HashSet<String>( Arrays.asList( "a:2" ) );
+        assertEquals( store, index.getKeysWithPrefix( "a:", store::contains ) );
+        assertEquals( "stale keys should have been dropped", store, index.getKeysWithPrefix( "a:", k -> true ) );
+    }
+
+    /**
+     * Verify the index gives the same matches than a scan of the keys.
+     */
+    public void testGetMatchingKeys()
+    {
+        KeyPrefixIndex<String> index = new KeyPrefixIndex<String>( true );
+        Set<String> keys = new HashSet<String>();
+        for ( int i = 0; i < 100; i++ )
+        {
+            keys.add( "user:" + i + ":name" );
+            keys.add( "order:" + i );
+        }
+        index.addAll( keys );
+
+        KeyMatcherPatternImpl<String> keyMatcher = new KeyMatcherPatternImpl<String>();
+        for ( String pattern : Arrays.asList( "user:1\\d?:name", "order:.*", "user:5:name", "(user|order):9.*", "nothing.*" ) )
+        {
+            assertEquals( pattern, keyMatcher.getMatchingKeysFromArray( pattern, keys ),
+                          keyMatcher.getMatchingKeysFromIndex( pattern, index, k -> true ) );
+        }
+    }
+
+    /**
+     * Verify a disabled index ignores the keys and is not used by the matcher.
+     */
+    public void testDisabled()
+    {
+        KeyPrefixIndex<String> index = new KeyPrefixIndex<String>( false );
+        index.add( "a:1" );
+
+        assertFalse( index.isEnabled() );
+        assertTrue( index.getKeysWithPrefix( "a:", k -> true ).isEmpty() );
+        assertNull( new KeyMatcherPatternImpl<String>().getMatchingKeysFromIndex( "a:.*", index, k -> true ) );
+    }
+}
@@ -108,4 +108,42 @@ public class FIFOMemoryCacheUnitTest
             assertNotNull( "Shjould have elemnt " + i, cache.get( "key" + i ) );
         }
     }
+
+    /**
+     * Verify getMatching and the hierarchical removal with the key index, evicted items are no more matched.
+     * <p>
+     * @throws IOException
+     */
+    public void testKeyIndex()
+        throws IOException
+    {
+        // SETUP
+        int maxObjects = 20;
+        String cacheName = "testKeyIndex";
+
+        ICompositeCacheAttributes attributes = new CompositeCacheAttributes();
+        attributes.setCacheName(cacheName);
+        attributes.setMaxObjects( maxObjects );
+        attributes.setSpoolChunkSize( 1 );
+        attributes.setUseKeyIndex( true );
+
+        FIFOMemoryCache<String, String> cache = new FIFOMemoryCache<String, String>();
+        CompositeCache<String, String> region = new CompositeCache<String, String>( attributes, new ElementAttributes() );
+        cache.initialize( region );
+
+        for ( int i = 0; i < maxObjects; i++ )
+        {
+            cache.update( new CacheElement<String, String>( cacheName, ( i % 2 == 0 ? "a:" : "b:" ) + i, "value" + i ) );
+        }
+
+        // DO WORK
+        cache.update( new CacheElement<String, String>( cacheName, "b:onemore", "onemore" ) );
+
+        // VERIFY
+        assertEquals( "Oldest a: key should have been evicted", maxObjects / 2 - 1,
+                      cache.getMatchingKeys( "a:\\d+", region.getKeyMatcher() ).size() );
+        assertTrue( "Should have removed the hierarchy", cache.remove( "b:" ) );
+        assertTrue( "Should not have matches", cache.getMatchingKeys( "b:.*", region.getKeyMatcher() ).isEmpty() );
+        assertEquals( "Wrong size", maxObjects / 2 - 1, cache.getSize() );
+    }
 }
@@ -27,6 +27,8 @@ import org.apache.commons.jcs.engine.CacheElement;
 import org.apache.commons.jcs.engine.behavior.ICacheElement;
 import org.apache.commons.jcs.engine.control.CompositeCache;
 import org.apache.commons.jcs.engine.control.CompositeCacheManager;
+import org.apache.commons.jcs.engine.control.group.GroupAttrName;
+import org.apache.commons.jcs.engine.control.group.GroupId;
 
 import java.util.HashSet;
 import java.util.Map;
@@ -309,4 +311,65 @@ public class LHMLRUMemoryCacheUnitTest
 
         assertNotNull( "Other item should be in the cache.", cache.get( "test" ) );
     }
+
+    /**
+     * Puts and removes the keys of a group from several threads, the group keys must match the
+     * keys in the map at the end.
+     * <p>
+     * @throws Exception
+     */
+    public void testGroupKeysUnderConcurrentPutRemove()
+        throws Exception
+    {
+        CompositeCacheManager cacheMgr = CompositeCacheManager.getUnconfiguredInstance();
+        cacheMgr.configure( "/TestLHMLRUCache.ccf" );
+        final CompositeCache<GroupAttrName<String>, String> cache = cacheMgr.getCache( "testGroupKeysUnderConcurrentPutRemove" );
+
+        final LHMLRUMemoryCache<GroupAttrName<String>, String> mru = new LHMLRUMemoryCache<GroupAttrName<String>, String>();
+        mru.initialize( cache );
+
+        final GroupId groupId = new GroupId( cache.getCacheName(), "group" );
+        Thread[] threads = new Thread[4];
+        final Throwable[] errors = new Throwable[threads.length];
+        for ( int t = 0; t < threads.length; t++ )
+        {
+            final int index = t;
+            threads[t] = new Thread( () -> {
+                try
+                {
+                    for ( int i = 0; i < 5000; i++ )
+                    {
+                        GroupAttrName<String> key = new GroupAttrName<String>( groupId, String.valueOf( i % 8 ) );
+                        if ( ( i + index ) % 2 == 0 )
+                        {
+                            ICacheElement<GroupAttrName<String>, String> ice =
+                                new CacheElement<GroupAttrName<String>, String>( cache.getCacheName(), key, "data" );
+                            ice.setElementAttributes( cache.getElementAttributes() );
+                            mru.update( ice );
+                        }
+                        else
+                        {
+                            mru.remove( key );
+                        }
+                        if ( i % 64 == 0 )
+                        {
+                            mru.getGroupKeys( groupId );
+                        }
+                    }
+                }
+                catch ( Throwable e )
+                {
+                    errors[index] = e;
+                }
+            } );
+            threads[t].start();
+        }
+        for ( int t = 0; t < threads.length; t++ )
+        {
+            threads[t].join();
+            assertNull( "Thread failed: " + errors[t], errors[t] );
+        }
+
+        assertEquals( "Wrong group keys.", mru.getKeySet(), mru.getGroupKeys( groupId ) );
+    }
 }
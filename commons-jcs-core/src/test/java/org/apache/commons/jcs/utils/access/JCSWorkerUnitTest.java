@@ -19,6 +19,15 @@ package org.apache.commons.jcs.utils.access;
  * under the License.
  */
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import junit.framework.TestCase;
 
 /**
@@ -66,4 +75,183 @@ public class JCSWorkerUnitTest
         assertEquals( "Called the wrong number of times", Long.valueOf( 1 ), result2 );
     }
 
+    /**
+     * Verify concurrent requests for the same key share a single piece of work.
+     *
+     * @throws Exception
+     */
+    public void testConcurrentRequestsDoTheWorkOnce()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            JCSWorker<String, Long> cachingWorker = new JCSWorker<String, Long>( "example region", executor );
+            final CountDownLatch release = new CountDownLatch( 1 );
+            final AtomicInteger timesCalled = new AtomicInteger();
+            JCSWorkerHelper<Long> helper = new AbstractJCSWorkerHelper<Long>()
+            {
+                @Override
+                public Long doWork()
+                    throws Exception
+                {
+                    timesCalled.incrementAndGet();
+                    release.await();
+                    return Long.valueOf( 42 );
+                }
+            };
+
+            CompletableFuture<Long> first = cachingWorker.getResultAsync( "concurrent", helper );
+            CompletableFuture<Long> second = cachingWorker.getResultAsync( "concurrent", helper );
+            assertSame( "Should join the work in progress", first, second );
+            release.countDown();
+
+            assertEquals( Long.valueOf( 42 ), first.get( 10, TimeUnit.SECONDS ) );
+            assertEquals( Long.valueOf( 42 ), cachingWorker.getResult( "concurrent", helper ) );
+            assertEquals( "Called the wrong number of times", 1, timesCalled.get() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Verify the exception of the work reaches all the waiters and is not cached.
+     *
+     * @throws Exception
+     */
+    public void testExceptionPropagation()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            JCSWorker<String, Long> cachingWorker = new JCSWorker<String, Long>( "example region", executor );
+            final CountDownLatch release = new CountDownLatch( 1 );
+            JCSWorkerHelper<Long> failing = new AbstractJCSWorkerHelper<Long>()
+            {
+                @Override
+                public Long doWork()
+                    throws Exception
+                {
+                    release.await();
+                    throw new IllegalStateException( "failed" );
+                }
+            };
+
+            CompletableFuture<Long> first = cachingWorker.getResultAsync( "failing", failing );
+            CompletableFuture<Long> second = cachingWorker.getResultAsync( "failing", failing );
+            release.countDown();
+            for ( CompletableFuture<Long> future : new CompletableFuture[] { first, second } )
+            {
+                try
+                {
+                    future.get( 10, TimeUnit.SECONDS );
+                    fail( "Should have failed" );
+                }
+                catch ( ExecutionException e )
+                {
+                    assertTrue( e.getCause() instanceof IllegalStateException );
+                }
+            }
+
+            try
+            {
+                cachingWorker.getResult( "failing", failing );
+                fail( "Should have failed" );
+            }
+            catch ( IllegalStateException e )
+            {
+                // expected, the exception is not wrapped
+            }
+
+            JCSWorkerHelper<Long> working = new AbstractJCSWorkerHelper<Long>()
+            {
+                @Override
+                public Long doWork()
+                {
+                    return Long.valueOf( 1 );
+                }
+            };
+            assertEquals( "Failures should not be cached", Long.valueOf( 1 ), cachingWorker.getResult( "failing", working ) );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Verify null results are remembered when a negative result ttl is set.
+     *
+     * @throws Exception
+     */
+    public void testNegativeResults()
+        throws Exception
+    {
+        JCSWorker<String, Long> cachingWorker = new JCSWorker<String, Long>( "example region" );
+        final AtomicInteger timesCalled = new AtomicInteger();
+        JCSWorkerHelper<Long> helper = new AbstractJCSWorkerHelper<Long>()
+        {
+            @Override
+            public Long doWork()
+            {
+                timesCalled.incrementAndGet();
+                return null;
+            }
+        };
+
+        assertNull( cachingWorker.getResult( "negative", helper ) );
+        assertNull( cachingWorker.getResult( "negative", helper ) );
+        assertEquals( "Null results should not be remembered by default", 2, timesCalled.get() );
+
+        cachingWorker.setNegativeResultTtl( 60000 );
+        assertNull( cachingWorker.getResult( "negative", helper ) );
+        assertNull( cachingWorker.getResult( "negative", helper ) );
+        assertNull( cachingWorker.getResult( "negative", "group", helper ) );
+        assertEquals( "Null results should be remembered per key and group", 4, timesCalled.get() );
+    }
+
+    /**
+     * Verify the bounded wait.
+     *
+     * @throws Exception
+     */
+    public void testTimeout()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            JCSWorker<String, Long> cachingWorker = new JCSWorker<String, Long>( "example region", executor );
+            final CountDownLatch release = new CountDownLatch( 1 );
+            JCSWorkerHelper<Long> helper = new AbstractJCSWorkerHelper<Long>()
+            {
+                @Override
+                public Long doWork()
+                    throws Exception
+                {
+                    release.await();
+                    return Long.valueOf( 7 );
+                }
+            };
+
+            try
+            {
+                cachingWorker.getResult( "slow", null, helper, 50, TimeUnit.MILLISECONDS );
+                fail( "Should have timed out" );
+            }
+            catch ( TimeoutException e )
+            {
+                // expected
+            }
+            release.countDown();
+            assertEquals( Long.valueOf( 7 ), cachingWorker.getResult( "slow", null, helper, 10, TimeUnit.SECONDS ) );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -0,0 +1,137 @@
+package org.apache.commons.jcs.utils.discovery;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.jcs.utils.discovery.UDPDiscoveryMessage.BroadcastType;
+
+/** Unit tests for the binary discovery message layout. */
+public class UDPDiscoveryMessageCodecUnitTest
+    extends TestCase
+{
+    /**
+     * Verify that a message with cache names survives the trip.
+     * <p>
+     * @throws Exception on error
+     */
+    public void testEncodeDecode_CacheNames()
+        throws Exception
+    {
+        // SETUP
+        UDPDiscoveryMessage message = new UDPDiscoveryMessage();
+        message.setMessageType( BroadcastType.REMOVE );
+        message.setRequesterId( 1234567890123L );
+        message.setPort( 1110 );
+        message.setCacheNames( new ArrayList<String>( Arrays.asList( "testCache1", "r\u00e9gion" ) ) );
+
+        // DO WORK
+        ByteBuffer buffer = UDPDiscoveryMessageCodec.encode( message, null );
+        UDPDiscoveryMessage result = UDPDiscoveryMessageCodec.decode( buffer );
+
+        // VERIFY
+        assertEquals( "wrong type", BroadcastType.REMOVE, result.getMessageType() );
+        assertEquals( "wrong requester", 1234567890123L, result.getRequesterId() );
+        assertEquals( "wrong port", 1110, result.getPort() );
+        assertEquals( "wrong names", message.getCacheNames(), result.getCacheNames() );
+        assertEquals( "wrong hash", UDPDiscoveryMessageCodec.hashCacheNames( message.getCacheNames() ),
+                      result.getCacheNamesHash() );
+        assertFalse( "buffer should be read", buffer.hasRemaining() );
+    }
+
+    /**
+     * Verify that a heartbeat is only the fixed header and reuses the buffer.
+     * <p>
+     * @throws Exception on error
+     */
+    public void testEncodeDecode_HashOnly()
+        throws Exception
+    {
+        // SETUP
+        UDPDiscoveryMessage message = new UDPDiscoveryMessage();
+        message.setPort( 1110 );
+        message.setCacheNames( null );
+        message.setCacheNamesHash( 42 );
+        ByteBuffer buffer = ByteBuffer.allocate( 64 );
+
+        // DO WORK
+        ByteBuffer result = UDPDiscoveryMessageCodec.encode( message, buffer );
+
+        // VERIFY
+        assertSame( "buffer should be reused", buffer, result );
+        assertEquals( "wrong size", UDPDiscoveryMessageCodec.HEADER_SIZE, result.limit() );
+        UDPDiscoveryMessage decoded = UDPDiscoveryMessageCodec.decode( result );
+        assertNull( "names should not be sent", decoded.getCacheNames() );
+        assertEquals( "wrong hash", 42, decoded.getCacheNamesHash() );
+        assertEquals( "wrong type", BroadcastType.PASSIVE, decoded.getMessageType() );
+    }
+
+    /** Verify that the hash of the names doesn't depend on their order. */
+    public void testHashCacheNames()
+    {
+        int hash = UDPDiscoveryMessageCodec.hashCacheNames( Arrays.asList( "a", "b", "c" ) );
+
+        assertEquals( "order should not matter", hash,
+                      UDPDiscoveryMessageCodec.hashCacheNames( Arrays.asList( "c", "a", "b" ) ) );
+        assertFalse( "names should matter",
+                     hash == UDPDiscoveryMessageCodec.hashCacheNames( Arrays.asList( "a", "b" ) ) );
+    }
+
+    /**
+     * Verify that a truncated message or an unknown version is rejected.
+     * <p>
+     * @throws Exception on error
+     */
+    public void testDecode_Invalid()
+        throws Exception
+    {
+        UDPDiscoveryMessage message = new UDPDiscoveryMessage();
+        message.setCacheNames( new ArrayList<String>( Arrays.asList( "testCache1" ) ) );
+        ByteBuffer buffer = UDPDiscoveryMessageCodec.encode( message, null );
+
+        buffer.limit( buffer.limit() - 1 );
+        try
+        {
+            UDPDiscoveryMessageCodec.decode( buffer );
+            fail( "truncated message should be rejected" );
+        }
+        catch ( IOException e )
+        {
+            // expected
+        }
+
+        buffer.clear();
+        buffer.put( 1, (byte) ( UDPDiscoveryMessageCodec.VERSION + 1 ) );
+        try
+        {
+            UDPDiscoveryMessageCodec.decode( buffer );
+            fail( "unknown version should be rejected" );
+        }
+        catch ( IOException e )
+        {
+            // expected
+        }
+    }
+}
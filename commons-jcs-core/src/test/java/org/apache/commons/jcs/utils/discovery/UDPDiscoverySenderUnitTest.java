@@ -1,8 +1,12 @@
 package org.apache.commons.jcs.utils.discovery;
 
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
 import java.util.ArrayList;
 
 import org.apache.commons.jcs.utils.discovery.UDPDiscoveryMessage.BroadcastType;
+import org.apache.commons.jcs.utils.serialization.StandardSerializer;
 
 /*
  * Licensed to the Apache Software Foundation (ASF) under one
@@ -152,4 +156,89 @@ public class UDPDiscoverySenderUnitTest
         UDPDiscoveryMessage msg = (UDPDiscoveryMessage) obj;
         assertEquals( "wrong message type", BroadcastType.REQUEST, msg.getMessageType() );
     }
+
+    /**
+     * Test sending a heartbeat after the cache names.
+     * <p>
+     * @throws Exception on error
+     */
+    public void testPassiveHeartbeat()
+        throws Exception
+    {
+        // SETUP
+        sender.close();
+        sender = new UDPDiscoverySender( ADDRESS, PORT, true );
+        ArrayList<String> cacheNames = new ArrayList<String>();
+        cacheNames.add( "testCache1" );
+        sender.passiveBroadcast( SENDING_HOST, SENDING_PORT, cacheNames, 1L );
+        UDPDiscoveryMessage full = (UDPDiscoveryMessage) receiver.waitForMessage();
+        receiver.resolveCacheNames( full );
+
+        // DO WORK
+        sender.passiveHeartbeat( SENDING_HOST, SENDING_PORT, cacheNames, 1L );
+
+        // VERIFY
+        Object obj = receiver.waitForMessage();
+
+        assertTrue( "unexpected crap received", obj instanceof UDPDiscoveryMessage );
+
+        UDPDiscoveryMessage msg = (UDPDiscoveryMessage) obj;
+        assertEquals( "wrong message type", BroadcastType.PASSIVE, msg.getMessageType() );
+        assertNull( "names should not be sent", msg.getCacheNames() );
+
+        receiver.resolveCacheNames( msg );
+        assertEquals( "names should be the known ones", cacheNames, msg.getCacheNames() );
+    }
+
+    /**
+     * Test that a heartbeat in the serialized form carries the cache names.
+     * <p>
+     * @throws Exception on error
+     */
+    public void testPassiveHeartbeat_serialized()
+        throws Exception
+    {
+        // SETUP
+        ArrayList<String> cacheNames = new ArrayList<String>();
+        cacheNames.add( "testCache1" );
+
+        // DO WORK
+        sender.passiveHeartbeat( SENDING_HOST, SENDING_PORT, cacheNames, 1L );
+
+        // VERIFY
+        Object obj = receiver.waitForMessage();
+
+        assertTrue( "unexpected crap received", obj instanceof UDPDiscoveryMessage );
+
+        UDPDiscoveryMessage msg = (UDPDiscoveryMessage) obj;
+        assertEquals( "wrong message type", BroadcastType.PASSIVE, msg.getMessageType() );
+        assertEquals( "names should be sent", cacheNames, msg.getCacheNames() );
+    }
+
+    /**
+     * Test receiving a serialized message of an older version.
+     * <p>
+     * @throws Exception on error
+     */
+    public void testReceiveSerializedMessage()
+        throws Exception
+    {
+        // SETUP
+        UDPDiscoveryMessage message = new UDPDiscoveryMessage();
+        message.setPort( SENDING_PORT );
+        message.setRequesterId( 1L );
+        byte[] bytes = new StandardSerializer().serialize( message );
+
+        // DO WORK
+        try (MulticastSocket socket = new MulticastSocket( PORT ))
+        {
+            socket.send( new DatagramPacket( bytes, bytes.length, InetAddress.getByName( ADDRESS ), PORT ) );
+        }
+
+        // VERIFY
+        Object obj = receiver.waitForMessage();
+
+        assertTrue( "unexpected crap received", obj instanceof UDPDiscoveryMessage );
+        assertEquals( "wrong port", SENDING_PORT, ( (UDPDiscoveryMessage) obj ).getPort() );
+    }
 }
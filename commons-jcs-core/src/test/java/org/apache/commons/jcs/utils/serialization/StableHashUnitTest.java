@@ -0,0 +1,105 @@
+package org.apache.commons.jcs.utils.serialization;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.jcs.engine.control.group.GroupAttrName;
+import org.apache.commons.jcs.engine.control.group.GroupId;
+
+/** Unit tests for the stable hash of the keys. */
+public class StableHashUnitTest
+    extends TestCase
+{
+    /**
+     * Verify the FNV-1a test vectors.
+     */
+    public void testFnv()
+    {
+        assertEquals( "Wrong hash of the empty string", 0xcbf29ce484222325L, StableHash.hash( "" ) );
+        assertEquals( "Wrong hash of a", 0xaf63dc4c8601ec8cL, StableHash.hash( "a" ) );
+        assertEquals( "Bytes and characters should agree", StableHash.hash( "a" ),
+                      StableHash.hash( new byte[] { 'a' } ) );
+    }
+
+    /**
+     * Verify that the numbers are hashed by their string form.
+     */
+    public void testNumbers()
+    {
+        assertEquals( "Wrong hash", StableHash.hash( "42" ), StableHash.hash( (Object) Integer.valueOf( 42 ) ) );
+        assertEquals( "Wrong hash", StableHash.hash( "42" ), StableHash.hash( (Object) Long.valueOf( 42 ) ) );
+        assertEquals( "Wrong hash", StableHash.hash( "4.20" ), StableHash.hash( new BigDecimal( "4.20" ) ) );
+    }
+
+    /**
+     * Verify that equal keys without hashCode get the same hash.
+     */
+    public void testSerializedKey()
+    {
+        Key a = new Key( "a" );
+        Key other = new Key( "a" );
+
+        assertEquals( "Equal keys should hash the same", StableHash.hash( a ), StableHash.hash( other ) );
+        assertFalse( "Other keys should not", StableHash.hash( a ) == StableHash.hash( new Key( "b" ) ) );
+    }
+
+    /**
+     * Verify that the group keys are hashed by their names, not their serialized form which holds
+     * the cached toString.
+     */
+    public void testGroupKeys()
+    {
+        GroupAttrName<String> key = new GroupAttrName<String>( new GroupId( "region", "group" ), "attr" );
+        GroupAttrName<String> equal = new GroupAttrName<String>( new GroupId( "region", "group" ), "attr" );
+        equal.toString();
+
+        assertTrue( "Should be canonical", StableHash.isCanonical( key ) );
+        assertEquals( "Equal keys should hash the same", StableHash.hash( key ), StableHash.hash( equal ) );
+        assertEquals( "Wrong hash", StableHash.hash( "region\0group\0attr" ), StableHash.hash( key ) );
+        assertFalse( "Other keys should not", StableHash.hash( key ) == StableHash.hash(
+            new GroupAttrName<String>( new GroupId( "region", "group" ), "other" ) ) );
+        assertFalse( "A custom attribute name is not canonical",
+                     StableHash.isCanonical( new GroupAttrName<Key>( new GroupId( "region", "group" ), new Key( "a" ) ) ) );
+        assertFalse( "A custom key is not canonical", StableHash.isCanonical( new Key( "a" ) ) );
+    }
+
+    /** A key without hashCode. */
+    private static class Key
+        implements Serializable
+    {
+        /** Don't change */
+        private static final long serialVersionUID = 1L;
+
+        /** The name */
+        final String name;
+
+        /**
+         * @param name
+         */
+        Key( String name )
+        {
+            this.name = name;
+        }
+    }
+}
@@ -100,7 +100,7 @@ public class InMemoryResponse extends HttpServletResponseWrapper implements Seri
     public String getHeader(final String s)
     {
         final List<Serializable> serializables = headers.get(s);
-        if (serializables.isEmpty())
+        if (serializables == null || serializables.isEmpty())
         {
             return null;
         }
@@ -209,6 +209,12 @@ public class InMemoryResponse extends HttpServletResponseWrapper implements Seri
             {
                 buffer.write(b);
             }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException
+            {
+                buffer.write(b, off, len);
+            }
         };
     }
 
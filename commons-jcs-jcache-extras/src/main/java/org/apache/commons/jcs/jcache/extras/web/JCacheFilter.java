@@ -36,27 +36,44 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.URI;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import static java.util.Collections.list;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
 
 public class JCacheFilter implements Filter
 {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ConcurrentMap<PageKey, CountDownLatch> renderings = new ConcurrentHashMap<PageKey, CountDownLatch>();
     private Cache<PageKey, Page> cache;
     private CachingProvider provider;
     private CacheManager manager;
+    private long renderTimeout;
 
     @Override
     public void init(final FilterConfig filterConfig) throws ServletException
@@ -79,6 +96,7 @@ public class JCacheFilter implements Filter
             }
         }
         manager = provider.getCacheManager(URI.create(uri), classLoader, properties);
+        renderTimeout = Long.parseLong(properties.getProperty("render-timeout", "30000"));
 
         String cacheName = filterConfig.getInitParameter("cache-name");
         if (cacheName == null)
@@ -114,53 +132,34 @@ public class JCacheFilter implements Filter
     @Override
     public void doFilter(final ServletRequest servletRequest, final ServletResponse servletResponse, final FilterChain filterChain) throws IOException, ServletException
     {
-        boolean gzip = false;
-        if (HttpServletRequest.class.isInstance(servletRequest))
-        {
-            final Enumeration<String> acceptEncoding = HttpServletRequest.class.cast(servletRequest).getHeaders("Accept-Encoding");
-            while (acceptEncoding != null && acceptEncoding.hasMoreElements())
-            {
-                if ("gzip".equals(acceptEncoding.nextElement()))
-                {
-                    gzip = true;
-                    break;
-                }
-            }
-        }
+        final boolean gzip = HttpServletRequest.class.isInstance(servletRequest)
+                && acceptsGzip(HttpServletRequest.class.cast(servletRequest));
 
         final HttpServletResponse httpServletResponse = HttpServletResponse.class.cast(servletResponse);
         checkResponse(httpServletResponse);
 
-        final PageKey key = new PageKey(key(servletRequest), gzip);
+        // only the compressed copy is stored, it is inflated on the fly for the clients not accepting gzip
+        final PageKey key = new PageKey(key(servletRequest), true);
         Page page = cache.get(key);
         if (page == null)
         {
-            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            final InMemoryResponse response;
-            if (gzip)
-            {
-                response = new InMemoryResponse(httpServletResponse, new GZIPOutputStream(baos));
-            }
-            else
-            {
-                response = new InMemoryResponse(httpServletResponse, baos);
-            }
-            filterChain.doFilter(servletRequest, response);
-            response.flushBuffer();
-
-            page = new Page(
-                    response.getStatus(),
-                    response.getContentType(),
-                    response.getContentLength(),
-                    response.getCookies(),
-                    response.getHeaders(),
-                    baos.toByteArray());
-            cache.put(key, page);
+            page = renderOnce(key, servletRequest, httpServletResponse, filterChain);
         }
 
         if (page.status == SC_OK) {
             checkResponse(httpServletResponse);
 
+            // the representation depends on Accept-Encoding, a 304 too tells it to the caches
+            httpServletResponse.setHeader("Vary", "Accept-Encoding");
+            if (HttpServletRequest.class.isInstance(servletRequest)
+                    && isNotModified(HttpServletRequest.class.cast(servletRequest), page))
+            {
+                httpServletResponse.setStatus(SC_NOT_MODIFIED);
+                httpServletResponse.setHeader("ETag", page.etag);
+                httpServletResponse.setDateHeader("Last-Modified", page.lastModified);
+                return;
+            }
+
             if (gzip)
             {
                 httpServletResponse.setHeader("Content-Encoding", "gzip");
@@ -171,16 +170,16 @@ public class JCacheFilter implements Filter
             {
                 httpServletResponse.setContentType(page.contentType);
             }
-            if (page.contentLength > 0)
-            {
-                httpServletResponse.setContentLength(page.contentLength);
-            }
             for (final Cookie c : page.cookies)
             {
                 httpServletResponse.addCookie(c);
             }
             for (final Map.Entry<String, List<Serializable>> entry : page.headers.entrySet())
             {
+                if ("ETag".equalsIgnoreCase(entry.getKey()) || "Last-Modified".equalsIgnoreCase(entry.getKey()))
+                {
+                    continue; // the page validators are the application ones if it set them, sent once below
+                }
                 for (final Serializable value : entry.getValue())
                 {
                     if (Integer.class.isInstance(value))
@@ -197,18 +196,198 @@ public class JCacheFilter implements Filter
                     }
                 }
             }
-            httpServletResponse.setContentLength(page.out.length);
-            final BufferedOutputStream bos = new BufferedOutputStream(httpServletResponse.getOutputStream());
-            if (page.out.length != 0)
+            httpServletResponse.setHeader("ETag", page.etag);
+            httpServletResponse.setDateHeader("Last-Modified", page.lastModified);
+
+            final OutputStream os = httpServletResponse.getOutputStream();
+            if (gzip)
             {
-                bos.write(page.out);
+                httpServletResponse.setContentLength(page.out.length);
+                os.write(page.out); // stored bytes are written as they are, no intermediate copy
             }
             else
             {
-                bos.write(new byte[0]);
+                httpServletResponse.setContentLength(page.rawLength);
+                final GZIPInputStream is = new GZIPInputStream(new ByteArrayInputStream(page.out));
+                final byte[] buffer = new byte[Math.min(BUFFER_SIZE, Math.max(page.rawLength, 1))];
+                int read;
+                while ((read = is.read(buffer)) >= 0)
+                {
+                    os.write(buffer, 0, read);
+                }
+            }
+            os.flush();
+        }
+    }
+
+    /**
+     * Renders the page if no other request is rendering it, else waits for that rendering and reuses its result.
+     */
+    private Page renderOnce(final PageKey key, final ServletRequest servletRequest, final HttpServletResponse httpServletResponse,
+                            final FilterChain filterChain) throws IOException, ServletException
+    {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final CountDownLatch rendering = renderings.putIfAbsent(key, latch);
+        if (rendering != null)
+        {
+            try
+            {
+                if (rendering.await(renderTimeout, TimeUnit.MILLISECONDS))
+                {
+                    final Page page = cache.get(key);
+                    if (page != null)
+                    {
+                        return page;
+                    }
+                }
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
             }
-            bos.flush();
+            // the other rendering failed, timed out or its page is already evicted, don't wait more
+            return render(key, servletRequest, httpServletResponse, filterChain);
+        }
+
+        try
+        {
+            return render(key, servletRequest, httpServletResponse, filterChain);
         }
+        finally
+        {
+            renderings.remove(key);
+            latch.countDown();
+        }
+    }
+
+    private Page render(final PageKey key, final ServletRequest servletRequest, final HttpServletResponse httpServletResponse,
+                        final FilterChain filterChain) throws IOException, ServletException
+    {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final CountingOutputStream raw = new CountingOutputStream(new GZIPOutputStream(baos));
+        final InMemoryResponse response = new InMemoryResponse(httpServletResponse, raw);
+        filterChain.doFilter(servletRequest, response);
+        response.flushBuffer();
+        raw.close(); // writes the gzip trailer
+
+        final byte[] out = baos.toByteArray();
+        // the conditional requests are validated against the validators the clients got: the application ones if any
+        final Serializable applicationEtag = firstHeader(response.getHeaders(), "ETag");
+        String etag = applicationEtag == null ? null : applicationEtag.toString();
+        if (etag == null)
+        {
+            final CRC32 crc = new CRC32();
+            crc.update(out, 0, out.length);
+            etag = "W/\"" + Long.toHexString(raw.count) + '-' + Long.toHexString(crc.getValue()) + '"';
+        }
+        final Page page = new Page(
+                response.getStatus(),
+                response.getContentType(),
+                response.getContentLength(),
+                response.getCookies(),
+                response.getHeaders(),
+                out,
+                (int) raw.count,
+                etag,
+                lastModified(firstHeader(response.getHeaders(), "Last-Modified")));
+        cache.put(key, page);
+        return page;
+    }
+
+    /**
+     * Looks the header up whatever the case the application used for its name.
+     */
+    private static Serializable firstHeader(final Map<String, List<Serializable>> headers, final String name)
+    {
+        for (final Map.Entry<String, List<Serializable>> entry : headers.entrySet())
+        {
+            if (name.equalsIgnoreCase(entry.getKey()) && !entry.getValue().isEmpty())
+            {
+                return entry.getValue().iterator().next();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The Last-Modified the application set, as a date or as a string, else the rendering time.
+     */
+    private static long lastModified(final Serializable header)
+    {
+        if (Long.class.isInstance(header))
+        {
+            return Long.class.cast(header);
+        }
+        if (String.class.isInstance(header))
+        {
+            final SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            try
+            {
+                return format.parse(String.class.cast(header)).getTime();
+            }
+            catch (final ParseException pe)
+            {
+                // not an http date, the rendering time is used
+            }
+        }
+        return System.currentTimeMillis() / 1000 * 1000; // http dates have a second precision
+    }
+
+    private static boolean acceptsGzip(final HttpServletRequest request)
+    {
+        final Enumeration<String> acceptEncoding = request.getHeaders("Accept-Encoding");
+        while (acceptEncoding != null && acceptEncoding.hasMoreElements())
+        {
+            for (final String encoding : acceptEncoding.nextElement().split(","))
+            {
+                final String[] parts = encoding.split(";");
+                if ("gzip".equalsIgnoreCase(parts[0].trim()))
+                {
+                    return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isNotModified(final HttpServletRequest request, final Page page)
+    {
+        final String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method))
+        {
+            return false;
+        }
+
+        final String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) // has precedence over If-Modified-Since
+        {
+            final String etag = opaqueTag(page.etag);
+            for (final String tag : ifNoneMatch.split(","))
+            {
+                final String trimmed = tag.trim();
+                if ("*".equals(trimmed) || etag.equals(opaqueTag(trimmed)))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        try
+        {
+            final long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            return ifModifiedSince >= 0 && page.lastModified <= ifModifiedSince;
+        }
+        catch (final IllegalArgumentException iae) // invalid date, ignore it
+        {
+            return false;
+        }
+    }
+
+    private static String opaqueTag(final String tag)
+    {
+        return tag.startsWith("W/") ? tag.substring(2) : tag; // weak comparison
     }
 
     protected String key(final ServletRequest servletRequest)
@@ -289,12 +468,15 @@ public class JCacheFilter implements Filter
         private final int contentLength;
         private final Collection<Cookie> cookies;
         private final Map<String, List<Serializable>> headers;
-        private final byte[] out;
+        private final byte[] out; // gzipped
+        private final int rawLength;
+        private final String etag;
+        private final long lastModified;
 
         public Page(final int status,
                     final String contentType, final int contentLength,
                     final Collection<Cookie> cookies, final Map<String, List<Serializable>> headers,
-                    final byte[] out)
+                    final byte[] out, final int rawLength, final String etag, final long lastModified)
         {
             this.status = status;
             this.contentType = contentType;
@@ -302,6 +484,9 @@ public class JCacheFilter implements Filter
             this.cookies = cookies;
             this.headers = headers;
             this.out = out;
+            this.rawLength = rawLength;
+            this.etag = etag;
+            this.lastModified = lastModified;
         }
 
         @Override
@@ -319,6 +504,9 @@ public class JCacheFilter implements Filter
             final Page page = Page.class.cast(o);
             return contentLength == page.contentLength
                     && status == page.status
+                    && rawLength == page.rawLength
+                    && lastModified == page.lastModified
+                    && etag.equals(page.etag)
                     && !(contentType != null ? !contentType.equals(page.contentType) : page.contentType != null)
                     && cookies.equals(page.cookies)
                     && headers.equals(page.headers)
@@ -335,7 +523,34 @@ public class JCacheFilter implements Filter
             result = 31 * result + cookies.hashCode();
             result = 31 * result + headers.hashCode();
             result = 31 * result + Arrays.hashCode(out);
+            result = 31 * result + rawLength;
+            result = 31 * result + etag.hashCode();
+            result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
             return result;
         }
     }
+
+    private static class CountingOutputStream extends FilterOutputStream
+    {
+        private long count = 0;
+
+        private CountingOutputStream(final OutputStream out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void write(final int b) throws IOException
+        {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException
+        {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
 }
@@ -0,0 +1,469 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.jcs.jcache.extras.writer;
+
+import javax.cache.Cache;
+import javax.cache.configuration.Factory;
+import javax.cache.integration.CacheWriter;
+import javax.cache.integration.CacheWriterException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind writer: changes are buffered per key, only the latest one (a write or a delete) is kept,
+ * and they are flushed in batches to the delegate through writeAll/deleteAll.
+ * <p>
+ * A flush happens every flushInterval milliseconds or as soon as batchSize keys are pending. Flushes are done
+ * by a single thread so the changes of a key reach the delegate in order. A failed batch is requeued, except the keys
+ * changed again meanwhile, and retried with an exponential backoff up to maxRetries times. Only the changes the delegate
+ * left in the collection given to writeAll/deleteAll are considered failed.
+ * <p>
+ * The writer registers itself as an MXBean under org.apache.commons.jcs.jcache.extras:type=WriteBehindCacheWriter
+ * until it is closed.
+ */
+public class WriteBehindCacheWriter<K, V> implements CacheWriter<K, V>, Closeable, Factory<CacheWriter<K, V>>,
+        WriteBehindCacheWriterMXBean
+{
+    private static final Logger LOGGER = Logger.getLogger(WriteBehindCacheWriter.class.getName());
+    private static final long MAX_BACKOFF = TimeUnit.MINUTES.toMillis(1);
+
+    private final CacheWriter<K, V> writer;
+    private final int batchSize;
+    private final long flushInterval;
+    private final int maxRetries;
+    private final ScheduledThreadPoolExecutor flusher;
+    private final ConcurrentMap<Object, Change<K, V>> pending = new ConcurrentHashMap<Object, Change<K, V>>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    // read locked by the enqueues and the reschedules, write locked by close
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private volatile boolean closed = false;
+    private final ObjectName objectName;
+
+    // only updated by the flusher thread
+    private int failedFlushes = 0;
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedChanges = new AtomicLong();
+    private final AtomicLong coalescedChanges = new AtomicLong();
+    private final AtomicLong droppedChanges = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong flushTime = new AtomicLong();
+    private volatile long lastFlushTime = 0;
+
+    public WriteBehindCacheWriter(final CacheWriter<K, V> delegate)
+    {
+        this(delegate, 1000, 500, 5);
+    }
+
+    /**
+     * @param delegate the writer changes are flushed to.
+     * @param flushInterval max time (ms) a change stays buffered when the flushes succeed.
+     * @param batchSize number of pending keys triggering a flush, it is also the max size of a writeAll/deleteAll call.
+     * @param maxRetries number of retries of a failed change before it is dropped.
+     */
+    public WriteBehindCacheWriter(final CacheWriter<K, V> delegate, final long flushInterval, final int batchSize, final int maxRetries)
+    {
+        if (flushInterval <= 0 || batchSize <= 0)
+        {
+            throw new IllegalArgumentException("flushInterval and batchSize should be positive");
+        }
+        this.writer = delegate;
+        this.flushInterval = flushInterval;
+        this.batchSize = batchSize;
+        this.maxRetries = maxRetries;
+        this.flusher = new ScheduledThreadPoolExecutor(1,
+                new DaemonThreadFactory(delegate.getClass().getName() + "-" + delegate.hashCode() + "-write-behind-"));
+        this.flusher.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.flusher.schedule(new FlushTask(), flushInterval, TimeUnit.MILLISECONDS);
+        this.objectName = register(delegate);
+    }
+
+    private ObjectName register(final CacheWriter<K, V> delegate)
+    {
+        try
+        {
+            final ObjectName on = new ObjectName("org.apache.commons.jcs.jcache.extras:type=WriteBehindCacheWriter,name="
+                    + ObjectName.quote(delegate.getClass().getName() + "-" + System.identityHashCode(this)));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+            return on;
+        }
+        catch (final Exception e)
+        {
+            LOGGER.log(Level.WARNING, "Can't register write-behind MXBean: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    @Override
+    public void write(final Cache.Entry<? extends K, ? extends V> entry) throws CacheWriterException
+    {
+        enqueue(entry.getKey(), new Change<K, V>(entry));
+    }
+
+    @Override
+    public void writeAll(final Collection<Cache.Entry<? extends K, ? extends V>> entries) throws CacheWriterException
+    {
+        for (final Cache.Entry<? extends K, ? extends V> entry : entries)
+        {
+            write(entry);
+        }
+    }
+
+    @Override
+    public void delete(final Object key) throws CacheWriterException
+    {
+        enqueue(key, new Change<K, V>(null));
+    }
+
+    @Override
+    public void deleteAll(final Collection<?> keys) throws CacheWriterException
+    {
+        for (final Object key : keys)
+        {
+            delete(key);
+        }
+    }
+
+    private void enqueue(final Object key, final Change<K, V> change)
+    {
+        // close() can't shut the flusher down while a change is being enqueued so the final drain sees it
+        stateLock.readLock().lock();
+        try
+        {
+            if (closed)
+            {
+                throw new CacheWriterException("writer closed");
+            }
+            if (pending.put(key, change) != null)
+            {
+                coalescedChanges.incrementAndGet();
+            }
+            if (pending.size() >= batchSize && flushRequested.compareAndSet(false, true))
+            {
+                flusher.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        flushRequested.set(false);
+                        if (failedFlushes == 0) // else let the backoff apply
+                        {
+                            flush();
+                        }
+                    }
+                });
+            }
+        }
+        finally
+        {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes the pending changes, must only be called by the flusher thread (or once it is stopped).
+     *
+     * @return true if all the flushed changes were accepted by the delegate.
+     */
+    private boolean flush()
+    {
+        boolean success = true;
+        // bounded to what is pending now to not loop forever under a constant write rate
+        for (int batches = pending.size() / batchSize + 1; batches > 0 && !pending.isEmpty(); batches--)
+        {
+            final Map<Object, Change<K, V>> batch = new LinkedHashMap<Object, Change<K, V>>();
+            final List<Cache.Entry<? extends K, ? extends V>> writes = new ArrayList<Cache.Entry<? extends K, ? extends V>>();
+            final List<Object> deletes = new ArrayList<Object>();
+            for (final Object key : pending.keySet())
+            {
+                final Change<K, V> change = pending.remove(key);
+                if (change == null)
+                {
+                    continue;
+                }
+                batch.put(key, change);
+                if (change.entry != null)
+                {
+                    writes.add(change.entry);
+                }
+                else
+                {
+                    deletes.add(key);
+                }
+                if (batch.size() == batchSize)
+                {
+                    break;
+                }
+            }
+            if (batch.isEmpty())
+            {
+                break;
+            }
+
+            final long start = System.nanoTime();
+            try
+            {
+                // per the CacheWriter contract the delegate removes what it wrote, what remains is requeued on failure
+                if (!writes.isEmpty())
+                {
+                    writer.writeAll(writes);
+                }
+                if (!deletes.isEmpty())
+                {
+                    writer.deleteAll(deletes);
+                }
+                flushedChanges.addAndGet(batch.size());
+            }
+            catch (final RuntimeException e)
+            {
+                final int failed = writes.size() + deletes.size();
+                LOGGER.log(Level.WARNING, "Can't flush " + failed + " changes: " + e.getMessage(), e);
+                failures.incrementAndGet();
+                flushedChanges.addAndGet(batch.size() - failed);
+                for (final Cache.Entry<? extends K, ? extends V> entry : writes)
+                {
+                    requeue(entry.getKey(), batch.get(entry.getKey()));
+                }
+                for (final Object key : deletes)
+                {
+                    requeue(key, batch.get(key));
+                }
+                success = false;
+                break;
+            }
+            finally
+            {
+                final long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                flushes.incrementAndGet();
+                flushTime.addAndGet(duration);
+                lastFlushTime = duration;
+            }
+        }
+        return success;
+    }
+
+    private void requeue(final Object key, final Change<K, V> change)
+    {
+        if (change == null) // not a key of the batch, the delegate added it
+        {
+            return;
+        }
+        if (change.retries++ >= maxRetries)
+        {
+            droppedChanges.incrementAndGet();
+            LOGGER.severe("Dropping change of " + key + " after " + maxRetries + " retries");
+            return;
+        }
+        // a newer change of the key wins over the failed one
+        pending.putIfAbsent(key, change);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        stateLock.writeLock().lock();
+        try
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+            flusher.shutdown(); // lets a running flush finish
+        }
+        finally
+        {
+            stateLock.writeLock().unlock();
+        }
+        try
+        {
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        // last flush, failures are retried immediately and changes dropped once their retries are consumed
+        while (!pending.isEmpty())
+        {
+            flush();
+        }
+
+        if (objectName != null)
+        {
+            try
+            {
+                final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if (server.isRegistered(objectName))
+                {
+                    server.unregisterMBean(objectName);
+                }
+            }
+            catch (final Exception e)
+            {
+                LOGGER.log(Level.WARNING, "Can't unregister write-behind MXBean: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public CacheWriter<K, V> create()
+    {
+        return this;
+    }
+
+    @Override
+    public int getQueueDepth()
+    {
+        return pending.size();
+    }
+
+    @Override
+    public long getFlushCount()
+    {
+        return flushes.get();
+    }
+
+    @Override
+    public long getFlushedChanges()
+    {
+        return flushedChanges.get();
+    }
+
+    @Override
+    public long getCoalescedChanges()
+    {
+        return coalescedChanges.get();
+    }
+
+    @Override
+    public long getDroppedChanges()
+    {
+        return droppedChanges.get();
+    }
+
+    @Override
+    public long getFailedFlushCount()
+    {
+        return failures.get();
+    }
+
+    @Override
+    public long getLastFlushTime()
+    {
+        return lastFlushTime;
+    }
+
+    @Override
+    public float getAverageFlushTime()
+    {
+        final long count = flushes.get();
+        return count == 0 ? 0 : (float) flushTime.get() / count;
+    }
+
+    private static class Change<K, V>
+    {
+        private final Cache.Entry<? extends K, ? extends V> entry; // null for a delete
+        private int retries = 0;
+
+        private Change(final Cache.Entry<? extends K, ? extends V> entry)
+        {
+            this.entry = entry;
+        }
+    }
+
+    private class FlushTask implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            long delay = flushInterval;
+            try
+            {
+                if (flush())
+                {
+                    failedFlushes = 0;
+                }
+                else
+                {
+                    failedFlushes++;
+                    delay = Math.min(MAX_BACKOFF, flushInterval << Math.min(failedFlushes, 16));
+                }
+            }
+            catch (final RuntimeException e)
+            {
+                LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            }
+            stateLock.readLock().lock();
+            try
+            {
+                if (!closed)
+                {
+                    flusher.schedule(this, delay, TimeUnit.MILLISECONDS);
+                }
+            }
+            finally
+            {
+                stateLock.readLock().unlock();
+            }
+        }
+    }
+
+    // avoid dep on impl
+    private static class DaemonThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger index = new AtomicInteger(1);
+        private final String prefix;
+
+        public DaemonThreadFactory(final String prefix)
+        {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread( final Runnable runner )
+        {
+            final Thread t = new Thread( runner );
+            t.setName(prefix + index.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
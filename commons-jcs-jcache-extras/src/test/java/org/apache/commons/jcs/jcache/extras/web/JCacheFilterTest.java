@@ -19,11 +19,24 @@
 package org.apache.commons.jcs.jcache.extras.web;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -106,6 +119,137 @@ public class JCacheFilterTest
         }
     }
 
+    @Test
+    public void testConditionalAndEncoding() throws Exception
+    {
+        Hello.COUNTER.set(0);
+        final Tomcat tomcat = new Tomcat();
+        tomcat.setPort(0);
+        try {
+            tomcat.getEngine();
+            tomcat.start();
+            final Context ctx = tomcat.addContext("/sample", docBase.getAbsolutePath());
+            Tomcat.addServlet(ctx, "hello", Hello.class.getName());
+            ctx.addServletMapping("/", "hello");
+            addJcsFilter(ctx);
+            StandardContext.class.cast(ctx).filterStart();
+
+            final URL url = new URL("http://localhost:" + tomcat.getConnector().getLocalPort() + "/sample/");
+
+            final HttpURLConnection gzip = HttpURLConnection.class.cast(url.openConnection());
+            gzip.setRequestProperty("Accept-Encoding", "gzip, deflate");
+            assertEquals("gzip", gzip.getHeaderField("Content-Encoding"));
+            assertEquals("hello", IOUtils.toString(new GZIPInputStream(gzip.getInputStream())));
+            final String etag = gzip.getHeaderField("ETag");
+            assertNotNull(etag);
+            assertNotNull(gzip.getHeaderField("Last-Modified"));
+
+            final HttpURLConnection plain = HttpURLConnection.class.cast(url.openConnection());
+            assertNull(plain.getHeaderField("Content-Encoding"));
+            assertEquals("hello", IOUtils.toString(plain.getInputStream()));
+            assertEquals(etag, plain.getHeaderField("ETag"));
+
+            final HttpURLConnection ifNoneMatch = HttpURLConnection.class.cast(url.openConnection());
+            ifNoneMatch.setRequestProperty("If-None-Match", etag);
+            assertEquals(HttpServletResponse.SC_NOT_MODIFIED, ifNoneMatch.getResponseCode());
+
+            final HttpURLConnection ifModifiedSince = HttpURLConnection.class.cast(url.openConnection());
+            ifModifiedSince.setIfModifiedSince(System.currentTimeMillis() + 1000);
+            assertEquals(HttpServletResponse.SC_NOT_MODIFIED, ifModifiedSince.getResponseCode());
+
+            final HttpURLConnection otherEtag = HttpURLConnection.class.cast(url.openConnection());
+            otherEtag.setRequestProperty("If-None-Match", "W/\"other\"");
+            assertEquals(HttpServletResponse.SC_OK, otherEtag.getResponseCode());
+            assertEquals("hello", IOUtils.toString(otherEtag.getInputStream()));
+
+            assertEquals(1, Hello.COUNTER.get());
+        } finally {
+            stop(tomcat);
+        }
+    }
+
+    @Test
+    public void testApplicationETag() throws Exception
+    {
+        Tagged.COUNTER.set(0);
+        final Tomcat tomcat = new Tomcat();
+        tomcat.setPort(0);
+        try {
+            tomcat.getEngine();
+            tomcat.start();
+            final Context ctx = tomcat.addContext("/sample", docBase.getAbsolutePath());
+            Tomcat.addServlet(ctx, "tagged", Tagged.class.getName());
+            ctx.addServletMapping("/", "tagged");
+            addJcsFilter(ctx);
+            StandardContext.class.cast(ctx).filterStart();
+
+            final URL url = new URL("http://localhost:" + tomcat.getConnector().getLocalPort() + "/sample/");
+            for (int i = 0; i < 2; i++) { // rendered then cached
+                final HttpURLConnection connection = HttpURLConnection.class.cast(url.openConnection());
+                assertEquals("tagged", IOUtils.toString(connection.getInputStream()));
+                assertEquals(Collections.singletonList(Tagged.ETAG), headerValues(connection, "ETag"));
+            }
+
+            final HttpURLConnection ifNoneMatch = HttpURLConnection.class.cast(url.openConnection());
+            ifNoneMatch.setRequestProperty("If-None-Match", Tagged.ETAG);
+            assertEquals(HttpServletResponse.SC_NOT_MODIFIED, ifNoneMatch.getResponseCode());
+            assertEquals("Accept-Encoding", ifNoneMatch.getHeaderField("Vary"));
+
+            // the application Last-Modified is the validator, not the rendering time
+            final HttpURLConnection notModifiedSince = HttpURLConnection.class.cast(url.openConnection());
+            notModifiedSince.setIfModifiedSince(Tagged.LAST_MODIFIED);
+            assertEquals(HttpServletResponse.SC_NOT_MODIFIED, notModifiedSince.getResponseCode());
+            assertEquals(Tagged.LAST_MODIFIED, notModifiedSince.getLastModified());
+
+            final HttpURLConnection modifiedSince = HttpURLConnection.class.cast(url.openConnection());
+            modifiedSince.setIfModifiedSince(Tagged.LAST_MODIFIED - 1000);
+            assertEquals(HttpServletResponse.SC_OK, modifiedSince.getResponseCode());
+            assertEquals(Tagged.LAST_MODIFIED, modifiedSince.getLastModified());
+            assertEquals(1, Tagged.COUNTER.get());
+        } finally {
+            stop(tomcat);
+        }
+    }
+
+    @Test
+    public void testConcurrentMissesRenderOnce() throws Exception
+    {
+        Slow.COUNTER.set(0);
+        final Tomcat tomcat = new Tomcat();
+        tomcat.setPort(0);
+        try {
+            tomcat.getEngine();
+            tomcat.start();
+            final Context ctx = tomcat.addContext("/sample", docBase.getAbsolutePath());
+            Tomcat.addServlet(ctx, "slow", Slow.class.getName());
+            ctx.addServletMapping("/", "slow");
+            addJcsFilter(ctx);
+            StandardContext.class.cast(ctx).filterStart();
+
+            final URL url = new URL("http://localhost:" + tomcat.getConnector().getLocalPort() + "/sample/");
+            final ExecutorService es = Executors.newFixedThreadPool(4);
+            try {
+                final Collection<Future<String>> responses = new ArrayList<Future<String>>();
+                for (int i = 0; i < 4; i++) {
+                    responses.add(es.submit(new Callable<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            return IOUtils.toString(url.openStream());
+                        }
+                    }));
+                }
+                for (final Future<String> response : responses) {
+                    assertEquals("slow", response.get());
+                }
+            } finally {
+                es.shutdownNow();
+            }
+            assertEquals(1, Slow.COUNTER.get());
+        } finally {
+            stop(tomcat);
+        }
+    }
+
     private void stop(final Tomcat tomcat) throws LifecycleException {
         if (LifecycleState.STARTED.equals(tomcat.getServer().getState())) {
             tomcat.stop();
@@ -113,6 +257,16 @@ public class JCacheFilterTest
         }
     }
 
+    private static List<String> headerValues(final HttpURLConnection connection, final String name) {
+        final List<String> values = new ArrayList<String>();
+        for (final Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) {
+                values.addAll(header.getValue());
+            }
+        }
+        return values;
+    }
+
     private void addJcsFilter(final Context ctx) {
         final FilterDef filterDef = new FilterDef();
         filterDef.setFilterName("jcs");
@@ -135,6 +289,36 @@ public class JCacheFilterTest
         }
     }
 
+    public static class Tagged extends HttpServlet {
+        public static final AtomicInteger COUNTER = new AtomicInteger();
+        public static final String ETAG = "\"app-v1\"";
+        public static final long LAST_MODIFIED = 1000000000000L;
+
+        @Override
+        protected void service(final HttpServletRequest req, final HttpServletResponse resp) throws ServletException, IOException {
+            // not the canonical case of the names
+            resp.setHeader("etag", ETAG);
+            resp.setDateHeader("last-modified", LAST_MODIFIED);
+            resp.getWriter().write("tagged");
+            COUNTER.incrementAndGet();
+        }
+    }
+
+    public static class Slow extends HttpServlet {
+        public static final AtomicInteger COUNTER = new AtomicInteger();
+
+        @Override
+        protected void service(final HttpServletRequest req, final HttpServletResponse resp) throws ServletException, IOException {
+            COUNTER.incrementAndGet();
+            try {
+                Thread.sleep(500);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            resp.getWriter().write("slow");
+        }
+    }
+
     public static class Empty extends HttpServlet {
         public static final AtomicInteger COUNTER = new AtomicInteger();
 
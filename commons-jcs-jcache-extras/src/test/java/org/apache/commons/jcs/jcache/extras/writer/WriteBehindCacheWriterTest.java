@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.jcs.jcache.extras.writer;
+
+import org.junit.Test;
+
+import javax.cache.Cache;
+import javax.cache.integration.CacheWriterException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WriteBehindCacheWriterTest
+{
+    private final Map<String, String> store = new ConcurrentHashMap<String, String>();
+    private final List<Integer> batchSizes = new ArrayList<Integer>();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private final CacheWriterAdapter<String, String> delegate = new CacheWriterAdapter<String, String>()
+    {
+        @Override
+        public void writeAll(final Collection<Cache.Entry<? extends String, ? extends String>> entries) throws CacheWriterException
+        {
+            if (failures.getAndDecrement() > 0)
+            {
+                throw new CacheWriterException("test");
+            }
+            synchronized (batchSizes)
+            {
+                batchSizes.add(entries.size());
+            }
+            super.writeAll(entries);
+        }
+
+        @Override
+        public void write(final Cache.Entry<? extends String, ? extends String> entry) throws CacheWriterException
+        {
+            store.put(entry.getKey(), entry.getValue());
+        }
+
+        @Override
+        public void delete(final Object key) throws CacheWriterException
+        {
+            store.remove(key);
+        }
+    };
+
+    @Test
+    public void coalesce() throws IOException
+    {
+        final WriteBehindCacheWriter<String, String> writer = new WriteBehindCacheWriter<String, String>(delegate, 60000, 100, 0);
+        for (int i = 0; i < 50; i++)
+        {
+            writer.write(new SimpleEntry("a", "v" + i));
+        }
+        writer.write(new SimpleEntry("b", "b"));
+        writer.delete("b");
+        assertTrue(store.isEmpty()); // buffered
+        assertEquals(2, writer.getQueueDepth());
+        assertEquals(50, writer.getCoalescedChanges());
+
+        writer.close();
+        assertEquals(1, store.size());
+        assertEquals("v49", store.get("a"));
+        assertEquals(0, writer.getQueueDepth());
+        assertEquals(2, writer.getFlushedChanges());
+    }
+
+    @Test
+    public void flushOnSize() throws Exception
+    {
+        final WriteBehindCacheWriter<String, String> writer = new WriteBehindCacheWriter<String, String>(delegate, 60000, 10, 0);
+        try
+        {
+            for (int i = 0; i < 10; i++)
+            {
+                writer.write(new SimpleEntry("k" + i, "v"));
+            }
+            for (int i = 0; i < 100 && store.size() < 10; i++)
+            {
+                Thread.sleep(50);
+            }
+            assertEquals(10, store.size());
+            assertEquals(1, writer.getFlushCount());
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void retry() throws Exception
+    {
+        failures.set(2);
+        final WriteBehindCacheWriter<String, String> writer = new WriteBehindCacheWriter<String, String>(delegate, 10, 100, 5);
+        try
+        {
+            writer.write(new SimpleEntry("a", "b"));
+            for (int i = 0; i < 100 && store.isEmpty(); i++)
+            {
+                Thread.sleep(50);
+            }
+            assertEquals("b", store.get("a"));
+            assertEquals(2, writer.getFailedFlushCount());
+            assertEquals(0, writer.getDroppedChanges());
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void drop() throws IOException
+    {
+        failures.set(Integer.MAX_VALUE);
+        final WriteBehindCacheWriter<String, String> writer = new WriteBehindCacheWriter<String, String>(delegate, 60000, 100, 1);
+        writer.write(new SimpleEntry("a", "b"));
+        writer.close();
+        assertFalse(store.containsKey("a"));
+        assertEquals(1, writer.getDroppedChanges());
+    }
+
+    @Test
+    public void requeueOnlyWhatTheDelegateLeft() throws IOException
+    {
+        final List<String> written = new ArrayList<String>();
+        final AtomicInteger calls = new AtomicInteger();
+        final CacheWriterAdapter<String, String> partial = new CacheWriterAdapter<String, String>()
+        {
+            @Override
+            public void writeAll(final Collection<Cache.Entry<? extends String, ? extends String>> entries) throws CacheWriterException
+            {
+                // first call writes one entry then fails, next ones write everything
+                final boolean fail = calls.getAndIncrement() == 0;
+                final Iterator<Cache.Entry<? extends String, ? extends String>> it = entries.iterator();
+                while (it.hasNext())
+                {
+                    write(it.next());
+                    it.remove();
+                    if (fail)
+                    {
+                        throw new CacheWriterException("test");
+                    }
+                }
+            }
+
+            @Override
+            public void write(final Cache.Entry<? extends String, ? extends String> entry) throws CacheWriterException
+            {
+                written.add(entry.getKey());
+            }
+
+            @Override
+            public void delete(final Object key) throws CacheWriterException
+            {
+                // no-op
+            }
+        };
+        final WriteBehindCacheWriter<String, String> writer = new WriteBehindCacheWriter<String, String>(partial, 60000, 100, 5);
+        for (int i = 0; i < 3; i++)
+        {
+            writer.write(new SimpleEntry("k" + i, "v"));
+        }
+        writer.close();
+        assertEquals(3, written.size()); // the written entry isn't written twice
+        assertEquals(3, writer.getFlushedChanges());
+        assertEquals(1, writer.getFailedFlushCount());
+    }
+
+    @Test
+    public void writeAfterClose() throws IOException
+    {
+        final WriteBehindCacheWriter<String, String> writer = new WriteBehindCacheWriter<String, String>(delegate, 60000, 1, 0);
+        writer.close();
+        try
+        {
+            writer.write(new SimpleEntry("a", "b"));
+            fail();
+        }
+        catch (final CacheWriterException e)
+        {
+            // ok, not a RejectedExecutionException
+        }
+        assertTrue(store.isEmpty());
+    }
+
+    @Test
+    public void mxbean() throws Exception
+    {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final WriteBehindCacheWriter<String, String> writer = new WriteBehindCacheWriter<String, String>(delegate, 60000, 100, 0);
+        final ObjectName on = new ObjectName("org.apache.commons.jcs.jcache.extras:type=WriteBehindCacheWriter,name="
+                + ObjectName.quote(delegate.getClass().getName() + "-" + System.identityHashCode(writer)));
+        assertTrue(server.isRegistered(on));
+        writer.write(new SimpleEntry("a", "b"));
+        assertEquals(1, server.getAttribute(on, "QueueDepth"));
+        writer.close();
+        assertFalse(server.isRegistered(on));
+    }
+
+    private static class SimpleEntry implements Cache.Entry<String, String>
+    {
+        private final String key;
+        private final String value;
+
+        private SimpleEntry(final String key, final String value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey()
+        {
+            return key;
+        }
+
+        @Override
+        public String getValue()
+        {
+            return value;
+        }
+
+        @Override
+        public <T> T unwrap(final Class<T> clazz)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -25,6 +25,9 @@ import org.apache.openjpa.util.OpenJPAId;
 
 import javax.cache.Cache;
 import javax.cache.CacheManager;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -33,6 +36,8 @@ public class OpenJPAJCacheDataCache extends AbstractDataCache
     private static final String OPENJPA_PREFIX = "openjpa.datacache.";
 
     private final Lock lock = new ReentrantLock();
+    // entity type -> its cache, only a lookup cache: the caches of the types this instance didn't see yet aren't in it
+    private final ConcurrentMap<Class<?>, Cache<Object, Object>> caches = new ConcurrentHashMap<Class<?>, Cache<Object, Object>>();
     private OpenJPAJCacheDataCacheManager manager;
 
     @Override
@@ -48,16 +53,7 @@ public class OpenJPAJCacheDataCache extends AbstractDataCache
         Object result = null;
         if (OpenJPAId.class.isInstance(oid))
         {
-            final Class<?> cls = OpenJPAId.class.cast(oid).getType();
-            Cache<Object, Object> cache = manager.getOrCreateCache(OPENJPA_PREFIX, cls.getName());
-            if (cache == null)
-            {
-                return null;
-            }
-            else
-            {
-                result = cache.get(oid);
-            }
+            result = cache(OpenJPAId.class.cast(oid).getType()).get(oid);
         }
         else
         {
@@ -68,7 +64,6 @@ public class OpenJPAJCacheDataCache extends AbstractDataCache
                 {
                     continue;
                 }
-
                 result = cacheManager.getCache(cacheName).get(oid);
                 if (result != null)
                 {
@@ -86,7 +81,7 @@ public class OpenJPAJCacheDataCache extends AbstractDataCache
     @Override
     protected DataCachePCData putInternal(final Object oid, final DataCachePCData pc)
     {
-        manager.getOrCreateCache(OPENJPA_PREFIX, pc.getType().getName()).put(oid, pc);
+        cache(pc.getType()).put(oid, pc);
         return pc;
     }
 
@@ -95,7 +90,7 @@ public class OpenJPAJCacheDataCache extends AbstractDataCache
     {
         if (OpenJPAId.class.isInstance(oid))
         {
-            final Object remove = manager.getOrCreateCache(OPENJPA_PREFIX, OpenJPAId.class.cast(oid).getType().getName()).getAndRemove(oid);
+            final Object remove = cache(OpenJPAId.class.cast(oid).getType()).getAndRemove(oid);
             if (remove == null)
             {
                 return null;
@@ -108,16 +103,14 @@ public class OpenJPAJCacheDataCache extends AbstractDataCache
     @Override
     protected void removeAllInternal(final Class<?> cls, final boolean subclasses)
     {
-        final String name;
-        if (subclasses)
-        {
-            name = cls.getSuperclass().getName();
-        }
-        else
+        for (final Map.Entry<Class<?>, Cache<Object, Object>> entry : caches.entrySet())
         {
-            name = cls.getName();
+            final Class<?> type = entry.getKey();
+            if (type == cls || (subclasses && cls.isAssignableFrom(type)))
+            {
+                entry.getValue().removeAll();
+            }
         }
-        manager.getOrCreateCache(OPENJPA_PREFIX, name).removeAll();
     }
 
     @Override
@@ -134,6 +127,17 @@ public class OpenJPAJCacheDataCache extends AbstractDataCache
         }
     }
 
+    private Cache<Object, Object> cache(final Class<?> type)
+    {
+        Cache<Object, Object> cache = caches.get(type);
+        if (cache == null || cache.isClosed())
+        {
+            cache = manager.getOrCreateCache(OPENJPA_PREFIX, type.getName());
+            caches.put(type, cache);
+        }
+        return cache;
+    }
+
     @Override
     protected boolean pinInternal(final Object oid)
     {
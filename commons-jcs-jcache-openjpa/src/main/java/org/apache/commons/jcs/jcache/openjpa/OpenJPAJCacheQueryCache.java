@@ -22,11 +22,25 @@ import org.apache.openjpa.datacache.AbstractQueryCache;
 import org.apache.openjpa.datacache.DataCacheManager;
 import org.apache.openjpa.datacache.QueryKey;
 import org.apache.openjpa.datacache.QueryResult;
+import org.apache.openjpa.datacache.TypesChangedEvent;
 
 import javax.cache.Cache;
 import javax.cache.CacheManager;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryExpiredListener;
+import javax.cache.event.CacheEntryListener;
+import javax.cache.event.CacheEntryListenerException;
+import javax.cache.event.CacheEntryRemovedListener;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -34,9 +48,18 @@ public class OpenJPAJCacheQueryCache extends AbstractQueryCache
 {
     private static final String OPENJPA_PREFIX = "openjpa.querycache.";
     private static final String QUERY_CACHE_NAME = "query";
+    private static final int MIN_PRUNE_SIZE = 1024;
 
     private final Lock lock = new ReentrantLock();
+    private final Set<QueryKey> keys = ConcurrentHashMap.newKeySet();
+    // access path class name -> cached queries depending on it, avoids to scan the whole cache when a type changes
+    private final ConcurrentMap<String, Set<QueryKey>> index = new ConcurrentHashMap<String, Set<QueryKey>>();
+    // the evictions of the underlying cache (max objects, disk spooling...) don't fire removed events so the keys
+    // no longer cached are pruned each time the number of keys doubles, it keeps them bounded by twice the cached ones
+    private final AtomicInteger pruneSize = new AtomicInteger(MIN_PRUNE_SIZE);
+    private final AtomicBoolean pruning = new AtomicBoolean();
     private OpenJPAJCacheDataCacheManager manager;
+    private volatile Cache<Object, Object> queryCache;
 
     @Override
     public void initialize(final DataCacheManager manager)
@@ -57,40 +80,183 @@ public class OpenJPAJCacheQueryCache extends AbstractQueryCache
             }
             cacheManager.getCache(cacheName).clear();
         }
+        // clear() doesn't fire removed events
+        keys.clear();
+        index.clear();
+        pruneSize.set(MIN_PRUNE_SIZE);
     }
 
     @Override
-    protected Collection keySet()
+    public void onTypesChanged(final TypesChangedEvent ev)
     {
-        final Collection<QueryKey> keys = new LinkedList<QueryKey>();
-        for (final Cache.Entry<Object, Object> entry : queryCache())
+        if (evictPolicy != EvictPolicy.DEFAULT)
         {
-            keys.add(QueryKey.class.cast(entry.getKey()));
+            super.onTypesChanged(ev);
+            return;
         }
-        return keys;
+
+        // same as the parent but only the queries indexed under the changed types are checked
+        final Collection<QueryKey> removes = new HashSet<QueryKey>();
+        writeLock();
+        try
+        {
+            if (hasListeners())
+            {
+                fireEvent(ev);
+            }
+            for (final Object type : ev.getTypes())
+            {
+                final Set<QueryKey> dependents = index.get(Class.class.cast(type).getName());
+                if (dependents != null)
+                {
+                    for (final QueryKey qk : dependents)
+                    {
+                        if (qk.changeInvalidatesQuery(ev.getTypes()))
+                        {
+                            removes.add(qk);
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            writeUnlock();
+        }
+        if (!removes.isEmpty())
+        {
+            removeAllInternal(removes);
+        }
+    }
+
+    @Override
+    protected Collection keySet()
+    {
+        return new ArrayList<QueryKey>(keys);
     }
 
     @Override
     protected QueryResult getInternal(final QueryKey qk)
     {
-        return QueryResult.class.cast(queryCache().get(qk));
+        final Object result = queryCache().get(qk);
+        if (result == null)
+        {
+            unindex(qk);
+            return null;
+        }
+        return QueryResult.class.cast(result);
     }
 
     private Cache<Object, Object> queryCache()
     {
-        return manager.getOrCreateCache(OPENJPA_PREFIX, QUERY_CACHE_NAME);
+        Cache<Object, Object> cache = queryCache;
+        if (cache == null || cache.isClosed())
+        {
+            synchronized (this)
+            {
+                cache = queryCache;
+                if (cache == null || cache.isClosed())
+                {
+                    cache = manager.getOrCreateCache(OPENJPA_PREFIX, QUERY_CACHE_NAME);
+                    // keeps the index in sync with the evictions and expirations done by the cache itself
+                    cache.registerCacheEntryListener(new MutableCacheEntryListenerConfiguration<Object, Object>(
+                            new FactoryBuilder.SingletonFactory<CacheEntryListener<? super Object, ? super Object>>(new IndexCleaner()),
+                            null, false, true));
+                    queryCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    private void index(final QueryKey qk)
+    {
+        keys.add(qk);
+        final Set<String> classNames = qk.getAcessPathClassNames();
+        if (classNames == null)
+        {
+            return;
+        }
+        for (final String className : classNames)
+        {
+            Set<QueryKey> dependents = index.get(className);
+            if (dependents == null)
+            {
+                dependents = ConcurrentHashMap.newKeySet();
+                final Set<QueryKey> existing = index.putIfAbsent(className, dependents);
+                if (existing != null)
+                {
+                    dependents = existing;
+                }
+            }
+            dependents.add(qk);
+        }
+    }
+
+    private void unindex(final Object key)
+    {
+        if (!keys.remove(key))
+        {
+            return;
+        }
+        final Set<String> classNames = QueryKey.class.cast(key).getAcessPathClassNames();
+        if (classNames == null)
+        {
+            return;
+        }
+        for (final String className : classNames)
+        {
+            final Set<QueryKey> dependents = index.get(className);
+            if (dependents != null)
+            {
+                dependents.remove(key);
+            }
+        }
     }
 
     @Override
     protected QueryResult putInternal(final QueryKey qk, final QueryResult oids)
     {
         queryCache().put(qk, oids);
+        index(qk);
+        if (keys.size() >= pruneSize.get())
+        {
+            prune();
+        }
         return oids;
     }
 
+    /**
+     * Unindexes the keys the cache evicted without notifying.
+     */
+    void prune()
+    {
+        if (!pruning.compareAndSet(false, true))
+        {
+            return;
+        }
+        try
+        {
+            final Cache<Object, Object> cache = queryCache();
+            for (final QueryKey qk : keys)
+            {
+                if (!cache.containsKey(qk))
+                {
+                    unindex(qk);
+                }
+            }
+            pruneSize.set(Math.max(MIN_PRUNE_SIZE, keys.size() * 2));
+        }
+        finally
+        {
+            pruning.set(false);
+        }
+    }
+
     @Override
     protected QueryResult removeInternal(final QueryKey qk)
     {
+        unindex(qk);
         final Object remove = queryCache().getAndRemove(qk);
         if (remove == null)
         {
@@ -122,4 +288,22 @@ public class OpenJPAJCacheQueryCache extends AbstractQueryCache
     {
         lock.unlock();
     }
+
+    private class IndexCleaner implements CacheEntryExpiredListener<Object, Object>, CacheEntryRemovedListener<Object, Object>
+    {
+        @Override
+        public void onExpired(final Iterable<CacheEntryEvent<? extends Object, ? extends Object>> events) throws CacheEntryListenerException
+        {
+            onRemoved(events);
+        }
+
+        @Override
+        public void onRemoved(final Iterable<CacheEntryEvent<? extends Object, ? extends Object>> events) throws CacheEntryListenerException
+        {
+            for (final CacheEntryEvent<? extends Object, ? extends Object> event : events)
+            {
+                unindex(event.getKey());
+            }
+        }
+    }
 }
@@ -20,6 +20,7 @@ package org.apache.commons.jcs.jcache.openjpa;
 
 import org.apache.derby.jdbc.EmbeddedDriver;
 import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.datacache.QueryCache;
 import org.apache.openjpa.datacache.QueryKey;
 import org.apache.openjpa.persistence.JPAFacadeHelper;
 import org.apache.openjpa.persistence.OpenJPAEntityManagerFactorySPI;
@@ -38,7 +39,9 @@ import java.util.Properties;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -115,6 +118,86 @@ public class OpenJPAJCacheDataCacheTest
         emf.close();
     }
 
+    @Test
+    public void queryInvalidation()
+    {
+        final EntityManagerFactory emf = Persistence.createEntityManagerFactory("test-jcache", props);
+        final OpenJPAConfiguration conf = OpenJPAEntityManagerFactorySPI.class.cast(emf).getConfiguration();
+
+        final EntityManager em = emf.createEntityManager();
+
+        final MyEntity entity = new MyEntity();
+        entity.setName("cacheMe1");
+        em.getTransaction().begin();
+        em.persist(entity);
+        em.getTransaction().commit();
+        final Query query = em.createQuery("select e from OpenJPAJCacheDataCacheTest$MyEntity e where e.id = :id");
+        assertEquals(1, query.setParameter("id", entity.getId()).getResultList().size());
+
+        final Map<Object, Object> args = new HashMap<Object, Object>()
+        {{
+                put("id", entity.getId());
+        }};
+        final QueryKey qk = QueryKey.newInstance(query.unwrap(org.apache.openjpa.kernel.Query.class), args);
+        final QueryCache queryCache = conf.getDataCacheManagerInstance().getSystemQueryCache();
+        assertNotNull(queryCache.get(qk));
+        assertTrue(OpenJPAJCacheQueryCache.class.cast(queryCache).keySet().contains(qk));
+
+        // a commit touching the type evicts the dependent queries
+        final MyEntity other = new MyEntity();
+        other.setName("cacheMe2");
+        em.getTransaction().begin();
+        em.persist(other);
+        em.getTransaction().commit();
+        assertNull(queryCache.get(qk));
+        assertFalse(OpenJPAJCacheQueryCache.class.cast(queryCache).keySet().contains(qk));
+
+        em.close();
+
+        emf.close();
+    }
+
+    @Test
+    public void queryIndexPruning()
+    {
+        final EntityManagerFactory emf = Persistence.createEntityManagerFactory("test-jcache", props);
+        final OpenJPAConfiguration conf = OpenJPAEntityManagerFactorySPI.class.cast(emf).getConfiguration();
+
+        final EntityManager em = emf.createEntityManager();
+
+        final MyEntity entity = new MyEntity();
+        entity.setName("cacheMe1");
+        em.getTransaction().begin();
+        em.persist(entity);
+        em.getTransaction().commit();
+        final Query query = em.createQuery("select e from OpenJPAJCacheDataCacheTest$MyEntity e where e.id = :id");
+        assertEquals(1, query.setParameter("id", entity.getId()).getResultList().size());
+
+        final Map<Object, Object> args = new HashMap<Object, Object>()
+        {{
+                put("id", entity.getId());
+        }};
+        final QueryKey qk = QueryKey.newInstance(query.unwrap(org.apache.openjpa.kernel.Query.class), args);
+        final OpenJPAJCacheQueryCache queryCache = OpenJPAJCacheQueryCache.class.cast(conf.getDataCacheManagerInstance().getSystemQueryCache());
+        assertTrue(queryCache.keySet().contains(qk));
+
+        // an eviction of the underlying cache doesn't notify, the key is pruned
+        OpenJPAJCacheDataCacheManager.class.cast(conf.getDataCacheManagerInstance()).getCacheManager()
+                .getCache("openjpa.querycache.query").clear();
+        assertTrue(queryCache.keySet().contains(qk));
+        queryCache.prune();
+        assertFalse(queryCache.keySet().contains(qk));
+
+        assertEquals(1, query.setParameter("id", entity.getId()).getResultList().size());
+        assertTrue(queryCache.keySet().contains(qk));
+        queryCache.clear();
+        assertTrue(queryCache.keySet().isEmpty());
+
+        em.close();
+
+        emf.close();
+    }
+
     @Entity
     public static class MyEntity
     {
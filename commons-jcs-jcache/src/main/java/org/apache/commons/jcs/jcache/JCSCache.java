@@ -27,6 +27,8 @@ import org.apache.commons.jcs.jcache.jmx.JCSCacheMXBean;
 import org.apache.commons.jcs.jcache.jmx.JCSCacheStatisticsMXBean;
 import org.apache.commons.jcs.jcache.jmx.JMXs;
 import org.apache.commons.jcs.jcache.proxy.ExceptionWrapperHandler;
+import org.apache.commons.jcs.jcache.serialization.Copier;
+import org.apache.commons.jcs.jcache.serialization.DefaultCopier;
 import org.apache.commons.jcs.jcache.thread.DaemonThreadFactory;
 import org.apache.commons.jcs.utils.serialization.StandardSerializer;
 
@@ -52,20 +54,34 @@ import javax.cache.processor.EntryProcessorResult;
 import javax.management.ObjectName;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Properties;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static org.apache.commons.jcs.jcache.Asserts.assertNotNull;
-import static org.apache.commons.jcs.jcache.serialization.Serializations.copy;
 
 // TODO: configure serializer
 public class JCSCache<K, V> implements Cache<K, V>
@@ -81,9 +97,22 @@ public class JCSCache<K, V> implements Cache<K, V>
     private final String name;
     private volatile boolean closed = false;
     private final Map<CacheEntryListenerConfiguration<K, V>, JCSListener<K, V>> listeners = new ConcurrentHashMap<CacheEntryListenerConfiguration<K, V>, JCSListener<K, V>>();
-    private final Statistics statistics = new Statistics();
+    private final Statistics statistics;
     private final ExecutorService pool;
     private final IElementSerializer serializer; // using json/xml should work as well -> don't force Serializable
+    private final Copier copier;
+    private final ReentrantLock[] keyLocks;
+    private final ThreadLocal<ArrayDeque<int[]>> heldStripes = new ThreadLocal<ArrayDeque<int[]>>()
+    {
+        @Override
+        protected ArrayDeque<int[]> initialValue()
+        {
+            return new ArrayDeque<int[]>();
+        }
+    };
+    private final boolean parallelInvokeAll;
+    private final int iteratorBatchSize;
+    private final ExecutorService invokeAllPool;
 
 
     public JCSCache(final ClassLoader classLoader, final JCSCachingManager mgr,
@@ -94,6 +123,8 @@ public class JCSCache<K, V> implements Cache<K, V>
 
         name = cacheName;
 
+        statistics = new Statistics(Integer.parseInt(property(properties, cacheName, "statistics.latency.sampling", "1")));
+
         delegate = cache;
         if (delegate.getElementAttributes() == null)
         {
@@ -107,6 +138,32 @@ public class JCSCache<K, V> implements Cache<K, V>
         final DaemonThreadFactory threadFactory = new DaemonThreadFactory("JCS-JCache-" + cacheName + "-");
         pool = poolSize > 0 ? Executors.newFixedThreadPool(poolSize, threadFactory) : Executors.newCachedThreadPool(threadFactory);
 
+        final int stripes = Integer.parseInt(property(properties, cacheName, "invoke.lock.stripes", "64"));
+        keyLocks = new ReentrantLock[stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1]; // power of 2 to mask the hash
+        for (int i = 0; i < keyLocks.length; i++)
+        {
+            keyLocks[i] = new ReentrantLock();
+        }
+        iteratorBatchSize = Math.max(1, Integer.parseInt(property(properties, cacheName, "iterator.batch.size", "100")));
+        parallelInvokeAll = Boolean.parseBoolean(property(properties, cacheName, "invokeAll.parallel", "true"));
+        // a bounded pool of its own, blocking on the key locks in the common pool could starve it,
+        // when it is saturated the caller processes the key itself
+        final int invokeAllPoolSize = Integer.parseInt(property(properties, cacheName, "invokeAll.pool.size",
+                Integer.toString(Runtime.getRuntime().availableProcessors())));
+        final ThreadPoolExecutor invokeAllExecutor = new ThreadPoolExecutor(
+                Math.max(1, invokeAllPoolSize), Math.max(1, invokeAllPoolSize), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, invokeAllPoolSize) * 16),
+                new DaemonThreadFactory("JCS-JCache-invokeAll-" + cacheName + "-"), new RejectedExecutionHandler()
+                {
+                    @Override // even once shut down, else the caller would wait for a task which never runs
+                    public void rejectedExecution(final Runnable r, final ThreadPoolExecutor executor)
+                    {
+                        r.run();
+                    }
+                });
+        invokeAllExecutor.allowCoreThreadTimeOut(true);
+        invokeAllPool = invokeAllExecutor;
+
         try
         {
             serializer = IElementSerializer.class.cast(classLoader.loadClass(property(properties, "serializer", cacheName, StandardSerializer.class.getName())).newInstance());
@@ -116,6 +173,18 @@ public class JCSCache<K, V> implements Cache<K, V>
             throw new IllegalArgumentException(e);
         }
 
+        final Factory<Copier> copierFactory = configuration.getCopierFactory();
+        if (copierFactory == null)
+        {
+            copier = new DefaultCopier(serializer,
+                    list(property(properties, cacheName, "copier.immutables", "")),
+                    list(property(properties, cacheName, "copier.copyables", "")));
+        }
+        else
+        {
+            copier = copierFactory.create();
+        }
+
         final Factory<CacheLoader<K, V>> cacheLoaderFactory = configuration.getCacheLoaderFactory();
         if (cacheLoaderFactory == null)
         {
@@ -184,6 +253,25 @@ public class JCSCache<K, V> implements Cache<K, V>
         return properties.getProperty(cacheName + "." + name, properties.getProperty(name, defaultValue));
     }
 
+    private static Collection<String> list(final String value)
+    {
+        final Collection<String> values = new ArrayList<String>();
+        for (final String v : value.split(","))
+        {
+            final String trimmed = v.trim();
+            if (!trimmed.isEmpty())
+            {
+                values.add(trimmed);
+            }
+        }
+        return values;
+    }
+
+    private <T> T copy(final T value)
+    {
+        return copier.copy(manager.getClassLoader(), value);
+    }
+
     private void assertNotClosed()
     {
         if (isClosed())
@@ -197,7 +285,7 @@ public class JCSCache<K, V> implements Cache<K, V>
     {
         assertNotClosed();
         assertNotNull(key, "key");
-        final long getStart = Times.now(false);
+        final long getStart = Times.now(!config.isStatisticsEnabled());
         return doGetControllingExpiry(getStart, key, true, false, false, true);
     }
 
@@ -261,7 +349,7 @@ public class JCSCache<K, V> implements Cache<K, V>
     {
         if (config.isStoreByValue())
         {
-            final K copy = copy(serializer, manager.getClassLoader(), key);
+            final K copy = copy(key);
             try
             {
                 delegate.update(new CacheElement<K, V>(name, copy, element.getVal(), element.getElementAttributes()));
@@ -324,6 +412,19 @@ public class JCSCache<K, V> implements Cache<K, V>
 
     @Override
     public void put(final K key, final V rawValue)
+    {
+        lockKey(key);
+        try
+        {
+            doPut(key, rawValue);
+        }
+        finally
+        {
+            unlockKeys();
+        }
+    }
+
+    private void doPut(final K key, final V rawValue)
     {
         assertNotClosed();
         assertNotNull(key, "key");
@@ -333,16 +434,16 @@ public class JCSCache<K, V> implements Cache<K, V>
         final V old = oldElt != null ? oldElt.getVal() : null;
 
         final boolean storeByValue = config.isStoreByValue();
-        final V value = storeByValue ? copy(serializer, manager.getClassLoader(), rawValue) : rawValue;
+        final V value = storeByValue ? copy(rawValue) : rawValue;
 
         final boolean created = old == null;
         final Duration duration = created ? expiryPolicy.getExpiryForCreation() : expiryPolicy.getExpiryForUpdate();
         if (isNotZero(duration))
         {
             final boolean statisticsEnabled = config.isStatisticsEnabled();
-            final long start = Times.now(false);
+            final long start = Times.now(!statisticsEnabled);
 
-            final K jcsKey = storeByValue ? copy(serializer, manager.getClassLoader(), key) : key;
+            final K jcsKey = storeByValue ? copy(key) : key;
             final ICacheElement<K, V> element = updateElement( // reuse it to create basic structure
                     jcsKey, value, created ? null : duration,
                     oldElt != null ? oldElt.getElementAttributes() : delegate.getElementAttributes().clone());
@@ -394,7 +495,7 @@ public class JCSCache<K, V> implements Cache<K, V>
             if (statisticsEnabled)
             {
                 statistics.increasePuts(1);
-                statistics.addPutTime(System.currentTimeMillis() - start);
+                statistics.addPutTime(Times.now(false) - start);
             }
         }
         else
@@ -424,11 +525,24 @@ public class JCSCache<K, V> implements Cache<K, V>
 
     @Override
     public V getAndPut(final K key, final V value)
+    {
+        lockKey(key);
+        try
+        {
+            return doGetAndPut(key, value);
+        }
+        finally
+        {
+            unlockKeys();
+        }
+    }
+
+    private V doGetAndPut(final K key, final V value)
     {
         assertNotClosed();
         assertNotNull(key, "key");
         assertNotNull(value, "value");
-        final long getStart = Times.now(false);
+        final long getStart = Times.now(!config.isStatisticsEnabled());
         final V v = doGetControllingExpiry(getStart, key, false, false, true, false);
         put(key, value);
         return v;
@@ -443,11 +557,32 @@ public class JCSCache<K, V> implements Cache<K, V>
         {
             view.put(e.getKey(), e.getValue());
         }
-        view.merge();
+        lockKeys(map.keySet());
+        try
+        {
+            view.merge();
+        }
+        finally
+        {
+            unlockKeys();
+        }
     }
 
     @Override
     public boolean putIfAbsent(final K key, final V value)
+    {
+        lockKey(key);
+        try
+        {
+            return doPutIfAbsent(key, value);
+        }
+        finally
+        {
+            unlockKeys();
+        }
+    }
+
+    private boolean doPutIfAbsent(final K key, final V value)
     {
         if (!containsKey(key))
         {
@@ -459,6 +594,19 @@ public class JCSCache<K, V> implements Cache<K, V>
 
     @Override
     public boolean remove(final K key)
+    {
+        lockKey(key);
+        try
+        {
+            return doRemove(key);
+        }
+        finally
+        {
+            unlockKeys();
+        }
+    }
+
+    private boolean doRemove(final K key)
     {
         assertNotClosed();
         assertNotNull(key, "key");
@@ -489,11 +637,24 @@ public class JCSCache<K, V> implements Cache<K, V>
 
     @Override
     public boolean remove(final K key, final V oldValue)
+    {
+        lockKey(key);
+        try
+        {
+            return doRemove(key, oldValue);
+        }
+        finally
+        {
+            unlockKeys();
+        }
+    }
+
+    private boolean doRemove(final K key, final V oldValue)
     {
         assertNotClosed();
         assertNotNull(key, "key");
         assertNotNull(oldValue, "oldValue");
-        final long getStart = Times.now(false);
+        final long getStart = Times.now(!config.isStatisticsEnabled());
         final V v = doGetControllingExpiry(getStart, key, false, false, false, false);
         if (oldValue.equals(v))
         {
@@ -510,10 +671,23 @@ public class JCSCache<K, V> implements Cache<K, V>
 
     @Override
     public V getAndRemove(final K key)
+    {
+        lockKey(key);
+        try
+        {
+            return doGetAndRemove(key);
+        }
+        finally
+        {
+            unlockKeys();
+        }
+    }
+
+    private V doGetAndRemove(final K key)
     {
         assertNotClosed();
         assertNotNull(key, "key");
-        final long getStart = Times.now(false);
+        final long getStart = Times.now(!config.isStatisticsEnabled());
         final V v = doGetControllingExpiry(getStart, key, false, false, true, false);
         remove(key);
         return v;
@@ -546,22 +720,7 @@ public class JCSCache<K, V> implements Cache<K, V>
 
         if (updateAcess && elt != null)
         {
-            final Duration expiryForAccess = expiryPolicy.getExpiryForAccess();
-            if (!isNotZero(expiryForAccess))
-            {
-                forceExpires(key);
-            }
-            else if (expiryForAccess != null && (!elt.getElementAttributes().getIsEternal() || !expiryForAccess.isEternal()))
-            {
-                try
-                {
-                    delegate.update(updateElement(key, elt.getVal(), expiryForAccess, elt.getElementAttributes()));
-                }
-                catch (final IOException e)
-                {
-                    throw new CacheException(e);
-                }
-            }
+            updateAccess(key, elt);
         }
         if (statisticsEnabled && v != null)
         {
@@ -570,8 +729,41 @@ public class JCSCache<K, V> implements Cache<K, V>
         return v;
     }
 
+    private void updateAccess(final K key, final ICacheElement<K, V> elt)
+    {
+        final Duration expiryForAccess = expiryPolicy.getExpiryForAccess();
+        if (!isNotZero(expiryForAccess))
+        {
+            forceExpires(key);
+        }
+        else if (expiryForAccess != null && (!elt.getElementAttributes().getIsEternal() || !expiryForAccess.isEternal()))
+        {
+            try
+            {
+                delegate.update(updateElement(key, elt.getVal(), expiryForAccess, elt.getElementAttributes()));
+            }
+            catch (final IOException e)
+            {
+                throw new CacheException(e);
+            }
+        }
+    }
+
     @Override
     public boolean replace(final K key, final V oldValue, final V newValue)
+    {
+        lockKey(key);
+        try
+        {
+            return doReplace(key, oldValue, newValue);
+        }
+        finally
+        {
+            unlockKeys();
+        }
+    }
+
+    private boolean doReplace(final K key, final V oldValue, final V newValue)
     {
         assertNotClosed();
         assertNotNull(key, "key");
@@ -620,6 +812,19 @@ public class JCSCache<K, V> implements Cache<K, V>
 
     @Override
     public boolean replace(final K key, final V value)
+    {
+        lockKey(key);
+        try
+        {
+            return doReplace(key, value);
+        }
+        finally
+        {
+            unlockKeys();
+        }
+    }
+
+    private boolean doReplace(final K key, final V value)
     {
         assertNotClosed();
         assertNotNull(key, "key");
@@ -643,6 +848,19 @@ public class JCSCache<K, V> implements Cache<K, V>
 
     @Override
     public V getAndReplace(final K key, final V value)
+    {
+        lockKey(key);
+        try
+        {
+            return doGetAndReplace(key, value);
+        }
+        finally
+        {
+            unlockKeys();
+        }
+    }
+
+    private V doGetAndReplace(final K key, final V value)
     {
         assertNotClosed();
         assertNotNull(key, "key");
@@ -677,9 +895,17 @@ public class JCSCache<K, V> implements Cache<K, V>
     {
         assertNotClosed();
         assertNotNull(keys, "keys");
-        for (final K k : keys)
+        lockKeys(keys);
+        try
         {
-            remove(k);
+            for (final K k : keys)
+            {
+                remove(k);
+            }
+        }
+        finally
+        {
+            unlockKeys();
         }
     }
 
@@ -687,9 +913,18 @@ public class JCSCache<K, V> implements Cache<K, V>
     public void removeAll()
     {
         assertNotClosed();
-        for (final K k : delegate.getKeySet())
+        final Set<K> keys = delegate.getKeySet();
+        lockKeys(keys);
+        try
+        {
+            for (final K k : keys)
+            {
+                remove(k);
+            }
+        }
+        finally
         {
-            remove(k);
+            unlockKeys();
         }
     }
 
@@ -768,38 +1003,142 @@ public class JCSCache<K, V> implements Cache<K, V>
 
     @Override
     public <T> T invoke(final K key, final EntryProcessor<K, V, T> entryProcessor, final Object... arguments) throws EntryProcessorException
-    {
-        final TempStateCacheView<K, V> view = new TempStateCacheView<K, V>(this);
-        final T t = doInvoke(view, key, entryProcessor, arguments);
-        view.merge();
-        return t;
-    }
-
-    private <T> T doInvoke(final TempStateCacheView<K, V> view, final K key, final EntryProcessor<K, V, T> entryProcessor,
-            final Object... arguments)
     {
         assertNotClosed();
         assertNotNull(entryProcessor, "entryProcessor");
         assertNotNull(key, "key");
+
+        // processor + merge are atomic for a key, other keys only contend if they share the stripe
+        lockKey(key);
         try
         {
-            if (config.isStatisticsEnabled())
+            return doInvoke(key, entryProcessor, arguments);
+        }
+        finally
+        {
+            unlockKeys();
+        }
+    }
+
+    /**
+     * The mutators and invoke take the lock of the stripe of the key, so a processor can't be interleaved
+     * with a concurrent put or remove of the same key. The locks are reentrant, a processor can mutate its
+     * own entry.
+     */
+    private void lockKey(final K key)
+    {
+        lockKeys(Collections.singleton(key));
+    }
+
+    /**
+     * Listeners, writers and processors run under the stripes and can touch other keys, so the stripes are
+     * taken in a single order: a thread only waits for a stripe above the ones it already holds. A stripe
+     * below them is only tried, if it is busy the nested operation runs without it rather than deadlocking
+     * with the thread holding it.
+     */
+    private void lockKeys(final Collection<? extends K> keys)
+    {
+        assertNotClosed();
+        final int[] stripes = new int[keys.size()];
+        int count = 0;
+        for (final K key : keys)
+        {
+            assertNotNull(key, "key");
+            stripes[count++] = stripe(key);
+        }
+        Arrays.sort(stripes, 0, count);
+
+        final ArrayDeque<int[]> held = heldStripes.get();
+        int max = held.isEmpty() ? -1 : held.peek()[0];
+        final int[] frame = new int[count + 1]; // highest stripe held, then the stripes taken by this call
+        int taken = 0;
+        for (int i = 0; i < count; i++)
+        {
+            final int stripe = stripes[i];
+            if (i > 0 && stripe == stripes[i - 1])
             {
-                if (containsKey(key))
-                {
-                    statistics.increaseHits(1);
-                }
-                else
-                {
-                    statistics.increaseMisses(1);
-                }
+                continue;
+            }
+            final ReentrantLock lock = keyLocks[stripe];
+            if (stripe > max || lock.isHeldByCurrentThread())
+            {
+                lock.lock();
+            }
+            else if (!lock.tryLock())
+            {
+                continue;
+            }
+            frame[++taken] = stripe;
+            max = Math.max(max, stripe);
+        }
+        frame[0] = max;
+        held.push(taken == count ? frame : Arrays.copyOf(frame, taken + 1));
+    }
+
+    private void unlockKeys()
+    {
+        final ArrayDeque<int[]> held = heldStripes.get();
+        final int[] frame = held.pop();
+        for (int i = frame.length - 1; i > 0; i--)
+        {
+            keyLocks[frame[i]].unlock();
+        }
+        if (held.isEmpty())
+        {
+            heldStripes.remove();
+        }
+    }
+
+    private boolean holdsKeyLock()
+    {
+        final ArrayDeque<int[]> held = heldStripes.get();
+        if (held.isEmpty())
+        {
+            heldStripes.remove();
+            return false;
+        }
+        return true;
+    }
+
+    private int stripe(final K key)
+    {
+        final int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (keyLocks.length - 1);
+    }
+
+    private <T> T doInvoke(final K key, final EntryProcessor<K, V, T> entryProcessor, final Object... arguments)
+    {
+        final TempStateCacheView<K, V> view;
+        if (config.isStatisticsEnabled())
+        {
+            // counted once for the invocation, the view doesn't need to look the key up again to fix it up
+            final boolean exists = delegate.get(key) != null;
+            if (exists)
+            {
+                statistics.increaseHits(1);
+            }
+            else
+            {
+                statistics.increaseMisses(1);
             }
-            return entryProcessor.process(new JCSMutableEntry<K, V>(view, key), arguments);
+            view = new TempStateCacheView<K, V>(this, exists);
+        }
+        else
+        {
+            view = new TempStateCacheView<K, V>(this);
+        }
+
+        final T t;
+        try
+        {
+            t = entryProcessor.process(new JCSMutableEntry<K, V>(view, key), arguments);
         }
         catch (final Exception ex)
         {
             return throwEntryProcessorException(ex);
         }
+        view.merge();
+        return t;
     }
 
     private static <T> T throwEntryProcessorException(final Exception ex)
@@ -818,38 +1157,92 @@ public class JCSCache<K, V> implements Cache<K, V>
         assertNotClosed();
         assertNotNull(entryProcessor, "entryProcessor");
         final Map<K, EntryProcessorResult<T>> results = new HashMap<K, EntryProcessorResult<T>>();
+        // from a processor the caller holds a key lock, the pool threads could wait on it forever
+        if (!parallelInvokeAll || keys.size() < 2 || holdsKeyLock())
+        {
+            for (final K k : keys)
+            {
+                final EntryProcessorResult<T> result = invokeForResult(k, entryProcessor, arguments);
+                if (result != null)
+                {
+                    results.put(k, result);
+                }
+            }
+            return results;
+        }
+
+        // keys don't share any state so they are processed independently, each of them still taking its stripe
+        final Map<K, Future<EntryProcessorResult<T>>> tasks = new HashMap<K, Future<EntryProcessorResult<T>>>(keys.size());
         for (final K k : keys)
         {
-            try
+            tasks.put(k, invokeAllPool.submit(new Callable<EntryProcessorResult<T>>()
             {
-                final T invoke = invoke(k, entryProcessor, arguments);
-                if (invoke != null)
+                @Override
+                public EntryProcessorResult<T> call()
                 {
-                    results.put(k, new EntryProcessorResult<T>()
-                    {
-                        @Override
-                        public T get() throws EntryProcessorException
-                        {
-                            return invoke;
-                        }
-                    });
+                    return invokeForResult(k, entryProcessor, arguments);
                 }
+            }));
+        }
+        for (final Map.Entry<K, Future<EntryProcessorResult<T>>> task : tasks.entrySet())
+        {
+            final EntryProcessorResult<T> result;
+            try
+            {
+                result = task.getValue().get();
             }
-            catch (final Exception e)
+            catch (final InterruptedException e)
             {
-                results.put(k, new EntryProcessorResult<T>()
+                Thread.currentThread().interrupt();
+                throw new CacheException(e);
+            }
+            catch (final ExecutionException e)
+            {
+                if (RuntimeException.class.isInstance(e.getCause()))
                 {
-                    @Override
-                    public T get() throws EntryProcessorException
-                    {
-                        return throwEntryProcessorException(e);
-                    }
-                });
+                    throw RuntimeException.class.cast(e.getCause());
+                }
+                throw new CacheException(e.getCause());
+            }
+            if (result != null)
+            {
+                results.put(task.getKey(), result);
             }
         }
         return results;
     }
 
+    private <T> EntryProcessorResult<T> invokeForResult(final K k, final EntryProcessor<K, V, T> entryProcessor, final Object... arguments)
+    {
+        try
+        {
+            final T invoke = invoke(k, entryProcessor, arguments);
+            if (invoke == null)
+            {
+                return null;
+            }
+            return new EntryProcessorResult<T>()
+            {
+                @Override
+                public T get() throws EntryProcessorException
+                {
+                    return invoke;
+                }
+            };
+        }
+        catch (final Exception e)
+        {
+            return new EntryProcessorResult<T>()
+            {
+                @Override
+                public T get() throws EntryProcessorException
+                {
+                    return throwEntryProcessorException(e);
+                }
+            };
+        }
+    }
+
     @Override
     public void registerCacheEntryListener(final CacheEntryListenerConfiguration<K, V> cacheEntryListenerConfiguration)
     {
@@ -874,34 +1267,14 @@ public class JCSCache<K, V> implements Cache<K, V>
     public Iterator<Entry<K, V>> iterator()
     {
         assertNotClosed();
-        final Iterator<K> keys = new HashSet<K>(delegate.getKeySet()).iterator();
-        return new Iterator<Entry<K, V>>()
-        {
-            private K lastKey = null;
-
-            @Override
-            public boolean hasNext()
-            {
-                return keys.hasNext();
-            }
-
-            @Override
-            public Entry<K, V> next()
-            {
-                lastKey = keys.next();
-                return new JCSEntry<K, V>(lastKey, get(lastKey));
-            }
+        return new EntryIterator(delegate.getKeyIterator());
+    }
 
-            @Override
-            public void remove()
-            {
-                if (isClosed() || lastKey == null)
-                {
-                    throw new IllegalStateException(isClosed() ? "cache closed" : "call next() before remove()");
-                }
-                JCSCache.this.remove(lastKey);
-            }
-        };
+    @Override
+    public Spliterator<Entry<K, V>> spliterator()
+    {
+        // the default one would be sized, the size of a region is not known without listing its keys
+        return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.NONNULL);
     }
 
     @Override
@@ -929,6 +1302,7 @@ public class JCSCache<K, V> implements Cache<K, V>
         for (final Runnable task : pool.shutdownNow()) {
             task.run();
         }
+        invokeAllPool.shutdown();
 
         manager.release(getName());
         closed = true;
@@ -1011,4 +1385,86 @@ public class JCSCache<K, V> implements Cache<K, V>
         statistics.setActive(false);
         JMXs.unregister(cacheStatsObjectName);
     }
+    // values are fetched with a single getMultiple() per batch of keys instead of one get() per key
+    private class EntryIterator implements Iterator<Entry<K, V>>
+    {
+        private final Iterator<K> keys;
+        private final Set<K> batch = new LinkedHashSet<K>();
+        private Iterator<Entry<K, V>> entries = Collections.<Entry<K, V>>emptyList().iterator();
+        private K lastKey = null;
+
+        private EntryIterator(final Iterator<K> keys)
+        {
+            this.keys = keys;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while (!entries.hasNext())
+            {
+                if (!keys.hasNext())
+                {
+                    return false;
+                }
+                entries = nextBatch().iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public Entry<K, V> next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            final Entry<K, V> entry = entries.next();
+            lastKey = entry.getKey();
+            return entry;
+        }
+
+        @Override
+        public void remove()
+        {
+            if (isClosed() || lastKey == null)
+            {
+                throw new IllegalStateException(isClosed() ? "cache closed" : "call next() before remove()");
+            }
+            JCSCache.this.remove(lastKey);
+        }
+
+        private Collection<Entry<K, V>> nextBatch()
+        {
+            batch.clear();
+            while (batch.size() < iteratorBatchSize && keys.hasNext())
+            {
+                batch.add(keys.next());
+            }
+
+            final boolean statisticsEnabled = config.isStatisticsEnabled();
+            final long start = Times.now(!statisticsEnabled);
+            final Map<K, ICacheElement<K, V>> elements = delegate.getMultiple(batch);
+            final Collection<Entry<K, V>> result = new ArrayList<Entry<K, V>>(elements.size());
+            for (final K key : batch)
+            {
+                final ICacheElement<K, V> elt = elements.get(key);
+                if (elt == null || elt.getVal() == null) // removed or expired since the key was listed
+                {
+                    continue;
+                }
+                if (statisticsEnabled)
+                {
+                    statistics.increaseHits(1);
+                }
+                updateAccess(key, elt);
+                result.add(new JCSEntry<K, V>(key, elt.getVal()));
+            }
+            if (statisticsEnabled && !result.isEmpty())
+            {
+                statistics.addGetTime((Times.now(false) - start) / result.size());
+            }
+            return result;
+        }
+    }
 }
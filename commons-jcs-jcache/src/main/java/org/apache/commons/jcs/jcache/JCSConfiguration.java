@@ -33,6 +33,8 @@
  */
 package org.apache.commons.jcs.jcache;
 
+import org.apache.commons.jcs.jcache.serialization.Copier;
+
 import javax.cache.configuration.CacheEntryListenerConfiguration;
 import javax.cache.configuration.CompleteConfiguration;
 import javax.cache.configuration.Configuration;
@@ -60,6 +62,7 @@ public class JCSConfiguration<K, V> implements CompleteConfiguration<K, V>
 
     private volatile boolean statisticsEnabled;
     private volatile boolean managementEnabled;
+    private volatile Factory<Copier> copierFactory;
 
     public JCSConfiguration(final Configuration<K, V> configuration, final Class<K> keyType, final Class<V> valueType)
     {
@@ -87,6 +90,10 @@ public class JCSConfiguration<K, V> implements CompleteConfiguration<K, V>
                     cacheEntryListenerConfigurations.add(kvCacheEntryListenerConfiguration);
                 }
             }
+            if (configuration instanceof JCSConfiguration)
+            {
+                copierFactory = ((JCSConfiguration<K, V>) configuration).getCopierFactory();
+            }
         }
         else
         {
@@ -168,6 +175,19 @@ public class JCSConfiguration<K, V> implements CompleteConfiguration<K, V>
         return expiryPolicyFactory;
     }
 
+    /**
+     * @return the factory of the copier used when storing by value, null to use the default one.
+     */
+    public Factory<Copier> getCopierFactory()
+    {
+        return copierFactory;
+    }
+
+    public void setCopierFactory(final Factory<Copier> copierFactory)
+    {
+        this.copierFactory = copierFactory;
+    }
+
     public synchronized void addListener(final CacheEntryListenerConfiguration<K, V> cacheEntryListenerConfiguration)
     {
         cacheEntryListenerConfigurations.add(cacheEntryListenerConfiguration);
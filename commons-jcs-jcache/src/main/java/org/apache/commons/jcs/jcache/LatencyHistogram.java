@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.jcs.jcache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of durations (same bucketing idea as HdrHistogram): each power of two range is split in
+ * {@link #SUB_BUCKETS} linear buckets so the relative error stays under 1/{@link #SUB_BUCKETS}.
+ * <p>
+ * Recording is a single atomic increment in a preallocated array, percentiles are computed when read.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_BITS = 40; // ~12 days in microseconds, bigger values are clamped
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+
+    public void record(final long value)
+    {
+        counts.incrementAndGet(index(value < 0 ? 0 : Math.min(value, MAX_VALUE)));
+    }
+
+    /**
+     * @param percentile between 0 and 100.
+     * @return the highest value of the bucket the percentile falls in, 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(final double percentile)
+    {
+        final int length = counts.length();
+        long total = 0;
+        for (int i = 0; i < length; i++)
+        {
+            total += counts.get(i);
+        }
+        if (total == 0)
+        {
+            return 0;
+        }
+
+        final long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.) / 100. * total));
+        long seen = 0;
+        for (int i = 0; i < length; i++)
+        {
+            seen += counts.get(i);
+            if (seen >= target)
+            {
+                return highestValue(i);
+            }
+        }
+        return highestValue(length - 1);
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < counts.length(); i++)
+        {
+            counts.set(i, 0);
+        }
+    }
+
+    private static int index(final long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BUCKET_BITS
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestValue(final int index)
+    {
+        if (index < SUB_BUCKETS)
+        {
+            return index;
+        }
+        final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final int subBucket = index % SUB_BUCKETS;
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return (((long) (SUB_BUCKETS + subBucket) + 1) << shift) - 1;
+    }
+}
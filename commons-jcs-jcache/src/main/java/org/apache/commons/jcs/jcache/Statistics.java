@@ -18,60 +18,109 @@
  */
 package org.apache.commons.jcs.jcache;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Statistics
 {
     private volatile boolean active = true;
 
-    private final AtomicLong removals = new AtomicLong();
-    private final AtomicLong expiries = new AtomicLong();
-    private final AtomicLong puts = new AtomicLong();
-    private final AtomicLong hits = new AtomicLong();
-    private final AtomicLong misses = new AtomicLong();
-    private final AtomicLong evictions = new AtomicLong();
-    private final AtomicLong putTimeTaken = new AtomicLong();
-    private final AtomicLong getTimeTaken = new AtomicLong();
-    private final AtomicLong removeTimeTaken = new AtomicLong();
+    // striped counters, writes are way more frequent than reads (JMX)
+    private final LongAdder removals = new LongAdder();
+    private final LongAdder expiries = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder putTimeTaken = new LongAdder();
+    private final LongAdder getTimeTaken = new LongAdder();
+    private final LongAdder removeTimeTaken = new LongAdder();
+
+    // 1 out of latencySampling durations goes in the histograms, 0 disables them
+    private final int latencySampling;
+    private final LatencyHistogram getLatencies;
+    private final LatencyHistogram putLatencies;
+    private final LatencyHistogram removeLatencies;
+
+    public Statistics()
+    {
+        this(1);
+    }
+
+    public Statistics(final int latencySampling)
+    {
+        this.latencySampling = latencySampling;
+        if (latencySampling > 0)
+        {
+            getLatencies = new LatencyHistogram();
+            putLatencies = new LatencyHistogram();
+            removeLatencies = new LatencyHistogram();
+        }
+        else
+        {
+            getLatencies = null;
+            putLatencies = null;
+            removeLatencies = null;
+        }
+    }
 
     public long getHits()
     {
-        return hits.get();
+        return hits.sum();
     }
 
     public long getMisses()
     {
-        return misses.get();
+        return misses.sum();
     }
 
     public long getPuts()
     {
-        return puts.get();
+        return puts.sum();
     }
 
     public long getRemovals()
     {
-        return removals.get();
+        return removals.sum();
     }
 
     public long getEvictions()
     {
-        return evictions.get();
+        return evictions.sum();
     }
 
     public long getTimeTakenForGets()
     {
-        return getTimeTaken.get();
+        return getTimeTaken.sum();
     }
 
     public long getTimeTakenForPuts()
     {
-        return putTimeTaken.get();
+        return putTimeTaken.sum();
     }
 
     public long getTimeTakenForRemovals()
     {
-        return removeTimeTaken.get();
+        return removeTimeTaken.sum();
+    }
+
+    /**
+     * @param percentile between 0 and 100.
+     * @return the get duration (microseconds) at this percentile, 0 if latencies are not tracked.
+     */
+    public long getGetTimePercentile(final double percentile)
+    {
+        return percentile(getLatencies, percentile);
+    }
+
+    public long getPutTimePercentile(final double percentile)
+    {
+        return percentile(putLatencies, percentile);
+    }
+
+    public long getRemoveTimePercentile(final double percentile)
+    {
+        return percentile(removeLatencies, percentile);
     }
 
     public void increaseRemovals(final long number)
@@ -106,57 +155,64 @@ public class Statistics
 
     public void addGetTime(final long duration)
     {
-        increment(duration, getTimeTaken);
+        increment(duration, getTimeTaken, getLatencies);
     }
 
     public void addPutTime(final long duration)
     {
-        increment(duration, putTimeTaken);
+        increment(duration, putTimeTaken, putLatencies);
     }
 
     public void addRemoveTime(final long duration)
     {
-        increment(duration, removeTimeTaken);
+        increment(duration, removeTimeTaken, removeLatencies);
     }
 
-    private void increment(final AtomicLong counter, final long number)
+    private void increment(final LongAdder counter, final long number)
     {
         if (!active)
         {
             return;
         }
-        counter.addAndGet(number);
+        counter.add(number);
     }
 
-    private void increment(final long duration, final AtomicLong counter)
+    private void increment(final long duration, final LongAdder counter, final LatencyHistogram histogram)
     {
         if (!active)
         {
             return;
         }
 
-        if (counter.get() < Long.MAX_VALUE - duration)
-        {
-            counter.addAndGet(duration);
-        }
-        else
+        counter.add(duration);
+        if (histogram != null && (latencySampling == 1 || ThreadLocalRandom.current().nextInt(latencySampling) == 0))
         {
-            reset();
-            counter.set(duration);
+            histogram.record(duration);
         }
     }
 
+    private static long percentile(final LatencyHistogram histogram, final double percentile)
+    {
+        return histogram == null ? 0 : histogram.getValueAtPercentile(percentile);
+    }
+
     public void reset()
     {
-        puts.set(0);
-        misses.set(0);
-        removals.set(0);
-        expiries.set(0);
-        hits.set(0);
-        evictions.set(0);
-        getTimeTaken.set(0);
-        putTimeTaken.set(0);
-        removeTimeTaken.set(0);
+        puts.reset();
+        misses.reset();
+        removals.reset();
+        expiries.reset();
+        hits.reset();
+        evictions.reset();
+        getTimeTaken.reset();
+        putTimeTaken.reset();
+        removeTimeTaken.reset();
+        if (getLatencies != null)
+        {
+            getLatencies.reset();
+            putLatencies.reset();
+            removeLatencies.reset();
+        }
     }
 
     public void setActive(final boolean active)
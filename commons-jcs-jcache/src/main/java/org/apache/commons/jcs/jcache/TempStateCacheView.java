@@ -45,10 +45,17 @@ public class TempStateCacheView<K, V> implements Cache<K, V>
     private final Collection<K> remove = new LinkedList<K>();
     private boolean removeAll = false;
     private boolean clear = false;
+    private final Boolean invokeHit; // hit/miss already counted by the EntryProcessor invocation, null if none
 
     public TempStateCacheView(final JCSCache<K, V> entries)
+    {
+        this(entries, null);
+    }
+
+    public TempStateCacheView(final JCSCache<K, V> entries, final Boolean invokeHit)
     {
         this.cache = entries;
+        this.invokeHit = invokeHit;
     }
 
     public V get(final K key)
@@ -69,7 +76,7 @@ public class TempStateCacheView<K, V> implements Cache<K, V>
         if (cache.getConfiguration(CompleteConfiguration.class).isStatisticsEnabled())
         {
             final Statistics statistics = cache.getStatistics();
-            if (cache.containsKey(key))
+            if (invokeHit != null ? invokeHit : cache.containsKey(key))
             {
                 statistics.increaseHits(-1);
             }
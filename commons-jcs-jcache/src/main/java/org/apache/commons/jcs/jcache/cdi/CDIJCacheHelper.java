@@ -33,12 +33,15 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 import javax.annotation.PreDestroy;
+import javax.cache.Cache;
 import javax.cache.annotation.CacheDefaults;
 import javax.cache.annotation.CacheKey;
 import javax.cache.annotation.CacheKeyGenerator;
+import javax.cache.annotation.CacheKeyInvocationContext;
 import javax.cache.annotation.CachePut;
 import javax.cache.annotation.CacheRemove;
 import javax.cache.annotation.CacheRemoveAll;
+import javax.cache.annotation.CacheResolver;
 import javax.cache.annotation.CacheResolverFactory;
 import javax.cache.annotation.CacheResult;
 import javax.cache.annotation.CacheValue;
@@ -507,6 +510,10 @@ public class CDIJCacheHelper
         private final boolean cacheRemoveAllAfter;
         private final CacheRemoveAll cacheRemoveAll;
 
+        // resolved on first call, a resolver only depends on the method
+        private volatile CacheResolver cacheResultResolver;
+        private volatile Cache<Object, Object> cacheResultCache; // only when the resolver doesn't depend on the invocation
+
         public MethodMeta(Class<?>[] parameterTypes, List<Set<Annotation>> parameterAnnotations, Set<Annotation> 
                 annotations, Integer[] keysIndices, Integer valueIndex, Integer[] parameterIndices, String 
                 cacheResultCacheName, CacheResolverFactory cacheResultResolverFactory, CacheKeyGenerator 
@@ -582,6 +589,46 @@ public class CDIJCacheHelper
             return cacheResult;
         }
 
+        /**
+         * @return the cache of the {@link CacheResult} method if it doesn't depend on the invocation, null otherwise
+         * or if not yet resolved.
+         */
+        public Cache<Object, Object> getCacheResultCache()
+        {
+            final Cache<Object, Object> cache = cacheResultCache;
+            if (cache != null && cache.isClosed())
+            {
+                cacheResultCache = null;
+                cacheResultResolver = null;
+                return null;
+            }
+            return cache;
+        }
+
+        public Cache<Object, Object> resolveCacheResultCache(final CacheKeyInvocationContext<CacheResult> context)
+        {
+            CacheResolver resolver = cacheResultResolver;
+            if (resolver == null)
+            {
+                resolver = cacheResultResolverFactory.getCacheResolver(context);
+                cacheResultResolver = resolver;
+            }
+            final Cache<Object, Object> cache = resolver.resolveCache(context);
+            if (CacheResolverImpl.class == resolver.getClass())
+            {
+                cacheResultCache = cache;
+            }
+            return cache;
+        }
+
+        /**
+         * @return the key generator if it can generate keys from the raw parameters, null otherwise.
+         */
+        public CacheKeyGeneratorImpl getCacheResultParametersKeyGenerator()
+        {
+            return CacheKeyGeneratorImpl.class == cacheResultKeyGenerator.getClass() ? CacheKeyGeneratorImpl.class.cast(cacheResultKeyGenerator) : null;
+        }
+
         public Integer[] getParameterIndices()
         {
             return parameterIndices;
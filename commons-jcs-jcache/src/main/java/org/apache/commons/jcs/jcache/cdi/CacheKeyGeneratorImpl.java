@@ -30,6 +30,10 @@ public class CacheKeyGeneratorImpl implements CacheKeyGenerator
     public GeneratedCacheKey generateCacheKey(final CacheKeyInvocationContext<? extends Annotation> cacheKeyInvocationContext)
     {
         final CacheInvocationParameter[] keyParameters = cacheKeyInvocationContext.getKeyParameters();
+        if (keyParameters.length == 1)
+        {
+            return newKey(keyParameters[0].getValue());
+        }
         final Object[] parameters = new Object[keyParameters.length];
         for (int index = 0; index < keyParameters.length; index++)
         {
@@ -37,4 +41,31 @@ public class CacheKeyGeneratorImpl implements CacheKeyGenerator
         }
         return new GeneratedCacheKeyImpl(parameters);
     }
+
+    /**
+     * Same key as {@link #generateCacheKey(CacheKeyInvocationContext)} but built from the raw invocation
+     * parameters, avoids to create the invocation context and parameter wrappers.
+     */
+    public GeneratedCacheKey generateCacheKey(final Object[] invocationParameters, final Integer[] keyIndices)
+    {
+        if (keyIndices.length == 1)
+        {
+            return newKey(invocationParameters[keyIndices[0]]);
+        }
+        final Object[] parameters = new Object[keyIndices.length];
+        for (int index = 0; index < keyIndices.length; index++)
+        {
+            parameters[index] = invocationParameters[keyIndices[index]];
+        }
+        return new GeneratedCacheKeyImpl(parameters);
+    }
+
+    private static GeneratedCacheKey newKey(final Object parameter)
+    {
+        if (parameter != null && parameter.getClass().isArray())
+        {
+            return new GeneratedCacheKeyImpl(new Object[] { parameter }); // needs deep equals/hashCode
+        }
+        return new SingleParameterCacheKey(parameter);
+    }
 }
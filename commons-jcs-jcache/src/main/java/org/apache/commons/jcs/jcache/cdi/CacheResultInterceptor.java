@@ -19,11 +19,9 @@
 package org.apache.commons.jcs.jcache.cdi;
 
 import java.io.Serializable;
-import java.lang.reflect.Method;
 import javax.annotation.Priority;
 import javax.cache.Cache;
 import javax.cache.annotation.CacheKeyInvocationContext;
-import javax.cache.annotation.CacheResolver;
 import javax.cache.annotation.CacheResolverFactory;
 import javax.cache.annotation.CacheResult;
 import javax.cache.annotation.GeneratedCacheKey;
@@ -45,17 +43,32 @@ public class CacheResultInterceptor implements Serializable
     {
         final CDIJCacheHelper.MethodMeta methodMeta = helper.findMeta(ic);
 
-        final String cacheName = methodMeta.getCacheResultCacheName();
-
         final CacheResult cacheResult = methodMeta.getCacheResult();
-        final CacheKeyInvocationContext<CacheResult> context = new CacheKeyInvocationContextImpl<CacheResult>(
-                ic, cacheResult, cacheName, methodMeta);
-
         final CacheResolverFactory cacheResolverFactory = methodMeta.getCacheResultResolverFactory();
-        final CacheResolver cacheResolver = cacheResolverFactory.getCacheResolver(context);
-        final Cache<Object, Object> cache = cacheResolver.resolveCache(context);
 
-        final GeneratedCacheKey cacheKey = methodMeta.getCacheResultKeyGenerator().generateCacheKey(context);
+        // a hit with the default resolver and key generator doesn't need the invocation context
+        CacheKeyInvocationContext<CacheResult> context = null;
+        Cache<Object, Object> cache = methodMeta.getCacheResultCache();
+        if (cache == null)
+        {
+            context = newContext(ic, methodMeta);
+            cache = methodMeta.resolveCacheResultCache(context);
+        }
+
+        final GeneratedCacheKey cacheKey;
+        final CacheKeyGeneratorImpl parametersKeyGenerator = methodMeta.getCacheResultParametersKeyGenerator();
+        if (parametersKeyGenerator != null)
+        {
+            cacheKey = parametersKeyGenerator.generateCacheKey(ic.getParameters(), methodMeta.getKeysIndices());
+        }
+        else
+        {
+            if (context == null)
+            {
+                context = newContext(ic, methodMeta);
+            }
+            cacheKey = methodMeta.getCacheResultKeyGenerator().generateCacheKey(context);
+        }
 
         Cache<Object, Object> exceptionCache = null; // lazily created
 
@@ -71,6 +84,10 @@ public class CacheResultInterceptor implements Serializable
 
             if (!cacheResult.exceptionCacheName().isEmpty())
             {
+                if (context == null)
+                {
+                    context = newContext(ic, methodMeta);
+                }
                 exceptionCache = cacheResolverFactory.getExceptionCacheResolver(context).resolveCache(context);
                 final Object exception = exceptionCache.get(cacheKey);
                 if (exception != null)
@@ -96,6 +113,10 @@ public class CacheResultInterceptor implements Serializable
             {
                 if (exceptionCache == null)
                 {
+                    if (context == null)
+                    {
+                        context = newContext(ic, methodMeta);
+                    }
                     exceptionCache = cacheResolverFactory.getExceptionCacheResolver(context).resolveCache(context);
                 }
                 exceptionCache.put(cacheKey, t);
@@ -103,4 +124,10 @@ public class CacheResultInterceptor implements Serializable
             throw t;
         }
     }
+
+    private static CacheKeyInvocationContext<CacheResult> newContext(final InvocationContext ic, final CDIJCacheHelper.MethodMeta methodMeta)
+    {
+        return new CacheKeyInvocationContextImpl<CacheResult>(
+                ic, methodMeta.getCacheResult(), methodMeta.getCacheResultCacheName(), methodMeta);
+    }
 }
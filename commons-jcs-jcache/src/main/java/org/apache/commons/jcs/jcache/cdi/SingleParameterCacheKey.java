@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.jcs.jcache.cdi;
+
+import javax.cache.annotation.GeneratedCacheKey;
+
+// most cached methods take a single key parameter, no need of an array and deep equals then
+public class SingleParameterCacheKey implements GeneratedCacheKey
+{
+    private final Object param;
+    private final int hash;
+
+    public SingleParameterCacheKey(final Object parameter)
+    {
+        this.param = parameter;
+        this.hash = parameter == null ? 0 : parameter.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass())
+        {
+            return false;
+        }
+        final SingleParameterCacheKey that = SingleParameterCacheKey.class.cast(o);
+        return hash == that.hash && (param == null ? that.param == null : param.equals(that.param));
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.jcs.jcache.jmx;
+
+import javax.cache.management.CacheStatisticsMXBean;
+
+/**
+ * Adds latency percentiles (in microseconds like the JSR 107 averages) to the standard cache statistics,
+ * averages hide the slow operations.
+ */
+public interface CacheLatencyStatisticsMXBean extends CacheStatisticsMXBean
+{
+    long getGetTimePercentile50();
+
+    long getGetTimePercentile99();
+
+    long getGetTimePercentile999();
+
+    long getPutTimePercentile50();
+
+    long getPutTimePercentile99();
+
+    long getPutTimePercentile999();
+
+    long getRemoveTimePercentile50();
+
+    long getRemoveTimePercentile99();
+
+    long getRemoveTimePercentile999();
+}
@@ -20,9 +20,7 @@ package org.apache.commons.jcs.jcache.jmx;
 
 import org.apache.commons.jcs.jcache.Statistics;
 
-import javax.cache.management.CacheStatisticsMXBean;
-
-public class JCSCacheStatisticsMXBean implements CacheStatisticsMXBean
+public class JCSCacheStatisticsMXBean implements CacheLatencyStatisticsMXBean
 {
     private final Statistics statistics;
 
@@ -113,6 +111,60 @@ public class JCSCacheStatisticsMXBean implements CacheStatisticsMXBean
         return averageTime(statistics.getTimeTakenForRemovals());
     }
 
+    @Override
+    public long getGetTimePercentile50()
+    {
+        return statistics.getGetTimePercentile(50);
+    }
+
+    @Override
+    public long getGetTimePercentile99()
+    {
+        return statistics.getGetTimePercentile(99);
+    }
+
+    @Override
+    public long getGetTimePercentile999()
+    {
+        return statistics.getGetTimePercentile(99.9);
+    }
+
+    @Override
+    public long getPutTimePercentile50()
+    {
+        return statistics.getPutTimePercentile(50);
+    }
+
+    @Override
+    public long getPutTimePercentile99()
+    {
+        return statistics.getPutTimePercentile(99);
+    }
+
+    @Override
+    public long getPutTimePercentile999()
+    {
+        return statistics.getPutTimePercentile(99.9);
+    }
+
+    @Override
+    public long getRemoveTimePercentile50()
+    {
+        return statistics.getRemoveTimePercentile(50);
+    }
+
+    @Override
+    public long getRemoveTimePercentile99()
+    {
+        return statistics.getRemoveTimePercentile(99);
+    }
+
+    @Override
+    public long getRemoveTimePercentile999()
+    {
+        return statistics.getRemoveTimePercentile(99.9);
+    }
+
     private float averageTime(final long timeTaken)
     {
         final long gets = getCacheGets();
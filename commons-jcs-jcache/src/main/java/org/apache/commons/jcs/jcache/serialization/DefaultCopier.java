@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.jcs.jcache.serialization;
+
+import org.apache.commons.jcs.engine.behavior.IElementSerializer;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Default {@link Copier}, resolves once per class how instances are copied and reuses it:
+ * <ul>
+ * <li>known immutable JDK types, enums, classes annotated with an <code>Immutable</code> annotation and the configured
+ * immutable classes are returned as they are,</li>
+ * <li>arrays of primitives or immutable types are cloned,</li>
+ * <li>configured copyable classes are copied with their public <code>clone()</code> or copy constructor,</li>
+ * <li>anything else goes through a serialization round-trip with the cache serializer.</li>
+ * </ul>
+ */
+public class DefaultCopier implements Copier
+{
+    private static final Set<Class<?>> IMMUTABLES = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+            String.class, Boolean.class, Byte.class, Short.class, Character.class, Integer.class, Long.class,
+            Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class, URI.class, Locale.class,
+            Class.class, java.time.Duration.class, java.time.Instant.class, java.time.LocalDate.class,
+            java.time.LocalDateTime.class, java.time.LocalTime.class, java.time.OffsetDateTime.class,
+            java.time.ZonedDateTime.class));
+
+    private final Copier fallback;
+    private final Set<String> immutables;
+    private final Set<String> copyables;
+    private final ConcurrentMap<Class<?>, Copier> strategies = new ConcurrentHashMap<Class<?>, Copier>();
+
+    public DefaultCopier(final IElementSerializer serializer)
+    {
+        this(serializer, null, null);
+    }
+
+    /**
+     * @param serializer used for the types without a cheaper copy strategy.
+     * @param immutables names of the classes to handle as immutable.
+     * @param copyables names of the classes to copy with their public clone() or copy constructor.
+     */
+    public DefaultCopier(final IElementSerializer serializer, final Collection<String> immutables, final Collection<String> copyables)
+    {
+        this.fallback = new SerializationStrategy(serializer);
+        this.immutables = immutables == null ? new HashSet<String>() : new HashSet<String>(immutables);
+        this.copyables = copyables == null ? new HashSet<String>() : new HashSet<String>(copyables);
+    }
+
+    @Override
+    public <T> T copy(final ClassLoader loader, final T value)
+    {
+        if (value == null)
+        {
+            return null;
+        }
+
+        final Class<?> type = value.getClass();
+        Copier strategy = strategies.get(type);
+        if (strategy == null)
+        {
+            strategy = resolve(type);
+            final Copier existing = strategies.putIfAbsent(type, strategy);
+            if (existing != null)
+            {
+                strategy = existing;
+            }
+        }
+        return strategy.copy(loader, value);
+    }
+
+    protected Copier resolve(final Class<?> type)
+    {
+        if (isImmutable(type))
+        {
+            return IdentityStrategy.INSTANCE;
+        }
+        if (type.isArray() && (type.getComponentType().isPrimitive() || isImmutable(type.getComponentType())))
+        {
+            return ArrayStrategy.INSTANCE;
+        }
+        if (copyables.contains(type.getName()))
+        {
+            try
+            {
+                final Method clone = type.getMethod("clone");
+                if (!Modifier.isStatic(clone.getModifiers()))
+                {
+                    return new CloneStrategy(clone);
+                }
+            }
+            catch (final NoSuchMethodException e)
+            {
+                // try the copy constructor
+            }
+            try
+            {
+                return new CopyConstructorStrategy(type.getConstructor(type));
+            }
+            catch (final NoSuchMethodException e)
+            {
+                throw new IllegalArgumentException(type.getName() + " is configured as copyable but has no public clone() or copy constructor");
+            }
+        }
+        return fallback;
+    }
+
+    protected boolean isImmutable(final Class<?> type)
+    {
+        if (IMMUTABLES.contains(type) || Enum.class.isAssignableFrom(type) || immutables.contains(type.getName()))
+        {
+            return true;
+        }
+        for (final Annotation annotation : type.getAnnotations())
+        {
+            if ("Immutable".equals(annotation.annotationType().getSimpleName()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class IdentityStrategy implements Copier
+    {
+        private static final IdentityStrategy INSTANCE = new IdentityStrategy();
+
+        @Override
+        public <T> T copy(final ClassLoader loader, final T value)
+        {
+            return value;
+        }
+    }
+
+    private static final class ArrayStrategy implements Copier
+    {
+        private static final ArrayStrategy INSTANCE = new ArrayStrategy();
+
+        @Override
+        public <T> T copy(final ClassLoader loader, final T value)
+        {
+            final int length = Array.getLength(value);
+            final Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+            System.arraycopy(value, 0, copy, 0, length);
+            return (T) copy;
+        }
+    }
+
+    private static final class CloneStrategy implements Copier
+    {
+        private final Method clone;
+
+        private CloneStrategy(final Method clone)
+        {
+            this.clone = clone;
+            if (!clone.isAccessible())
+            {
+                clone.setAccessible(true);
+            }
+        }
+
+        @Override
+        public <T> T copy(final ClassLoader loader, final T value)
+        {
+            try
+            {
+                return (T) clone.invoke(value);
+            }
+            catch (final Exception e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static final class CopyConstructorStrategy implements Copier
+    {
+        private final Constructor<?> constructor;
+
+        private CopyConstructorStrategy(final Constructor<?> constructor)
+        {
+            this.constructor = constructor;
+        }
+
+        @Override
+        public <T> T copy(final ClassLoader loader, final T value)
+        {
+            try
+            {
+                return (T) constructor.newInstance(value);
+            }
+            catch (final Exception e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static final class SerializationStrategy implements Copier
+    {
+        private final IElementSerializer serializer;
+
+        private SerializationStrategy(final IElementSerializer serializer)
+        {
+            this.serializer = serializer;
+        }
+
+        @Override
+        public <T> T copy(final ClassLoader loader, final T value)
+        {
+            return Serializations.copy(serializer, loader, value);
+        }
+    }
+}
@@ -19,13 +19,36 @@
 package org.apache.commons.jcs.jcache.serialization;
 
 import org.apache.commons.jcs.engine.behavior.IElementSerializer;
+import org.apache.commons.jcs.io.ObjectInputStreamClassLoaderAware;
+import org.apache.commons.jcs.utils.serialization.StandardSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 
 public class Serializations
 {
+    // buffers growing above this size are not kept to not pin big arrays per thread
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<Buffer> BUFFERS = new ThreadLocal<Buffer>()
+    {
+        @Override
+        protected Buffer initialValue()
+        {
+            return new Buffer();
+        }
+    };
+
     public static <K> K copy(final IElementSerializer serializer, final ClassLoader loader, final K key)
     {
         try
         {
+            if (serializer.getClass() == StandardSerializer.class)
+            {
+                return standardCopy(loader, key);
+            }
             return serializer.deSerialize(serializer.serialize(key), loader);
         }
         catch ( final Exception e)
@@ -33,4 +56,48 @@ public class Serializations
             throw new IllegalStateException(e);
         }
     }
+
+    // same format as StandardSerializer but reusing the thread buffer and reading it in place
+    private static <K> K standardCopy(final ClassLoader loader, final K key) throws Exception
+    {
+        final Buffer buffer = BUFFERS.get();
+        BUFFERS.remove(); // a nested copy (custom writeObject/readObject) gets its own buffer
+        try
+        {
+            try (ObjectOutputStream oos = new ObjectOutputStream(buffer))
+            {
+                oos.writeObject(key);
+            }
+            try (ObjectInputStream ois = new ObjectInputStreamClassLoaderAware(buffer.input(), loader))
+            {
+                return (K) ois.readObject();
+            }
+        }
+        finally
+        {
+            if (buffer.capacity() <= MAX_POOLED_BUFFER_SIZE)
+            {
+                buffer.reset();
+                BUFFERS.set(buffer);
+            }
+        }
+    }
+
+    private static class Buffer extends ByteArrayOutputStream
+    {
+        private Buffer()
+        {
+            super(512);
+        }
+
+        private ByteArrayInputStream input()
+        {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+
+        private int capacity()
+        {
+            return buf.length;
+        }
+    }
 }
@@ -41,11 +41,19 @@ import javax.cache.expiry.ExpiryPolicy;
 import javax.cache.integration.CacheLoader;
 import javax.cache.integration.CacheLoaderException;
 import javax.cache.integration.CacheWriter;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.MutableEntry;
 import javax.cache.spi.CachingProvider;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.StreamSupport;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -103,6 +111,225 @@ public class CacheTest
         cachingProvider.close();
     }
 
+    @Test
+    public void invokeIsAtomic() throws InterruptedException
+    {
+        final CachingProvider cachingProvider = Caching.getCachingProvider();
+        final CacheManager cacheManager = cachingProvider.getCacheManager();
+        final Cache<String, Integer> cache = cacheManager.createCache("invoke", new MutableConfiguration<String, Integer>());
+        final EntryProcessor<String, Integer, Void> increment = new EntryProcessor<String, Integer, Void>()
+        {
+            @Override
+            public Void process(final MutableEntry<String, Integer> entry, final Object... arguments)
+            {
+                entry.setValue(entry.exists() ? entry.getValue() + 1 : 1);
+                return null;
+            }
+        };
+        final Set<String> keys = new HashSet<String>();
+        for (int i = 0; i < 10; i++)
+        {
+            keys.add("key" + i);
+        }
+
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++)
+        {
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = 0; i < 50; i++)
+                    {
+                        cache.invokeAll(keys, increment);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (final Thread thread : threads)
+        {
+            thread.join();
+        }
+        for (final String key : keys)
+        {
+            assertEquals(200, cache.get(key).intValue());
+        }
+        cachingProvider.close();
+    }
+
+    @Test
+    public void putWaitsForInvoke() throws InterruptedException
+    {
+        final CachingProvider cachingProvider = Caching.getCachingProvider();
+        final CacheManager cacheManager = cachingProvider.getCacheManager();
+        final Cache<String, Integer> cache = cacheManager.createCache("invokeVsPut", new MutableConfiguration<String, Integer>());
+        cache.put("key", 0);
+        final CountDownLatch processing = new CountDownLatch(1);
+        final Thread putter = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    processing.await();
+                }
+                catch (final InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                cache.put("key", 100);
+            }
+        };
+        putter.start();
+
+        cache.invoke("key", new EntryProcessor<String, Integer, Void>()
+        {
+            @Override
+            public Void process(final MutableEntry<String, Integer> entry, final Object... arguments)
+            {
+                final int value = entry.getValue();
+                processing.countDown();
+                try
+                {
+                    // the put would land here without the key lock and be overwritten by the merge
+                    Thread.sleep(200);
+                }
+                catch (final InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                entry.setValue(value + 1);
+                return null;
+            }
+        });
+        putter.join();
+
+        assertEquals(100, cache.get("key").intValue());
+        cachingProvider.close();
+    }
+
+    @Test
+    public void writerWritingAnotherKeyDoesNotDeadlock() throws InterruptedException
+    {
+        final CachingProvider cachingProvider = Caching.getCachingProvider();
+        final CacheManager cacheManager = cachingProvider.getCacheManager();
+        final AtomicReference<Cache<Integer, Integer>> ref = new AtomicReference<Cache<Integer, Integer>>();
+        final MutableConfiguration<Integer, Integer> configuration = new MutableConfiguration<Integer, Integer>();
+        configuration.setWriteThrough(true);
+        configuration.setCacheWriterFactory(new Factory<CacheWriter<? super Integer, ? super Integer>>()
+        {
+            @Override
+            public CacheWriter<? super Integer, ? super Integer> create()
+            {
+                return new CacheWriter<Integer, Integer>()
+                {
+                    @Override
+                    public void write(final Cache.Entry<? extends Integer, ? extends Integer> entry)
+                    {
+                        // 1 and 2 write 66 and 65, on the stripe of the other key
+                        if (entry.getKey() < 64)
+                        {
+                            ref.get().put(67 - entry.getKey(), entry.getValue());
+                        }
+                    }
+
+                    @Override
+                    public void writeAll(final Collection<Cache.Entry<? extends Integer, ? extends Integer>> entries)
+                    {
+                        for (final Cache.Entry<? extends Integer, ? extends Integer> entry : entries)
+                        {
+                            write(entry);
+                        }
+                    }
+
+                    @Override
+                    public void delete(final Object key)
+                    {
+                        // no-op
+                    }
+
+                    @Override
+                    public void deleteAll(final Collection<?> keys)
+                    {
+                        // no-op
+                    }
+                };
+            }
+        });
+        final Cache<Integer, Integer> cache = cacheManager.createCache("writerDeadlock", configuration);
+        ref.set(cache);
+
+        final Thread[] threads = new Thread[2];
+        for (int t = 0; t < threads.length; t++)
+        {
+            final int key = t + 1;
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = 0; i < 2000; i++)
+                    {
+                        cache.put(key, i);
+                    }
+                }
+            };
+            threads[t].setDaemon(true);
+            threads[t].start();
+        }
+        for (final Thread thread : threads)
+        {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(thread.isAlive());
+        }
+        assertEquals(1999, cache.get(65).intValue());
+        assertEquals(1999, cache.get(66).intValue());
+        cachingProvider.close();
+    }
+
+    @Test
+    public void iterator()
+    {
+        final CachingProvider cachingProvider = Caching.getCachingProvider();
+        final Properties properties = new Properties();
+        properties.setProperty("iterator.batch.size", "7");
+        final CacheManager cacheManager = cachingProvider.getCacheManager(cachingProvider.getDefaultURI(),
+                Thread.currentThread().getContextClassLoader(), properties);
+        final Cache<Integer, String> cache = cacheManager.createCache("iterator", new MutableConfiguration<Integer, String>());
+        for (int i = 0; i < 50; i++)
+        {
+            cache.put(i, "v" + i);
+        }
+
+        final Set<Integer> seen = new HashSet<Integer>();
+        final Iterator<Cache.Entry<Integer, String>> iterator = cache.iterator();
+        while (iterator.hasNext())
+        {
+            final Cache.Entry<Integer, String> entry = iterator.next();
+            assertEquals("v" + entry.getKey(), entry.getValue());
+            assertTrue(seen.add(entry.getKey()));
+            if (entry.getKey() % 2 == 0)
+            {
+                iterator.remove();
+            }
+        }
+        assertEquals(50, seen.size());
+        assertFalse(cache.containsKey(0));
+        assertTrue(cache.containsKey(1));
+
+        long count = 0;
+        for (final Cache.Entry<Integer, String> ignored : cache)
+        {
+            count++;
+        }
+        assertEquals(25, count);
+        assertEquals(25, StreamSupport.stream(cache.spliterator(), true).count());
+        cachingProvider.close();
+    }
+
     @Test
     public void listeners()
     {
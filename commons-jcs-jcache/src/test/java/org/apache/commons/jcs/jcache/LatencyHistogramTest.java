@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.jcs.jcache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest
+{
+    @Test
+    public void percentiles()
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        for (int i = 1; i <= 1000; i++)
+        {
+            histogram.record(i);
+        }
+        assertWithinPrecision(500, histogram.getValueAtPercentile(50));
+        assertWithinPrecision(990, histogram.getValueAtPercentile(99));
+        assertWithinPrecision(1000, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+
+        histogram.reset();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void tail()
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 998; i++)
+        {
+            histogram.record(10);
+        }
+        histogram.record(100000);
+        histogram.record(100000);
+        assertEquals(10, histogram.getValueAtPercentile(50));
+        assertEquals(10, histogram.getValueAtPercentile(99));
+        assertWithinPrecision(100000, histogram.getValueAtPercentile(99.9));
+    }
+
+    private static void assertWithinPrecision(final long expected, final long actual)
+    {
+        assertTrue(expected + " ~ " + actual, actual >= expected && actual <= expected + expected / 16);
+    }
+}
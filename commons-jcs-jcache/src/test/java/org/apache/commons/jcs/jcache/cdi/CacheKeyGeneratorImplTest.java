@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.jcs.jcache.cdi;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class CacheKeyGeneratorImplTest
+{
+    private final CacheKeyGeneratorImpl generator = new CacheKeyGeneratorImpl();
+
+    @Test
+    public void singleParameter()
+    {
+        final Integer[] indices = { 1 };
+        assertEquals(
+                generator.generateCacheKey(new Object[] { "ignored", "key" }, indices),
+                generator.generateCacheKey(new Object[] { "other", new String("key") }, indices));
+        assertEquals(
+                generator.generateCacheKey(new Object[] { "ignored", null }, indices),
+                generator.generateCacheKey(new Object[] { "other", null }, indices));
+        assertNotEquals(
+                generator.generateCacheKey(new Object[] { "ignored", "key" }, indices),
+                generator.generateCacheKey(new Object[] { "ignored", "key2" }, indices));
+    }
+
+    @Test
+    public void arrayParameter()
+    {
+        final Integer[] indices = { 0 };
+        assertEquals(
+                generator.generateCacheKey(new Object[] { new int[] { 1, 2 } }, indices),
+                generator.generateCacheKey(new Object[] { new int[] { 1, 2 } }, indices));
+    }
+
+    @Test
+    public void multipleParameters()
+    {
+        final Integer[] indices = { 0, 2 };
+        assertEquals(
+                generator.generateCacheKey(new Object[] { "a", "ignored", 1 }, indices),
+                generator.generateCacheKey(new Object[] { "a", "other", 1 }, indices));
+        assertNotEquals(
+                generator.generateCacheKey(new Object[] { "a", "ignored", 1 }, indices),
+                generator.generateCacheKey(new Object[] { "a", "ignored", 2 }, indices));
+    }
+}
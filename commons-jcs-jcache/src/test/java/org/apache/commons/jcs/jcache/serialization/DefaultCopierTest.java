@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.jcs.jcache.serialization;
+
+import org.apache.commons.jcs.utils.serialization.StandardSerializer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class DefaultCopierTest
+{
+    private final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+
+    @Test
+    public void immutables()
+    {
+        final DefaultCopier copier = new DefaultCopier(new StandardSerializer());
+        final String string = new String("foo");
+        assertSame(string, copier.copy(loader, string));
+        final Long number = 123456789L;
+        assertSame(number, copier.copy(loader, number));
+        assertSame(TimeUnit.DAYS, copier.copy(loader, TimeUnit.DAYS));
+    }
+
+    @Test
+    public void arrays()
+    {
+        final DefaultCopier copier = new DefaultCopier(new StandardSerializer());
+        final byte[] bytes = { 1, 2, 3 };
+        final byte[] copy = copier.copy(loader, bytes);
+        assertNotSame(bytes, copy);
+        assertArrayEquals(bytes, copy);
+    }
+
+    @Test
+    public void serialization()
+    {
+        final DefaultCopier copier = new DefaultCopier(new StandardSerializer());
+        final Date date = new Date();
+        final Date copy = copier.copy(loader, date);
+        assertNotSame(date, copy);
+        assertEquals(date, copy);
+    }
+
+    @Test
+    public void configured()
+    {
+        final DefaultCopier copier = new DefaultCopier(new StandardSerializer(),
+                Collections.singletonList(Date.class.getName()), Collections.singletonList(ArrayList.class.getName()));
+        final Date date = new Date();
+        assertSame(date, copier.copy(loader, date));
+        final List<String> list = new ArrayList<String>(Collections.singletonList("foo"));
+        final List<String> copy = copier.copy(loader, list);
+        assertNotSame(list, copy);
+        assertEquals(list, copy);
+    }
+}